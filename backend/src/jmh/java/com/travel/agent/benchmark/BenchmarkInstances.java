@@ -0,0 +1,148 @@
+package com.travel.agent.benchmark;
+
+import com.travel.agent.service.routing.Haversine;
+import com.travel.agent.service.routing.HeldKarpSolver;
+import com.travel.agent.service.routing.LocalSearchTspSolver;
+import com.travel.agent.service.routing.OrToolsTspSolver;
+import com.travel.agent.service.routing.TimeWindow;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 基准测试实例
+ *
+ * - circle：点按随机角度分布在圆上（平面欧氏距离），凸多边形的最优回路即按角度排序，最优值已知
+ * - city：巴黎真实景点坐标（前 25 个为记录实例），超过 25 个时在其周围按簇补充合成点，
+ *   Haversine 估算驾驶时间；n ≤ 16 用 Held-Karp 得到最优值，更大规模用 OR-Tools 长时间求解的结果作为已知最优
+ */
+final class BenchmarkInstances {
+
+    static final long SEED = 20240601L;
+
+    // 巴黎景点 [经度, 纬度]
+    private static final double[][] PARIS = {
+            {2.2945, 48.8584}, {2.3376, 48.8606}, {2.3499, 48.8530}, {2.2950, 48.8738}, {2.3431, 48.8867},
+            {2.3266, 48.8600}, {2.3212, 48.8554}, {2.3125, 48.8550}, {2.3372, 48.8462}, {2.3522, 48.8566},
+            {2.3622, 48.8554}, {2.3691, 48.8532}, {2.3323, 48.8720}, {2.3211, 48.8656}, {2.3470, 48.8611},
+            {2.3469, 48.8462}, {2.3600, 48.8617}, {2.3081, 48.8625}, {2.2769, 48.8638}, {2.3928, 48.8614},
+            {2.3019, 48.8670}, {2.3550, 48.8705}, {2.3395, 48.8531}, {2.3444, 48.8500}, {2.3908, 48.8322}
+    };
+
+    private BenchmarkInstances() {
+    }
+
+    record Instance(String name, List<double[]> coordinates, long[][] matrix, long optimum, boolean optimumExact) {
+    }
+
+    static Instance create(String kind, int n) {
+        return "circle".equals(kind) ? circle(n) : city(n);
+    }
+
+    /**
+     * 圆上的点：按角度排序的回路即最优回路（半径 10000 秒，取整误差可忽略）
+     */
+    static Instance circle(int n) {
+        Random random = new Random(SEED + n);
+        double[] angles = new double[n];
+        for (int i = 0; i < n; i++) {
+            angles[i] = random.nextDouble() * 2 * Math.PI;
+        }
+        List<double[]> points = new ArrayList<>(n);
+        for (double angle : angles) {
+            points.add(new double[]{10000 * Math.cos(angle), 10000 * Math.sin(angle)});
+        }
+        long[][] matrix = new long[n][n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                matrix[i][j] = Math.round(Math.hypot(points.get(i)[0] - points.get(j)[0],
+                        points.get(i)[1] - points.get(j)[1]));
+            }
+        }
+        Integer[] byAngle = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            byAngle[i] = i;
+        }
+        Arrays.sort(byAngle, (a, b) -> Double.compare(angles[a], angles[b]));
+        int[] tour = new int[n];
+        for (int i = 0; i < n; i++) {
+            tour[i] = byAngle[i];
+        }
+        return new Instance("circle-" + n, points, matrix, LocalSearchTspSolver.tourCost(matrix, tour), true);
+    }
+
+    /**
+     * 城市实例：记录的巴黎景点 + 按簇补充的合成点
+     */
+    static Instance city(int n) {
+        List<double[]> coordinates = cityCoordinates(n);
+        long[][] matrix = Haversine.computeHaversineMatrix(coordinates);
+        if (n <= HeldKarpSolver.MAX_NODES) {
+            return new Instance("city-" + n, coordinates, matrix,
+                    LocalSearchTspSolver.tourCost(matrix, HeldKarpSolver.solve(matrix, 0)), true);
+        }
+        OrToolsSupport.load();
+        int[] best = OrToolsTspSolver.solve(matrix, 0, null, Duration.ofSeconds(10));
+        long bestCost = Math.min(LocalSearchTspSolver.tourCost(matrix, best),
+                LocalSearchTspSolver.tourCost(matrix, LocalSearchTspSolver.solve(matrix, 0)));
+        return new Instance("city-" + n, coordinates, matrix, bestCost, false);
+    }
+
+    /**
+     * 城市实例的坐标（不计算最优值）
+     */
+    static List<double[]> cityCoordinates(int n) {
+        Random random = new Random(SEED + n);
+        List<double[]> coordinates = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            if (i < PARIS.length) {
+                coordinates.add(PARIS[i].clone());
+            } else {
+                double[] anchor = PARIS[random.nextInt(PARIS.length)];
+                coordinates.add(new double[]{
+                        anchor[0] + random.nextGaussian() * 0.004,
+                        anchor[1] + random.nextGaussian() * 0.003});
+            }
+        }
+        return coordinates;
+    }
+
+    /**
+     * 单日排程实例：住宿为起点，约三分之一活动带营业时间，另有午餐 / 晚餐时段
+     */
+    static TimeWindow[] windows(int n) {
+        Random random = new Random(SEED * 31 + n);
+        TimeWindow[] windows = new TimeWindow[n];
+        for (int i = 1; i < n; i++) {
+            int kind = random.nextInt(6);
+            if (kind == 0) {
+                windows[i] = TimeWindow.LUNCH;
+            } else if (kind == 1) {
+                windows[i] = TimeWindow.DINNER;
+            } else if (kind == 2) {
+                int open = 9 * 60 + random.nextInt(4) * 60;
+                windows[i] = new TimeWindow(open, open + 6 * 60);
+            }
+        }
+        return windows;
+    }
+
+    static int[] durations(int n) {
+        Random random = new Random(SEED * 17 + n);
+        int[] durations = new int[n];
+        for (int i = 0; i < n; i++) {
+            durations[i] = 30 + 15 * random.nextInt(7);
+        }
+        return durations;
+    }
+
+    /**
+     * 相对最优值的差距（百分比）
+     */
+    static double gapPercent(long cost, long optimum) {
+        return optimum == 0 ? 0 : (cost - optimum) * 100.0 / optimum;
+    }
+}
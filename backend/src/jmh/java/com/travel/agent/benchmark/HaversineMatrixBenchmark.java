@@ -0,0 +1,34 @@
+package com.travel.agent.benchmark;
+
+import com.travel.agent.service.routing.Haversine;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Matrix API 不可用时的 Haversine 回退矩阵
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HaversineMatrixBenchmark {
+
+    @Param({"5", "10", "25", "60"})
+    private int n;
+
+    private List<double[]> coordinates;
+
+    @Setup
+    public void setup() {
+        coordinates = BenchmarkInstances.cityCoordinates(n);
+    }
+
+    @Benchmark
+    public long[][] computeHaversineMatrix() {
+        return Haversine.computeHaversineMatrix(coordinates);
+    }
+}
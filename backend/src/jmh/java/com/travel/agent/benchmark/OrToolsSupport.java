@@ -0,0 +1,21 @@
+package com.travel.agent.benchmark;
+
+import com.google.ortools.Loader;
+
+/**
+ * OR-Tools 原生库只需在每个 JVM 中加载一次
+ */
+final class OrToolsSupport {
+
+    private static boolean loaded;
+
+    private OrToolsSupport() {
+    }
+
+    static synchronized void load() {
+        if (!loaded) {
+            Loader.loadNativeLibraries();
+            loaded = true;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.travel.agent.benchmark;
+
+import com.travel.agent.service.routing.LocalSearchTspSolver;
+import com.travel.agent.service.routing.OrToolsTspSolver;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OR-Tools 层在不同时限下的耗时与解质量（引导局部搜索会跑满时限，因此按单次求解计时）
+ * warm = true 时以启发式解为初始解（ReadAssignmentFromRoutes），对应编辑后的重新优化
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OrToolsTspBenchmark {
+
+    @Param({"5", "10", "25", "60"})
+    private int n;
+
+    @Param({"circle", "city"})
+    private String instance;
+
+    @Param({"200", "1000", "3000"})
+    private long timeLimitMs;
+
+    @Param({"false", "true"})
+    private boolean warm;
+
+    private BenchmarkInstances.Instance problem;
+    private int[] initialOrder;
+    private long totalGapCost;
+    private int runs;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        OrToolsSupport.load();
+        problem = BenchmarkInstances.create(instance, n);
+        initialOrder = warm ? LocalSearchTspSolver.solve(problem.matrix(), 0) : null;
+    }
+
+    @Benchmark
+    public int[] solveWithOrTools() {
+        int[] order = OrToolsTspSolver.solve(problem.matrix(), 0, initialOrder, Duration.ofMillis(timeLimitMs));
+        if (order != null) {
+            totalGapCost += LocalSearchTspSolver.tourCost(problem.matrix(), order);
+            runs++;
+        }
+        return order;
+    }
+
+    @TearDown(Level.Trial)
+    public void reportQuality() {
+        if (runs == 0) {
+            System.out.printf("%n[quality] %s ortools %dms warm=%s: no solution%n", problem.name(), timeLimitMs, warm);
+            return;
+        }
+        long average = totalGapCost / runs;
+        System.out.printf("%n[quality] %s ortools %dms warm=%s: avg cost=%d, %s=%d, gap=%.2f%%%n",
+                problem.name(), timeLimitMs, warm, average,
+                problem.optimumExact() ? "optimum" : "best-known", problem.optimum(),
+                BenchmarkInstances.gapPercent(average, problem.optimum()));
+    }
+}
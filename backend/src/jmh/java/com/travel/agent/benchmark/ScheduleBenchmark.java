@@ -0,0 +1,55 @@
+package com.travel.agent.benchmark;
+
+import com.travel.agent.service.routing.Haversine;
+import com.travel.agent.service.routing.LocalSearchTspSolver;
+import com.travel.agent.service.routing.TimeWindowScheduler;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 重排活动 + 计算开始时间（原 reorderActivities / updateStartTimes 路径，现由 TimeWindowScheduler 完成）
+ * - evaluate：按 TSP 顺序顺排（不调整顺序）
+ * - schedule：TSP 顺序不可行时的插入 + 迁移启发式
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ScheduleBenchmark {
+
+    @Param({"5", "10", "25", "60"})
+    private int n;
+
+    private TimeWindowScheduler.Problem problem;
+    private int[] tspOrder;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        long[][] matrix = Haversine.computeHaversineMatrix(BenchmarkInstances.cityCoordinates(n));
+        problem = new TimeWindowScheduler.Problem(matrix, 0, BenchmarkInstances.durations(n),
+                BenchmarkInstances.windows(n), 9 * 60, 22 * 60, 15);
+        tspOrder = LocalSearchTspSolver.solve(matrix, 0);
+    }
+
+    @Benchmark
+    public TimeWindowScheduler.Schedule evaluate() {
+        return TimeWindowScheduler.evaluate(problem, tspOrder, false);
+    }
+
+    @Benchmark
+    public TimeWindowScheduler.Schedule schedule() {
+        return TimeWindowScheduler.schedule(problem, tspOrder);
+    }
+
+    @TearDown(Level.Trial)
+    public void reportQuality() {
+        TimeWindowScheduler.Schedule routed = TimeWindowScheduler.evaluate(problem, tspOrder, false);
+        TimeWindowScheduler.Schedule scheduled = TimeWindowScheduler.schedule(problem, tspOrder);
+        System.out.printf("%n[quality] schedule-%d: TSP order violation=%d min, scheduled violation=%d min, "
+                        + "travel %ds -> %ds%n", n, routed.violation(), scheduled.violation(),
+                routed.travelSeconds(), scheduled.travelSeconds());
+    }
+}
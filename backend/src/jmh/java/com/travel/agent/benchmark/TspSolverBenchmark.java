@@ -0,0 +1,84 @@
+package com.travel.agent.benchmark;
+
+import com.travel.agent.service.routing.HeldKarpSolver;
+import com.travel.agent.service.routing.LocalSearchTspSolver;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * solveTSP 的进程内求解层级：
+ * - exact：Held-Karp（超过 HeldKarpSolver.MAX_NODES 的组合跳过，输出 skipped）
+ * - heuristic：最近邻 + 2-opt + Or-opt
+ * - warm：从“上一次的解移动一个活动”开始局部搜索，模拟编辑后的重新优化
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TspSolverBenchmark {
+
+    @Param({"5", "10", "25", "60"})
+    private int n;
+
+    @Param({"circle", "city"})
+    private String instance;
+
+    @Param({"exact", "heuristic", "warm"})
+    private String strategy;
+
+    private BenchmarkInstances.Instance problem;
+    private int[] previousSolution;
+    private boolean supported;
+    private int[] lastOrder;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        problem = BenchmarkInstances.create(instance, n);
+        supported = !"exact".equals(strategy) || n <= HeldKarpSolver.MAX_NODES;
+
+        // 编辑场景：上一次的解中随机挪动一个活动
+        int[] tour = LocalSearchTspSolver.solve(problem.matrix(), 0);
+        if (n > 3) {
+            Random random = new Random(BenchmarkInstances.SEED);
+            int from = 1 + random.nextInt(n - 1);
+            int to = 1 + random.nextInt(n - 1);
+            int node = tour[from];
+            if (from < to) {
+                System.arraycopy(tour, from + 1, tour, from, to - from);
+            } else {
+                System.arraycopy(tour, to, tour, to + 1, from - to);
+            }
+            tour[to] = node;
+        }
+        previousSolution = tour;
+    }
+
+    @Benchmark
+    public int[] solveTsp() {
+        if (!supported) {
+            return null;
+        }
+        lastOrder = switch (strategy) {
+            case "exact" -> HeldKarpSolver.solve(problem.matrix(), 0);
+            case "heuristic" -> LocalSearchTspSolver.solve(problem.matrix(), 0);
+            default -> LocalSearchTspSolver.improve(problem.matrix(), previousSolution);
+        };
+        return lastOrder;
+    }
+
+    @TearDown(Level.Trial)
+    public void reportQuality() {
+        if (!supported || lastOrder == null) {
+            System.out.printf("%n[quality] %s %s: skipped%n", problem.name(), strategy);
+            return;
+        }
+        long cost = LocalSearchTspSolver.tourCost(problem.matrix(), lastOrder);
+        System.out.printf("%n[quality] %s %s: cost=%d, %s=%d, gap=%.2f%%%n", problem.name(), strategy, cost,
+                problem.optimumExact() ? "optimum" : "best-known", problem.optimum(),
+                BenchmarkInstances.gapPercent(cost, problem.optimum()));
+    }
+}
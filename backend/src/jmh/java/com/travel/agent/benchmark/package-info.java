@@ -0,0 +1,12 @@
+/**
+ * 路线优化 JMH 基准测试（离线比较求解策略，为 agent.routing.* 默认值提供数据）
+ *
+ * <pre>
+ * mvn -Pbenchmark compile
+ * java -cp "target/jmh-classes:target/classes:$(cat target/benchmark.classpath)" org.openjdk.jmh.Main TspSolverBenchmark
+ * java -cp "target/jmh-classes:target/classes:$(cat target/benchmark.classpath)" org.openjdk.jmh.Main -p n=25,60 OrToolsTspBenchmark
+ * </pre>
+ *
+ * 各基准在 Trial 结束时输出解的质量（相对已知最优值的差距），与耗时一起用于选择求解层级和时限。
+ */
+package com.travel.agent.benchmark;
@@ -0,0 +1,370 @@
+package com.travel.agent.ai.embedding;
+
+import com.alibaba.fastjson2.JSON;
+import com.travel.agent.ai.vectorstore.ChromaService;
+import com.travel.agent.entity.Destinations;
+import com.travel.agent.service.DestinationsService;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * 目的地向量回填任务（可断点续跑）
+ *
+ * - 按主键游标分页读取 destinations，不一次性加载全表
+ * - 每页按 batch-size 分批调用 Embedding，失败按退避重试；整批仍失败时逐行处理，单行错误不影响其他行
+ * - 写入向量后把文本哈希记到 destinations.embedding_hash，哈希未变化的行直接跳过（各节点共享）
+ * - 每页处理完写入检查点（只记录游标），中断后从检查点继续
+ * - 向量 ID 由目的地 ID 生成，重跑时先按 destination_id 删除旧向量再写入，不会产生重复
+ */
+@Slf4j
+@Service
+public class DestinationEmbeddingBackfillJob {
+
+    private final DestinationsService destinationsService;
+    private final DestinationEmbeddingService destinationEmbeddingService;
+    private final ChromaService chromaService;
+    private final EmbeddingModel embeddingModel;
+    private final Executor embeddingBackfillExecutor;
+    private final Counter embeddedRows;
+    private final Counter skippedRows;
+    private final Counter failedRows;
+
+    @Value("${agent.embedding.backfill.page-size:500}")
+    private int pageSize;
+
+    @Value("${agent.embedding.backfill.batch-size:32}")
+    private int batchSize;
+
+    @Value("${agent.embedding.backfill.max-retries:3}")
+    private int maxRetries;
+
+    @Value("${agent.embedding.backfill.retry-backoff-ms:1000}")
+    private long retryBackoffMs;
+
+    @Value("${agent.embedding.backfill.checkpoint-path:data/backfill/destination-embeddings.json}")
+    private String checkpointPath;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private volatile Progress progress = new Progress();
+
+    public DestinationEmbeddingBackfillJob(DestinationsService destinationsService,
+                                           DestinationEmbeddingService destinationEmbeddingService,
+                                           ChromaService chromaService,
+                                           EmbeddingModel embeddingModel,
+                                           @Qualifier("embeddingBackfillExecutor") Executor embeddingBackfillExecutor,
+                                           MeterRegistry registry) {
+        this.destinationsService = destinationsService;
+        this.destinationEmbeddingService = destinationEmbeddingService;
+        this.chromaService = chromaService;
+        this.embeddingModel = embeddingModel;
+        this.embeddingBackfillExecutor = embeddingBackfillExecutor;
+        this.embeddedRows = rowCounter(registry, "embedded");
+        this.skippedRows = rowCounter(registry, "skipped");
+        this.failedRows = rowCounter(registry, "failed");
+    }
+
+    private static Counter rowCounter(MeterRegistry registry, String result) {
+        return Counter.builder("destination.backfill.rows")
+                .tag("result", result)
+                .description("Destination rows processed by the embedding backfill")
+                .register(registry);
+    }
+
+    /**
+     * 在回填专用线程中异步启动
+     *
+     * @param restart 忽略检查点游标，从头开始（未变化的行仍会跳过）
+     * @param force   忽略文本哈希，全部重新向量化（切换 Embedding 模型后使用）
+     * @return 是否成功启动（已有任务运行时返回 false）
+     */
+    public boolean start(boolean restart, boolean force) {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            embeddingBackfillExecutor.execute(() -> execute(restart, force));
+            return true;
+        } catch (RejectedExecutionException e) {
+            running.set(false);
+            throw e;
+        }
+    }
+
+    /**
+     * 同步执行（Embedding 迁移流程中调用）
+     */
+    public Map<String, Object> runNow(boolean restart, boolean force) {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("Destination backfill is already running");
+        }
+        execute(restart, force);
+        return status();
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    /**
+     * 当前进度与吞吐
+     */
+    public Map<String, Object> status() {
+        Progress snapshot = progress;
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("running", running.get());
+        status.put("state", snapshot.state);
+        status.put("lastId", snapshot.lastId);
+        status.put("scanned", snapshot.scanned);
+        status.put("embedded", snapshot.embedded);
+        status.put("skipped", snapshot.skipped);
+        status.put("failed", snapshot.failed);
+        status.put("failedIds", List.copyOf(snapshot.failedIds));
+        long elapsedMs = (snapshot.finishedAt > 0 ? snapshot.finishedAt : System.currentTimeMillis()) - snapshot.startedAt;
+        status.put("elapsedMs", snapshot.startedAt > 0 ? elapsedMs : 0);
+        double seconds = Math.max(elapsedMs, 1) / 1000.0;
+        status.put("rowsPerSecond", snapshot.startedAt > 0 ? Math.round(snapshot.scanned / seconds * 10) / 10.0 : 0);
+        status.put("embeddedPerSecond", snapshot.startedAt > 0 ? Math.round(snapshot.embedded / seconds * 10) / 10.0 : 0);
+        status.put("error", snapshot.error);
+        return status;
+    }
+
+    private void execute(boolean restart, boolean force) {
+        Checkpoint checkpoint = loadCheckpoint();
+        if (restart || force || checkpoint.isCompleted()) {
+            checkpoint.setLastId(0L);
+            checkpoint.setCompleted(false);
+        }
+        Progress current = new Progress();
+        current.state = "running";
+        current.startedAt = System.currentTimeMillis();
+        current.lastId = checkpoint.getLastId();
+        progress = current;
+        log.info("🚀 Destination backfill started from id > {} (force={})", checkpoint.getLastId(), force);
+
+        try {
+            while (true) {
+                List<Destinations> page = destinationsService.lambdaQuery()
+                        .gt(Destinations::getId, checkpoint.getLastId())
+                        .orderByAsc(Destinations::getId)
+                        .last("LIMIT " + pageSize)
+                        .list();
+                if (page.isEmpty()) {
+                    break;
+                }
+
+                processPage(page, force, current);
+
+                checkpoint.setLastId(page.get(page.size() - 1).getId());
+                current.lastId = checkpoint.getLastId();
+                saveCheckpoint(checkpoint);
+                log.info("📍 Backfill checkpoint: lastId={}, scanned={}, embedded={}, skipped={}, failed={}",
+                        current.lastId, current.scanned, current.embedded, current.skipped, current.failed);
+            }
+            checkpoint.setCompleted(true);
+            saveCheckpoint(checkpoint);
+            current.state = "completed";
+            log.info("✅ Destination backfill completed: {}", status());
+        } catch (Exception e) {
+            current.state = "failed";
+            current.error = e.getMessage();
+            log.error("❌ Destination backfill stopped at lastId={}", current.lastId, e);
+        } finally {
+            current.finishedAt = System.currentTimeMillis();
+            running.set(false);
+        }
+    }
+
+    private void processPage(List<Destinations> page, boolean force, Progress current) {
+        List<Row> changed = new ArrayList<>();
+        for (Destinations destination : page) {
+            current.scanned++;
+            String key = String.valueOf(destination.getId());
+            try {
+                String text = destinationEmbeddingService.buildDestinationText(destination);
+                String hash = sha256(text);
+                if (!force && hash.equals(destination.getEmbeddingHash())) {
+                    current.skipped++;
+                    skippedRows.increment();
+                    continue;
+                }
+                changed.add(new Row(key, hash,
+                        TextSegment.from(text, destinationEmbeddingService.buildMetadata(destination))));
+            } catch (Exception e) {
+                markFailed(current, destination.getId(), e);
+            }
+        }
+
+        for (int from = 0; from < changed.size(); from += batchSize) {
+            List<Row> batch = changed.subList(from, Math.min(from + batchSize, changed.size()));
+            try {
+                writeBatch(batch);
+                recordHashes(batch);
+                current.embedded += batch.size();
+                embeddedRows.increment(batch.size());
+            } catch (Exception e) {
+                // 整批失败：逐行写入，定位坏行
+                log.warn("⚠️ Backfill batch of {} failed after retries, falling back to single rows: {}",
+                        batch.size(), e.getMessage());
+                for (Row row : batch) {
+                    try {
+                        writeBatch(List.of(row));
+                        recordHashes(List.of(row));
+                        current.embedded++;
+                        embeddedRows.increment();
+                    } catch (Exception rowError) {
+                        markFailed(current, Long.valueOf(row.destinationId()), rowError);
+                    }
+                }
+            }
+        }
+    }
+
+    private void writeBatch(List<Row> batch) {
+        List<TextSegment> segments = batch.stream().map(Row::segment).toList();
+        List<Embedding> embeddings = withRetry(() -> embeddingModel.embedAll(segments).content());
+        List<String> destinationIds = batch.stream().map(Row::destinationId).toList();
+        List<String> ids = destinationIds.stream()
+                .map(id -> UUID.nameUUIDFromBytes(("destination:" + id).getBytes(StandardCharsets.UTF_8)).toString())
+                .toList();
+        withRetry(() -> {
+            // 删除该批目的地已有的向量（包括旧版本随机 ID 写入的），再按确定性 ID 写入
+            chromaService.deleteByMetadataIn("destination_id", destinationIds);
+            chromaService.addAll(ids, embeddings, segments);
+            return null;
+        });
+    }
+
+    /**
+     * 向量写入成功后记录文本哈希（只更新 embedding_hash 一列，批量执行）
+     */
+    private void recordHashes(List<Row> rows) {
+        List<Destinations> updates = new ArrayList<>(rows.size());
+        for (Row row : rows) {
+            Destinations update = new Destinations();
+            update.setId(Long.valueOf(row.destinationId()));
+            update.setEmbeddingHash(row.hash());
+            updates.add(update);
+        }
+        destinationsService.updateBatchById(updates);
+    }
+
+    private <T> T withRetry(Supplier<T> action) {
+        RuntimeException last = null;
+        for (int attempt = 0; attempt <= maxRetries; attempt++) {
+            try {
+                return action.get();
+            } catch (RuntimeException e) {
+                last = e;
+                if (attempt < maxRetries) {
+                    long backoff = retryBackoffMs * (1L << attempt);
+                    log.warn("Backfill call failed (attempt {}/{}), retrying in {}ms: {}",
+                            attempt + 1, maxRetries + 1, backoff, e.getMessage());
+                    try {
+                        Thread.sleep(backoff);
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        throw e;
+                    }
+                }
+            }
+        }
+        throw last;
+    }
+
+    private void markFailed(Progress current, Long destinationId, Exception e) {
+        current.failed++;
+        failedRows.increment();
+        if (current.failedIds.size() < 100) {
+            current.failedIds.add(destinationId);
+        }
+        log.warn("⚠️ Failed to embed destination {}: {}", destinationId, e.getMessage());
+    }
+
+    private Checkpoint loadCheckpoint() {
+        Path path = Paths.get(checkpointPath);
+        if (Files.exists(path)) {
+            try {
+                Checkpoint checkpoint = JSON.parseObject(Files.readString(path, StandardCharsets.UTF_8), Checkpoint.class);
+                if (checkpoint != null) {
+                    return checkpoint;
+                }
+            } catch (Exception e) {
+                log.warn("⚠️ Ignoring unreadable backfill checkpoint {}: {}", path, e.getMessage());
+            }
+        }
+        return new Checkpoint();
+    }
+
+    private void saveCheckpoint(Checkpoint checkpoint) {
+        Path path = Paths.get(checkpointPath);
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            checkpoint.setUpdatedAt(LocalDateTime.now().toString());
+            Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+            Files.writeString(tmp, JSON.toJSONString(checkpoint), StandardCharsets.UTF_8);
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("⚠️ Failed to write backfill checkpoint {}: {}", path, e.getMessage());
+        }
+    }
+
+    private static String sha256(String text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 持久化检查点：只记录游标（各行的文本哈希在 destinations.embedding_hash 中）
+     */
+    @Data
+    public static class Checkpoint {
+        private Long lastId = 0L;
+        private boolean completed;
+        private String updatedAt;
+    }
+
+    private static class Progress {
+        volatile String state = "idle";
+        volatile long lastId;
+        volatile long scanned;
+        volatile long embedded;
+        volatile long skipped;
+        volatile long failed;
+        final List<Long> failedIds = Collections.synchronizedList(new ArrayList<>());
+        volatile long startedAt;
+        volatile long finishedAt;
+        volatile String error;
+    }
+
+    private record Row(String destinationId, String hash, TextSegment segment) {
+    }
+}
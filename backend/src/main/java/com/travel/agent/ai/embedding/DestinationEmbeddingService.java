@@ -2,21 +2,16 @@ package com.travel.agent.ai.embedding;
 
 import com.travel.agent.ai.vectorstore.ChromaService;
 import com.travel.agent.entity.Destinations;
-import com.travel.agent.service.DestinationsService;
 import dev.langchain4j.data.document.Metadata;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
-import java.util.ArrayList;
-import java.util.List;
-
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class DestinationEmbeddingService {
 
-    private final DestinationsService destinationsService;
     private final ChromaService chromaService;
 
     /**
@@ -27,56 +22,29 @@ public class DestinationEmbeddingService {
         String text = buildDestinationText(destination);
         
         // 2. 构建元数据
-        Metadata metadata = Metadata.from("destination_id", String.valueOf(destination.getId()))
-                .put("name", destination.getName())
-                .put("country", destination.getCountry())
-                .put("state", destination.getState())
-                .put("budget_level", destination.getBudgetLevel())
-                .put("latitude", destination.getLatitude().toString())
-                .put("longitude", destination.getLongitude().toString());
+        Metadata metadata = buildMetadata(destination);
         
         // 3. 添加到向量数据库
         return chromaService.addText(text, metadata);
     }
 
     /**
-     * 批量向量化所有目的地
+     * 构建目的地元数据
      */
-    public void embedAllDestinations() {
-        log.info("🚀 Starting to embed all destinations...");
-        
-        // 1. 获取所有目的地
-        List<Destinations> destinations = destinationsService.list();
-        log.info("Found {} destinations to embed", destinations.size());
-        
-        // 2. 准备批量数据
-        List<String> texts = new ArrayList<>();
-        List<Metadata> metadataList = new ArrayList<>();
-        
-        for (Destinations destination : destinations) {
-            texts.add(buildDestinationText(destination));
-            
-            Metadata metadata = Metadata.from("destination_id", String.valueOf(destination.getId()))
-                    .put("name", destination.getName())
-                    .put("country", destination.getCountry())
-                    .put("state", destination.getState())
-                    .put("budget_level", destination.getBudgetLevel())
-                    .put("latitude", destination.getLatitude().toString())
-                    .put("longitude", destination.getLongitude().toString());
-            
-            metadataList.add(metadata);
-        }
-        
-        // 3. 批量添加
-        List<String> ids = chromaService.addTexts(texts, metadataList);
-        
-        log.info("✅ Successfully embedded {} destinations", ids.size());
+    Metadata buildMetadata(Destinations destination) {
+        return Metadata.from("destination_id", String.valueOf(destination.getId()))
+                .put("name", destination.getName())
+                .put("country", destination.getCountry())
+                .put("state", destination.getState())
+                .put("budget_level", destination.getBudgetLevel())
+                .put("latitude", destination.getLatitude().toString())
+                .put("longitude", destination.getLongitude().toString());
     }
 
     /**
      * 构建目的地的文本表示（用于 Embedding）
      */
-    private String buildDestinationText(Destinations destination) {
+    String buildDestinationText(Destinations destination) {
         StringBuilder sb = new StringBuilder();
         
         // 名称和位置
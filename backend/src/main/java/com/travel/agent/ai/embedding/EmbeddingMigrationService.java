@@ -0,0 +1,92 @@
+package com.travel.agent.ai.embedding;
+
+import com.travel.agent.ai.vectorstore.ChromaService;
+import com.travel.agent.service.impl.IncrementalKnowledgeBaseService;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Embedding 模型迁移服务
+ *
+ * 切换 agent.embedding.mode 后向量维度会变化（1536 ↔ 384），已有向量无法再与新查询向量比较。
+ * 本服务检测当前存储与模型是否兼容，并用当前模型重新生成知识库和目的地向量。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class EmbeddingMigrationService {
+
+    private final EmbeddingModel embeddingModel;
+    private final EmbeddingStore<TextSegment> embeddingStore;
+    private final ChromaService chromaService;
+    private final IncrementalKnowledgeBaseService knowledgeBaseService;
+    private final DestinationEmbeddingBackfillJob destinationBackfillJob;
+
+    /**
+     * 检查向量存储与当前 Embedding 模型的维度是否一致
+     */
+    public Map<String, Object> inspect() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        Embedding probe = embeddingModel.embed("migration probe").content();
+        result.put("model", embeddingModel.modelName());
+        result.put("modelDimension", probe.dimension());
+
+        try {
+            List<EmbeddingMatch<TextSegment>> matches = embeddingStore.search(EmbeddingSearchRequest.builder()
+                    .queryEmbedding(probe)
+                    .maxResults(1)
+                    .build()).matches();
+            Integer storeDimension = matches.isEmpty() || matches.get(0).embedding() == null
+                    ? null : matches.get(0).embedding().dimension();
+            result.put("storeDimension", storeDimension);
+            result.put("compatible", storeDimension == null || storeDimension == probe.dimension());
+        } catch (Exception e) {
+            // Chroma / pgvector 在维度不一致时直接报错
+            result.put("storeDimension", null);
+            result.put("compatible", false);
+            result.put("error", e.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * 用当前模型重建全部向量
+     *
+     * @param clearStore 是否先清空存储（检测到维度变化时总是清空）
+     */
+    public Map<String, Object> reembedAll(boolean clearStore) {
+        long start = System.currentTimeMillis();
+        log.info("🚀 Re-embedding all data with model {} (clearStore={})", embeddingModel.modelName(), clearStore);
+
+        // 维度已变化时不能在同一 collection 内混存，强制清空
+        if (!clearStore && Boolean.FALSE.equals(inspect().get("compatible"))) {
+            log.warn("⚠️ Store dimension differs from model {}, clearing store before re-embedding",
+                    embeddingModel.modelName());
+            clearStore = true;
+        }
+        if (clearStore) {
+            chromaService.removeAll();
+        }
+
+        int documents = knowledgeBaseService.reindexAll();
+        Map<String, Object> destinations = destinationBackfillJob.runNow(true, true);
+
+        Map<String, Object> result = new LinkedHashMap<>(inspect());
+        result.put("knowledgeDocuments", documents);
+        result.put("destinations", destinations);
+        result.put("durationMs", System.currentTimeMillis() - start);
+        log.info("✅ Re-embedding finished: {}", result);
+        return result;
+    }
+}
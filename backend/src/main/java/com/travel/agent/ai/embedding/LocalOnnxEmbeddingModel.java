@@ -0,0 +1,85 @@
+package com.travel.agent.ai.embedding;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.embedding.onnx.allminilml6v2.AllMiniLmL6V2EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * 本地 ONNX Embedding 模型（all-MiniLM-L6-v2，384 维）
+ *
+ * 模型在进程内运行，推理任务提交到专用的 CPU 线程池（线程数不超过核数），不占用业务线程池。
+ * 批量导入时按 batchSize 分批提交，避免一次性把整篇文档的分段全部压入线程池；
+ * 单条查询直接在调用线程上推理，通常只需几毫秒，没有网络依赖。
+ */
+@Slf4j
+public class LocalOnnxEmbeddingModel implements EmbeddingModel {
+
+    public static final String MODEL_NAME = "all-minilm-l6-v2";
+    public static final int DIMENSION = 384;
+
+    private final AllMiniLmL6V2EmbeddingModel delegate;
+    private final int batchSize;
+    private final Timer queryTimer;
+    private final Timer batchTimer;
+
+    public LocalOnnxEmbeddingModel(Executor embeddingExecutor, int batchSize, MeterRegistry registry) {
+        long start = System.currentTimeMillis();
+        this.delegate = new AllMiniLmL6V2EmbeddingModel(embeddingExecutor);
+        this.batchSize = Math.max(1, batchSize);
+        this.queryTimer = Timer.builder("embedding.local.duration")
+                .description("Local ONNX embedding duration")
+                .tag("type", "query")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(registry);
+        this.batchTimer = Timer.builder("embedding.local.duration")
+                .description("Local ONNX embedding duration")
+                .tag("type", "batch")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(registry);
+        log.info("✅ Local ONNX embedding model loaded: {} (dim={}, batchSize={}) in {}ms",
+                MODEL_NAME, DIMENSION, this.batchSize, System.currentTimeMillis() - start);
+    }
+
+    @Override
+    public Response<Embedding> embed(String text) {
+        return embed(TextSegment.from(text));
+    }
+
+    @Override
+    public Response<Embedding> embed(TextSegment segment) {
+        return queryTimer.record(() -> delegate.embed(segment));
+    }
+
+    @Override
+    public Response<List<Embedding>> embedAll(List<TextSegment> segments) {
+        if (segments.size() <= batchSize) {
+            return batchTimer.record(() -> delegate.embedAll(segments));
+        }
+
+        List<Embedding> embeddings = new ArrayList<>(segments.size());
+        for (int from = 0; from < segments.size(); from += batchSize) {
+            List<TextSegment> batch = segments.subList(from, Math.min(from + batchSize, segments.size()));
+            embeddings.addAll(batchTimer.record(() -> delegate.embedAll(batch)).content());
+        }
+        return Response.from(embeddings);
+    }
+
+    @Override
+    public int dimension() {
+        return DIMENSION;
+    }
+
+    @Override
+    public String modelName() {
+        return MODEL_NAME;
+    }
+}
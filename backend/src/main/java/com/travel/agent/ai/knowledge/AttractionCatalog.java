@@ -0,0 +1,166 @@
+package com.travel.agent.ai.knowledge;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONWriter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 结构化景点目录
+ *
+ * 导入知识库时由 {@link AttractionCatalogExtractor} 从指南中抽取，按 城市 → 类别 建索引，
+ * “列出 X 城市的景点”这类请求直接查表，不再走向量检索。
+ * 目录以 JSON 文件持久化，重启后直接加载，再由知识库按目录中的指南文件对账
+ * （删除已不存在的文档，重新抽取停机期间修改过的文档）。
+ */
+@Slf4j
+@Component
+public class AttractionCatalog {
+
+    /** documentId → 条目（导入/删除以文档为单位整体替换） */
+    private final Map<String, List<AttractionEntry>> byDocument = new ConcurrentHashMap<>();
+
+    /** city → category → 条目 */
+    private volatile Map<String, Map<String, List<AttractionEntry>>> index = Map.of();
+
+    @Value("${agent.knowledge.catalog.path:data/catalog/attractions.json}")
+    private String catalogPath;
+
+    @Value("${agent.knowledge.catalog.persist:true}")
+    private boolean persist;
+
+    /** 加载的目录文件的修改时间，晚于它修改的指南需要重新抽取 */
+    private volatile long persistedAt;
+
+    @PostConstruct
+    public void load() {
+        Path path = Paths.get(catalogPath);
+        if (!Files.exists(path)) {
+            return;
+        }
+        try {
+            persistedAt = Files.getLastModifiedTime(path).toMillis();
+            List<AttractionEntry> entries = JSON.parseArray(Files.readString(path, StandardCharsets.UTF_8),
+                    AttractionEntry.class);
+            for (AttractionEntry entry : entries) {
+                byDocument.computeIfAbsent(entry.getDocumentId(), k -> new ArrayList<>()).add(entry);
+            }
+            rebuildIndex();
+            log.info("✅ Attraction catalog loaded: {} entries, {} cities", entries.size(), index.size());
+        } catch (Exception e) {
+            log.warn("⚠️ Failed to load attraction catalog from {}: {}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * 替换一个文档对应的全部条目
+     */
+    public synchronized void replaceDocument(String documentId, List<AttractionEntry> entries) {
+        byDocument.put(documentId, List.copyOf(entries));
+        rebuildIndex();
+        save();
+    }
+
+    public synchronized void removeDocument(String documentId) {
+        if (byDocument.remove(documentId) != null) {
+            rebuildIndex();
+            save();
+        }
+    }
+
+    public boolean containsDocument(String documentId) {
+        return byDocument.containsKey(documentId);
+    }
+
+    /**
+     * 目录中没有该文档，或指南在目录文件写入之后被修改过
+     */
+    public boolean isStale(String documentId, long sourceModifiedMillis) {
+        return !byDocument.containsKey(documentId) || sourceModifiedMillis > persistedAt;
+    }
+
+    /**
+     * 只保留给定文档的条目（启动时与知识库目录对账）
+     */
+    public synchronized void retainDocuments(Set<String> documentIds) {
+        if (byDocument.keySet().retainAll(documentIds)) {
+            rebuildIndex();
+            save();
+        }
+    }
+
+    public boolean hasCity(String city) {
+        return city != null && index.containsKey(normalize(city));
+    }
+
+    /**
+     * 按城市和类别查询（保持指南中的原始顺序）
+     *
+     * @param category 为 null 时返回该城市全部类别
+     */
+    public List<AttractionEntry> find(String city, String category) {
+        if (city == null) {
+            return List.of();
+        }
+        Map<String, List<AttractionEntry>> byCategory = index.get(normalize(city));
+        if (byCategory == null) {
+            return List.of();
+        }
+        if (category != null) {
+            return byCategory.getOrDefault(category, List.of());
+        }
+        List<AttractionEntry> all = new ArrayList<>();
+        byCategory.values().forEach(all::addAll);
+        return all;
+    }
+
+    public int size() {
+        return byDocument.values().stream().mapToInt(List::size).sum();
+    }
+
+    private void rebuildIndex() {
+        Map<String, Map<String, List<AttractionEntry>>> rebuilt = new HashMap<>();
+        for (List<AttractionEntry> entries : byDocument.values()) {
+            for (AttractionEntry entry : entries) {
+                rebuilt.computeIfAbsent(normalize(entry.getCity()), k -> new LinkedHashMap<>())
+                        .computeIfAbsent(entry.getCategory(), k -> new ArrayList<>())
+                        .add(entry);
+            }
+        }
+        index = rebuilt;
+    }
+
+    private void save() {
+        if (!persist) {
+            return;
+        }
+        Path path = Paths.get(catalogPath);
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            List<AttractionEntry> all = new ArrayList<>();
+            byDocument.values().forEach(all::addAll);
+            Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+            Files.writeString(tmp, JSON.toJSONString(all, JSONWriter.Feature.PrettyFormat), StandardCharsets.UTF_8);
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("⚠️ Failed to persist attraction catalog to {}: {}", path, e.getMessage());
+        }
+    }
+
+    private static String normalize(String city) {
+        return city == null ? "" : city.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,167 @@
+package com.travel.agent.ai.knowledge;
+
+import dev.langchain4j.data.segment.TextSegment;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 从城市指南 Markdown 中抽取景点目录
+ *
+ * 指南结构约定：
+ * - “## 必游景点 / ## 周边推荐”下每个“### 名称”是一个景点，字段为“- **门票**: …”形式
+ * - “## 住宿推荐”下“### 区域 (说明)”分组，条目为“- **档次**: 酒店名 - 价格”
+ * - “## 美食推荐”下“**菜系**”分组，条目为“- 店名(备注) - 价格”
+ */
+public final class AttractionCatalogExtractor {
+
+    private static final Pattern FIELD = Pattern.compile("^-\\s*\\*\\*(.+?)\\*\\*\\s*[:：]\\s*(.+)$");
+    private static final Pattern BOLD_GROUP = Pattern.compile("^\\*\\*(.+?)\\*\\*\\s*$");
+    private static final Pattern NAME_PRICE = Pattern.compile("^(.+?)\\s+-\\s+(.*[¥€$£]\\s*\\d.*)$");
+    private static final Pattern QUOTED_STATION = Pattern.compile("[\"“]([^\"”]+?站)[\"”]");
+    private static final Pattern LINE_PREFIX = Pattern.compile("^.*?线(?=\\S)");
+
+    private AttractionCatalogExtractor() {
+    }
+
+    public static List<AttractionEntry> extract(String documentId, String city, String content,
+                                                List<TextSegment> segments) {
+        List<AttractionEntry> entries = new ArrayList<>();
+        String section = null;
+        String group = null;
+        AttractionEntry current = null;
+
+        for (String rawLine : content.split("\n")) {
+            String line = rawLine.trim();
+            if (line.startsWith("## ")) {
+                flush(current, entries);
+                current = null;
+                section = line.substring(3).trim();
+                group = null;
+                continue;
+            }
+            String category = categoryOf(section);
+            if (category == null) {
+                continue;
+            }
+
+            if (line.startsWith("### ")) {
+                flush(current, entries);
+                current = null;
+                String title = line.substring(4).trim();
+                if ("attraction".equals(category)) {
+                    current = AttractionEntry.builder().city(city).name(title).category(category)
+                            .documentId(documentId).build();
+                } else {
+                    group = stripParenthesis(title);
+                }
+                continue;
+            }
+
+            Matcher bold = BOLD_GROUP.matcher(line);
+            if (bold.matches()) {
+                group = bold.group(1).trim();
+                continue;
+            }
+
+            Matcher field = FIELD.matcher(line);
+            if ("attraction".equals(category) && current != null && field.matches()) {
+                applyField(current, field.group(1).trim(), field.group(2).trim());
+            } else if ("accommodation".equals(category) && field.matches()) {
+                Matcher namePrice = NAME_PRICE.matcher(field.group(2).trim());
+                if (namePrice.matches()) {
+                    entries.add(AttractionEntry.builder().city(city).category(category)
+                            .name(namePrice.group(1).trim()).price(namePrice.group(2).trim())
+                            .subcategory(field.group(1).trim()).neighborhood(group)
+                            .documentId(documentId).build());
+                }
+            } else if ("food".equals(category) && line.startsWith("- ") && group != null) {
+                Matcher namePrice = NAME_PRICE.matcher(line.substring(2).trim());
+                if (namePrice.matches()) {
+                    entries.add(AttractionEntry.builder().city(city).category(category)
+                            .name(namePrice.group(1).trim()).price(namePrice.group(2).trim())
+                            .subcategory(group).documentId(documentId).build());
+                }
+            }
+        }
+        flush(current, entries);
+
+        for (AttractionEntry entry : entries) {
+            entry.setSourceSegmentId(findSegment(documentId, entry.getName(), segments));
+        }
+        return entries;
+    }
+
+    private static void applyField(AttractionEntry entry, String key, String value) {
+        if (key.contains("门票")) {
+            entry.setPrice(entry.getPrice() == null ? value : entry.getPrice() + "; " + value);
+        } else if (key.equals("游览时长")) {
+            entry.setDuration(value);
+        } else if (key.equals("时间")) {
+            // 周边推荐中的“时间”表示游览时长（半天/全天）
+            entry.setDuration(value);
+        } else if (key.contains("最佳时间") || key.contains("开放")) {
+            entry.setHours(value);
+        } else if (key.equals("交通")) {
+            entry.setNeighborhood(extractStation(value));
+        } else if (key.equals("亮点")) {
+            entry.setHighlights(value);
+        }
+    }
+
+    /**
+     * “地铁1/7号线Palais Royal站(€2)” → “Palais Royal站”；带引号的站名优先
+     */
+    private static String extractStation(String transport) {
+        Matcher quoted = QUOTED_STATION.matcher(transport);
+        if (quoted.find()) {
+            return quoted.group(1);
+        }
+        String station = transport.split("[,，(（]", 2)[0].trim();
+        return LINE_PREFIX.matcher(station).replaceFirst("");
+    }
+
+    private static void flush(AttractionEntry current, List<AttractionEntry> entries) {
+        if (current != null) {
+            entries.add(current);
+        }
+    }
+
+    private static String categoryOf(String section) {
+        if (section == null) {
+            return null;
+        }
+        if (section.contains("景点") || section.contains("周边")) {
+            return "attraction";
+        }
+        if (section.contains("住宿")) {
+            return "accommodation";
+        }
+        if (section.contains("美食")) {
+            return "food";
+        }
+        return null;
+    }
+
+    private static String stripParenthesis(String title) {
+        int idx = title.indexOf('(');
+        if (idx < 0) {
+            idx = title.indexOf('（');
+        }
+        return idx > 0 ? title.substring(0, idx).trim() : title;
+    }
+
+    private static String findSegment(String documentId, String name, List<TextSegment> segments) {
+        if (segments == null) {
+            return null;
+        }
+        for (int i = 0; i < segments.size(); i++) {
+            if (segments.get(i).text().contains(name)) {
+                return documentId + "#" + i;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,33 @@
+package com.travel.agent.ai.knowledge;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 景点目录条目（导入知识库时从指南 Markdown 中结构化抽取）
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AttractionEntry {
+    private String city;
+    private String name;
+    /** attraction / food / accommodation */
+    private String category;
+    /** 子类别，如“北京烤鸭”“经济型” */
+    private String subcategory;
+    private String price;
+    /** 开放/推荐时间 */
+    private String hours;
+    /** 游览时长 */
+    private String duration;
+    /** 所在区域或最近车站 */
+    private String neighborhood;
+    private String highlights;
+    private String documentId;
+    /** 来源分段 ID（documentId#分段序号，与倒排索引一致） */
+    private String sourceSegmentId;
+}
@@ -0,0 +1,136 @@
+package com.travel.agent.ai.knowledge;
+
+import com.travel.agent.monitoring.CacheMetricsService;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * 目的地景点检索结果缓存（进程内 LRU）
+ *
+ * 键 = 城市 + 结果数 + 该城市指南的文档版本：文档重新导入或删除后旧键自然失效，
+ * 同时由 {@link #invalidateCity(String)} 立即回收该城市的全部条目，不影响其他城市。
+ * 结果中带 embedding 向量，按缓存的匹配条数（而不是键数）限制总量，控制堆占用。
+ */
+@Slf4j
+@Component
+public class AttractionSearchCache {
+
+    public static final String CACHE_NAME = "rag-attractions";
+
+    private final CacheMetricsService cacheMetricsService;
+    private final Counter evictions;
+
+    @Value("${agent.rag.cache.enabled:true}")
+    private boolean enabled;
+
+    // 所有条目中缓存的匹配总数上限（1536 维向量约 6KB/条）
+    @Value("${agent.rag.cache.max-matches:2000}")
+    private int maxMatches;
+
+    private final LinkedHashMap<Key, List<EmbeddingMatch<TextSegment>>> entries =
+            new LinkedHashMap<>(64, 0.75f, true);
+    private int cachedMatches;
+
+    public AttractionSearchCache(CacheMetricsService cacheMetricsService, MeterRegistry registry) {
+        this.cacheMetricsService = cacheMetricsService;
+        this.evictions = Counter.builder("cache.eviction")
+                .tag("cache", CACHE_NAME)
+                .description("Entries evicted from the RAG attraction cache")
+                .register(registry);
+        Gauge.builder("cache.size", this, AttractionSearchCache::size)
+                .tag("cache", CACHE_NAME)
+                .description("Entries in the RAG attraction cache")
+                .register(registry);
+        Gauge.builder("cache.weight", this, AttractionSearchCache::weight)
+                .tag("cache", CACHE_NAME)
+                .description("Cached embedding matches in the RAG attraction cache")
+                .register(registry);
+    }
+
+    /**
+     * 命中则返回缓存结果，否则执行检索并写入缓存
+     */
+    public List<EmbeddingMatch<TextSegment>> get(String city, int maxResults, int documentVersion,
+                                                 Supplier<List<EmbeddingMatch<TextSegment>>> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        Key key = new Key(normalize(city), maxResults, documentVersion);
+        long start = System.currentTimeMillis();
+        synchronized (this) {
+            List<EmbeddingMatch<TextSegment>> cached = entries.get(key);
+            if (cached != null) {
+                cacheMetricsService.recordCacheHit(CACHE_NAME);
+                cacheMetricsService.recordCacheOperation(CACHE_NAME, System.currentTimeMillis() - start, true);
+                return cached;
+            }
+        }
+
+        cacheMetricsService.recordCacheMiss(CACHE_NAME);
+        List<EmbeddingMatch<TextSegment>> result = List.copyOf(loader.get());
+        cacheMetricsService.recordCacheOperation(CACHE_NAME, System.currentTimeMillis() - start, false);
+        if (result.isEmpty() || result.size() > maxMatches) {
+            return result;
+        }
+
+        synchronized (this) {
+            List<EmbeddingMatch<TextSegment>> previous = entries.put(key, result);
+            cachedMatches += result.size() - (previous != null ? previous.size() : 0);
+            Iterator<Map.Entry<Key, List<EmbeddingMatch<TextSegment>>>> it = entries.entrySet().iterator();
+            while (cachedMatches > maxMatches && it.hasNext()) {
+                Map.Entry<Key, List<EmbeddingMatch<TextSegment>>> eldest = it.next();
+                cachedMatches -= eldest.getValue().size();
+                it.remove();
+                evictions.increment();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 移除某城市的全部缓存条目（文档导入/删除时调用）
+     */
+    public synchronized void invalidateCity(String city) {
+        String normalized = normalize(city);
+        int before = entries.size();
+        entries.entrySet().removeIf(entry -> {
+            if (entry.getKey().city().equals(normalized)) {
+                cachedMatches -= entry.getValue().size();
+                return true;
+            }
+            return false;
+        });
+        if (entries.size() != before) {
+            log.info("🗑️ Invalidated {} cached RAG results for {}", before - entries.size(), normalized);
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        cachedMatches = 0;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized int weight() {
+        return cachedMatches;
+    }
+
+    private static String normalize(String city) {
+        return city == null ? "" : city.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private record Key(String city, int maxResults, int documentVersion) {
+    }
+}
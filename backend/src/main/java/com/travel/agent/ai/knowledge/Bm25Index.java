@@ -0,0 +1,234 @@
+package com.travel.agent.ai.knowledge;
+
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 知识库倒排索引（BM25）
+ *
+ * 按文档（一个城市指南）分片：导入时整片构建 词 → 倒排列表（分段序号, 词频），删除/更新时整片替换。
+ * 每个分片保存自己的分段数和总长度，查询时只读取查询词的倒排列表，由各分片的列表长度合计文档频率，
+ * 代价与命中的倒排项数成正比，与语料规模无关。
+ * 分词同时支持中日韩文字和英文：CJK 连续字符切为单字 + 二元组，拉丁字母/数字按词切分并转小写。
+ * 景点名、价格这类精确词在纯向量检索中容易丢失，由本索引补足。
+ */
+public class Bm25Index {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "an", "the", "and", "or", "of", "to", "in", "on", "for", "at", "is", "are", "be",
+            "with", "by", "from", "what", "which", "how", "do", "things", "information");
+
+    private final Map<String, Shard> shards = new ConcurrentHashMap<>();
+
+    /**
+     * 为一个文档构建（或替换）索引分片
+     */
+    public void indexDocument(String documentId, String city, List<TextSegment> segments) {
+        int count = segments.size();
+        String[] ids = new String[count];
+        int[] lengths = new int[count];
+        long totalLength = 0;
+        Map<String, PostingsBuilder> builders = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            List<String> tokens = tokenize(segments.get(i).text());
+            ids[i] = documentId + "#" + i;
+            lengths[i] = tokens.size();
+            totalLength += tokens.size();
+            Map<String, Integer> termFrequencies = new HashMap<>();
+            for (String token : tokens) {
+                termFrequencies.merge(token, 1, Integer::sum);
+            }
+            for (Map.Entry<String, Integer> entry : termFrequencies.entrySet()) {
+                builders.computeIfAbsent(entry.getKey(), term -> new PostingsBuilder()).add(i, entry.getValue());
+            }
+        }
+        Map<String, Postings> postings = new HashMap<>(builders.size() * 2);
+        builders.forEach((term, builder) -> postings.put(term, builder.build()));
+        shards.put(documentId, new Shard(city == null ? null : city.toLowerCase(Locale.ROOT),
+                ids, List.copyOf(segments), lengths, totalLength, postings));
+    }
+
+    public void removeDocument(String documentId) {
+        shards.remove(documentId);
+    }
+
+    public boolean hasCity(String city) {
+        if (city == null) {
+            return false;
+        }
+        String normalized = city.trim().toLowerCase(Locale.ROOT);
+        return shards.values().stream().anyMatch(shard -> normalized.equals(shard.city));
+    }
+
+    public int size() {
+        return shards.values().stream().mapToInt(shard -> shard.ids.length).sum();
+    }
+
+    /**
+     * BM25 检索
+     *
+     * @param city 仅检索该城市的分片；为 null 时检索全部
+     * @return 按 BM25 分数降序；score 为相对本次最高分归一化后的值 (0, 1]
+     */
+    public List<EmbeddingMatch<TextSegment>> search(String query, int maxResults, String city) {
+        List<String> queryTerms = new ArrayList<>(new LinkedHashSet<>(tokenize(query)));
+        if (queryTerms.isEmpty() || maxResults <= 0) {
+            return List.of();
+        }
+        String cityFilter = city == null ? null : city.trim().toLowerCase(Locale.ROOT);
+
+        // 全局统计量（跨分片）：分段数、平均长度取各分片的汇总值，文档频率为各分片倒排列表长度之和
+        Collection<Shard> snapshot = new ArrayList<>(shards.values());
+        int totalDocs = 0;
+        long totalLength = 0;
+        int[] documentFrequencies = new int[queryTerms.size()];
+        for (Shard shard : snapshot) {
+            totalDocs += shard.ids.length;
+            totalLength += shard.totalLength;
+            for (int t = 0; t < queryTerms.size(); t++) {
+                Postings postings = shard.postings.get(queryTerms.get(t));
+                if (postings != null) {
+                    documentFrequencies[t] += postings.segments.length;
+                }
+            }
+        }
+        if (totalDocs == 0) {
+            return List.of();
+        }
+        double avgLength = (double) totalLength / totalDocs;
+        double[] idf = new double[queryTerms.size()];
+        for (int t = 0; t < idf.length; t++) {
+            int df = documentFrequencies[t];
+            idf[t] = Math.log(1 + (totalDocs - df + 0.5) / (df + 0.5));
+        }
+
+        List<Scored> scored = new ArrayList<>();
+        for (Shard shard : snapshot) {
+            if (cityFilter != null && !cityFilter.equals(shard.city)) {
+                continue;
+            }
+            // 只遍历查询词的倒排列表，按分段序号累加分数
+            Map<Integer, Double> scores = new HashMap<>();
+            for (int t = 0; t < queryTerms.size(); t++) {
+                Postings postings = shard.postings.get(queryTerms.get(t));
+                if (postings == null) {
+                    continue;
+                }
+                for (int p = 0; p < postings.segments.length; p++) {
+                    int segment = postings.segments[p];
+                    int tf = postings.frequencies[p];
+                    double norm = tf + K1 * (1 - B + B * shard.lengths[segment] / avgLength);
+                    scores.merge(segment, idf[t] * tf * (K1 + 1) / norm, Double::sum);
+                }
+            }
+            scores.forEach((segment, score) -> {
+                if (score > 0) {
+                    scored.add(new Scored(shard.ids[segment], shard.segments.get(segment), score));
+                }
+            });
+        }
+
+        scored.sort(Comparator.comparingDouble(Scored::score).reversed());
+        double best = scored.isEmpty() ? 1 : scored.get(0).score;
+        List<EmbeddingMatch<TextSegment>> matches = new ArrayList<>();
+        for (int i = 0; i < Math.min(maxResults, scored.size()); i++) {
+            Scored s = scored.get(i);
+            matches.add(new EmbeddingMatch<>(s.score / best, s.id, null, s.segment));
+        }
+        return matches;
+    }
+
+    /**
+     * 中英文混合分词
+     */
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return tokens;
+        }
+
+        StringBuilder latin = new StringBuilder();
+        int previousCjk = -1;
+        int i = 0;
+        while (i < text.length()) {
+            int cp = text.codePointAt(i);
+            i += Character.charCount(cp);
+
+            if (isCjk(cp)) {
+                flushLatin(latin, tokens);
+                tokens.add(new String(Character.toChars(cp)));
+                if (previousCjk >= 0) {
+                    tokens.add(new String(Character.toChars(previousCjk)) + new String(Character.toChars(cp)));
+                }
+                previousCjk = cp;
+            } else if (Character.isLetterOrDigit(cp)) {
+                previousCjk = -1;
+                latin.appendCodePoint(Character.toLowerCase(cp));
+            } else {
+                previousCjk = -1;
+                flushLatin(latin, tokens);
+            }
+        }
+        flushLatin(latin, tokens);
+        return tokens;
+    }
+
+    private static void flushLatin(StringBuilder latin, List<String> tokens) {
+        if (latin.length() == 0) {
+            return;
+        }
+        String word = latin.toString();
+        latin.setLength(0);
+        if (!STOP_WORDS.contains(word)) {
+            tokens.add(word);
+        }
+    }
+
+    private static boolean isCjk(int codePoint) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+
+    /**
+     * 一个词在分片内的倒排列表：按分段序号升序的 (分段序号, 词频)
+     */
+    private record Postings(int[] segments, int[] frequencies) {
+    }
+
+    private static final class PostingsBuilder {
+
+        private int[] segments = new int[4];
+        private int[] frequencies = new int[4];
+        private int size;
+
+        void add(int segment, int frequency) {
+            if (size == segments.length) {
+                segments = Arrays.copyOf(segments, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+            segments[size] = segment;
+            frequencies[size] = frequency;
+            size++;
+        }
+
+        Postings build() {
+            return new Postings(Arrays.copyOf(segments, size), Arrays.copyOf(frequencies, size));
+        }
+    }
+
+    private record Shard(String city, String[] ids, List<TextSegment> segments, int[] lengths, long totalLength,
+                         Map<String, Postings> postings) {
+    }
+
+    private record Scored(String id, TextSegment segment, double score) {
+    }
+}
@@ -0,0 +1,154 @@
+package com.travel.agent.ai.knowledge;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * 知识库文件事件合并器
+ *
+ * 对同一路径的文件事件做防抖：在静默期内的 CREATE / MODIFY / DELETE 会合并成一次动作，
+ * 静默期结束后再投递到导入线程池执行。submit() 只登记事件，从不阻塞调用方（文件监听线程）。
+ * 同一路径同一时刻最多只有一个导入任务在执行，执行期间到达的新事件会在其完成后再处理。
+ */
+@Slf4j
+public class KnowledgeFileEventCoalescer implements AutoCloseable {
+
+    /**
+     * 合并后的动作
+     */
+    public enum Action {
+        /** 导入或重新导入 */
+        UPSERT,
+        /** 删除 */
+        DELETE
+    }
+
+    private final long quietPeriodMs;
+    private final Executor importExecutor;
+    private final BiConsumer<Action, Path> handler;
+    private final ScheduledExecutorService scheduler;
+
+    // 等待静默期结束的事件（每个路径只保留最新合并结果）
+    private final Map<Path, Pending> pending = new ConcurrentHashMap<>();
+    // 正在执行导入/删除的路径
+    private final Set<Path> running = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong generations = new AtomicLong();
+    private final AtomicLong receivedEvents = new AtomicLong();
+    private final AtomicLong dispatchedTasks = new AtomicLong();
+
+    public KnowledgeFileEventCoalescer(long quietPeriodMs, Executor importExecutor,
+                                       BiConsumer<Action, Path> handler) {
+        this.quietPeriodMs = Math.max(0, quietPeriodMs);
+        this.importExecutor = importExecutor;
+        this.handler = handler;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "kb-event-coalescer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 登记一个文件监听事件
+     */
+    public void submit(WatchEvent.Kind<?> kind, Path path) {
+        submit(kind == StandardWatchEventKinds.ENTRY_DELETE ? Action.DELETE : Action.UPSERT, path);
+    }
+
+    /**
+     * 登记一个动作；同一路径上后到的动作覆盖先到的（导入时总是读取最新文件内容）
+     */
+    public void submit(Action action, Path path) {
+        receivedEvents.incrementAndGet();
+        pending.compute(path, (p, previous) -> {
+            if (previous != null) {
+                previous.future.cancel(false);
+                log.debug("Coalesced {} into pending {} for {}", action, previous.action, p.getFileName());
+            }
+            return schedule(p, action);
+        });
+    }
+
+    private Pending schedule(Path path, Action action) {
+        long generation = generations.incrementAndGet();
+        ScheduledFuture<?> future = scheduler.schedule(
+                () -> flush(path, generation), quietPeriodMs, TimeUnit.MILLISECONDS);
+        return new Pending(action, generation, future);
+    }
+
+    /**
+     * 静默期结束：投递到导入线程池
+     */
+    private void flush(Path path, long generation) {
+        Pending current = pending.get(path);
+        if (current == null || current.generation != generation) {
+            return; // 已被更新的事件取代
+        }
+
+        if (!running.add(path)) {
+            // 上一次导入仍在进行，等它结束后再处理
+            pending.computeIfPresent(path, (p, old) -> old.generation == generation ? schedule(p, old.action) : old);
+            return;
+        }
+
+        if (!pending.remove(path, current)) {
+            running.remove(path);
+            return;
+        }
+
+        try {
+            importExecutor.execute(() -> run(path, current.action));
+            dispatchedTasks.incrementAndGet();
+        } catch (RejectedExecutionException e) {
+            running.remove(path);
+            log.warn("⚠️ Knowledge import queue full, retrying {} later", path.getFileName());
+            pending.computeIfAbsent(path, p -> schedule(p, current.action));
+        }
+    }
+
+    private void run(Path path, Action action) {
+        try {
+            handler.accept(action, path);
+        } catch (Exception e) {
+            log.error("Failed to handle knowledge file change: {}", path, e);
+        } finally {
+            running.remove(path);
+        }
+    }
+
+    public long getReceivedEvents() {
+        return receivedEvents.get();
+    }
+
+    public long getDispatchedTasks() {
+        return dispatchedTasks.get();
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        pending.clear();
+    }
+
+    private record Pending(Action action, long generation, ScheduledFuture<?> future) {
+    }
+}
@@ -0,0 +1,238 @@
+package com.travel.agent.ai.knowledge;
+
+import com.travel.agent.monitoring.AgentMetricsService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * RAG 上下文打包器（检索结果 → Prompt 之间）
+ *
+ * 1. MMR 选择：score = λ·相关度 − (1−λ)·与已选条目的最大相似度 − 类别占比惩罚
+ *    有向量时用余弦相似度，没有（BM25 结果、景点目录）时退化为词集合 Jaccard
+ * 2. 与已选条目相似度超过阈值的近重复分段直接丢弃
+ * 3. 按行估算 token，装满预算即停；预算 = 基础值 + 每天增量，随行程天数增长
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RagContextPacker {
+
+    private final AgentMetricsService metricsService;
+
+    @Value("${agent.rag.context.base-tokens:150}")
+    private int baseTokens;
+
+    @Value("${agent.rag.context.tokens-per-day:120}")
+    private int tokensPerDay;
+
+    @Value("${agent.rag.context.max-tokens:1500}")
+    private int maxTokens;
+
+    // 相关度与多样性的权衡（1 = 只看相关度）
+    @Value("${agent.rag.context.mmr-lambda:0.7}")
+    private double lambda;
+
+    @Value("${agent.rag.context.duplicate-threshold:0.92}")
+    private double duplicateThreshold;
+
+    // 类别占比惩罚权重，避免上下文被单一类别（如同一指南的住宿段落）占满
+    @Value("${agent.rag.context.category-weight:0.2}")
+    private double categoryWeight;
+
+    /**
+     * 待打包条目：Prompt 中的一个景点项 + 可选的分段向量
+     */
+    public record Candidate(Map<String, Object> item, float[] embedding) {
+    }
+
+    public int budgetFor(int durationDays) {
+        return Math.min(maxTokens, baseTokens + tokensPerDay * Math.max(1, durationDays));
+    }
+
+    /**
+     * 选择并按预算打包，返回的条目保持被选中的顺序（MMR 顺序）
+     */
+    public List<Map<String, Object>> pack(List<Candidate> candidates, int durationDays) {
+        if (candidates == null || candidates.isEmpty()) {
+            return new ArrayList<>();
+        }
+        int budget = budgetFor(durationDays);
+
+        List<Entry> remaining = new ArrayList<>(candidates.size());
+        double maxRelevance = 0;
+        int candidateTokens = 0;
+        for (Candidate candidate : candidates) {
+            String line = formatLine(candidate.item());
+            Entry entry = new Entry(candidate, estimateTokens(line), relevanceOf(candidate.item()),
+                    normalize(candidate.embedding()), new HashSet<>(Bm25Index.tokenize(textOf(candidate.item()))));
+            candidateTokens += entry.tokens();
+            maxRelevance = Math.max(maxRelevance, entry.relevance());
+            remaining.add(entry);
+        }
+
+        List<Entry> selected = new ArrayList<>();
+        Map<String, Integer> categoryCounts = new HashMap<>();
+        int usedTokens = 0;
+        int duplicates = 0;
+
+        while (!remaining.isEmpty()) {
+            Entry best = null;
+            double bestScore = Double.NEGATIVE_INFINITY;
+            for (Iterator<Entry> it = remaining.iterator(); it.hasNext(); ) {
+                Entry entry = it.next();
+                double similarity = maxSimilarity(entry, selected);
+                if (similarity >= duplicateThreshold) {
+                    it.remove();
+                    duplicates++;
+                    continue;
+                }
+                double relevance = maxRelevance > 0 ? entry.relevance() / maxRelevance : 0;
+                double categoryShare = selected.isEmpty() ? 0
+                        : (double) categoryCounts.getOrDefault(categoryOf(entry), 0) / selected.size();
+                double score = lambda * relevance - (1 - lambda) * similarity - categoryWeight * categoryShare;
+                if (score > bestScore) {
+                    bestScore = score;
+                    best = entry;
+                }
+            }
+            if (best == null) {
+                break;
+            }
+            remaining.remove(best);
+            if (usedTokens + best.tokens() > budget) {
+                // 放不下则尝试更短的条目
+                continue;
+            }
+            selected.add(best);
+            usedTokens += best.tokens();
+            categoryCounts.merge(categoryOf(best), 1, Integer::sum);
+        }
+
+        metricsService.recordContextPacking(candidateTokens, usedTokens, duplicates);
+        log.info("📦 Context packed: {}/{} items, {}/{} tokens (budget {}), {} duplicates dropped",
+                selected.size(), candidates.size(), usedTokens, candidateTokens, budget, duplicates);
+
+        List<Map<String, Object>> packed = new ArrayList<>(selected.size());
+        for (Entry entry : selected) {
+            packed.add(entry.candidate().item());
+        }
+        return packed;
+    }
+
+    /**
+     * Prompt 中的景点行格式（ItineraryGenerationNode 与 token 估算共用）
+     */
+    public static String formatLine(Map<String, Object> attr) {
+        StringBuilder line = new StringBuilder(String.format("- %s (%s)", attr.get("name"), attr.get("category")));
+        if (attr.get("price") != null) {
+            line.append(": ").append(attr.get("price"));
+        }
+        if (attr.get("neighborhood") != null) {
+            line.append(" | near: ").append(attr.get("neighborhood"));
+        }
+        if (attr.get("hours") != null) {
+            line.append(" | best time: ").append(attr.get("hours"));
+        }
+        return line.toString();
+    }
+
+    /**
+     * 粗略 token 估算：CJK 字符约 1 token/字，其余约 4 字符/token
+     */
+    public static int estimateTokens(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        int cjk = 0;
+        int other = 0;
+        for (int i = 0; i < text.length(); ) {
+            int cp = text.codePointAt(i);
+            i += Character.charCount(cp);
+            Character.UnicodeScript script = Character.UnicodeScript.of(cp);
+            if (script == Character.UnicodeScript.HAN || script == Character.UnicodeScript.HIRAGANA
+                    || script == Character.UnicodeScript.KATAKANA || script == Character.UnicodeScript.HANGUL) {
+                cjk++;
+            } else {
+                other++;
+            }
+        }
+        return cjk + (other + 3) / 4 + 1;
+    }
+
+    private double maxSimilarity(Entry entry, List<Entry> selected) {
+        double max = 0;
+        for (Entry other : selected) {
+            double similarity;
+            if (entry.vector() != null && other.vector() != null && entry.vector().length == other.vector().length) {
+                similarity = dot(entry.vector(), other.vector());
+            } else {
+                similarity = jaccard(entry.terms(), other.terms());
+            }
+            max = Math.max(max, similarity);
+        }
+        return max;
+    }
+
+    private static double jaccard(Set<String> a, Set<String> b) {
+        if (a.isEmpty() || b.isEmpty()) {
+            return 0;
+        }
+        int intersection = 0;
+        for (String term : a) {
+            if (b.contains(term)) {
+                intersection++;
+            }
+        }
+        return (double) intersection / (a.size() + b.size() - intersection);
+    }
+
+    private static double dot(float[] a, float[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    private static float[] normalize(float[] vector) {
+        if (vector == null || vector.length == 0) {
+            return null;
+        }
+        double norm = 0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        if (norm == 0) {
+            return null;
+        }
+        float[] normalized = new float[vector.length];
+        float scale = (float) (1 / Math.sqrt(norm));
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = vector[i] * scale;
+        }
+        return normalized;
+    }
+
+    private static double relevanceOf(Map<String, Object> item) {
+        Object score = item.get("relevanceScore");
+        return score instanceof Number number ? number.doubleValue() : 1.0;
+    }
+
+    private static String textOf(Map<String, Object> item) {
+        Object name = item.get("name");
+        Object description = item.get("description");
+        return (name != null ? name : "") + " " + (description != null ? description : "");
+    }
+
+    private static String categoryOf(Entry entry) {
+        Object category = entry.candidate().item().get("category");
+        return category != null ? category.toString() : "general";
+    }
+
+    private record Entry(Candidate candidate, int tokens, double relevance, float[] vector, Set<String> terms) {
+    }
+}
@@ -0,0 +1,53 @@
+package com.travel.agent.ai.knowledge;
+
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+
+import java.util.*;
+
+/**
+ * 倒数排名融合（Reciprocal Rank Fusion）
+ *
+ * score(d) = Σ 1 / (k + rank_i(d))，只依赖各路结果的排名，不需要对齐向量相似度和 BM25 的分数尺度。
+ * 以分段文本作为同一结果的判定键（向量库 ID 与倒排索引 ID 互不相同）。
+ * 输出分数按“所有路都排第一”的理论最大值归一化到 (0, 1]。
+ */
+public final class ReciprocalRankFusion {
+
+    public static final int DEFAULT_K = 60;
+
+    private ReciprocalRankFusion() {
+    }
+
+    @SafeVarargs
+    public static List<EmbeddingMatch<TextSegment>> fuse(int k, int maxResults,
+                                                         List<EmbeddingMatch<TextSegment>>... rankings) {
+        Map<String, Double> scores = new HashMap<>();
+        Map<String, EmbeddingMatch<TextSegment>> representatives = new LinkedHashMap<>();
+
+        for (List<EmbeddingMatch<TextSegment>> ranking : rankings) {
+            for (int rank = 0; rank < ranking.size(); rank++) {
+                EmbeddingMatch<TextSegment> match = ranking.get(rank);
+                if (match.embedded() == null) {
+                    continue;
+                }
+                String key = match.embedded().text();
+                scores.merge(key, 1.0 / (k + rank + 1), Double::sum);
+                // 优先保留带向量的结果（后续 MMR 去重需要 embedding）
+                representatives.merge(key, match, (existing, candidate) ->
+                        existing.embedding() == null && candidate.embedding() != null ? candidate : existing);
+            }
+        }
+
+        double maxPossible = (double) rankings.length / (k + 1);
+        return scores.entrySet().stream()
+                .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
+                .limit(maxResults)
+                .map(entry -> {
+                    EmbeddingMatch<TextSegment> match = representatives.get(entry.getKey());
+                    return new EmbeddingMatch<>(entry.getValue() / maxPossible,
+                            match.embeddingId(), match.embedding(), match.embedded());
+                })
+                .toList();
+    }
+}
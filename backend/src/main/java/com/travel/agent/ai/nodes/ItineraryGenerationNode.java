@@ -2,6 +2,9 @@ package com.travel.agent.ai.nodes;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.travel.agent.ai.knowledge.AttractionCatalog;
+import com.travel.agent.ai.knowledge.AttractionEntry;
+import com.travel.agent.ai.knowledge.RagContextPacker;
 import com.travel.agent.ai.state.TravelPlanningState;
 import com.travel.agent.service.AIService;
 import lombok.RequiredArgsConstructor;
@@ -26,6 +29,8 @@ public class ItineraryGenerationNode implements AsyncNodeAction<TravelPlanningSt
     
     private final AIService aiService;
     private final ObjectMapper objectMapper;
+    private final AttractionCatalog attractionCatalog;
+    private final RagContextPacker contextPacker;
     
     @Override
     public CompletableFuture<Map<String, Object>> apply(TravelPlanningState state) {
@@ -76,13 +81,26 @@ public class ItineraryGenerationNode implements AsyncNodeAction<TravelPlanningSt
             state.getPartySize()
         ));
         
-        // 添加景点信息（如果有）
-        boolean hasAttractions = state.getAttractions() != null && !state.getAttractions().isEmpty();
+        // 添加景点信息（如果有）；RAG 节点未返回结果时直接查景点目录
+        List<Map<String, Object>> attractions = state.getAttractions();
+        if ((attractions == null || attractions.isEmpty()) && attractionCatalog.hasCity(state.getDestination())) {
+            List<RagContextPacker.Candidate> candidates = new ArrayList<>();
+            for (AttractionEntry entry : attractionCatalog.find(state.getDestination(), "attraction")) {
+                Map<String, Object> attr = new HashMap<>();
+                attr.put("name", entry.getName());
+                attr.put("category", entry.getCategory());
+                attr.put("price", entry.getPrice());
+                attr.put("hours", entry.getHours());
+                attr.put("neighborhood", entry.getNeighborhood());
+                candidates.add(new RagContextPacker.Candidate(attr, null));
+            }
+            attractions = contextPacker.pack(candidates, state.getDurationDays());
+        }
+        boolean hasAttractions = attractions != null && !attractions.isEmpty();
         if (hasAttractions) {
             prompt.append("\n=== REAL ATTRACTIONS FROM KNOWLEDGE BASE ===\n");
-            for (Map<String, Object> attr : state.getAttractions()) {
-                prompt.append(String.format("- %s (%s): %s\n",
-                    attr.get("name"), attr.get("category"), attr.get("price")));
+            for (Map<String, Object> attr : attractions) {
+                prompt.append(RagContextPacker.formatLine(attr)).append("\n");
             }
         }
         
@@ -113,7 +131,8 @@ public class ItineraryGenerationNode implements AsyncNodeAction<TravelPlanningSt
             3. Ensure the itinerary fits within the budget
             4. Each day should have 3-4 activities
             5. Include specific times and durations
-            6. Return ONLY valid JSON (no markdown, no extra text)
+            6. Add "openingHours" (HH:MM-HH:MM) for venues with fixed opening hours
+            7. Return ONLY valid JSON (no markdown, no extra text)
             
             JSON Format:
             {
@@ -128,7 +147,8 @@ public class ItineraryGenerationNode implements AsyncNodeAction<TravelPlanningSt
                       "startTime": "14:00",
                       "durationMinutes": 60,
                       "estimatedCost": 150,
-                      "location": "..."
+                      "location": "...",
+                      "openingHours": "09:00-18:00"
                     }
                   ]
                 }
@@ -1,5 +1,8 @@
 package com.travel.agent.ai.nodes;
 
+import com.travel.agent.ai.knowledge.AttractionCatalog;
+import com.travel.agent.ai.knowledge.AttractionEntry;
+import com.travel.agent.ai.knowledge.RagContextPacker;
 import com.travel.agent.ai.state.TravelPlanningState;
 import com.travel.agent.ai.tools.AttractionInfo;
 import com.travel.agent.ai.tools.RAGSearchTool;
@@ -16,7 +19,8 @@ import java.util.concurrent.CompletableFuture;
 
 /**
  * RAG 检索节点
- * 从知识库检索真实景点信息
+ * 从知识库检索真实景点信息：优先查结构化景点目录，目录中没有该城市时回退到向量检索
+ * 结果经 {@link RagContextPacker} 去重并按 token 预算裁剪后写入状态
  */
 @Slf4j
 @Component
@@ -24,6 +28,8 @@ import java.util.concurrent.CompletableFuture;
 public class RAGRetrievalNode implements AsyncNodeAction<TravelPlanningState> {
     
     private final RAGSearchTool ragTool;
+    private final AttractionCatalog attractionCatalog;
+    private final RagContextPacker contextPacker;
     
     @Override
     public CompletableFuture<Map<String, Object>> apply(TravelPlanningState state) {
@@ -35,6 +41,18 @@ public class RAGRetrievalNode implements AsyncNodeAction<TravelPlanningState> {
                 // 计算需要检索的景点数量（每天4个活动）
                 int maxResults = state.getDurationDays() * 4;
                 
+                List<RagContextPacker.Candidate> candidates = new ArrayList<>();
+                
+                // 景点目录命中：按城市 + 类别直接查表
+                if (attractionCatalog.hasCity(state.getDestination())) {
+                    List<AttractionEntry> entries = attractionCatalog.find(state.getDestination(), "attraction");
+                    for (AttractionEntry entry : entries.subList(0, Math.min(maxResults, entries.size()))) {
+                        candidates.add(new RagContextPacker.Candidate(toMap(entry), null));
+                    }
+                    log.info("✅ Retrieved {} attractions from catalog", candidates.size());
+                    return buildResult(state, contextPacker.pack(candidates, state.getDurationDays()));
+                }
+                
                 // 调用 RAG 工具
                 List<AttractionInfo> attractions = ragTool.searchAttractions(
                     state.getDestination(),
@@ -44,7 +62,6 @@ public class RAGRetrievalNode implements AsyncNodeAction<TravelPlanningState> {
                 log.info("✅ Retrieved {} attractions from knowledge base", attractions.size());
                 
                 // 转换为 Map 格式以便序列化
-                List<Map<String, Object>> attractionMaps = new ArrayList<>();
                 for (AttractionInfo attr : attractions) {
                     Map<String, Object> attrMap = new HashMap<>();
                     attrMap.put("name", attr.getName());
@@ -53,17 +70,10 @@ public class RAGRetrievalNode implements AsyncNodeAction<TravelPlanningState> {
                     attrMap.put("description", attr.getDescription());
                     attrMap.put("relevanceScore", attr.getRelevanceScore());
                     attrMap.put("city", attr.getCity());
-                    attractionMaps.add(attrMap);
+                    candidates.add(new RagContextPacker.Candidate(attrMap, attr.getEmbedding()));
                 }
                 
-                // 更新状态
-                Map<String, Object> result = new HashMap<>();
-                result.put("attractions", attractionMaps);
-                result.put("currentStep", "RAG retrieval completed");
-                result.put("stepCount", state.getStepCount() != null ? state.getStepCount() + 1 : 2);
-                result.put("progress", 25);
-                result.put("progressMessage", String.format("Retrieved %d attractions", attractionMaps.size()));
-                return result;
+                return buildResult(state, contextPacker.pack(candidates, state.getDurationDays()));
                 
             } catch (Exception e) {
                 log.error("❌ RAG retrieval failed", e);
@@ -74,4 +84,32 @@ public class RAGRetrievalNode implements AsyncNodeAction<TravelPlanningState> {
             }
         });
     }
+    
+    private Map<String, Object> toMap(AttractionEntry entry) {
+        Map<String, Object> attrMap = new HashMap<>();
+        attrMap.put("name", entry.getName());
+        attrMap.put("category", entry.getCategory());
+        attrMap.put("price", entry.getPrice() != null ? entry.getPrice() : "N/A");
+        attrMap.put("description", entry.getHighlights());
+        attrMap.put("relevanceScore", 1.0);
+        attrMap.put("city", entry.getCity());
+        attrMap.put("hours", entry.getHours());
+        attrMap.put("duration", entry.getDuration());
+        attrMap.put("neighborhood", entry.getNeighborhood());
+        attrMap.put("sourceSegmentId", entry.getSourceSegmentId());
+        return attrMap;
+    }
+    
+    /**
+     * 更新状态
+     */
+    private Map<String, Object> buildResult(TravelPlanningState state, List<Map<String, Object>> attractionMaps) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("attractions", attractionMaps);
+        result.put("currentStep", "RAG retrieval completed");
+        result.put("stepCount", state.getStepCount() != null ? state.getStepCount() + 1 : 2);
+        result.put("progress", 25);
+        result.put("progressMessage", String.format("Retrieved %d attractions", attractionMaps.size()));
+        return result;
+    }
 }
@@ -4,6 +4,7 @@ import com.travel.agent.ai.state.TravelPlanningState;
 import com.travel.agent.monitoring.RouteOptimizationMetrics;
 import com.travel.agent.service.MapboxGeocodingService;
 import com.travel.agent.service.RouteOptimizationService;
+import com.travel.agent.service.routing.TripAssignment;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.bsc.langgraph4j.action.AsyncNodeAction;
@@ -97,9 +98,21 @@ public class RouteOptimizationNode implements AsyncNodeAction<TravelPlanningStat
                 int daysOptimized = 0;
 
                 if (!geoResults.isEmpty()) {
+                    // 多日重新分组（按地理位置分天）后再逐天优化
+                    List<List<Map<String, Object>>> dayActivities = new ArrayList<>(itinerary.size());
                     for (Map<String, Object> dayPlan : itinerary) {
-                        Map<String, Object> optimizedDay = new HashMap<>(dayPlan);
                         List<Map<String, Object>> activities = getActivities(dayPlan);
+                        dayActivities.add(activities != null ? activities : new ArrayList<>());
+                    }
+                    TripAssignment assignment = routeOptimizationService.assignActivitiesToDays(
+                            dayActivities, geoResults, destinationContext);
+
+                    for (int d = 0; d < itinerary.size(); d++) {
+                        Map<String, Object> optimizedDay = new HashMap<>(itinerary.get(d));
+                        List<Map<String, Object>> activities = assignment.days().get(d);
+                        if (assignment.movedActivities() > 0) {
+                            optimizedDay.put("activities", activities);
+                        }
 
                         if (activities != null && activities.size() >= 3) {
                             List<Map<String, Object>> optimized =
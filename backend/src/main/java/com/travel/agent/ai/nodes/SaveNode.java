@@ -4,9 +4,9 @@ import com.travel.agent.ai.state.TravelPlanningState;
 import com.travel.agent.entity.ItineraryDays;
 import com.travel.agent.entity.ItineraryItems;
 import com.travel.agent.entity.Trips;
-import com.travel.agent.service.ItineraryDaysService;
-import com.travel.agent.service.ItineraryItemsService;
 import com.travel.agent.service.TripsService;
+import com.travel.agent.service.itinerary.ItineraryBulkWriter;
+import com.travel.agent.service.routing.TimeWindow;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.bsc.langgraph4j.action.AsyncNodeAction;
@@ -15,6 +15,7 @@ import org.springframework.stereotype.Component;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalTime;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
@@ -31,8 +32,7 @@ import java.util.concurrent.CompletableFuture;
 public class SaveNode implements AsyncNodeAction<TravelPlanningState> {
     
     private final TripsService tripsService;
-    private final ItineraryDaysService itineraryDaysService;
-    private final ItineraryItemsService itineraryItemsService;
+    private final ItineraryBulkWriter itineraryBulkWriter;
     
     @Override
     public CompletableFuture<Map<String, Object>> apply(TravelPlanningState state) {
@@ -75,6 +75,7 @@ public class SaveNode implements AsyncNodeAction<TravelPlanningState> {
             ? LocalDate.parse(state.getStartDate())
             : LocalDate.now();
         
+        List<ItineraryBulkWriter.DayRows> rows = new ArrayList<>(state.getItinerary().size());
         for (Map<String, Object> dayPlan : state.getItinerary()) {
             // 创建 ItineraryDay
             ItineraryDays day = new ItineraryDays();
@@ -82,7 +83,8 @@ public class SaveNode implements AsyncNodeAction<TravelPlanningState> {
             day.setDayNumber(((Number) dayPlan.get("dayNumber")).intValue());
             day.setTheme((String) dayPlan.get("theme"));
             day.setDate(startDate.plusDays(day.getDayNumber() - 1));
-            itineraryDaysService.save(day);
+            List<ItineraryItems> items = new ArrayList<>();
+            rows.add(new ItineraryBulkWriter.DayRows(day, items));
             
             // 创建 ItineraryItems
             Object activitiesObj = dayPlan.get("activities");
@@ -93,8 +95,6 @@ public class SaveNode implements AsyncNodeAction<TravelPlanningState> {
                 int orderIndex = 1;
                 for (Map<String, Object> activity : activities) {
                     ItineraryItems item = new ItineraryItems();
-                    item.setTripId(state.getTripId());
-                    item.setDayId(day.getId());
                     item.setActivityName((String) activity.get("name"));
                     item.setActivityType(normalizeActivityType((String) activity.get("type")));
                     item.setLocation((String) activity.get("location"));
@@ -119,6 +119,7 @@ public class SaveNode implements AsyncNodeAction<TravelPlanningState> {
                     }
                     
                     item.setOrderIndex(orderIndex++);
+                    item.setOpeningHours(TimeWindow.normalize((String) activity.get("openingHours")));
 
                     // 从 geoData 查找地理编码坐标并持久化
                     Map<String, Map<String, Object>> geoData = state.getGeoData();
@@ -147,10 +148,13 @@ public class SaveNode implements AsyncNodeAction<TravelPlanningState> {
                         }
                     }
 
-                    itineraryItemsService.save(item);
+                    items.add(item);
                 }
             }
         }
+        
+        // 所有天和活动一次批量写入（tripId / dayId 由写入时回填）
+        itineraryBulkWriter.write(state.getTripId(), rows, "save_node");
     }
 
     /**
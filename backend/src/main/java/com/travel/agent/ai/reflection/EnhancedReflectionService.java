@@ -6,6 +6,7 @@ import com.travel.agent.ai.state.DayPlan;
 import com.travel.agent.ai.state.TravelPlanningState;
 import com.travel.agent.ai.tools.Coordinates;
 import com.travel.agent.service.AIService;
+import com.travel.agent.service.routing.TimeWindow;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -250,6 +251,20 @@ public class EnhancedReflectionService {
                     }
                     
                     previousEnd = start.plusMinutes(activity.getDurationMinutes());
+                    
+                    // 检查营业时间（与路线优化排程使用同一套时间窗）
+                    TimeWindow window = TimeWindow.parse(activity.getOpeningHours());
+                    int startMinutes = start.getHour() * 60 + start.getMinute();
+                    if (window != null && window.violation(startMinutes, activity.getDurationMinutes()) > 0) {
+                        issues.add(ValidationIssue.builder()
+                            .category(IssueCategory.TIMING)
+                            .severity(IssueSeverity.WARNING)
+                            .message(String.format("Day %d: Activity '%s' at %s is outside opening hours (%s)",
+                                day.getDayNumber(), activity.getName(), start, activity.getOpeningHours()))
+                            .suggestion("Schedule the visit within opening hours")
+                            .dayNumber(day.getDayNumber())
+                            .build());
+                    }
                 }
             }
         }
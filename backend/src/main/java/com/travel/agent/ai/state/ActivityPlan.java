@@ -24,6 +24,8 @@ public class ActivityPlan {
     private BigDecimal estimatedCost;
     private String description;
     private String notes;
+    /** 营业时间（HH:MM-HH:MM），可为空 */
+    private String openingHours;
     
     /**
      * 从 Map 转换（使用 Builder 模式）
@@ -38,7 +40,8 @@ public class ActivityPlan {
                 .startTime((String) map.get("startTime"))
                 .durationMinutes((Integer) map.get("durationMinutes"))
                 .description((String) map.get("description"))
-                .notes((String) map.get("notes"));
+                .notes((String) map.get("notes"))
+                .openingHours((String) map.get("openingHours"));
 
         Object cost = map.get("estimatedCost");
         if (cost instanceof BigDecimal) {
@@ -1,5 +1,6 @@
 package com.travel.agent.ai.tools;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Builder;
 import lombok.Data;
 
@@ -15,4 +16,8 @@ public class AttractionInfo {
     private String description;
     private Double relevanceScore;
     private String city;
+    
+    /** 分段向量（仅供上下文打包去重使用，不序列化） */
+    @JsonIgnore
+    private float[] embedding;
 }
@@ -12,7 +12,6 @@ import org.springframework.stereotype.Component;
 import java.math.BigDecimal;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 /**
@@ -91,7 +90,7 @@ public class GeocodingTool implements AgentTool {
     }
     
     /**
-     * 批量地理编码（并行执行）
+     * 批量地理编码（去重 + 批量查缓存 + 限速并发请求未命中项）
      */
     @Tool("Batch geocode multiple locations in parallel")
     public List<Coordinates> batchGeocode(
@@ -99,16 +98,27 @@ public class GeocodingTool implements AgentTool {
     ) {
         log.info("🗺️ Batch Geocoding Tool: {} locations", locations.size());
         
-        // 并行执行地理编码
-        List<CompletableFuture<Coordinates>> futures = locations.stream()
-            .map(location -> CompletableFuture.supplyAsync(() -> geocode(location)))
-            .collect(Collectors.toList());
-        
-        // 等待所有完成
-        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        io.micrometer.core.instrument.Timer.Sample sample = metricsService.startToolCall("geocode");
+        Map<String, Map<String, BigDecimal>> results = mapboxService.batchGeocode(locations);
+        metricsService.stopToolCall(sample, "geocode");
         
-        return futures.stream()
-            .map(CompletableFuture::join)
+        return locations.stream()
+            .map(location -> {
+                Map<String, BigDecimal> result = results.get(location);
+                if (result == null) {
+                    return Coordinates.builder()
+                        .location(location)
+                        .success(false)
+                        .errorMessage("Location not found")
+                        .build();
+                }
+                return Coordinates.builder()
+                    .latitude(result.get("latitude"))
+                    .longitude(result.get("longitude"))
+                    .location(location)
+                    .success(true)
+                    .build();
+            })
             .collect(Collectors.toList());
     }
     
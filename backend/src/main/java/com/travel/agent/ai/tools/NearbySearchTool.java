@@ -2,6 +2,7 @@ package com.travel.agent.ai.tools;
 
 import com.travel.agent.dto.response.GeoPlace;
 import com.travel.agent.service.GeoapifyService;
+import com.travel.agent.service.routing.Haversine;
 import dev.langchain4j.agent.tool.Tool;
 import dev.langchain4j.agent.tool.P;
 import dev.langchain4j.agent.tool.ToolSpecification;
@@ -17,7 +18,7 @@ import java.util.stream.Collectors;
 
 /**
  * 附近地点搜索工具
- * 使用 Geoapify API 搜索附近的POI
+ * 在本地 POI 空间索引上做半径查询，未加载过的区域才请求 Geoapify API
  */
 @Slf4j
 @Component
@@ -61,18 +62,18 @@ public class NearbySearchTool implements AgentTool {
                 radiusKm = 1.0;
             }
             
-            // 调用 Geoapify 服务
+            // 调用 Geoapify 服务（按距离从近到远）
             List<GeoPlace> places = geoapifyService.searchNearbyPlaces(
                 latitude, 
                 longitude, 
                 radiusKm, 
                 10,  // 限制返回10个结果
-                List.of(category)
+                category == null || category.isBlank() ? List.of() : List.of(category)
             );
             
             // 转换为 POI
             return places.stream()
-                .map(this::convertToPOI)
+                .map(place -> convertToPOI(place, latitude, longitude))
                 .collect(Collectors.toList());
                 
         } catch (Exception e) {
@@ -103,14 +104,16 @@ public class NearbySearchTool implements AgentTool {
     /**
      * 转换 GeoPlace 到 POI
      */
-    private POI convertToPOI(GeoPlace place) {
+    private POI convertToPOI(GeoPlace place, Double latitude, Double longitude) {
         return POI.builder()
             .name(place.getName())
             .category(place.getType() != null ? place.getType() : "unknown")
             .latitude(place.getLatitude() != null ? BigDecimal.valueOf(place.getLatitude()) : null)
             .longitude(place.getLongitude() != null ? BigDecimal.valueOf(place.getLongitude()) : null)
             .address(place.getDescription())
-            .distance(null)  // GeoPlace doesn't have distance field
+            .distance(place.getLatitude() != null && place.getLongitude() != null
+                ? Haversine.distanceKm(latitude, longitude, place.getLatitude(), place.getLongitude()) * 1000
+                : null)
             .build();
     }
 }
@@ -70,8 +70,9 @@ public class RAGSearchTool implements AgentTool {
             // 记录 RAG 检索完成
             metricsService.stopRAGSearch(sample, maxScore);
             
+            double minScore = knowledgeBaseService.minRelevanceScore();
             return matches.stream()
-                .filter(match -> match.score() > 0.7)  // 只返回高相关度结果
+                .filter(match -> match.score() >= minScore)  // 只返回高相关度结果
                 .map(this::extractAttractionInfo)
                 .collect(Collectors.toList());
         } catch (Exception e) {
@@ -109,8 +110,9 @@ public class RAGSearchTool implements AgentTool {
             // 记录 RAG 检索完成
             metricsService.stopRAGSearch(sample, maxScore);
             
+            double minScore = knowledgeBaseService.minRelevanceScore();
             return matches.stream()
-                .filter(match -> match.score() > 0.7)
+                .filter(match -> match.score() >= minScore)
                 .filter(match -> matchesCategory(match, category))
                 .map(this::extractAttractionInfo)
                 .collect(Collectors.toList());
@@ -154,6 +156,7 @@ public class RAGSearchTool implements AgentTool {
             .description(segment.text())
             .relevanceScore(match.score())
             .city(metadata.getString("city"))
+            .embedding(match.embedding() != null ? match.embedding().vector() : null)
             .build();
     }
     
@@ -12,6 +12,9 @@ import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import static dev.langchain4j.store.embedding.filter.MetadataFilterBuilder.metadataKey;
+
+import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
@@ -86,6 +89,24 @@ public class ChromaService {
         return ids;
     }
 
+    /**
+     * 按指定 ID 批量写入（ID 由调用方按业务主键生成，重复写入同一 ID 即覆盖）
+     */
+    public void addAll(List<String> ids, List<Embedding> embeddings, List<TextSegment> segments) {
+        embeddingStore.addAll(ids, embeddings, segments);
+        log.info("✅ Batch added {} segments with explicit ids", ids.size());
+    }
+
+    /**
+     * 删除 metadata 取值在给定集合中的全部文档（一次请求）
+     */
+    public void deleteByMetadataIn(String metadataKey, Collection<String> values) {
+        if (values.isEmpty()) {
+            return;
+        }
+        embeddingStore.removeAll(metadataKey(metadataKey).isIn(values));
+    }
+
     /**
      * 语义搜索
      */
@@ -149,36 +170,16 @@ public class ChromaService {
     
     /**
      * 根据 metadata 删除文档
-     * 注意：ChromaDB 的 Java 客户端可能不直接支持按 metadata 删除
-     * 这里提供一个基础实现，实际使用时可能需要根据具体的 EmbeddingStore 实现调整
+     * 通过 EmbeddingStore.removeAll(Filter) 下推到底层存储（Chroma / pgvector / 本地索引均支持）
      */
     public void deleteByMetadata(String metadataKey, String metadataValue) {
-        log.info("Attempting to delete documents with {}={}", metadataKey, metadataValue);
-        
-        // 由于 LangChain4j 的 EmbeddingStore 接口不直接支持按 metadata 删除
-        // 我们需要先搜索匹配的文档，然后删除它们
-        // 这是一个变通方案，实际生产环境中可能需要直接调用 ChromaDB API
+        log.info("Deleting documents with {}={}", metadataKey, metadataValue);
         
         try {
-            // 搜索所有可能匹配的文档（使用 metadata value 作为查询）
-            List<EmbeddingMatch<TextSegment>> matches = search(metadataValue, 100);
-            
-            int deletedCount = 0;
-            for (EmbeddingMatch<TextSegment> match : matches) {
-                TextSegment segment = match.embedded();
-                if (segment != null && segment.metadata() != null) {
-                    String value = segment.metadata().getString(metadataKey);
-                    if (metadataValue.equals(value)) {
-                        // 注意：标准的 EmbeddingStore 接口没有 remove 方法
-                        // 这里我们记录需要删除的文档，但实际删除可能需要特定实现
-                        deletedCount++;
-                        log.debug("Found document to delete: {}", match.embeddingId());
-                    }
-                }
-            }
-            
-            log.info("✅ Marked {} documents for deletion with {}={}", deletedCount, metadataKey, metadataValue);
-            
+            embeddingStore.removeAll(metadataKey(metadataKey).isEqualTo(metadataValue));
+            log.info("✅ Deleted documents with {}={}", metadataKey, metadataValue);
+        } catch (UnsupportedOperationException e) {
+            log.warn("⚠️ Embedding store does not support delete by metadata: {}", e.getMessage());
         } catch (Exception e) {
             log.error("Failed to delete documents by metadata", e);
             throw new RuntimeException("Failed to delete documents", e);
@@ -0,0 +1,483 @@
+package com.travel.agent.ai.vectorstore;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.RelevanceScore;
+import dev.langchain4j.store.embedding.filter.Filter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 进程内向量索引（平铺精确检索 + 磁盘快照）
+ *
+ * 旅游知识库规模在数千段以内，平铺点积比 HNSW 更简单且结果精确：
+ * 向量写入时归一化并连续存放在一个 float[] 中，查询为一次顺序扫描（JIT 可自动向量化）。
+ * 写操作后延迟一段时间把索引快照到文件（先写临时文件再原子替换），一次导入的多批写入只落盘一次；
+ * 关闭时写出未落盘的变更，启动时通过内存映射一次性读回。
+ *
+ * 作为 Chroma / pgvector 的写入镜像和降级存储（见 {@link MirroringEmbeddingStore}），
+ * 也可在单节点部署时作为主存储（vector.primary=local）。
+ */
+@Slf4j
+public class LocalVectorIndexStore implements EmbeddingStore<TextSegment>, AutoCloseable {
+
+    private static final int MAGIC = 0x50465649; // "PFVI"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+
+    private final Path snapshotPath;
+    private final long snapshotDelayMillis;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // 快照在读锁下进行，定时快照和 flush 之间另行互斥
+    private final Object snapshotMonitor = new Object();
+    private final ScheduledExecutorService snapshotScheduler;
+    private boolean dirty;
+    private boolean snapshotScheduled;
+
+    private int dimension;
+    private float[] vectors = new float[0];
+    private final List<String> ids = new ArrayList<>();
+    private final List<TextSegment> segments = new ArrayList<>();
+    private final Map<String, Integer> positions = new HashMap<>();
+
+    public LocalVectorIndexStore(Path snapshotPath, Duration snapshotDelay) {
+        this.snapshotPath = snapshotPath;
+        this.snapshotDelayMillis = Math.max(0, snapshotDelay.toMillis());
+        this.snapshotScheduler = snapshotPath == null ? null : Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "vector-index-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (snapshotPath != null && Files.exists(snapshotPath)) {
+            load();
+        }
+    }
+
+    // ==================== 写入 ====================
+
+    @Override
+    public String add(Embedding embedding) {
+        String id = UUID.randomUUID().toString();
+        add(id, embedding);
+        return id;
+    }
+
+    @Override
+    public void add(String id, Embedding embedding) {
+        addAll(List.of(id), List.of(embedding), null);
+    }
+
+    @Override
+    public String add(Embedding embedding, TextSegment textSegment) {
+        String id = UUID.randomUUID().toString();
+        addAll(List.of(id), List.of(embedding), List.of(textSegment));
+        return id;
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings) {
+        List<String> newIds = generateIds(embeddings.size());
+        addAll(newIds, embeddings, null);
+        return newIds;
+    }
+
+    @Override
+    public void addAll(List<String> newIds, List<Embedding> embeddings, List<TextSegment> newSegments) {
+        if (newIds.isEmpty()) {
+            return;
+        }
+        if (newIds.size() != embeddings.size() || (newSegments != null && newSegments.size() != newIds.size())) {
+            throw new IllegalArgumentException("ids, embeddings and segments must have the same size");
+        }
+
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < newIds.size(); i++) {
+                upsert(newIds.get(i), embeddings.get(i).vector(),
+                        newSegments != null ? newSegments.get(i) : null);
+            }
+            markDirty();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void upsert(String id, float[] vector, TextSegment segment) {
+        if (dimension == 0) {
+            dimension = vector.length;
+        } else if (vector.length != dimension) {
+            throw new IllegalArgumentException("Embedding dimension " + vector.length
+                    + " does not match index dimension " + dimension);
+        }
+
+        Integer position = positions.get(id);
+        if (position == null) {
+            position = ids.size();
+            ensureCapacity(position + 1);
+            ids.add(id);
+            segments.add(segment);
+            positions.put(id, position);
+        } else {
+            segments.set(position, segment);
+        }
+        writeNormalized(vector, vectors, position * dimension);
+    }
+
+    private void ensureCapacity(int rows) {
+        int required = rows * dimension;
+        if (vectors.length < required) {
+            vectors = Arrays.copyOf(vectors, Math.max(required, vectors.length * 2));
+        }
+    }
+
+    private static void writeNormalized(float[] source, float[] target, int offset) {
+        double norm = 0;
+        for (float v : source) {
+            norm += v * v;
+        }
+        float scale = norm > 0 ? (float) (1.0 / Math.sqrt(norm)) : 0f;
+        for (int i = 0; i < source.length; i++) {
+            target[offset + i] = source[i] * scale;
+        }
+    }
+
+    // ==================== 删除 ====================
+
+    @Override
+    public void removeAll(Collection<String> removeIds) {
+        if (removeIds == null || removeIds.isEmpty()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            removeIds.forEach(this::removeInternal);
+            markDirty();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeAll(Filter filter) {
+        lock.writeLock().lock();
+        try {
+            List<String> matched = new ArrayList<>();
+            for (int i = 0; i < ids.size(); i++) {
+                TextSegment segment = segments.get(i);
+                if (segment != null && filter.test(segment.metadata())) {
+                    matched.add(ids.get(i));
+                }
+            }
+            matched.forEach(this::removeInternal);
+            markDirty();
+            log.info("🗑️ Removed {} embeddings from local index by filter", matched.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeAll() {
+        lock.writeLock().lock();
+        try {
+            ids.clear();
+            segments.clear();
+            positions.clear();
+            vectors = new float[0];
+            dimension = 0;
+            markDirty();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 与最后一行交换后删除，保持向量区连续
+     */
+    private void removeInternal(String id) {
+        Integer position = positions.remove(id);
+        if (position == null) {
+            return;
+        }
+        int last = ids.size() - 1;
+        if (position != last) {
+            String lastId = ids.get(last);
+            ids.set(position, lastId);
+            segments.set(position, segments.get(last));
+            System.arraycopy(vectors, last * dimension, vectors, position * dimension, dimension);
+            positions.put(lastId, position);
+        }
+        ids.remove(last);
+        segments.remove(last);
+    }
+
+    // ==================== 检索 ====================
+
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+        lock.readLock().lock();
+        try {
+            int size = ids.size();
+            if (size == 0 || request.maxResults() <= 0) {
+                return new EmbeddingSearchResult<>(List.of());
+            }
+
+            float[] query = request.queryEmbedding().vector();
+            if (query.length != dimension) {
+                throw new IllegalArgumentException("Query dimension " + query.length
+                        + " does not match index dimension " + dimension);
+            }
+            float[] normalizedQuery = new float[dimension];
+            writeNormalized(query, normalizedQuery, 0);
+
+            Filter filter = request.filter();
+            int k = request.maxResults();
+            // 小顶堆保留 Top-K（按余弦相似度）
+            PriorityQueue<long[]> heap = new PriorityQueue<>(k + 1,
+                    Comparator.comparingDouble(entry -> Double.longBitsToDouble(entry[1])));
+
+            for (int row = 0; row < size; row++) {
+                if (filter != null) {
+                    TextSegment segment = segments.get(row);
+                    if (segment == null || !filter.test(segment.metadata())) {
+                        continue;
+                    }
+                }
+                double cosine = dot(normalizedQuery, vectors, row * dimension, dimension);
+                if (RelevanceScore.fromCosineSimilarity(cosine) < request.minScore()) {
+                    continue;
+                }
+                if (heap.size() < k) {
+                    heap.offer(new long[]{row, Double.doubleToLongBits(cosine)});
+                } else if (cosine > Double.longBitsToDouble(heap.peek()[1])) {
+                    heap.poll();
+                    heap.offer(new long[]{row, Double.doubleToLongBits(cosine)});
+                }
+            }
+
+            List<EmbeddingMatch<TextSegment>> matches = new ArrayList<>(heap.size());
+            while (!heap.isEmpty()) {
+                long[] entry = heap.poll();
+                int row = (int) entry[0];
+                double cosine = Double.longBitsToDouble(entry[1]);
+                float[] vector = Arrays.copyOfRange(vectors, row * dimension, (row + 1) * dimension);
+                matches.add(new EmbeddingMatch<>(RelevanceScore.fromCosineSimilarity(cosine),
+                        ids.get(row), Embedding.from(vector), segments.get(row)));
+            }
+            Collections.reverse(matches);
+            return new EmbeddingSearchResult<>(matches);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 4 路展开的点积，便于 C2 生成 SIMD 指令
+     */
+    private static double dot(float[] query, float[] data, int offset, int length) {
+        float s0 = 0f, s1 = 0f, s2 = 0f, s3 = 0f;
+        int i = 0;
+        int bound = length & ~3;
+        for (; i < bound; i += 4) {
+            s0 += query[i] * data[offset + i];
+            s1 += query[i + 1] * data[offset + i + 1];
+            s2 += query[i + 2] * data[offset + i + 2];
+            s3 += query[i + 3] * data[offset + i + 3];
+        }
+        for (; i < length; i++) {
+            s0 += query[i] * data[offset + i];
+        }
+        return s0 + s1 + s2 + s3;
+    }
+
+    /**
+     * 指定元数据键在索引中出现过的所有取值（如 document_id），用于判断哪些文档尚未写入本地索引
+     */
+    public Set<String> metadataValues(String key) {
+        lock.readLock().lock();
+        try {
+            Set<String> values = new HashSet<>();
+            for (TextSegment segment : segments) {
+                String value = segment != null ? segment.metadata().getString(key) : null;
+                if (value != null) {
+                    values.add(value);
+                }
+            }
+            return values;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ids.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ==================== 快照 ====================
+
+    /**
+     * 标记有未落盘的变更，延迟 snapshotDelay 后写一次快照（期间的其他写入合并到同一次快照）
+     * 调用方需持有写锁
+     */
+    private void markDirty() {
+        if (snapshotScheduler == null) {
+            return;
+        }
+        dirty = true;
+        if (!snapshotScheduled && !snapshotScheduler.isShutdown()) {
+            snapshotScheduled = true;
+            snapshotScheduler.schedule(this::flush, snapshotDelayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 立即写出未落盘的变更
+     */
+    public void flush() {
+        if (snapshotPath == null) {
+            return;
+        }
+        synchronized (snapshotMonitor) {
+            lock.readLock().lock();
+            try {
+                // 读锁下没有并发写入；清除调度标记后的写入会重新调度
+                snapshotScheduled = false;
+                if (dirty) {
+                    dirty = false;
+                    snapshot();
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        if (snapshotScheduler != null) {
+            snapshotScheduler.shutdownNow();
+            flush();
+        }
+    }
+
+    /**
+     * 快照格式：[magic, version, dimension, count] + count*dimension 个 float + 每行的 id/text/metadata
+     * 调用方需持有读锁
+     */
+    private void snapshot() {
+        long start = System.currentTimeMillis();
+        int count = ids.size();
+
+        List<byte[]> records = new ArrayList<>(count * 3);
+        long recordBytes = 0;
+        for (int row = 0; row < count; row++) {
+            TextSegment segment = segments.get(row);
+            byte[] idBytes = ids.get(row).getBytes(StandardCharsets.UTF_8);
+            byte[] textBytes = segment != null ? segment.text().getBytes(StandardCharsets.UTF_8) : new byte[0];
+            byte[] metaBytes = segment != null
+                    ? MetadataJsonCodec.toJson(segment.metadata()).getBytes(StandardCharsets.UTF_8)
+                    : new byte[0];
+            records.add(idBytes);
+            records.add(textBytes);
+            records.add(metaBytes);
+            recordBytes += 4L * 3 + idBytes.length + textBytes.length + metaBytes.length;
+        }
+        long totalBytes = HEADER_BYTES + 4L * count * dimension + recordBytes;
+
+        try {
+            Path parent = snapshotPath.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            Path temp = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, totalBytes);
+                buffer.order(ByteOrder.LITTLE_ENDIAN);
+                buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(dimension).putInt(count);
+                buffer.asFloatBuffer().put(vectors, 0, count * dimension);
+                buffer.position(HEADER_BYTES + 4 * count * dimension);
+                for (byte[] record : records) {
+                    buffer.putInt(record.length).put(record);
+                }
+                buffer.force();
+            }
+            Files.move(temp, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.debug("💾 Local vector index snapshot: {} rows, {} bytes, {}ms",
+                    count, totalBytes, System.currentTimeMillis() - start);
+        } catch (IOException e) {
+            // 快照失败不影响内存中的索引，下次写入时重试
+            dirty = true;
+            log.warn("⚠️ Failed to snapshot local vector index to {}: {}", snapshotPath, e.getMessage());
+        }
+    }
+
+    private void load() {
+        long start = System.currentTimeMillis();
+        try (FileChannel channel = FileChannel.open(snapshotPath, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                log.warn("⚠️ Ignoring incompatible local vector index snapshot: {}", snapshotPath);
+                return;
+            }
+            int dim = buffer.getInt();
+            int count = buffer.getInt();
+
+            float[] loaded = new float[Math.max(count * dim, 0)];
+            buffer.asFloatBuffer().get(loaded, 0, count * dim);
+            buffer.position(HEADER_BYTES + 4 * count * dim);
+
+            for (int row = 0; row < count; row++) {
+                String id = readString(buffer);
+                String text = readString(buffer);
+                String metadataJson = readString(buffer);
+                ids.add(id);
+                segments.add(text.isEmpty() && metadataJson.isEmpty()
+                        ? null : TextSegment.from(text, MetadataJsonCodec.fromJson(metadataJson)));
+                positions.put(id, row);
+            }
+            dimension = dim;
+            vectors = loaded;
+            log.info("✅ Loaded local vector index: {} rows (dim={}) from {} in {}ms",
+                    count, dim, snapshotPath, System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            ids.clear();
+            segments.clear();
+            positions.clear();
+            log.warn("⚠️ Failed to load local vector index from {}, starting empty: {}", snapshotPath, e.getMessage());
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,44 @@
+package com.travel.agent.ai.vectorstore;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONObject;
+import dev.langchain4j.data.document.Metadata;
+
+import java.util.Map;
+
+/**
+ * Metadata 与 JSON 互转（pgvector JSONB 列、本地索引快照共用）
+ */
+final class MetadataJsonCodec {
+
+    private MetadataJsonCodec() {
+    }
+
+    static String toJson(Metadata metadata) {
+        return metadata == null ? "{}" : JSON.toJSONString(metadata.toMap());
+    }
+
+    /**
+     * Metadata 只接受 String/UUID/Integer/Long/Float/Double，其余数值统一转为 Double
+     */
+    static Metadata fromJson(String json) {
+        Metadata metadata = new Metadata();
+        if (json == null || json.isBlank()) {
+            return metadata;
+        }
+        JSONObject object = JSON.parseObject(json);
+        for (Map.Entry<String, Object> entry : object.entrySet()) {
+            Object value = entry.getValue();
+            if (value instanceof Integer v) {
+                metadata.put(entry.getKey(), v);
+            } else if (value instanceof Long v) {
+                metadata.put(entry.getKey(), v);
+            } else if (value instanceof Number v) {
+                metadata.put(entry.getKey(), v.doubleValue());
+            } else if (value != null) {
+                metadata.put(entry.getKey(), value.toString());
+            }
+        }
+        return metadata;
+    }
+}
@@ -0,0 +1,132 @@
+package com.travel.agent.ai.vectorstore;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.filter.Filter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 主向量库 + 本地索引镜像
+ *
+ * 写入和删除先作用于主存储（Chroma / pgvector），成功后同步到进程内索引；本地写入失败只记录日志。
+ * 查询走主存储，主存储报错时改查本地索引。这样主存储在启动或运行中不可用时，
+ * 降级路径上仍是最近一次导入的完整数据，而不是空索引。
+ */
+@Slf4j
+public class MirroringEmbeddingStore implements EmbeddingStore<TextSegment>, AutoCloseable {
+
+    private final EmbeddingStore<TextSegment> primary;
+    private final LocalVectorIndexStore local;
+
+    public MirroringEmbeddingStore(EmbeddingStore<TextSegment> primary, LocalVectorIndexStore local) {
+        this.primary = primary;
+        this.local = local;
+    }
+
+    public LocalVectorIndexStore local() {
+        return local;
+    }
+
+    // ==================== 写入 ====================
+
+    @Override
+    public String add(Embedding embedding) {
+        String id = primary.add(embedding);
+        mirror(() -> local.add(id, embedding));
+        return id;
+    }
+
+    @Override
+    public void add(String id, Embedding embedding) {
+        primary.add(id, embedding);
+        mirror(() -> local.add(id, embedding));
+    }
+
+    @Override
+    public String add(Embedding embedding, TextSegment textSegment) {
+        String id = primary.add(embedding, textSegment);
+        mirror(() -> local.addAll(List.of(id), List.of(embedding), List.of(textSegment)));
+        return id;
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings) {
+        List<String> ids = primary.addAll(embeddings);
+        mirror(() -> local.addAll(ids, embeddings, null));
+        return ids;
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings, List<TextSegment> segments) {
+        List<String> ids = primary.addAll(embeddings, segments);
+        mirror(() -> local.addAll(ids, embeddings, segments));
+        return ids;
+    }
+
+    @Override
+    public void addAll(List<String> ids, List<Embedding> embeddings, List<TextSegment> segments) {
+        primary.addAll(ids, embeddings, segments);
+        mirror(() -> local.addAll(ids, embeddings, segments));
+    }
+
+    // ==================== 删除 ====================
+
+    @Override
+    public void remove(String id) {
+        primary.remove(id);
+        mirror(() -> local.remove(id));
+    }
+
+    @Override
+    public void removeAll(Collection<String> ids) {
+        primary.removeAll(ids);
+        mirror(() -> local.removeAll(ids));
+    }
+
+    @Override
+    public void removeAll(Filter filter) {
+        primary.removeAll(filter);
+        mirror(() -> local.removeAll(filter));
+    }
+
+    @Override
+    public void removeAll() {
+        primary.removeAll();
+        mirror(local::removeAll);
+    }
+
+    // ==================== 检索 ====================
+
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+        try {
+            return primary.search(request);
+        } catch (RuntimeException e) {
+            log.warn("⚠️ Primary vector store search failed, using local index ({} rows): {}",
+                    local.size(), e.getMessage());
+            return local.search(request);
+        }
+    }
+
+    private void mirror(Runnable write) {
+        try {
+            write.run();
+        } catch (RuntimeException e) {
+            log.warn("⚠️ Failed to mirror write into local vector index: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        local.close();
+        if (primary instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package com.travel.agent.ai.vectorstore;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.RelevanceScore;
+import dev.langchain4j.store.embedding.filter.Filter;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.*;
+import java.util.*;
+
+/**
+ * 基于 PostgreSQL + pgvector 的 EmbeddingStore
+ *
+ * 复用 infra/docker/init-pgvector.sql 创建的 embeddings 表（HNSW + GIN 索引）：
+ * - 元数据过滤条件下推为 JSONB 谓词（见 {@link PgVectorFilterMapper}）
+ * - 写入按 embedding_id 批量 upsert，单事务提交
+ * - 每次查询通过 SET LOCAL 调整 hnsw.ef_search，在召回率和延迟之间取舍
+ */
+@Slf4j
+public class PgVectorEmbeddingStore implements EmbeddingStore<TextSegment>, AutoCloseable {
+
+    private static final Set<String> ITERATIVE_SCAN_MODES = Set.of("off", "strict_order", "relaxed_order");
+
+    private final DataSource dataSource;
+    private final String table;
+    private final int dimension;
+    private final int batchSize;
+    private final int efSearch;
+    private final String iterativeScan;
+
+    public PgVectorEmbeddingStore(DataSource dataSource, String table, int dimension,
+                                  int batchSize, int efSearch, String iterativeScan) {
+        if (!table.matches("[A-Za-z_][A-Za-z0-9_]*")) {
+            throw new IllegalArgumentException("Invalid pgvector table name: " + table);
+        }
+        if (iterativeScan != null && !iterativeScan.isBlank() && !ITERATIVE_SCAN_MODES.contains(iterativeScan)) {
+            throw new IllegalArgumentException("Invalid hnsw.iterative_scan mode: " + iterativeScan);
+        }
+        this.dataSource = dataSource;
+        this.table = table;
+        this.dimension = dimension;
+        this.batchSize = Math.max(1, batchSize);
+        this.efSearch = efSearch;
+        this.iterativeScan = iterativeScan == null || iterativeScan.isBlank() ? null : iterativeScan;
+        ensureSchema();
+    }
+
+    /**
+     * 为 init-pgvector.sql 建出的旧表补齐 upsert 所需的 embedding_id 列和唯一索引
+     */
+    private void ensureSchema() {
+        try (Connection conn = dataSource.getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("ALTER TABLE " + table + " ADD COLUMN IF NOT EXISTS embedding_id VARCHAR(64)");
+            stmt.execute("CREATE UNIQUE INDEX IF NOT EXISTS " + table + "_embedding_id_uidx ON "
+                    + table + " (embedding_id)");
+            log.info("✅ pgvector store ready: table={}, dimension={}, efSearch={}", table, dimension, efSearch);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to prepare pgvector table " + table, e);
+        }
+    }
+
+    @Override
+    public String add(Embedding embedding) {
+        String id = UUID.randomUUID().toString();
+        add(id, embedding);
+        return id;
+    }
+
+    @Override
+    public void add(String id, Embedding embedding) {
+        addAll(List.of(id), List.of(embedding), null);
+    }
+
+    @Override
+    public String add(Embedding embedding, TextSegment textSegment) {
+        String id = UUID.randomUUID().toString();
+        addAll(List.of(id), List.of(embedding), List.of(textSegment));
+        return id;
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings) {
+        List<String> ids = generateIds(embeddings.size());
+        addAll(ids, embeddings, null);
+        return ids;
+    }
+
+    @Override
+    public void addAll(List<String> ids, List<Embedding> embeddings, List<TextSegment> segments) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        if (ids.size() != embeddings.size() || (segments != null && segments.size() != ids.size())) {
+            throw new IllegalArgumentException("ids, embeddings and segments must have the same size");
+        }
+
+        String sql = "INSERT INTO " + table + " (embedding_id, content, embedding, metadata) "
+                + "VALUES (?, ?, ?::vector, ?::jsonb) "
+                + "ON CONFLICT (embedding_id) DO UPDATE SET "
+                + "content = EXCLUDED.content, embedding = EXCLUDED.embedding, metadata = EXCLUDED.metadata";
+
+        try (Connection conn = dataSource.getConnection()) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                for (int i = 0; i < ids.size(); i++) {
+                    TextSegment segment = segments != null ? segments.get(i) : null;
+                    ps.setString(1, ids.get(i));
+                    ps.setString(2, segment != null ? segment.text() : "");
+                    ps.setString(3, toVectorLiteral(embeddings.get(i)));
+                    ps.setString(4, segment != null ? MetadataJsonCodec.toJson(segment.metadata()) : "{}");
+                    ps.addBatch();
+
+                    if ((i + 1) % batchSize == 0) {
+                        ps.executeBatch();
+                    }
+                }
+                ps.executeBatch();
+                conn.commit();
+                log.debug("Upserted {} embeddings into {}", ids.size(), table);
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to upsert embeddings into " + table, e);
+        }
+    }
+
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+        String queryVector = toVectorLiteral(request.queryEmbedding());
+
+        StringBuilder sql = new StringBuilder()
+                .append("SELECT embedding_id, content, metadata::text, embedding::text, ")
+                .append("embedding <=> ?::vector AS distance FROM ").append(table);
+        List<Object> params = new ArrayList<>();
+        params.add(queryVector);
+
+        if (request.filter() != null) {
+            PgVectorFilterMapper.SqlPredicate predicate = PgVectorFilterMapper.map(request.filter());
+            sql.append(" WHERE ").append(predicate.sql());
+            params.addAll(predicate.params());
+        }
+        sql.append(" ORDER BY embedding <=> ?::vector LIMIT ?");
+        params.add(queryVector);
+        params.add(request.maxResults());
+
+        List<EmbeddingMatch<TextSegment>> matches = new ArrayList<>();
+        try (Connection conn = dataSource.getConnection()) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                applySearchSettings(conn);
+                try (PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+                    bind(conn, ps, params);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            double score = RelevanceScore.fromCosineSimilarity(1 - rs.getDouble("distance"));
+                            if (score < request.minScore()) {
+                                continue;
+                            }
+                            TextSegment segment = TextSegment.from(rs.getString("content"), MetadataJsonCodec.fromJson(rs.getString(3)));
+                            matches.add(new EmbeddingMatch<>(score, rs.getString("embedding_id"),
+                                    parseVector(rs.getString(4)), segment));
+                        }
+                    }
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("pgvector search failed on " + table, e);
+        }
+        return new EmbeddingSearchResult<>(matches);
+    }
+
+    /**
+     * 仅对当前事务生效的 HNSW 查询参数
+     */
+    private void applySearchSettings(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            if (efSearch > 0) {
+                stmt.execute("SET LOCAL hnsw.ef_search = " + efSearch);
+            }
+            if (iterativeScan != null) {
+                // 带过滤条件时避免 HNSW 候选集被过滤后结果不足（pgvector 0.8+）
+                stmt.execute("SET LOCAL hnsw.iterative_scan = " + iterativeScan);
+            }
+        }
+    }
+
+    @Override
+    public void removeAll(Collection<String> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return;
+        }
+        execute("DELETE FROM " + table + " WHERE embedding_id = ANY(?)",
+                Collections.singletonList(ids.toArray(String[]::new)));
+    }
+
+    @Override
+    public void removeAll(Filter filter) {
+        PgVectorFilterMapper.SqlPredicate predicate = PgVectorFilterMapper.map(filter);
+        int deleted = execute("DELETE FROM " + table + " WHERE " + predicate.sql(), predicate.params());
+        log.info("🗑️ Removed {} embeddings from {} by filter", deleted, table);
+    }
+
+    @Override
+    public void removeAll() {
+        execute("DELETE FROM " + table, List.of());
+    }
+
+    private int execute(String sql, List<Object> params) {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            bind(conn, ps, params);
+            return ps.executeUpdate();
+        } catch (SQLException e) {
+            throw new IllegalStateException("pgvector statement failed on " + table, e);
+        }
+    }
+
+    private void bind(Connection conn, PreparedStatement ps, List<Object> params) throws SQLException {
+        for (int i = 0; i < params.size(); i++) {
+            Object param = params.get(i);
+            if (param instanceof String[] values) {
+                ps.setArray(i + 1, conn.createArrayOf("text", values));
+            } else if (param instanceof BigDecimal[] values) {
+                ps.setArray(i + 1, conn.createArrayOf("numeric", values));
+            } else {
+                ps.setObject(i + 1, param);
+            }
+        }
+    }
+
+    private String toVectorLiteral(Embedding embedding) {
+        float[] vector = embedding.vector();
+        if (dimension > 0 && vector.length != dimension) {
+            throw new IllegalArgumentException("Embedding dimension " + vector.length
+                    + " does not match pgvector column dimension " + dimension);
+        }
+        StringBuilder sb = new StringBuilder(vector.length * 10).append('[');
+        for (int i = 0; i < vector.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(vector[i]);
+        }
+        return sb.append(']').toString();
+    }
+
+    private Embedding parseVector(String text) {
+        if (text == null || text.length() < 2) {
+            return null;
+        }
+        String[] parts = text.substring(1, text.length() - 1).split(",");
+        float[] vector = new float[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            vector[i] = Float.parseFloat(parts[i]);
+        }
+        return Embedding.from(vector);
+    }
+
+    @Override
+    public void close() {
+        if (dataSource instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                log.warn("Failed to close pgvector data source: {}", e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.travel.agent.ai.vectorstore;
+
+import com.alibaba.fastjson2.JSON;
+import dev.langchain4j.store.embedding.filter.Filter;
+import dev.langchain4j.store.embedding.filter.comparison.*;
+import dev.langchain4j.store.embedding.filter.logical.And;
+import dev.langchain4j.store.embedding.filter.logical.Not;
+import dev.langchain4j.store.embedding.filter.logical.Or;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 将 LangChain4j 元数据过滤条件翻译为 JSONB 上的 SQL 谓词
+ *
+ * 相等条件使用 {@code metadata @> ?::jsonb}，可命中 metadata 列上的 GIN 索引；
+ * 其余比较使用 {@code metadata->>?}。键名和值全部作为绑定参数传入，不拼接到 SQL 中。
+ */
+class PgVectorFilterMapper {
+
+    /**
+     * 翻译结果：SQL 片段 + 按顺序绑定的参数
+     */
+    record SqlPredicate(String sql, List<Object> params) {
+    }
+
+    private PgVectorFilterMapper() {
+    }
+
+    static SqlPredicate map(Filter filter) {
+        List<Object> params = new ArrayList<>();
+        String sql = toSql(filter, params);
+        return new SqlPredicate(sql, params);
+    }
+
+    private static String toSql(Filter filter, List<Object> params) {
+        if (filter instanceof And and) {
+            return "(" + toSql(and.left(), params) + " AND " + toSql(and.right(), params) + ")";
+        }
+        if (filter instanceof Or or) {
+            return "(" + toSql(or.left(), params) + " OR " + toSql(or.right(), params) + ")";
+        }
+        if (filter instanceof Not not) {
+            return "(NOT " + toSql(not.expression(), params) + ")";
+        }
+        if (filter instanceof IsEqualTo eq) {
+            params.add(JSON.toJSONString(Map.of(eq.key(), eq.comparisonValue())));
+            return "metadata @> ?::jsonb";
+        }
+        if (filter instanceof IsNotEqualTo ne) {
+            // 与 InMemoryEmbeddingStore 语义一致：缺少该键也视为“不相等”
+            params.add(JSON.toJSONString(Map.of(ne.key(), ne.comparisonValue())));
+            return "NOT (metadata @> ?::jsonb)";
+        }
+        if (filter instanceof IsGreaterThan gt) {
+            return compare(gt.key(), ">", gt.comparisonValue(), params);
+        }
+        if (filter instanceof IsGreaterThanOrEqualTo gte) {
+            return compare(gte.key(), ">=", gte.comparisonValue(), params);
+        }
+        if (filter instanceof IsLessThan lt) {
+            return compare(lt.key(), "<", lt.comparisonValue(), params);
+        }
+        if (filter instanceof IsLessThanOrEqualTo lte) {
+            return compare(lte.key(), "<=", lte.comparisonValue(), params);
+        }
+        if (filter instanceof IsIn in) {
+            return in(in.key(), in.comparisonValues(), params);
+        }
+        if (filter instanceof IsNotIn notIn) {
+            String key = notIn.key();
+            params.add(key);
+            String inSql = in(key, notIn.comparisonValues(), params);
+            return "(metadata->>? IS NULL OR NOT " + inSql + ")";
+        }
+        if (filter instanceof ContainsString contains) {
+            params.add(contains.key());
+            params.add("%" + escapeLike(contains.comparisonValue()) + "%");
+            return "(metadata->>?) LIKE ?";
+        }
+        throw new UnsupportedOperationException("Unsupported filter type: " + filter.getClass().getName());
+    }
+
+    private static String compare(String key, String operator, Object value, List<Object> params) {
+        params.add(key);
+        params.add(value instanceof Number ? value : String.valueOf(value));
+        if (value instanceof Number) {
+            return "(metadata->>?)::numeric " + operator + " ?";
+        }
+        return "(metadata->>?) " + operator + " ?";
+    }
+
+    private static String in(String key, Collection<?> values, List<Object> params) {
+        boolean numeric = !values.isEmpty() && values.stream().allMatch(v -> v instanceof Number);
+        params.add(key);
+        if (numeric) {
+            params.add(values.stream().map(v -> new java.math.BigDecimal(v.toString())).toArray(java.math.BigDecimal[]::new));
+            return "((metadata->>?)::numeric = ANY(?))";
+        }
+        params.add(values.stream().map(String::valueOf).toArray(String[]::new));
+        return "((metadata->>?) = ANY(?))";
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
@@ -1,6 +1,7 @@
 package com.travel.agent.config;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableAsync;
@@ -50,4 +51,113 @@ public class AsyncConfig {
         executor.initialize();
         return executor;
     }
+    
+    /**
+     * 知识库导入线程池
+     * 有界队列 + AbortPolicy：队列满时由事件合并器稍后重试，不会阻塞文件监听线程
+     */
+    @Bean(name = "knowledgeImportExecutor")
+    public Executor knowledgeImportExecutor(
+            @Value("${agent.knowledge.import.pool-size:2}") int poolSize,
+            @Value("${agent.knowledge.import.queue-capacity:50}") int queueCapacity) {
+        log.info("Creating knowledge import executor: poolSize={}, queueCapacity={}", poolSize, queueCapacity);
+        
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("kb-import-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+        return executor;
+    }
+    
+    /**
+     * 目的地向量回填线程池
+     * 单线程，与知识库导入隔离：全量重建可能持续很久，不能占住导入线程；
+     * 关闭时不等待，任务从检查点续跑
+     */
+    @Bean(name = "embeddingBackfillExecutor")
+    public Executor embeddingBackfillExecutor() {
+        log.info("Creating embedding backfill executor");
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(1);
+        executor.setThreadNamePrefix("embedding-backfill-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * 地理编码 I/O 线程池
+     * 批量地理编码的缓存未命中项在此并发请求外部 API（另有速率限制），不占用公共 ForkJoinPool
+     */
+    @Bean(name = "geocodingExecutor")
+    public Executor geocodingExecutor(
+            @Value("${agent.geocoding.concurrency:8}") int concurrency,
+            @Value("${agent.geocoding.queue-capacity:200}") int queueCapacity) {
+        log.info("Creating geocoding executor: concurrency={}, queueCapacity={}", concurrency, queueCapacity);
+        
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(concurrency);
+        executor.setMaxPoolSize(concurrency);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("geocoding-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+        return executor;
+    }
+    
+    /**
+     * Matrix API I/O 线程池
+     * 超过 25 个坐标的行驶时间矩阵拆成多个分块并发请求（另有速率限制）
+     */
+    @Bean(name = "matrixExecutor")
+    public Executor matrixExecutor(
+            @Value("${agent.routing.matrix.concurrency:4}") int concurrency,
+            @Value("${agent.routing.matrix.queue-capacity:100}") int queueCapacity) {
+        log.info("Creating matrix executor: concurrency={}, queueCapacity={}", concurrency, queueCapacity);
+        
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(concurrency);
+        executor.setMaxPoolSize(concurrency);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("matrix-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+        return executor;
+    }
+    
+    /**
+     * 路线优化 CPU 线程池
+     * 行程各天的 TSP 求解互不依赖，按 CPU 核数并行；默认线程数 = 可用处理器数
+     */
+    @Bean(name = "routeOptimizationExecutor")
+    public Executor routeOptimizationExecutor(
+            @Value("${agent.routing.optimization.concurrency:0}") int concurrency,
+            @Value("${agent.routing.optimization.queue-capacity:100}") int queueCapacity) {
+        int threads = concurrency > 0 ? concurrency : Runtime.getRuntime().availableProcessors();
+        log.info("Creating route optimization executor: threads={}, queueCapacity={}", threads, queueCapacity);
+        
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("route-opt-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+        return executor;
+    }
 }
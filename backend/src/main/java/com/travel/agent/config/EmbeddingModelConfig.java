@@ -0,0 +1,65 @@
+package com.travel.agent.config;
+
+import com.travel.agent.ai.embedding.LocalOnnxEmbeddingModel;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Embedding 模型配置
+ *
+ * agent.embedding.mode=remote（默认）：使用 langchain4j.open-ai.embedding-model（text-embedding-3-small，1536 维）
+ * agent.embedding.mode=local：使用进程内 ONNX 模型 all-MiniLM-L6-v2（384 维）
+ *
+ * 切换模式会改变向量维度，需要使用新的 Chroma collection / pgvector 表，
+ * 并调用 /api/migration/reembed 重新生成向量。
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "agent.embedding.mode", havingValue = "local")
+public class EmbeddingModelConfig {
+
+    /**
+     * ONNX 推理专用线程池
+     * 线程数不超过 CPU 核数；队列满时由调用线程执行，天然限流
+     */
+    @Bean(name = "embeddingExecutor")
+    public Executor embeddingExecutor(
+            @Value("${agent.embedding.local.threads:0}") int threads,
+            @Value("${agent.embedding.local.queue-capacity:256}") int queueCapacity) {
+        int cores = Runtime.getRuntime().availableProcessors();
+        int poolSize = threads > 0 ? Math.min(threads, cores) : Math.max(1, cores / 2);
+        log.info("Creating local embedding executor: threads={}, queueCapacity={}", poolSize, queueCapacity);
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("onnx-embed-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * 本地 Embedding 模型
+     * 与 OpenAI starter 自动配置的 EmbeddingModel 同时存在时优先注入本 Bean
+     */
+    @Bean
+    @Primary
+    public EmbeddingModel localEmbeddingModel(
+            Executor embeddingExecutor,
+            @Value("${agent.embedding.local.batch-size:32}") int batchSize,
+            MeterRegistry meterRegistry) {
+        return new LocalOnnxEmbeddingModel(embeddingExecutor, batchSize, meterRegistry);
+    }
+}
@@ -0,0 +1,67 @@
+package com.travel.agent.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 外部 HTTP 调用配置（所有集成共用一个连接池，超时按集成区分）
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "agent.http")
+public class HttpClientConfig {
+
+    /**
+     * 连接池中保留的空闲连接数
+     */
+    private int maxIdleConnections = 20;
+
+    /**
+     * 空闲连接保活时间
+     */
+    private Duration keepAlive = Duration.ofMinutes(5);
+
+    /**
+     * 每个主机的最大并发请求数（同步调用同样受限）
+     */
+    private int maxConcurrentPerHost = 16;
+
+    /**
+     * 按主机覆盖并发上限，如 api.openai.com: 8
+     */
+    private Map<String, Integer> hosts = new HashMap<>();
+
+    /**
+     * 各集成的超时（openai / gemini / mapbox-geocoding / mapbox-matrix / geoapify），
+     * 未配置的项使用各服务自身的 timeout 配置
+     */
+    private Map<String, Timeouts> clients = new HashMap<>();
+
+    public int maxConcurrentFor(String host) {
+        return hosts.getOrDefault(host, maxConcurrentPerHost);
+    }
+
+    @Data
+    public static class Timeouts {
+
+        /**
+         * 建立连接（含 TLS 握手）
+         */
+        private Duration connectTimeout;
+
+        /**
+         * 两次读取之间的最长间隔（LLM 生成较慢，需要较长）
+         */
+        private Duration readTimeout;
+
+        /**
+         * 整个调用（DNS、连接、发送、等待、读取响应体）的总时限
+         */
+        private Duration callTimeout;
+    }
+}
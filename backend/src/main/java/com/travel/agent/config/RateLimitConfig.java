@@ -0,0 +1,81 @@
+package com.travel.agent.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 外部 API 集群级限流配置（按账号额度，所有节点共享）
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "agent.rate-limit")
+public class RateLimitConfig {
+
+    /**
+     * 关闭时只做进程内限流
+     */
+    private boolean enabled = true;
+
+    /**
+     * 每次从 Redis 预取的许可数上限（减少往返）
+     */
+    private int prefetch = 5;
+
+    /**
+     * 预取许可的有效期，过期未用的许可作废（避免单个节点囤积额度）
+     */
+    private Duration prefetchTtl = Duration.ofMillis(500);
+
+    /**
+     * 集群节点数：Redis 不可用时每个节点只按 额度 / 节点数 做进程内限流，各节点合计不超过账号额度
+     */
+    private int nodes = 1;
+
+    /**
+     * 未单独配置的 API 使用的默认值
+     */
+    private Limit defaults = new Limit(5, 5, Duration.ofSeconds(10));
+
+    /**
+     * 各 API 的额度，键为 API 名称（mapbox-geocoding / mapbox-matrix / geoapify / openai / gemini）
+     */
+    private Map<String, Limit> apis = new HashMap<>(Map.of(
+            "mapbox-geocoding", new Limit(10, 10, Duration.ofSeconds(10)),
+            "mapbox-matrix", new Limit(1, 5, Duration.ofSeconds(10)),
+            "geoapify", new Limit(5, 5, Duration.ofSeconds(10)),
+            "openai", new Limit(5, 10, Duration.ofSeconds(30)),
+            "gemini", new Limit(2, 5, Duration.ofSeconds(30))
+    ));
+
+    public Limit limitFor(String api) {
+        return apis.getOrDefault(api, defaults);
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Limit {
+
+        /**
+         * 每秒补充的许可数
+         */
+        private double permitsPerSecond;
+
+        /**
+         * 令牌桶容量（允许的突发）
+         */
+        private int burst;
+
+        /**
+         * 调用方最多排队等待的时间，超时后按失败处理（走各自的降级路径）
+         */
+        private Duration maxWait;
+    }
+}
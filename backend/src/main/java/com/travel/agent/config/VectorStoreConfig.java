@@ -1,9 +1,13 @@
 package com.travel.agent.config;
 
+import com.travel.agent.ai.vectorstore.LocalVectorIndexStore;
+import com.travel.agent.ai.vectorstore.MirroringEmbeddingStore;
+import com.travel.agent.ai.vectorstore.PgVectorEmbeddingStore;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
 import dev.langchain4j.data.segment.TextSegment;
 import dev.langchain4j.store.embedding.EmbeddingStore;
 import dev.langchain4j.store.embedding.chroma.ChromaEmbeddingStore;
-import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
 
 import static dev.langchain4j.store.embedding.chroma.ChromaApiVersion.V2;
 import lombok.extern.slf4j.Slf4j;
@@ -12,9 +16,14 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
 
+import java.nio.file.Paths;
+import java.time.Duration;
+
 /**
  * 向量数据库配置类
- * 根据LangChain4j官方示例配置Chroma向量存储
+ * 根据LangChain4j官方示例配置Chroma向量存储，vector.primary=pgvector 时改用 PostgreSQL + pgvector，
+ * vector.primary=local 时使用进程内持久化索引（单节点部署）。
+ * 使用 Chroma / pgvector 时写入同步镜像到本地索引，主存储不可用时降级到这份数据
  */
 @Slf4j
 @Configuration
@@ -32,6 +41,53 @@ public class VectorStoreConfig {
     @Value("${langchain4j.chroma.fail-fast:false}")
     private boolean chromaFailFast;
 
+    @Value("${vector.primary:chroma}")
+    private String primaryStore;
+
+    @Value("${vector.pgvector.datasource.url:jdbc:postgresql://localhost:5432/pathfinder_agent}")
+    private String pgvectorUrl;
+
+    @Value("${vector.pgvector.datasource.username:postgres}")
+    private String pgvectorUsername;
+
+    @Value("${vector.pgvector.datasource.password:postgres}")
+    private String pgvectorPassword;
+
+    @Value("${vector.pgvector.pool-size:5}")
+    private int pgvectorPoolSize;
+
+    @Value("${vector.pgvector.table:embeddings}")
+    private String pgvectorTable;
+
+    @Value("${vector.pgvector.dimension:1536}")
+    private int pgvectorDimension;
+
+    @Value("${vector.pgvector.batch-size:200}")
+    private int pgvectorBatchSize;
+
+    @Value("${vector.pgvector.ef-search:64}")
+    private int pgvectorEfSearch;
+
+    @Value("${vector.pgvector.iterative-scan:}")
+    private String pgvectorIterativeScan;
+
+    @Value("${vector.pgvector.fail-fast:false}")
+    private boolean pgvectorFailFast;
+
+    @Value("${vector.local.snapshot-path:data/vector-index/knowledge.idx}")
+    private String localSnapshotPath;
+
+    @Value("${vector.local.persist:true}")
+    private boolean localPersist;
+
+    @Value("${vector.local.snapshot-delay:2s}")
+    private Duration localSnapshotDelay;
+
+    @Value("${vector.local.mirror:true}")
+    private boolean localMirror;
+
+    private LocalVectorIndexStore localStore;
+
     /**
      * Chroma向量存储Bean
      * 使用API V2以支持Chroma 0.7.0+版本
@@ -40,26 +96,89 @@ public class VectorStoreConfig {
     @Bean
     @Primary
     public EmbeddingStore<TextSegment> chromaEmbeddingStore() {
+        if ("pgvector".equalsIgnoreCase(primaryStore)) {
+            return mirrored(pgVectorEmbeddingStore());
+        }
+        if ("local".equalsIgnoreCase(primaryStore)) {
+            log.info("Using local vector index as primary store");
+            return localVectorIndexStore();
+        }
+
         if (!chromaEnabled) {
-            log.warn("Chroma embedding store disabled by config, using InMemoryEmbeddingStore");
-            return new InMemoryEmbeddingStore<>();
+            log.warn("Chroma embedding store disabled by config, using local vector index");
+            return localVectorIndexStore();
         }
 
         log.info("Initializing ChromaEmbeddingStore with API V2: url={}, collection={}", 
                 chromaUrl, chromaCollection);
 
         try {
-            return ChromaEmbeddingStore.builder()
+            return mirrored(ChromaEmbeddingStore.builder()
                     .apiVersion(V2)
                     .baseUrl(chromaUrl)
                     .collectionName(chromaCollection)
-                    .build();
+                    .build());
         } catch (Exception e) {
             if (chromaFailFast) {
                 throw e;
             }
-            log.warn("Failed to initialize ChromaEmbeddingStore, fallback to InMemoryEmbeddingStore: {}", e.getMessage());
-            return new InMemoryEmbeddingStore<>();
+            log.warn("Failed to initialize ChromaEmbeddingStore, fallback to local vector index: {}", e.getMessage());
+            return localVectorIndexStore();
+        }
+    }
+
+    /**
+     * pgvector 向量存储
+     * 使用独立连接池（不注册为 Bean，避免与 MyBatis 主数据源冲突），随 Bean 销毁一起关闭
+     */
+    private EmbeddingStore<TextSegment> pgVectorEmbeddingStore() {
+        log.info("Initializing PgVectorEmbeddingStore: url={}, table={}, dimension={}",
+                pgvectorUrl, pgvectorTable, pgvectorDimension);
+
+        HikariDataSource dataSource = null;
+        try {
+            HikariConfig hikariConfig = new HikariConfig();
+            hikariConfig.setJdbcUrl(pgvectorUrl);
+            hikariConfig.setUsername(pgvectorUsername);
+            hikariConfig.setPassword(pgvectorPassword);
+            hikariConfig.setMaximumPoolSize(pgvectorPoolSize);
+            hikariConfig.setPoolName("pgvector-pool");
+            hikariConfig.addDataSourceProperty("reWriteBatchedInserts", "true");
+            dataSource = new HikariDataSource(hikariConfig);
+
+            return new PgVectorEmbeddingStore(dataSource, pgvectorTable, pgvectorDimension,
+                    pgvectorBatchSize, pgvectorEfSearch, pgvectorIterativeScan);
+        } catch (Exception e) {
+            if (dataSource != null) {
+                dataSource.close();
+            }
+            if (pgvectorFailFast) {
+                throw e;
+            }
+            log.warn("Failed to initialize PgVectorEmbeddingStore, fallback to local vector index: {}", e.getMessage());
+            return localVectorIndexStore();
+        }
+    }
+
+    /**
+     * 主存储的写入同步到本地索引（降级后的本地索引与主存储一致）
+     */
+    private EmbeddingStore<TextSegment> mirrored(EmbeddingStore<TextSegment> primary) {
+        if (primary instanceof LocalVectorIndexStore || !localMirror) {
+            return primary;
+        }
+        log.info("Mirroring vector store writes into local vector index");
+        return new MirroringEmbeddingStore(primary, localVectorIndexStore());
+    }
+
+    /**
+     * 进程内向量索引：启动时从快照加载，写入后延迟写回快照（镜像和降级共用同一个实例）
+     */
+    private LocalVectorIndexStore localVectorIndexStore() {
+        if (localStore == null) {
+            localStore = new LocalVectorIndexStore(localPersist ? Paths.get(localSnapshotPath) : null,
+                    localSnapshotDelay);
         }
+        return localStore;
     }
 }
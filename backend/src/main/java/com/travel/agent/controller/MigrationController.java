@@ -1,6 +1,7 @@
 package com.travel.agent.controller;
 
-import com.travel.agent.ai.embedding.DestinationEmbeddingService;
+import com.travel.agent.ai.embedding.DestinationEmbeddingBackfillJob;
+import com.travel.agent.ai.embedding.EmbeddingMigrationService;
 import com.travel.agent.ai.vectorstore.ChromaService;
 import com.travel.agent.dto.response.CommonResponse;
 import dev.langchain4j.data.segment.TextSegment;
@@ -23,22 +24,69 @@ import java.util.stream.Collectors;
 @Tag(name = "Migration", description = "数据迁移接口（仅开发环境使用）")
 public class MigrationController {
 
-    private final DestinationEmbeddingService destinationEmbeddingService;
+    private final DestinationEmbeddingBackfillJob destinationBackfillJob;
     private final ChromaService chromaService;
+    private final EmbeddingMigrationService embeddingMigrationService;
 
     /**
-     * 向量化所有目的地
+     * 向量化所有目的地（后台分页回填，可断点续跑）
      */
     @PostMapping("/embed-destinations")
-    @Operation(summary = "向量化所有目的地", description = "将数据库中的目的地数据向量化并存储到Chroma")
-    public CommonResponse<String> embedDestinations() {
-        log.info("🚀 Starting destination embedding migration...");
+    @Operation(summary = "向量化所有目的地", description = "启动目的地向量回填任务：分页读取、分批向量化、跳过未变化的行，从上次检查点继续")
+    public CommonResponse<Map<String, Object>> embedDestinations(
+            @RequestParam(defaultValue = "false") boolean restart,
+            @RequestParam(defaultValue = "false") boolean force
+    ) {
+        log.info("🚀 Starting destination embedding backfill (restart={}, force={})", restart, force);
+        
+        try {
+            if (!destinationBackfillJob.start(restart, force)) {
+                return CommonResponse.error(409, "Destination backfill is already running");
+            }
+            return CommonResponse.success(destinationBackfillJob.status());
+        } catch (Exception e) {
+            log.error("Failed to start destination backfill", e);
+            return CommonResponse.error(500, "Migration failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 目的地向量回填进度
+     */
+    @GetMapping("/embed-destinations/status")
+    @Operation(summary = "目的地回填进度", description = "返回回填任务的游标、计数和吞吐（行/秒）")
+    public CommonResponse<Map<String, Object>> embedDestinationsStatus() {
+        return CommonResponse.success(destinationBackfillJob.status());
+    }
+
+    /**
+     * 检查向量存储与当前 Embedding 模型是否兼容
+     */
+    @GetMapping("/embedding-status")
+    @Operation(summary = "检查向量维度", description = "比较当前 Embedding 模型与向量存储中的向量维度")
+    public CommonResponse<Map<String, Object>> embeddingStatus() {
+        try {
+            return CommonResponse.success(embeddingMigrationService.inspect());
+        } catch (Exception e) {
+            log.error("Failed to inspect embedding status", e);
+            return CommonResponse.error(500, "Inspect failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 切换 Embedding 模型后重建全部向量
+     */
+    @PostMapping("/reembed")
+    @Operation(summary = "重建全部向量", description = "使用当前 Embedding 模型重新向量化知识库和目的地（切换 agent.embedding.mode 后使用）")
+    public CommonResponse<Map<String, Object>> reembed(
+            @RequestParam(defaultValue = "false") boolean clearStore
+    ) {
+        log.info("🚀 Starting embedding migration, clearStore={}", clearStore);
         
         try {
-            destinationEmbeddingService.embedAllDestinations();
-            return CommonResponse.success("Successfully embedded all destinations");
+            return CommonResponse.success(embeddingMigrationService.reembedAll(clearStore));
         } catch (Exception e) {
-            log.error("Failed to embed destinations", e);
+            log.error("Embedding migration failed", e);
             return CommonResponse.error(500, "Migration failed: " + e.getMessage());
         }
     }
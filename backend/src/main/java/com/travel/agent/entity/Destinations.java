@@ -59,4 +59,7 @@ public class Destinations implements Serializable {
 
     @Schema(description = "Created timestamp")
     private LocalDateTime createdAt;
+
+    @Schema(description = "Hash of the text last embedded into the vector store")
+    private String embeddingHash;
 }
@@ -0,0 +1,53 @@
+package com.travel.agent.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 地理编码持久缓存表
+ * 按规范化地址 + 服务商存储坐标，Redis 过期后从这里回填，避免重复调用外部 API
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@TableName("geocode_cache")
+@Schema(name = "GeocodeCacheEntry", description = "地理编码持久缓存")
+public class GeocodeCacheEntry implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @TableId(value = "id", type = IdType.AUTO)
+    @Schema(description = "主键 ID")
+    private Long id;
+
+    @Schema(description = "规范化地址")
+    private String addressKey;
+
+    @Schema(description = "服务商 (mapbox / geoapify)")
+    private String provider;
+
+    @Schema(description = "纬度")
+    private BigDecimal latitude;
+
+    @Schema(description = "经度")
+    private BigDecimal longitude;
+
+    @Schema(description = "服务商给出的置信度 (0-1)")
+    private BigDecimal confidence;
+
+    @Schema(description = "请求外部服务的时间")
+    private LocalDateTime fetchedAt;
+}
@@ -73,4 +73,10 @@ public class ItineraryItems implements Serializable {
 
     @Schema(description = "Original activity flag")
     private Boolean originalFlag;
+
+    @Schema(description = "Opening hours (HH:MM-HH:MM), used as a scheduling time window")
+    private String openingHours;
+
+    @Schema(description = "Start time set by the user, kept fixed when the day is re-optimized")
+    private Boolean startTimeFixed;
 }
@@ -0,0 +1,26 @@
+package com.travel.agent.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.travel.agent.entity.GeocodeCacheEntry;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 地理编码持久缓存 Mapper 接口
+ */
+@Mapper
+public interface GeocodeCacheMapper extends BaseMapper<GeocodeCacheEntry> {
+
+    /**
+     * 按规范化地址批量查询（所有服务商的结果）
+     */
+    List<GeocodeCacheEntry> selectByAddressKeys(@Param("addressKeys") Collection<String> addressKeys);
+
+    /**
+     * 批量 upsert（同一地址 + 服务商覆盖为最新结果）
+     */
+    int upsertBatch(@Param("entries") List<GeocodeCacheEntry> entries);
+}
@@ -2,6 +2,9 @@ package com.travel.agent.mapper;
 
 import com.travel.agent.entity.ItineraryDays;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
 
 /**
  * <p>
@@ -13,4 +16,9 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
  */
 public interface ItineraryDaysMapper extends BaseMapper<ItineraryDays> {
 
+    /**
+     * 多行 INSERT ... RETURNING，一次往返写入整个行程的所有天并取回 id
+     * （返回行的顺序不保证与入参一致，调用方按 day_number 对应）
+     */
+    List<ItineraryDays> insertBatchReturning(@Param("days") List<ItineraryDays> days);
 }
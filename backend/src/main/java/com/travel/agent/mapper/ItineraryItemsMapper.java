@@ -13,4 +13,9 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
  */
 public interface ItineraryItemsMapper extends BaseMapper<ItineraryItems> {
 
+    /**
+     * 单行插入，不取回生成的 id，供 JDBC 批量执行
+     * （驱动开启 reWriteBatchedInserts 后会把整批改写为多行 INSERT）
+     */
+    int insertForBatch(ItineraryItems item);
 }
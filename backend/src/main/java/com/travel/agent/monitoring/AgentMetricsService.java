@@ -285,6 +285,71 @@ public class AgentMetricsService {
         ragSimilarityScore.record(maxSimilarityScore);
     }
     
+    /**
+     * 记录 RAG 上下文打包：候选与打包后的估算 token 数、去重丢弃的条目数
+     */
+    public void recordContextPacking(int candidateTokens, int packedTokens, int droppedDuplicates) {
+        DistributionSummary.builder("rag.context.tokens")
+            .tag("stage", "candidates")
+            .description("Estimated prompt tokens of RAG context")
+            .register(registry)
+            .record(candidateTokens);
+        DistributionSummary.builder("rag.context.tokens")
+            .tag("stage", "packed")
+            .description("Estimated prompt tokens of RAG context")
+            .register(registry)
+            .record(packedTokens);
+        Counter.builder("rag.context.tokens.saved")
+            .description("Estimated prompt tokens removed by context packing")
+            .register(registry)
+            .increment(Math.max(0, candidateTokens - packedTokens));
+        Counter.builder("rag.context.duplicates.dropped")
+            .description("Near-duplicate RAG items dropped by context packing")
+            .register(registry)
+            .increment(droppedDuplicates);
+    }
+    
+    // ==================== 外部 API 限流指标记录 ====================
+    
+    /**
+     * 外部 API 许可等待时间（按 API、是否在截止时间内拿到许可）
+     */
+    public void recordRateLimitWait(String api, Duration wait, boolean acquired) {
+        Timer.builder("ratelimit.permit.wait")
+            .description("Time spent waiting for an external API permit")
+            .tag("api", api)
+            .tag("result", acquired ? "acquired" : "timeout")
+            .publishPercentiles(0.5, 0.95, 0.99)
+            .register(registry)
+            .record(wait);
+        
+        if (!acquired) {
+            log.debug("📊 Rate limit timeout recorded: api={}, waited={}ms", api, wait.toMillis());
+        }
+    }
+
+    // ==================== 行程持久化指标记录 ====================
+
+    /**
+     * 单个行程的保存耗时（按调用来源），以及写入的天数 / 活动数
+     */
+    public void recordItinerarySave(String source, int days, int items, Duration duration) {
+        Timer.builder("itinerary.save.duration")
+            .description("Time to persist one generated itinerary")
+            .tag("source", source)
+            .publishPercentiles(0.5, 0.95, 0.99)
+            .register(registry)
+            .record(duration);
+        DistributionSummary.builder("itinerary.save.rows")
+            .description("Rows written per saved itinerary")
+            .tag("source", source)
+            .register(registry)
+            .record(days + items);
+
+        log.debug("📊 Itinerary save recorded: source={}, days={}, items={}, {}ms",
+            source, days, items, duration.toMillis());
+    }
+
     // ==================== 知识库指标记录 ====================
     
     public void updateKnowledgeBaseStats(int documents, int segments) {
@@ -0,0 +1,82 @@
+package com.travel.agent.monitoring;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 外部 HTTP 调用指标（按集成 + 主机）
+ * DNS 解析、建立连接、首字节时间（TTFB）、总耗时，以及按主机并发上限排队的情况
+ */
+@Slf4j
+@Component
+public class HttpClientMetrics {
+
+    private final MeterRegistry registry;
+
+    public HttpClientMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public void recordDns(String integration, String host, long nanos) {
+        timer("http.client.dns", "DNS lookup time", integration, host).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordConnect(String integration, String host, long nanos, boolean success) {
+        Timer.builder("http.client.connect")
+                .description("TCP + TLS connect time")
+                .tag("integration", integration)
+                .tag("host", host)
+                .tag("result", success ? "success" : "failure")
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 调用开始到响应头开始返回（含排队、连接、发送请求、服务端处理）
+     */
+    public void recordTimeToFirstByte(String integration, String host, long nanos) {
+        timer("http.client.ttfb", "Time to first response byte", integration, host)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordCall(String integration, String host, long nanos, String outcome) {
+        Timer.builder("http.client.duration")
+                .description("Total outbound call time")
+                .tag("integration", integration)
+                .tag("host", host)
+                .tag("outcome", outcome)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        log.debug("📊 Metric: http.client.duration[{}, {}, {}] {}ms",
+                integration, host, outcome, TimeUnit.NANOSECONDS.toMillis(nanos));
+    }
+
+    /**
+     * 按主机并发上限等待许可的时间；rejected 表示在调用时限内没有等到
+     */
+    public void recordHostQueue(String host, long nanos, boolean rejected) {
+        timer("http.client.host.queue", "Time waiting for a per-host concurrency slot", null, host)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        if (rejected) {
+            Counter.builder("http.client.host.rejected")
+                    .description("Calls rejected by the per-host concurrency cap")
+                    .tag("host", host)
+                    .register(registry)
+                    .increment();
+        }
+    }
+
+    private Timer timer(String name, String description, String integration, String host) {
+        Timer.Builder builder = Timer.builder(name).description(description).tag("host", host);
+        if (integration != null) {
+            builder.tag("integration", integration);
+        }
+        return builder.register(registry);
+    }
+}
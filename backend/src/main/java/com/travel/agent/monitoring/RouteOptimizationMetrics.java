@@ -1,6 +1,7 @@
 package com.travel.agent.monitoring;
 
 import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
@@ -20,11 +21,25 @@ public class RouteOptimizationMetrics {
     private final Counter geocodingCalls;
     private final Counter matrixApiCalls;
     private final Counter haversineFallbacks;
-    private final Timer tspSolverTimer;
+    private final Counter matrixCellHits;
+    private final Counter matrixCellMisses;
+    private final Counter geocodingCacheHits;
+    private final Counter geocodingCacheMisses;
+    private final Counter geocodingLocalHits;
+    private final Counter geocodingRedisHits;
+    private final Counter geocodingStoreHits;
+    private final Counter geocodingAvoidedByCanonical;
+    private final Counter geocodingAvoidedByGazetteer;
+    private final Counter geocodingAvoidedByCache;
+    private final Counter geocodingAvoidedByFuzzy;
+    private final MeterRegistry registry;
     private final Timer geocodingTimer;
     private final Timer matrixApiTimer;
     
     public RouteOptimizationMetrics(MeterRegistry registry) {
+        // TSP 求解器耗时按求解层级（exact / heuristic / ortools）动态注册
+        this.registry = registry;
+        
         // 路线优化尝试次数
         this.optimizationAttempts = Counter.builder("route.optimization.attempts")
                 .description("Total number of route optimization attempts")
@@ -61,12 +76,43 @@ public class RouteOptimizationMetrics {
                 .tag("component", "route_optimizer")
                 .register(registry);
         
-        // TSP 求解器耗时
-        this.tspSolverTimer = Timer.builder("route.tsp_solver.duration")
-                .description("Time taken to solve TSP")
+        // 行驶时间矩阵单元格缓存命中/未命中（跨行程复用）
+        this.matrixCellHits = Counter.builder("route.matrix.cells")
+                .description("Duration matrix cells by cache result")
+                .tag("component", "route_optimizer")
+                .tag("result", "hit")
+                .register(registry);
+        
+        this.matrixCellMisses = Counter.builder("route.matrix.cells")
+                .description("Duration matrix cells by cache result")
+                .tag("component", "route_optimizer")
+                .tag("result", "miss")
+                .register(registry);
+        
+        // 地理编码缓存命中/未命中（按地址计数）
+        this.geocodingCacheHits = Counter.builder("route.geocoding.cache")
+                .description("Geocoding cache lookups per address")
+                .tag("component", "route_optimizer")
+                .tag("result", "hit")
+                .register(registry);
+        
+        this.geocodingCacheMisses = Counter.builder("route.geocoding.cache")
+                .description("Geocoding cache lookups per address")
                 .tag("component", "route_optimizer")
+                .tag("result", "miss")
                 .register(registry);
         
+        // 地理编码缓存各层命中数（local / redis / postgres）
+        this.geocodingLocalHits = tierCounter(registry, "local");
+        this.geocodingRedisHits = tierCounter(registry, "redis");
+        this.geocodingStoreHits = tierCounter(registry, "postgres");
+        
+        // 省下的地理编码 API 调用（规范化去重 / 离线地名库 / 缓存命中 / 近似键命中）
+        this.geocodingAvoidedByCanonical = avoidedCounter(registry, "canonical");
+        this.geocodingAvoidedByGazetteer = avoidedCounter(registry, "gazetteer");
+        this.geocodingAvoidedByCache = avoidedCounter(registry, "cache");
+        this.geocodingAvoidedByFuzzy = avoidedCounter(registry, "fuzzy");
+        
         // 地理编码耗时
         this.geocodingTimer = Timer.builder("route.geocoding.duration")
                 .description("Time taken for geocoding")
@@ -80,6 +126,22 @@ public class RouteOptimizationMetrics {
                 .register(registry);
     }
     
+    private static Counter tierCounter(MeterRegistry registry, String tier) {
+        return Counter.builder("route.geocoding.cache.tier")
+                .description("Geocoding cache hits per tier")
+                .tag("component", "route_optimizer")
+                .tag("tier", tier)
+                .register(registry);
+    }
+    
+    private static Counter avoidedCounter(MeterRegistry registry, String reason) {
+        return Counter.builder("route.geocoding.calls.avoided")
+                .description("Geocoding API calls avoided")
+                .tag("component", "route_optimizer")
+                .tag("reason", reason)
+                .register(registry);
+    }
+    
     // ========== 计数器方法 ==========
     
     public void recordOptimizationAttempt() {
@@ -102,24 +164,117 @@ public class RouteOptimizationMetrics {
         log.debug("📊 Metric: route.geocoding.calls++");
     }
     
+    public void recordGeocodingBatch(int cacheHits, int cacheMisses) {
+        geocodingCacheHits.increment(cacheHits);
+        geocodingCacheMisses.increment(cacheMisses);
+        log.debug("📊 Metric: route.geocoding.cache hit+={}, miss+={}", cacheHits, cacheMisses);
+    }
+    
+    public void recordGeocodingTierHits(int local, int redis, int store) {
+        geocodingLocalHits.increment(local);
+        geocodingRedisHits.increment(redis);
+        geocodingStoreHits.increment(store);
+        log.debug("📊 Metric: route.geocoding.cache.tier local+={}, redis+={}, postgres+={}", local, redis, store);
+    }
+    
+    public void recordGeocodingCallsAvoided(int canonical, int gazetteer, int cache, int fuzzy) {
+        geocodingAvoidedByCanonical.increment(canonical);
+        geocodingAvoidedByGazetteer.increment(gazetteer);
+        geocodingAvoidedByCache.increment(cache);
+        geocodingAvoidedByFuzzy.increment(fuzzy);
+        log.debug("📊 Metric: route.geocoding.calls.avoided canonical+={}, gazetteer+={}, cache+={}, fuzzy+={}",
+                canonical, gazetteer, cache, fuzzy);
+    }
+    
     public void recordMatrixApiCall() {
         matrixApiCalls.increment();
         log.debug("📊 Metric: route.matrix_api.calls++");
     }
     
+    public void recordMatrixCells(int hits, int misses) {
+        matrixCellHits.increment(hits);
+        matrixCellMisses.increment(misses);
+        log.debug("📊 Metric: route.matrix.cells hit+={}, miss+={}", hits, misses);
+    }
+    
     public void recordHaversineFallback() {
         haversineFallbacks.increment();
         log.debug("📊 Metric: route.haversine.fallbacks++");
     }
     
+    /**
+     * 单日排程结果：TSP 顺序直接可行 / 为满足时间窗调整了顺序 / 仍有活动超出时间窗
+     */
+    public void recordSchedule(boolean feasible, boolean reordered) {
+        String result = !feasible ? "infeasible" : reordered ? "reordered" : "feasible";
+        Counter.builder("route.schedule.days")
+                .description("Daily schedules by time window outcome")
+                .tag("component", "route_optimizer")
+                .tag("result", result)
+                .register(registry)
+                .increment();
+        log.debug("📊 Metric: route.schedule.days[{}]++", result);
+    }
+    
+    /**
+     * TSP 解缓存命中/未命中
+     */
+    public void recordTspCache(boolean hit) {
+        Counter.builder("route.tsp_solver.cache")
+                .description("TSP solution cache lookups")
+                .tag("component", "route_optimizer")
+                .tag("result", hit ? "hit" : "miss")
+                .register(registry)
+                .increment();
+    }
+    
+    /**
+     * 多日重新分组：换天的活动数与各天路线总行驶时间的节省（秒）
+     */
+    public void recordTripClustering(int movedActivities, long savedSeconds) {
+        Counter.builder("route.trip_clustering.moved")
+                .description("Activities moved to another day by trip clustering")
+                .tag("component", "route_optimizer")
+                .register(registry)
+                .increment(movedActivities);
+        DistributionSummary.builder("route.trip_clustering.savings")
+                .description("Driving time saved per trip by regrouping days")
+                .baseUnit("seconds")
+                .tag("component", "route_optimizer")
+                .register(registry)
+                .record(savedSeconds);
+    }
+    
+    /**
+     * 附近地点查询涉及的 geohash 单元：本地索引 / Redis 快照 / 请求 Geoapify
+     */
+    public void recordNearbyCells(int local, int redis, int fetched) {
+        nearbyCellCounter("local").increment(local);
+        nearbyCellCounter("redis").increment(redis);
+        nearbyCellCounter("geoapify").increment(fetched);
+        log.debug("📊 Metric: places.nearby.cells local+={}, redis+={}, geoapify+={}", local, redis, fetched);
+    }
+    
+    private Counter nearbyCellCounter(String source) {
+        return Counter.builder("places.nearby.cells")
+                .description("Nearby search geohash cells by source")
+                .tag("component", "nearby_search")
+                .tag("source", source)
+                .register(registry);
+    }
+    
     // ========== 计时器方法 ==========
     
     public Timer.Sample startTspSolver() {
         return Timer.start();
     }
     
-    public void stopTspSolver(Timer.Sample sample) {
-        sample.stop(tspSolverTimer);
+    public void stopTspSolver(Timer.Sample sample, String tier) {
+        sample.stop(Timer.builder("route.tsp_solver.duration")
+                .description("Time taken to solve TSP")
+                .tag("component", "route_optimizer")
+                .tag("tier", tier)
+                .register(registry));
     }
     
     public Timer.Sample startGeocoding() {
@@ -48,12 +48,12 @@ public interface GeoapifyService {
     List<GeoPlace> searchNearbyPlaces(Double latitude, Double longitude, Double radiusKm, int limit, List<String> categories);
 
     /**
-     * 获取地点的图片URL（内部会优先尝试详情来源，不可用时降级为静态/占位图）
+     * 获取地点的图片URL（内部会优先尝试详情来源，详情中没有图片时降级为静态/占位图）
      * @param placeId Geoapify place_id
      * @param placeName 地点名称
      * @param latitude 纬度
      * @param longitude 经度
-     * @return 图片URL
+     * @return 图片URL；被限流或请求失败时返回 null（结果不缓存）
      */
     String getPlaceImageUrl(String placeId, String placeName, Double latitude, Double longitude);
 }
@@ -30,4 +30,12 @@ public interface KnowledgeBaseService {
      * 搜索相关旅游信息（景点、美食、住宿等）
      */
     List<EmbeddingMatch<TextSegment>> searchTravelInfo(String query, int maxResults);
+    
+    /**
+     * 检索结果的最低相关度分数
+     * 纯向量检索为余弦相关度；混合检索为 RRF 归一化分数，两者尺度不同，由实现决定
+     */
+    default double minRelevanceScore() {
+        return 0.7;
+    }
 }
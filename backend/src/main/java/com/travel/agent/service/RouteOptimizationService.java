@@ -1,5 +1,7 @@
 package com.travel.agent.service;
 
+import com.travel.agent.service.routing.TripAssignment;
+
 import java.math.BigDecimal;
 import java.util.List;
 import java.util.Map;
@@ -24,6 +26,27 @@ public interface RouteOptimizationService {
         String destinationContext
     );
 
+    /**
+     * 编辑（增加 / 移动 / 删除活动）后重新优化单日路线：以当前顺序作为初始解（warm start），毫秒级完成
+     */
+    List<Map<String, Object>> reoptimizeDayRoute(
+        List<Map<String, Object>> activities,
+        Map<String, Map<String, BigDecimal>> geoCoordinates,
+        String destinationContext
+    );
+
+    /**
+     * 多日行程按地理位置重新分组（地理编码之后、单日优化之前调用）
+     *
+     * @param days 按天排列的活动列表
+     * @return 重新分组后的各天活动与行驶时间节省；不值得调整时原样返回
+     */
+    TripAssignment assignActivitiesToDays(
+        List<List<Map<String, Object>>> days,
+        Map<String, Map<String, BigDecimal>> geoCoordinates,
+        String destinationContext
+    );
+
     /**
      * 获取驾驶时间/距离矩阵
      *
@@ -0,0 +1,83 @@
+package com.travel.agent.service.geocoding;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * 地址规范化（地理编码缓存键）
+ *
+ * 同一地点经由不同路径到达时写法各异：路线优化节点拼接 "地点, 城市, 国家"，
+ * 行程生成直接使用 LLM 输出的地点名，而 LLM 的大小写、标点并不稳定。
+ * 规范化步骤：
+ * 1. Unicode NFKC（全角 → 半角），去掉拉丁字母的附加符号（é → e）
+ * 2. 统一小写；按逗号（含中文逗号、顿号、分号）切分为地址分量
+ * 3. 分量内去掉撇号，其余标点/符号视为空白，合并连续空白；去掉开头的冠词 "the"
+ * 4. 去掉重复分量（如 "Eiffel Tower, Paris, Paris, France" 中重复的城市）
+ */
+public final class AddressCanonicalizer {
+
+    private static final Pattern COMPONENT_SEPARATORS = Pattern.compile("[,，、;；]");
+    private static final Pattern COMBINING_MARKS = Pattern.compile("[\\u0300-\\u036f]");
+    private static final Pattern APOSTROPHES = Pattern.compile("['’‘`´]");
+    private static final Pattern PUNCTUATION = Pattern.compile("[\\p{P}\\p{S}]");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern LEADING_ARTICLE = Pattern.compile("^the ");
+
+    public static final String COMPONENT_DELIMITER = ", ";
+
+    private AddressCanonicalizer() {
+    }
+
+    /**
+     * 缓存键：规范化后的分量以 ", " 连接
+     */
+    public static String canonicalize(String address) {
+        return String.join(COMPONENT_DELIMITER, canonicalComponents(address));
+    }
+
+    /**
+     * 发给外部服务的查询：只去掉重复分量，保留原始大小写与写法
+     */
+    public static String cleanQuery(String address) {
+        if (address == null) {
+            return "";
+        }
+        Set<String> seen = new HashSet<>();
+        List<String> kept = new ArrayList<>();
+        for (String component : COMPONENT_SEPARATORS.split(address)) {
+            String trimmed = component.trim();
+            String normalized = normalizeComponent(trimmed);
+            if (!normalized.isEmpty() && seen.add(normalized)) {
+                kept.add(trimmed);
+            }
+        }
+        return String.join(COMPONENT_DELIMITER, kept);
+    }
+
+    static List<String> canonicalComponents(String address) {
+        if (address == null) {
+            return List.of();
+        }
+        // LinkedHashSet：保留首次出现的位置，去掉后续重复
+        Set<String> components = new LinkedHashSet<>();
+        for (String component : COMPONENT_SEPARATORS.split(address)) {
+            String normalized = normalizeComponent(component);
+            if (!normalized.isEmpty()) {
+                components.add(normalized);
+            }
+        }
+        return new ArrayList<>(components);
+    }
+
+    static String normalizeComponent(String component) {
+        String text = Normalizer.normalize(component, Normalizer.Form.NFKC);
+        text = Normalizer.normalize(text, Normalizer.Form.NFD);
+        text = COMBINING_MARKS.matcher(text).replaceAll("");
+        text = Normalizer.normalize(text, Normalizer.Form.NFC).toLowerCase(Locale.ROOT);
+        text = APOSTROPHES.matcher(text).replaceAll("");
+        text = PUNCTUATION.matcher(text).replaceAll(" ");
+        text = WHITESPACE.matcher(text).replaceAll(" ").trim();
+        return LEADING_ARTICLE.matcher(text).replaceFirst("");
+    }
+}
@@ -0,0 +1,244 @@
+package com.travel.agent.service.geocoding;
+
+import com.travel.agent.monitoring.RouteOptimizationMetrics;
+import com.travel.agent.service.ratelimit.ClusterRateLimiter;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * 批量地理编码引擎
+ *
+ * 1. 规范化 + 去重：同一地点的不同写法只查一次（见 {@link AddressCanonicalizer}）
+ * 2. 离线地名库：知名地标直接本地解析，无需网络（见 {@link OfflineGazetteer}）
+ * 3. 缓存：本地 → Redis → PostgreSQL 三级批量查询（见 {@link GeocodeCache}）
+ * 4. 精确键未命中时先查近似键索引（{@link GeocodeFuzzyIndex}），
+ *    仍未命中或超过刷新周期的项提交到有界的 geocodingExecutor，经集群限流（{@link ClusterRateLimiter}）排队后请求主服务，
+ *    单个地址失败时再尝试备用服务（Mapbox 主 → Geoapify 备）；刷新失败时继续使用旧结果
+ * 5. 所有新结果批量写回各级缓存
+ *
+ * 单地址查询也走这里，保证单个/批量两条路径使用同一份缓存。
+ */
+@Slf4j
+@Component
+public class BatchGeocodingEngine {
+
+    private static final String FALLBACK_PROVIDER = "geoapify";
+
+    private final GeocodeCache geocodeCache;
+    private final GeocodeFuzzyIndex fuzzyIndex;
+    private final OfflineGazetteer gazetteer;
+    // 按名称延迟查找备用服务（各服务实现本身依赖本引擎，构造时注入会形成循环）
+    private final ObjectProvider<GeocodeProvider> providers;
+    private final Executor geocodingExecutor;
+    private final RouteOptimizationMetrics metrics;
+    // 各服务按账号额度集群限流（agent.rate-limit.apis）
+    private final ClusterRateLimiter rateLimiter;
+
+    @Value("${agent.geocoding.fallback-enabled:true}")
+    private boolean fallbackEnabled;
+
+    public BatchGeocodingEngine(GeocodeCache geocodeCache,
+                                GeocodeFuzzyIndex fuzzyIndex,
+                                OfflineGazetteer gazetteer,
+                                ObjectProvider<GeocodeProvider> providers,
+                                Executor geocodingExecutor,
+                                RouteOptimizationMetrics metrics,
+                                ClusterRateLimiter rateLimiter) {
+        this.geocodeCache = geocodeCache;
+        this.fuzzyIndex = fuzzyIndex;
+        this.gazetteer = gazetteer;
+        this.providers = providers;
+        this.geocodingExecutor = geocodingExecutor;
+        this.metrics = metrics;
+        this.rateLimiter = rateLimiter;
+    }
+
+    @PostConstruct
+    public void init() {
+        log.info("✅ Batch geocoding engine ready: fallback={}", fallbackEnabled);
+    }
+
+    /**
+     * 一批地址的地理编码结果
+     *
+     * @param coordinates 原始地址 → 坐标（只包含成功的地址）
+     * @param gazetteerHits 由离线地名库直接给出的项（不查缓存）
+     * @param cacheMisses 包含超过刷新周期而重新请求的项
+     * @param fuzzyHits   精确键未命中、由近似键复用坐标的项
+     * @param staleServed 刷新失败、继续使用旧结果的项
+     */
+    public record BatchResult(Map<String, GeocodePoint> coordinates, int requested, int unique,
+                              int gazetteerHits, int cacheHits, int cacheMisses, int fuzzyHits, int resolvedByPrimary,
+                              int resolvedByFallback, int staleServed, int failed) {
+    }
+
+    public BatchResult geocode(Collection<String> addresses, GeocodeProvider primary) {
+        Timer.Sample sample = metrics.startGeocoding();
+
+        // 1. 规范化 + 去重
+        Map<String, String> keyByAddress = new LinkedHashMap<>();
+        Map<String, String> queryByKey = new HashMap<>();
+        Set<String> rawDistinct = new HashSet<>();
+        for (String address : addresses) {
+            if (address == null || address.isBlank()) {
+                continue;
+            }
+            String key = AddressCanonicalizer.canonicalize(address);
+            if (key.isEmpty()) {
+                continue;
+            }
+            rawDistinct.add(address.trim());
+            keyByAddress.put(address, key);
+            // 请求外部服务时只去掉重复分量，保留原始大小写
+            queryByKey.putIfAbsent(key, AddressCanonicalizer.cleanQuery(address));
+        }
+        Set<String> uniqueKeys = new LinkedHashSet<>(keyByAddress.values());
+
+        // 2. 离线地名库（无需网络，置信度达标才采用）
+        Map<String, GeocodePoint> resolved = new HashMap<>();
+        List<String> lookupKeys = new ArrayList<>(uniqueKeys.size());
+        for (String key : uniqueKeys) {
+            Optional<GeocodePoint> local = gazetteer.lookup(key);
+            if (local.isPresent()) {
+                resolved.put(key, local.get());
+            } else {
+                lookupKeys.add(key);
+            }
+        }
+        int gazetteerHits = resolved.size();
+
+        // 3. 批量查缓存
+        Map<String, GeocodePoint> cached = geocodeCache.getAll(lookupKeys);
+        cached.forEach((key, point) -> {
+            if (!geocodeCache.isStale(point)) {
+                resolved.put(key, point);
+            }
+        });
+        int hits = resolved.size() - gazetteerHits;
+        List<String> misses = lookupKeys.stream().filter(key -> !resolved.containsKey(key)).toList();
+
+        // 4. 精确键未命中时查近似键（超过刷新周期的项仍按原键刷新）
+        List<String> toFetch = new ArrayList<>(misses.size());
+        int fuzzyHits = 0;
+        for (String key : misses) {
+            Optional<GeocodePoint> near = cached.containsKey(key) ? Optional.empty() : fuzzyIndex.find(key);
+            if (near.isPresent()) {
+                resolved.put(key, near.get());
+                fuzzyHits++;
+            } else {
+                toFetch.add(key);
+            }
+        }
+
+        // 5. 剩余项并发请求外部服务
+        GeocodeProvider fallback = fallbackFor(primary);
+        Map<String, GeocodePoint> fetched = new ConcurrentHashMap<>();
+        List<CompletableFuture<Void>> futures = new ArrayList<>(toFetch.size());
+        for (String key : toFetch) {
+            futures.add(CompletableFuture.runAsync(() -> {
+                GeocodePoint point = resolve(queryByKey.get(key), primary, fallback);
+                if (point != null) {
+                    fetched.put(key, point);
+                }
+            }, geocodingExecutor));
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+
+        // 6. 写回缓存（近似匹配的结果不落库，避免误匹配被长期保存）
+        geocodeCache.putAll(fetched);
+        resolved.putAll(fetched);
+
+        // 刷新失败时继续使用旧结果
+        int staleServed = 0;
+        for (String key : toFetch) {
+            if (!fetched.containsKey(key) && cached.containsKey(key)) {
+                resolved.put(key, cached.get(key));
+                staleServed++;
+            }
+        }
+
+        Map<String, GeocodePoint> exact = new HashMap<>(fetched);
+        cached.forEach((key, point) -> {
+            if (!geocodeCache.isStale(point)) {
+                exact.put(key, point);
+            }
+        });
+        fuzzyIndex.putAll(exact);
+
+        Map<String, GeocodePoint> coordinates = new LinkedHashMap<>();
+        keyByAddress.forEach((address, key) -> {
+            GeocodePoint point = resolved.get(key);
+            if (point != null) {
+                coordinates.put(address, point);
+            }
+        });
+
+        int byFallback = (int) fetched.values().stream()
+                .filter(point -> !primary.name().equals(point.provider())).count();
+        int canonicalSaved = rawDistinct.size() - uniqueKeys.size();
+        BatchResult result = new BatchResult(coordinates, addresses.size(), uniqueKeys.size(), gazetteerHits,
+                hits, misses.size(),
+                fuzzyHits, fetched.size() - byFallback, byFallback, staleServed,
+                toFetch.size() - fetched.size() - staleServed);
+        metrics.recordGeocodingBatch(hits, misses.size());
+        metrics.recordGeocodingCallsAvoided(canonicalSaved, gazetteerHits, hits, fuzzyHits);
+        metrics.stopGeocoding(sample);
+
+        log.info("🗺️ Geocoded batch: {} requested, {} unique ({} merged by canonicalization), {} gazetteer, "
+                        + "{} cache hits, {} misses ({} fuzzy, {} {}, {} fallback, {} stale, {} failed)",
+                result.requested(), result.unique(), canonicalSaved, result.gazetteerHits(), result.cacheHits(),
+                result.cacheMisses(),
+                result.fuzzyHits(), result.resolvedByPrimary(), primary.name(), result.resolvedByFallback(),
+                result.staleServed(), result.failed());
+        return result;
+    }
+
+    private GeocodeProvider fallbackFor(GeocodeProvider primary) {
+        if (!fallbackEnabled || FALLBACK_PROVIDER.equals(primary.name())) {
+            return null;
+        }
+        return providers.orderedStream()
+                .filter(provider -> FALLBACK_PROVIDER.equals(provider.name()))
+                .findFirst()
+                .orElse(null);
+    }
+
+    /**
+     * 单个地址：主服务 → 备用服务
+     */
+    private GeocodePoint resolve(String address, GeocodeProvider primary, GeocodeProvider fallback) {
+        try {
+            GeocodePoint point = GeocodePoint.from(call(primary, () -> primary.fetch(address)), primary.name());
+            if (point == null && fallback != null) {
+                log.debug("⚠️ {} geocoding failed for: {}, trying {}", primary.name(), address, fallback.name());
+                point = GeocodePoint.from(call(fallback, () -> fallback.fetch(address)), fallback.name());
+            }
+            return point;
+        } catch (Exception e) {
+            log.warn("Failed to geocode address: {}: {}", address, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 排队等待许可后请求；截止时间内拿不到许可按失败处理（尝试备用服务或返回旧结果）
+     */
+    private Map<String, BigDecimal> call(GeocodeProvider provider, Supplier<Map<String, BigDecimal>> request) {
+        if (!rateLimiter.acquire(provider.rateLimitKey())) {
+            return null;
+        }
+        metrics.recordGeocodingCall();
+        return request.get();
+    }
+}
@@ -0,0 +1,189 @@
+package com.travel.agent.service.geocoding;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * 离线地名库构建器：TSV 摘录 → 紧凑二进制文件（供 {@link OfflineGazetteer} 内存映射）
+ *
+ * 支持两种输入行格式（制表符分隔，# 开头为注释）：
+ * - 简化格式（OSM 摘录转换后使用）：name, alternate_names(逗号分隔), latitude, longitude, city, country_code, population
+ * - GeoNames 原始导出（allCountries / cities15000 等，19 列）：取 name、alternatenames、经纬度、国家代码、人口，
+ *   人口聚居地（feature class = P）的 city 即其自身名称
+ *
+ * 文件布局（大端）：
+ * <pre>
+ * header : magic(int) placeCount(int) nameCount(int) nameIndexOffset(int)
+ * places : [lat(float) lon(float) population(int) country(str) city(str) display(str)] ...
+ * names  : [placeOffset(int) name(str)] ...         按规范化名称排序
+ * index  : [nameEntryOffset(int)] * nameCount       二分查找用
+ * str    : length(unsigned short) + UTF-8 bytes
+ * </pre>
+ *
+ * 命令行用法：java ... GazetteerBuilder &lt;source.tsv&gt; &lt;gazetteer.bin&gt;
+ */
+@Slf4j
+public final class GazetteerBuilder {
+
+    static final int MAGIC = 0x475A5431; // "GZT1"
+    static final int HEADER_SIZE = 16;
+
+    // GeoNames 的 alternatenames 可能有上百个，只保留前几个不同写法
+    private static final int MAX_ALTERNATES = 8;
+    private static final int MAX_STRING_BYTES = 255;
+
+    private GazetteerBuilder() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: GazetteerBuilder <source.tsv> <gazetteer.bin>");
+            System.exit(1);
+        }
+        int places = build(Path.of(args[0]), Path.of(args[1]));
+        System.out.println("Gazetteer built: " + places + " places → " + args[1]);
+    }
+
+    /**
+     * @return 写入的地点数
+     */
+    public static int build(Path source, Path target) throws IOException {
+        List<Place> places = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(source, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank() || line.startsWith("#")) {
+                    continue;
+                }
+                Place place = parse(line.split("\t", -1));
+                if (place != null) {
+                    places.add(place);
+                }
+            }
+        }
+
+        ByteArrayOutputStream placeBytes = new ByteArrayOutputStream();
+        DataOutputStream placeOut = new DataOutputStream(placeBytes);
+        List<NameEntry> names = new ArrayList<>();
+        for (Place place : places) {
+            int offset = HEADER_SIZE + placeOut.size();
+            placeOut.writeFloat(place.latitude());
+            placeOut.writeFloat(place.longitude());
+            placeOut.writeInt(place.population());
+            writeString(placeOut, place.country());
+            writeString(placeOut, place.city());
+            writeString(placeOut, place.display());
+            for (String name : place.names()) {
+                names.add(new NameEntry(name, offset));
+            }
+        }
+        names.sort(Comparator.comparing(NameEntry::name).thenComparingInt(NameEntry::placeOffset));
+
+        ByteArrayOutputStream nameBytes = new ByteArrayOutputStream();
+        DataOutputStream nameOut = new DataOutputStream(nameBytes);
+        int namesStart = HEADER_SIZE + placeOut.size();
+        int[] entryOffsets = new int[names.size()];
+        for (int i = 0; i < names.size(); i++) {
+            entryOffsets[i] = namesStart + nameOut.size();
+            nameOut.writeInt(names.get(i).placeOffset());
+            writeString(nameOut, names.get(i).name());
+        }
+
+        Files.createDirectories(target.toAbsolutePath().getParent());
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(tmp))) {
+            out.writeInt(MAGIC);
+            out.writeInt(places.size());
+            out.writeInt(names.size());
+            out.writeInt(namesStart + nameOut.size());
+            placeBytes.writeTo(out);
+            nameBytes.writeTo(out);
+            for (int offset : entryOffsets) {
+                out.writeInt(offset);
+            }
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log.info("🗺️ Gazetteer built: {} places, {} names → {}", places.size(), names.size(), target);
+        return places.size();
+    }
+
+    private static Place parse(String[] columns) {
+        try {
+            String name;
+            String alternates;
+            String city;
+            String country;
+            float latitude;
+            float longitude;
+            int population;
+            if (columns.length >= 15) {
+                // GeoNames: 1 name, 3 alternatenames, 4 lat, 5 lon, 6 feature class, 8 country, 14 population
+                name = columns[1];
+                alternates = columns[3];
+                latitude = Float.parseFloat(columns[4]);
+                longitude = Float.parseFloat(columns[5]);
+                city = "P".equals(columns[6]) ? name : "";
+                country = columns[8];
+                population = columns[14].isEmpty() ? 0 : (int) Math.min(Integer.MAX_VALUE, Long.parseLong(columns[14]));
+            } else if (columns.length >= 6) {
+                name = columns[0];
+                alternates = columns[1];
+                latitude = Float.parseFloat(columns[2]);
+                longitude = Float.parseFloat(columns[3]);
+                city = columns[4];
+                country = columns[5];
+                population = columns.length > 6 && !columns[6].isEmpty() ? Integer.parseInt(columns[6]) : 0;
+            } else {
+                return null;
+            }
+
+            Set<String> names = new LinkedHashSet<>();
+            addName(names, name);
+            if (!alternates.isBlank()) {
+                for (String alternate : alternates.split(",")) {
+                    if (names.size() > MAX_ALTERNATES) {
+                        break;
+                    }
+                    addName(names, alternate);
+                }
+            }
+            if (names.isEmpty()) {
+                return null;
+            }
+            return new Place(latitude, longitude, population, country.trim().toLowerCase(Locale.ROOT),
+                    AddressCanonicalizer.normalizeComponent(city), name.trim(), names);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static void addName(Set<String> names, String raw) {
+        String normalized = AddressCanonicalizer.normalizeComponent(raw);
+        if (!normalized.isEmpty() && normalized.getBytes(StandardCharsets.UTF_8).length <= MAX_STRING_BYTES) {
+            names.add(normalized);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(bytes.length, MAX_STRING_BYTES);
+        out.writeShort(length);
+        out.write(bytes, 0, length);
+    }
+
+    private record Place(float latitude, float longitude, int population, String country, String city,
+                         String display, Set<String> names) {
+    }
+
+    private record NameEntry(String name, int placeOffset) {
+    }
+}
@@ -0,0 +1,184 @@
+package com.travel.agent.service.geocoding;
+
+import com.travel.agent.monitoring.RouteOptimizationMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * 地理编码结果缓存（三级）
+ *
+ * L1 本地 LRU → L2 Redis（MGET 一次取回整批）→ L3 PostgreSQL（{@link GeocodeStore}）。
+ * 下层命中的结果回填到上层；新结果三层同时写入。
+ * Redis 值为 "lat,lon,provider,confidence,fetchedAt(epoch 秒)"，兼容旧的 "lat,lon,provider"。
+ * 返回的结果可能已超过刷新周期（见 {@link #isStale}），由调用方决定是否重新请求。
+ */
+@Slf4j
+@Component
+public class GeocodeCache {
+
+    private static final String KEY_PREFIX = "geocode:";
+
+    private final StringRedisTemplate redisTemplate;
+    private final GeocodeStore geocodeStore;
+    private final RouteOptimizationMetrics metrics;
+
+    // Redis 只是热数据层，持久数据在 geocode_cache 表
+    @Value("${agent.geocoding.cache.ttl:7d}")
+    private Duration ttl;
+
+    @Value("${agent.geocoding.local.max-entries:5000}")
+    private int localMaxEntries;
+
+    private final Map<String, GeocodePoint> local = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, GeocodePoint> eldest) {
+            return size() > localMaxEntries;
+        }
+    };
+
+    public GeocodeCache(StringRedisTemplate redisTemplate, GeocodeStore geocodeStore,
+                        RouteOptimizationMetrics metrics) {
+        this.redisTemplate = redisTemplate;
+        this.geocodeStore = geocodeStore;
+        this.metrics = metrics;
+    }
+
+    public boolean isStale(GeocodePoint point) {
+        return point.isStale(geocodeStore.getRefreshAfter());
+    }
+
+    /**
+     * 批量查询，只返回命中的键
+     */
+    public Map<String, GeocodePoint> getAll(Collection<String> keys) {
+        Map<String, GeocodePoint> hits = new HashMap<>();
+        if (keys.isEmpty()) {
+            return hits;
+        }
+
+        // L1
+        List<String> remaining = new ArrayList<>();
+        synchronized (local) {
+            for (String key : keys) {
+                GeocodePoint point = local.get(key);
+                if (point != null) {
+                    hits.put(key, point);
+                } else {
+                    remaining.add(key);
+                }
+            }
+        }
+        int localHits = hits.size();
+
+        // L2
+        Map<String, GeocodePoint> redisHits = getAllFromRedis(remaining);
+        hits.putAll(redisHits);
+        putLocal(redisHits);
+        remaining.removeIf(redisHits::containsKey);
+
+        // L3
+        Map<String, GeocodePoint> storeHits = geocodeStore.getAll(remaining);
+        hits.putAll(storeHits);
+        putRedis(storeHits);
+        putLocal(storeHits);
+
+        metrics.recordGeocodingTierHits(localHits, redisHits.size(), storeHits.size());
+        return hits;
+    }
+
+    public void putAll(Map<String, GeocodePoint> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        putLocal(entries);
+        putRedis(entries);
+        geocodeStore.putAll(entries);
+    }
+
+    private Map<String, GeocodePoint> getAllFromRedis(List<String> keys) {
+        Map<String, GeocodePoint> hits = new HashMap<>();
+        if (keys.isEmpty()) {
+            return hits;
+        }
+        try {
+            List<String> values = redisTemplate.opsForValue()
+                    .multiGet(keys.stream().map(key -> KEY_PREFIX + key).toList());
+            if (values == null) {
+                return hits;
+            }
+            for (int i = 0; i < keys.size(); i++) {
+                GeocodePoint point = decode(values.get(i));
+                if (point != null) {
+                    hits.put(keys.get(i), point);
+                }
+            }
+        } catch (Exception e) {
+            log.warn("⚠️ Geocode cache read failed, falling through to store: {}", e.getMessage());
+        }
+        return hits;
+    }
+
+    private void putRedis(Map<String, GeocodePoint> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection stringConnection = (StringRedisConnection) connection;
+                for (Map.Entry<String, GeocodePoint> entry : entries.entrySet()) {
+                    stringConnection.setEx(KEY_PREFIX + entry.getKey(), ttl.toSeconds(), encode(entry.getValue()));
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            log.warn("⚠️ Geocode cache write failed for {} entries: {}", entries.size(), e.getMessage());
+        }
+    }
+
+    private void putLocal(Map<String, GeocodePoint> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        synchronized (local) {
+            local.putAll(entries);
+        }
+    }
+
+    private static String encode(GeocodePoint point) {
+        return point.latitude().toPlainString() + "," + point.longitude().toPlainString() + ","
+                + (point.provider() != null ? point.provider() : "") + ","
+                + (point.confidence() != null ? point.confidence() : "") + ","
+                + (point.fetchedAt() != null ? point.fetchedAt().getEpochSecond() : "");
+    }
+
+    private static GeocodePoint decode(String value) {
+        if (value == null) {
+            return null;
+        }
+        String[] parts = value.split(",", -1);
+        if (parts.length < 2) {
+            return null;
+        }
+        try {
+            return new GeocodePoint(new BigDecimal(parts[0]), new BigDecimal(parts[1]),
+                    part(parts, 2),
+                    part(parts, 3) != null ? Double.valueOf(parts[3]) : null,
+                    part(parts, 4) != null ? Instant.ofEpochSecond(Long.parseLong(parts[4])) : null);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String part(String[] parts, int index) {
+        return parts.length > index && !parts[index].isEmpty() ? parts[index] : null;
+    }
+}
@@ -0,0 +1,147 @@
+package com.travel.agent.service.geocoding;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * 地理编码近似键索引（进程内）
+ *
+ * 精确键未命中时，查找“地点名几乎相同、所在地一致”的已解析键，直接复用其坐标：
+ * - 地点名（第一个分量）按字符三元组 Jaccard 相似度比较，需达到阈值
+ * - 其余分量（城市/国家）必须互相包含，如 {paris} ⊆ {paris, france}；
+ *   只有一边带所在地时不匹配，避免把不同城市的 "Central Station" 混为一谈
+ * 条目数有上限，按 LRU 淘汰。
+ */
+@Slf4j
+@Component
+public class GeocodeFuzzyIndex {
+
+    @Value("${agent.geocoding.fuzzy.enabled:true}")
+    private boolean enabled;
+
+    @Value("${agent.geocoding.fuzzy.threshold:0.75}")
+    private double threshold;
+
+    @Value("${agent.geocoding.fuzzy.max-entries:20000}")
+    private int maxEntries;
+
+    private final Map<String, Set<String>> postings = new HashMap<>();
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            if (size() <= maxEntries) {
+                return false;
+            }
+            unindex(eldest.getKey(), eldest.getValue());
+            return true;
+        }
+    };
+
+    public synchronized void putAll(Map<String, GeocodePoint> resolved) {
+        if (!enabled) {
+            return;
+        }
+        resolved.forEach((key, point) -> {
+            Entry previous = entries.get(key);
+            if (previous != null) {
+                entries.put(key, new Entry(previous.trigrams(), previous.locality(), point));
+                return;
+            }
+            List<String> components = Arrays.asList(key.split(AddressCanonicalizer.COMPONENT_DELIMITER));
+            Set<String> trigrams = trigrams(components.get(0));
+            if (trigrams.isEmpty()) {
+                return;
+            }
+            entries.put(key, new Entry(trigrams, new HashSet<>(components.subList(1, components.size())), point));
+            for (String trigram : trigrams) {
+                postings.computeIfAbsent(trigram, t -> new HashSet<>()).add(key);
+            }
+        });
+    }
+
+    /**
+     * 查找近似键，返回最相似且达到阈值的已解析坐标
+     */
+    public synchronized Optional<GeocodePoint> find(String key) {
+        if (!enabled || entries.isEmpty()) {
+            return Optional.empty();
+        }
+        List<String> components = Arrays.asList(key.split(AddressCanonicalizer.COMPONENT_DELIMITER));
+        Set<String> trigrams = trigrams(components.get(0));
+        Set<String> locality = new HashSet<>(components.subList(1, components.size()));
+        if (trigrams.isEmpty()) {
+            return Optional.empty();
+        }
+
+        Map<String, Integer> shared = new HashMap<>();
+        for (String trigram : trigrams) {
+            Set<String> keys = postings.get(trigram);
+            if (keys != null) {
+                for (String candidate : keys) {
+                    shared.merge(candidate, 1, Integer::sum);
+                }
+            }
+        }
+
+        String bestKey = null;
+        double bestSimilarity = 0;
+        for (Map.Entry<String, Integer> candidate : shared.entrySet()) {
+            Entry entry = entries.get(candidate.getKey());
+            int intersection = candidate.getValue();
+            double similarity = (double) intersection / (trigrams.size() + entry.trigrams().size() - intersection);
+            if (similarity >= threshold && similarity > bestSimilarity && compatible(locality, entry.locality())) {
+                bestSimilarity = similarity;
+                bestKey = candidate.getKey();
+            }
+        }
+        if (bestKey == null) {
+            return Optional.empty();
+        }
+        log.debug("🔎 Fuzzy geocode match: '{}' → '{}' (similarity {})", key, bestKey,
+                String.format("%.2f", bestSimilarity));
+        return Optional.of(entries.get(bestKey).point());
+    }
+
+    private static boolean compatible(Set<String> a, Set<String> b) {
+        if (a.isEmpty() || b.isEmpty()) {
+            return a.isEmpty() && b.isEmpty();
+        }
+        return a.containsAll(b) || b.containsAll(a);
+    }
+
+    private void unindex(String key, Entry entry) {
+        for (String trigram : entry.trigrams()) {
+            Set<String> keys = postings.get(trigram);
+            if (keys != null) {
+                keys.remove(key);
+                if (keys.isEmpty()) {
+                    postings.remove(trigram);
+                }
+            }
+        }
+    }
+
+    /**
+     * 字符三元组（去掉空格，两端补边界符，短名称也能比较）
+     */
+    static Set<String> trigrams(String text) {
+        String compact = "^" + text.replace(" ", "") + "$";
+        Set<String> grams = new HashSet<>();
+        int[] codePoints = compact.codePoints().toArray();
+        if (codePoints.length <= 3) {
+            grams.add(compact);
+            return grams;
+        }
+        for (int i = 0; i + 3 <= codePoints.length; i++) {
+            grams.add(new String(codePoints, i, 3));
+        }
+        return grams;
+    }
+
+    private record Entry(Set<String> trigrams, Set<String> locality, GeocodePoint point) {
+    }
+}
@@ -0,0 +1,44 @@
+package com.travel.agent.service.geocoding;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 一次地理编码结果
+ *
+ * @param provider   实际给出结果的服务（mapbox / geoapify）
+ * @param confidence 服务商给出的置信度 (0-1)，未知时为 null
+ * @param fetchedAt  请求外部服务的时间，未知时为 null（视为新鲜）
+ */
+public record GeocodePoint(BigDecimal latitude, BigDecimal longitude, String provider,
+                           Double confidence, Instant fetchedAt) {
+
+    public static GeocodePoint from(Map<String, BigDecimal> coordinates, String provider) {
+        if (coordinates == null || coordinates.get("latitude") == null || coordinates.get("longitude") == null) {
+            return null;
+        }
+        BigDecimal confidence = coordinates.get("confidence");
+        return new GeocodePoint(coordinates.get("latitude"), coordinates.get("longitude"), provider,
+                confidence != null ? confidence.doubleValue() : null, Instant.now());
+    }
+
+    /**
+     * 超过刷新周期的结果仍可使用，但会在下次查询时重新请求外部服务
+     */
+    public boolean isStale(Duration refreshAfter) {
+        return fetchedAt != null && fetchedAt.plus(refreshAfter).isBefore(Instant.now());
+    }
+
+    /**
+     * 转为服务接口沿用的 {latitude, longitude} 结构
+     */
+    public Map<String, BigDecimal> toMap() {
+        Map<String, BigDecimal> result = new HashMap<>();
+        result.put("latitude", latitude);
+        result.put("longitude", longitude);
+        return result;
+    }
+}
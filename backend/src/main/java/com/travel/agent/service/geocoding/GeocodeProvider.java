@@ -0,0 +1,24 @@
+package com.travel.agent.service.geocoding;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * 外部地理编码服务（不带缓存的原始请求）
+ */
+public interface GeocodeProvider {
+
+    String name();
+
+    /**
+     * 集群限流使用的 API 名称（见 agent.rate-limit.apis），同一账号额度的服务返回相同名称
+     */
+    default String rateLimitKey() {
+        return name();
+    }
+
+    /**
+     * @return {latitude, longitude}，查询失败或无结果时返回 null
+     */
+    Map<String, BigDecimal> fetch(String address);
+}
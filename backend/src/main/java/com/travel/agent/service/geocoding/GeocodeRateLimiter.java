@@ -0,0 +1,54 @@
+package com.travel.agent.service.geocoding;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 平滑速率限制器：按固定间隔发放许可，调用方阻塞到自己的时间槽
+ */
+public class GeocodeRateLimiter {
+
+    private final long intervalNanos;
+    private final AtomicLong nextSlot = new AtomicLong(System.nanoTime());
+
+    public GeocodeRateLimiter(double permitsPerSecond) {
+        this.intervalNanos = permitsPerSecond > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond) : 0;
+    }
+
+    /**
+     * 只在等待时间不超过 maxWaitNanos 时预定时间槽并等待
+     *
+     * @return 超过等待上限时返回 false（不占用时间槽）
+     */
+    public boolean tryAcquire(long maxWaitNanos) throws InterruptedException {
+        if (intervalNanos == 0) {
+            return true;
+        }
+        while (true) {
+            long now = System.nanoTime();
+            long next = nextSlot.get();
+            long slot = Math.max(next, now);
+            if (slot - now > maxWaitNanos) {
+                return false;
+            }
+            if (nextSlot.compareAndSet(next, slot + intervalNanos)) {
+                if (slot > now) {
+                    TimeUnit.NANOSECONDS.sleep(slot - now);
+                }
+                return true;
+            }
+        }
+    }
+
+    public void acquire() throws InterruptedException {
+        if (intervalNanos == 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        long slot = nextSlot.getAndAccumulate(now, (next, current) -> Math.max(next, current) + intervalNanos);
+        long wait = Math.max(slot, now) - now;
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+}
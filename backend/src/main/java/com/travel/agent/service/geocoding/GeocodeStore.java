@@ -0,0 +1,111 @@
+package com.travel.agent.service.geocoding;
+
+import com.travel.agent.entity.GeocodeCacheEntry;
+import com.travel.agent.mapper.GeocodeCacheMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+
+/**
+ * 地理编码持久层（PostgreSQL geocode_cache 表）
+ *
+ * 同一地址可能同时存有 Mapbox 和 Geoapify 的结果，读取时取最优的一条：
+ * 未过刷新期的优先，其次置信度高的，最后取最新的。
+ * 数据库不可用时视为未命中 / 跳过写入，不影响地理编码本身。
+ */
+@Slf4j
+@Component
+public class GeocodeStore {
+
+    // 单条 SQL 的 IN / VALUES 条目上限
+    private static final int CHUNK_SIZE = 500;
+
+    private final GeocodeCacheMapper geocodeCacheMapper;
+
+    @Value("${agent.geocoding.store.enabled:true}")
+    private boolean enabled;
+
+    @Value("${agent.geocoding.store.refresh-after:90d}")
+    private Duration refreshAfter;
+
+    public GeocodeStore(GeocodeCacheMapper geocodeCacheMapper) {
+        this.geocodeCacheMapper = geocodeCacheMapper;
+    }
+
+    public Duration getRefreshAfter() {
+        return refreshAfter;
+    }
+
+    public Map<String, GeocodePoint> getAll(Collection<String> keys) {
+        Map<String, GeocodePoint> hits = new HashMap<>();
+        if (!enabled || keys.isEmpty()) {
+            return hits;
+        }
+        List<String> ordered = new ArrayList<>(keys);
+        try {
+            for (int from = 0; from < ordered.size(); from += CHUNK_SIZE) {
+                List<String> chunk = ordered.subList(from, Math.min(ordered.size(), from + CHUNK_SIZE));
+                for (GeocodeCacheEntry entry : geocodeCacheMapper.selectByAddressKeys(chunk)) {
+                    GeocodePoint point = toPoint(entry);
+                    hits.merge(entry.getAddressKey(), point, (a, b) -> better(a, b) ? a : b);
+                }
+            }
+        } catch (Exception e) {
+            log.warn("⚠️ Geocode store read failed, treating {} keys as misses: {}", keys.size(), e.getMessage());
+        }
+        return hits;
+    }
+
+    public void putAll(Map<String, GeocodePoint> entries) {
+        if (!enabled || entries.isEmpty()) {
+            return;
+        }
+        List<GeocodeCacheEntry> rows = new ArrayList<>(entries.size());
+        entries.forEach((key, point) -> rows.add(toEntry(key, point)));
+        try {
+            for (int from = 0; from < rows.size(); from += CHUNK_SIZE) {
+                geocodeCacheMapper.upsertBatch(rows.subList(from, Math.min(rows.size(), from + CHUNK_SIZE)));
+            }
+        } catch (Exception e) {
+            log.warn("⚠️ Geocode store write failed for {} entries: {}", entries.size(), e.getMessage());
+        }
+    }
+
+    private boolean better(GeocodePoint a, GeocodePoint b) {
+        boolean aStale = a.isStale(refreshAfter);
+        if (aStale != b.isStale(refreshAfter)) {
+            return !aStale;
+        }
+        double aConfidence = a.confidence() != null ? a.confidence() : 0;
+        double bConfidence = b.confidence() != null ? b.confidence() : 0;
+        if (aConfidence != bConfidence) {
+            return aConfidence > bConfidence;
+        }
+        return a.fetchedAt() != null && (b.fetchedAt() == null || a.fetchedAt().isAfter(b.fetchedAt()));
+    }
+
+    private static GeocodePoint toPoint(GeocodeCacheEntry entry) {
+        return new GeocodePoint(entry.getLatitude(), entry.getLongitude(), entry.getProvider(),
+                entry.getConfidence() != null ? entry.getConfidence().doubleValue() : null,
+                entry.getFetchedAt() != null ? entry.getFetchedAt().atZone(ZoneId.systemDefault()).toInstant() : null);
+    }
+
+    private static GeocodeCacheEntry toEntry(String key, GeocodePoint point) {
+        return GeocodeCacheEntry.builder()
+                .addressKey(key)
+                .provider(point.provider() != null ? point.provider() : "unknown")
+                .latitude(point.latitude())
+                .longitude(point.longitude())
+                .confidence(point.confidence() != null ? BigDecimal.valueOf(point.confidence()) : null)
+                .fetchedAt(point.fetchedAt() != null
+                        ? LocalDateTime.ofInstant(point.fetchedAt(), ZoneId.systemDefault())
+                        : LocalDateTime.now())
+                .build();
+    }
+}
@@ -0,0 +1,313 @@
+package com.travel.agent.service.geocoding;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * 离线地名库（地理编码第一层，无需网络）
+ *
+ * 地名库文件由 {@link GazetteerBuilder} 生成，启动时只读内存映射；名称按规范化后排序，
+ * 支持精确/前缀二分查找，另在堆上建字符三元组倒排（原始 int[] 倒排表）用于容错匹配。
+ * 置信度 = 名称相似度 × 所在地一致性（城市/国家匹配 1.0，未给出 0.8，不一致 0.5），
+ * 未给出所在地的裸名称（如 "Springfield"）总是低于默认阈值，交给外部服务；
+ * 同名且相距较远的多个地点（如各地的 "Central Station"）再打折扣；低于阈值时交给外部服务。
+ * 文件不存在时本层不生效。
+ */
+@Slf4j
+@Component
+public class OfflineGazetteer {
+
+    public static final String PROVIDER = "gazetteer";
+
+    private static final double LOCALITY_MATCH = 1.0;
+    // 须严格低于默认阈值 min-confidence，裸名称不能仅凭名称命中
+    private static final double LOCALITY_UNKNOWN = 0.8;
+    private static final double LOCALITY_MISMATCH = 0.5;
+    private static final double AMBIGUITY_PENALTY = 0.7;
+    private static final double AMBIGUITY_DISTANCE_KM = 25;
+    private static final double MIN_NAME_SIMILARITY = 0.6;
+    private static final int MAX_PREFIX_CANDIDATES = 50;
+
+    @Value("${agent.geocoding.gazetteer.enabled:true}")
+    private boolean enabled;
+
+    @Value("${agent.geocoding.gazetteer.path:data/gazetteer/gazetteer.bin}")
+    private String path;
+
+    // 可选：二进制文件不存在时从该 TSV 摘录构建
+    @Value("${agent.geocoding.gazetteer.source:}")
+    private String source;
+
+    @Value("${agent.geocoding.gazetteer.min-confidence:0.85}")
+    private double minConfidence;
+
+    private volatile ByteBuffer buffer;
+    private volatile Map<String, int[]> trigramIndex = Map.of();
+    private int nameCount;
+    private int nameIndexOffset;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        Path file = Path.of(path);
+        try {
+            if (!Files.exists(file) && !source.isBlank() && Files.exists(Path.of(source))) {
+                GazetteerBuilder.build(Path.of(source), file);
+            }
+            if (!Files.exists(file)) {
+                log.info("ℹ️ Offline gazetteer not found at {}, tier disabled", file.toAbsolutePath());
+                return;
+            }
+            load(file);
+        } catch (Exception e) {
+            log.warn("⚠️ Failed to load offline gazetteer from {}: {}", file, e.getMessage());
+        }
+    }
+
+    void load(Path file) throws IOException {
+        ByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (mapped.getInt(0) != GazetteerBuilder.MAGIC) {
+            throw new IOException("not a gazetteer file");
+        }
+        int places = mapped.getInt(4);
+        nameCount = mapped.getInt(8);
+        nameIndexOffset = mapped.getInt(12);
+        buffer = mapped;
+
+        // 名称按序号递增加入，倒排表天然有序；直接在可扩容的 int[] 上追加，不装箱
+        Map<String, PostingList> postings = new HashMap<>();
+        for (int i = 0; i < nameCount; i++) {
+            for (String trigram : GeocodeFuzzyIndex.trigrams(nameAt(i))) {
+                postings.computeIfAbsent(trigram, t -> new PostingList()).add(i);
+            }
+        }
+        Map<String, int[]> index = new HashMap<>(postings.size() * 2);
+        postings.forEach((trigram, ids) -> index.put(trigram, ids.toArray()));
+        trigramIndex = index;
+        log.info("✅ Offline gazetteer loaded: {} places, {} names, {} trigrams ({} KB mapped)",
+                places, nameCount, index.size(), mapped.capacity() / 1024);
+    }
+
+    public boolean isLoaded() {
+        return buffer != null;
+    }
+
+    /**
+     * 查询规范化地址（{@link AddressCanonicalizer#canonicalize} 的结果）
+     *
+     * @return 置信度达到阈值时返回坐标
+     */
+    public Optional<GeocodePoint> lookup(String canonicalKey) {
+        if (buffer == null || canonicalKey == null || canonicalKey.isEmpty()) {
+            return Optional.empty();
+        }
+        String[] components = canonicalKey.split(AddressCanonicalizer.COMPONENT_DELIMITER);
+        String head = components[0];
+        Set<String> locality = new HashSet<>(Arrays.asList(components).subList(1, components.length));
+
+        Map<Integer, Double> similarities = new HashMap<>();
+        int first = lowerBound(head);
+        for (int i = first; i < nameCount && i - first < MAX_PREFIX_CANDIDATES; i++) {
+            String name = nameAt(i);
+            if (!name.startsWith(head)) {
+                break;
+            }
+            similarities.put(i, name.equals(head) ? 1.0 : similarity(head, name));
+        }
+        if (!similarities.containsValue(1.0)) {
+            similarities.putAll(trigramCandidates(head));
+        }
+
+        List<Candidate> candidates = new ArrayList<>();
+        for (Map.Entry<Integer, Double> entry : similarities.entrySet()) {
+            if (entry.getValue() < MIN_NAME_SIMILARITY) {
+                continue;
+            }
+            Place place = placeAt(buffer.getInt(nameEntryOffset(entry.getKey())));
+            candidates.add(new Candidate(place, entry.getValue() * localityFactor(place, locality)));
+        }
+        if (candidates.isEmpty()) {
+            return Optional.empty();
+        }
+        candidates.sort(Comparator.comparingDouble(Candidate::score).reversed()
+                .thenComparing(Comparator.comparingInt((Candidate c) -> c.place().population()).reversed()));
+
+        Candidate best = candidates.get(0);
+        double confidence = best.score();
+        for (Candidate other : candidates.subList(1, candidates.size())) {
+            if (best.score() - other.score() > 0.05) {
+                break;
+            }
+            if (distanceKm(best.place(), other.place()) > AMBIGUITY_DISTANCE_KM) {
+                confidence *= AMBIGUITY_PENALTY;
+                break;
+            }
+        }
+        if (confidence < minConfidence) {
+            log.debug("Gazetteer match below threshold: '{}' → {} ({})", canonicalKey, best.place().display(),
+                    String.format("%.2f", confidence));
+            return Optional.empty();
+        }
+        // 经 Float.toString 转换，避免 float → double 带出的多余小数位
+        return Optional.of(new GeocodePoint(new BigDecimal(Float.toString(best.place().latitude())),
+                new BigDecimal(Float.toString(best.place().longitude())), PROVIDER, confidence, null));
+    }
+
+    private Map<Integer, Double> trigramCandidates(String head) {
+        Set<String> grams = GeocodeFuzzyIndex.trigrams(head);
+        List<int[]> lists = new ArrayList<>(grams.size());
+        for (String gram : grams) {
+            int[] ids = trigramIndex.get(gram);
+            if (ids != null) {
+                lists.add(ids);
+            }
+        }
+        // 多路归并有序倒排表，统计每个名称共享的三元组数；先用共享数粗筛，再计算精确相似度
+        double minShared = grams.size() * MIN_NAME_SIMILARITY;
+        int[] cursors = new int[lists.size()];
+        Map<Integer, Double> result = new HashMap<>();
+        while (true) {
+            int min = Integer.MAX_VALUE;
+            for (int k = 0; k < lists.size(); k++) {
+                if (cursors[k] < lists.get(k).length) {
+                    min = Math.min(min, lists.get(k)[cursors[k]]);
+                }
+            }
+            if (min == Integer.MAX_VALUE) {
+                return result;
+            }
+            int shared = 0;
+            for (int k = 0; k < lists.size(); k++) {
+                if (cursors[k] < lists.get(k).length && lists.get(k)[cursors[k]] == min) {
+                    shared++;
+                    cursors[k]++;
+                }
+            }
+            if (shared >= minShared) {
+                result.put(min, similarity(head, nameAt(min)));
+            }
+        }
+    }
+
+    private static double similarity(String a, String b) {
+        Set<String> ga = GeocodeFuzzyIndex.trigrams(a);
+        Set<String> gb = GeocodeFuzzyIndex.trigrams(b);
+        int intersection = 0;
+        for (String gram : ga) {
+            if (gb.contains(gram)) {
+                intersection++;
+            }
+        }
+        return (double) intersection / (ga.size() + gb.size() - intersection);
+    }
+
+    private static double localityFactor(Place place, Set<String> locality) {
+        if (locality.isEmpty()) {
+            return LOCALITY_UNKNOWN;
+        }
+        if (!place.city().isEmpty() && locality.contains(place.city())) {
+            return LOCALITY_MATCH;
+        }
+        if (!place.country().isEmpty()) {
+            String countryName = AddressCanonicalizer.normalizeComponent(
+                    new Locale("", place.country().toUpperCase(Locale.ROOT)).getDisplayCountry(Locale.ENGLISH));
+            if (locality.contains(place.country()) || locality.contains(countryName)) {
+                return LOCALITY_MATCH;
+            }
+        }
+        return LOCALITY_MISMATCH;
+    }
+
+    private static double distanceKm(Place a, Place b) {
+        double dLat = Math.toRadians(b.latitude() - a.latitude());
+        double dLon = Math.toRadians(b.longitude() - a.longitude());
+        double h = Math.pow(Math.sin(dLat / 2), 2) + Math.cos(Math.toRadians(a.latitude()))
+                * Math.cos(Math.toRadians(b.latitude())) * Math.pow(Math.sin(dLon / 2), 2);
+        return 2 * 6371 * Math.asin(Math.sqrt(h));
+    }
+
+    private int lowerBound(String name) {
+        int low = 0;
+        int high = nameCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (nameAt(mid).compareTo(name) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int nameEntryOffset(int index) {
+        return buffer.getInt(nameIndexOffset + index * 4);
+    }
+
+    private String nameAt(int index) {
+        return readString(nameEntryOffset(index) + 4);
+    }
+
+    private Place placeAt(int offset) {
+        float latitude = buffer.getFloat(offset);
+        float longitude = buffer.getFloat(offset + 4);
+        int population = buffer.getInt(offset + 8);
+        int position = offset + 12;
+        String country = readString(position);
+        position += 2 + stringLength(position);
+        String city = readString(position);
+        position += 2 + stringLength(position);
+        return new Place(latitude, longitude, population, country, city, readString(position));
+    }
+
+    private int stringLength(int offset) {
+        return buffer.getShort(offset) & 0xFFFF;
+    }
+
+    private String readString(int offset) {
+        byte[] bytes = new byte[stringLength(offset)];
+        buffer.get(offset + 2, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private record Place(float latitude, float longitude, int population, String country, String city,
+                         String display) {
+    }
+
+    private record Candidate(Place place, double score) {
+    }
+
+    private static final class PostingList {
+
+        private int[] ids = new int[4];
+        private int size;
+
+        void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(ids, size);
+        }
+    }
+}
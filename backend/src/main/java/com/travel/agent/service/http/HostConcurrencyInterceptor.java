@@ -0,0 +1,95 @@
+package com.travel.agent.service.http;
+
+import com.travel.agent.config.HttpClientConfig;
+import com.travel.agent.monitoring.HttpClientMetrics;
+import okhttp3.Interceptor;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.ForwardingSource;
+import okio.Okio;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 按主机限制并发请求数
+ *
+ * OkHttp Dispatcher 的 maxRequestsPerHost 只约束异步调用，这里的服务都用同步 execute()，
+ * 因此在应用拦截器中按主机用信号量排队；等待时间计入调用总时限，超时抛出 IOException，由调用方按请求失败处理。
+ * 许可在响应体关闭时才释放（响应头返回时连接仍在读取响应体），调用方需关闭 Response。
+ */
+class HostConcurrencyInterceptor implements Interceptor {
+
+    // 没有设置调用总时限时的最长排队时间
+    private static final long DEFAULT_MAX_WAIT_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    private final HttpClientConfig config;
+    private final HttpClientMetrics metrics;
+    private final Map<String, Semaphore> permits = new ConcurrentHashMap<>();
+
+    HostConcurrencyInterceptor(HttpClientConfig config, HttpClientMetrics metrics) {
+        this.config = config;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        String host = chain.request().url().host();
+        Semaphore semaphore = permits.computeIfAbsent(host, key -> new Semaphore(config.maxConcurrentFor(key), true));
+        long callTimeout = chain.call().timeout().timeoutNanos();
+        long maxWait = callTimeout > 0 ? callTimeout : DEFAULT_MAX_WAIT_NANOS;
+
+        long start = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = semaphore.tryAcquire(maxWait, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a connection slot to " + host);
+        }
+        metrics.recordHostQueue(host, System.nanoTime() - start, !acquired);
+        if (!acquired) {
+            throw new IOException("Too many concurrent requests to " + host);
+        }
+        Response response;
+        try {
+            response = chain.proceed(chain.request());
+        } catch (IOException | RuntimeException e) {
+            semaphore.release();
+            throw e;
+        }
+        ResponseBody body = response.body();
+        if (body == null) {
+            semaphore.release();
+            return response;
+        }
+        return response.newBuilder()
+                .body(releasingBody(body, semaphore))
+                .build();
+    }
+
+    /**
+     * 包装响应体：关闭时释放许可（只释放一次）
+     */
+    private static ResponseBody releasingBody(ResponseBody body, Semaphore semaphore) {
+        AtomicBoolean released = new AtomicBoolean();
+        ForwardingSource source = new ForwardingSource(body.source()) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    if (released.compareAndSet(false, true)) {
+                        semaphore.release();
+                    }
+                }
+            }
+        };
+        return ResponseBody.create(Okio.buffer(source), body.contentType(), body.contentLength());
+    }
+}
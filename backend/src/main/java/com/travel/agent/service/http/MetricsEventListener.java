@@ -0,0 +1,91 @@
+package com.travel.agent.service.http;
+
+import com.travel.agent.monitoring.HttpClientMetrics;
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.Protocol;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.List;
+
+/**
+ * 单次调用的耗时分解：DNS、建立连接、首字节（调用开始 → 响应头）、总耗时
+ * 每个调用一个实例（OkHttp 在同一调用内按顺序回调，无需同步）
+ */
+class MetricsEventListener extends EventListener {
+
+    private final String integration;
+    private final HttpClientMetrics metrics;
+
+    private String host = "unknown";
+    private long callStart;
+    private long dnsStart;
+    private long connectStart;
+    private boolean firstByteRecorded;
+    private int statusCode;
+
+    MetricsEventListener(String integration, HttpClientMetrics metrics) {
+        this.integration = integration;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void callStart(Call call) {
+        callStart = System.nanoTime();
+        host = call.request().url().host();
+    }
+
+    @Override
+    public void dnsStart(Call call, String domainName) {
+        dnsStart = System.nanoTime();
+    }
+
+    @Override
+    public void dnsEnd(Call call, String domainName, List<InetAddress> inetAddressList) {
+        metrics.recordDns(integration, host, System.nanoTime() - dnsStart);
+    }
+
+    @Override
+    public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+        connectStart = System.nanoTime();
+    }
+
+    @Override
+    public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+        metrics.recordConnect(integration, host, System.nanoTime() - connectStart, true);
+    }
+
+    @Override
+    public void connectFailed(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol,
+                              IOException ioe) {
+        metrics.recordConnect(integration, host, System.nanoTime() - connectStart, false);
+    }
+
+    @Override
+    public void responseHeadersStart(Call call) {
+        if (!firstByteRecorded) {
+            firstByteRecorded = true;
+            metrics.recordTimeToFirstByte(integration, host, System.nanoTime() - callStart);
+        }
+    }
+
+    @Override
+    public void responseHeadersEnd(Call call, Response response) {
+        statusCode = response.code();
+    }
+
+    @Override
+    public void callEnd(Call call) {
+        metrics.recordCall(integration, host, System.nanoTime() - callStart,
+                statusCode > 0 ? (statusCode / 100) + "xx" : "unknown");
+    }
+
+    @Override
+    public void callFailed(Call call, IOException ioe) {
+        metrics.recordCall(integration, host, System.nanoTime() - callStart, call.isCanceled() ? "canceled" : "io_error");
+    }
+}
@@ -0,0 +1,81 @@
+package com.travel.agent.service.http;
+
+import com.travel.agent.config.HttpClientConfig;
+import com.travel.agent.monitoring.HttpClientMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.ConnectionPool;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 外部 HTTP 客户端（所有集成共用一个连接池和 Dispatcher）
+ *
+ * - 每个集成（openai / gemini / mapbox-geocoding / mapbox-matrix / geoapify）一个派生客户端，
+ *   只有超时和指标标签不同，连接、HTTP/2 多路复用与线程池都共享
+ * - 支持 HTTP/2 的主机经 ALPN 自动协商，否则使用 HTTP/1.1
+ * - 响应 gzip：不手动设置 Accept-Encoding，由 OkHttp 自动协商并透明解压
+ * - 按主机限制并发（{@link HostConcurrencyInterceptor}），同步调用同样生效
+ * - DNS / 连接 / 首字节 / 总耗时指标（{@link MetricsEventListener}）
+ */
+@Slf4j
+@Component
+public class OutboundHttpClients {
+
+    private static final Duration MAX_DEFAULT_CONNECT_TIMEOUT = Duration.ofSeconds(10);
+
+    private final HttpClientConfig config;
+    private final HttpClientMetrics metrics;
+    private final OkHttpClient base;
+    private final Map<String, OkHttpClient> clients = new ConcurrentHashMap<>();
+
+    public OutboundHttpClients(HttpClientConfig config, HttpClientMetrics metrics) {
+        this.config = config;
+        this.metrics = metrics;
+        this.base = new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(config.getMaxIdleConnections(),
+                        config.getKeepAlive().toMillis(), TimeUnit.MILLISECONDS))
+                .protocols(List.of(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                .addInterceptor(new HostConcurrencyInterceptor(config, metrics))
+                .build();
+    }
+
+    /**
+     * @param integration    集成名称（指标标签 + agent.http.clients 的键）
+     * @param defaultTimeout 未单独配置时使用的读超时（各服务原有的 timeout 配置）
+     */
+    public OkHttpClient client(String integration, Duration defaultTimeout) {
+        return clients.computeIfAbsent(integration, name -> build(name, defaultTimeout));
+    }
+
+    private OkHttpClient build(String integration, Duration defaultTimeout) {
+        HttpClientConfig.Timeouts timeouts = config.getClients().getOrDefault(integration, new HttpClientConfig.Timeouts());
+        Duration connect = timeouts.getConnectTimeout() != null ? timeouts.getConnectTimeout()
+                : (defaultTimeout.compareTo(MAX_DEFAULT_CONNECT_TIMEOUT) < 0 ? defaultTimeout : MAX_DEFAULT_CONNECT_TIMEOUT);
+        Duration read = timeouts.getReadTimeout() != null ? timeouts.getReadTimeout() : defaultTimeout;
+        Duration call = timeouts.getCallTimeout() != null ? timeouts.getCallTimeout() : connect.plus(read);
+
+        log.info("🌐 HTTP client [{}]: connect={}ms, read={}ms, call={}ms",
+                integration, connect.toMillis(), read.toMillis(), call.toMillis());
+        return base.newBuilder()
+                .connectTimeout(connect)
+                .readTimeout(read)
+                .writeTimeout(read)
+                .callTimeout(call)
+                .eventListenerFactory(httpCall -> new MetricsEventListener(integration, metrics))
+                .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        base.dispatcher().executorService().shutdown();
+        base.connectionPool().evictAll();
+    }
+}
@@ -13,40 +13,38 @@ import com.travel.agent.entity.UserPreferences;
 import com.travel.agent.exception.BusinessException;
 import com.travel.agent.service.AIService;
 import com.travel.agent.service.UserPreferencesService;
+import com.travel.agent.service.http.OutboundHttpClients;
+import com.travel.agent.service.ratelimit.ClusterRateLimiter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import okhttp3.*;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.util.*;
-import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class AIServiceImpl implements AIService {
 
+    private static final String RATE_LIMIT_KEY = "openai";
+
     private final OpenAIConfig openAIConfig;
     private final com.travel.agent.config.AIProviderConfig aiProviderConfig;  // 新增
     private final com.travel.agent.service.GeminiService geminiService;  // 新增
     private final UserPreferencesService userPreferencesService;
+    private final OutboundHttpClients httpClients;
+    private final ClusterRateLimiter rateLimiter;
     private final Gson gson = new Gson();
     
-    private OkHttpClient client;
 
     /**
-     * 初始化 HTTP 客户端
+     * 共享连接池的 openai 客户端（超时见 agent.http.clients.openai）
      */
     private OkHttpClient getClient() {
-        if (client == null) {
-            client = new OkHttpClient.Builder()
-                    .connectTimeout(openAIConfig.getTimeout(), TimeUnit.MILLISECONDS)
-                    .readTimeout(openAIConfig.getTimeout(), TimeUnit.MILLISECONDS)
-                    .writeTimeout(openAIConfig.getTimeout(), TimeUnit.MILLISECONDS)
-                    .build();
-        }
-        return client;
+        return httpClients.client("openai", Duration.ofMillis(openAIConfig.getTimeout()));
     }
 
     @Override
@@ -237,6 +235,11 @@ public class AIServiceImpl implements AIService {
                     ))
                     .build();
 
+            // 集群限流：排队等待许可，超过截止时间视为服务繁忙
+            if (!rateLimiter.acquire(RATE_LIMIT_KEY)) {
+                throw new BusinessException("AI service is busy. Please try again later.");
+            }
+
             // 执行请求
             try (Response response = getClient().newCall(request).execute()) {
                 if (!response.isSuccessful()) {
@@ -590,6 +593,11 @@ public class AIServiceImpl implements AIService {
                     ))
                     .build();
 
+            // 集群限流：排队等待许可，超过截止时间视为服务繁忙
+            if (!rateLimiter.acquire(RATE_LIMIT_KEY)) {
+                throw new BusinessException("AI service is busy. Please try again later.");
+            }
+
             try (Response response = getClient().newCall(request).execute()) {
                 if (!response.isSuccessful()) {
                     String errorBody = response.body() != null ? response.body().string() : "unknown";
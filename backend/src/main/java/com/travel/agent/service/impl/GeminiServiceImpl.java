@@ -6,35 +6,33 @@ import com.google.gson.JsonObject;
 import com.travel.agent.config.GeminiConfig;
 import com.travel.agent.exception.BusinessException;
 import com.travel.agent.service.GeminiService;
+import com.travel.agent.service.http.OutboundHttpClients;
+import com.travel.agent.service.ratelimit.ClusterRateLimiter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import okhttp3.*;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
-import java.util.concurrent.TimeUnit;
+import java.time.Duration;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class GeminiServiceImpl implements GeminiService {
 
+    private static final String RATE_LIMIT_KEY = "gemini";
+
     private final GeminiConfig geminiConfig;
+    private final OutboundHttpClients httpClients;
+    private final ClusterRateLimiter rateLimiter;
     private final Gson gson = new Gson();
-    private OkHttpClient client;
 
     /**
-     * 初始化 HTTP 客户端（懒加载）
+     * 共享连接池的 gemini 客户端（超时见 agent.http.clients.gemini）
      */
     private OkHttpClient getClient() {
-        if (client == null) {
-            client = new OkHttpClient.Builder()
-                    .connectTimeout(geminiConfig.getTimeout(), TimeUnit.MILLISECONDS)
-                    .readTimeout(geminiConfig.getTimeout(), TimeUnit.MILLISECONDS)
-                    .writeTimeout(geminiConfig.getTimeout(), TimeUnit.MILLISECONDS)
-                    .build();
-        }
-        return client;
+        return httpClients.client("gemini", Duration.ofMillis(geminiConfig.getTimeout()));
     }
 
     /**
@@ -71,6 +69,11 @@ public class GeminiServiceImpl implements GeminiService {
                     ))
                     .build();
 
+            // 集群限流：排队等待许可，超过截止时间视为服务繁忙
+            if (!rateLimiter.acquire(RATE_LIMIT_KEY)) {
+                throw new BusinessException("AI service is busy. Please try again later.");
+            }
+
             // 执行请求
             try (Response response = getClient().newCall(request).execute()) {
                 long duration = System.currentTimeMillis() - startTime;
@@ -7,6 +7,12 @@ import com.travel.agent.config.GeoapifyConfig;
 import com.travel.agent.dto.response.DestinationResponse.DestinationPlaceInfo;
 import com.travel.agent.service.GeoapifyService;
 import com.travel.agent.dto.response.GeoPlace;
+import com.travel.agent.service.geocoding.BatchGeocodingEngine;
+import com.travel.agent.service.geocoding.GeocodePoint;
+import com.travel.agent.service.geocoding.GeocodeProvider;
+import com.travel.agent.service.http.OutboundHttpClients;
+import com.travel.agent.service.places.NearbyPlaceIndex;
+import com.travel.agent.service.ratelimit.ClusterRateLimiter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import okhttp3.OkHttpClient;
@@ -16,28 +22,28 @@ import org.springframework.stereotype.Service;
 import org.springframework.cache.annotation.Cacheable;
 
 import java.io.IOException;
-import java.util.concurrent.TimeUnit;
+import java.time.Duration;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
-public class GeoapifyServiceImpl implements GeoapifyService {
+public class GeoapifyServiceImpl implements GeoapifyService, GeocodeProvider {
+
+    private static final String DEFAULT_NEARBY_CATEGORIES = "catering,entertainment,tourism";
 
     private final GeoapifyConfig geoapifyConfig;
+    private final BatchGeocodingEngine batchGeocodingEngine;
+    private final NearbyPlaceIndex nearbyPlaceIndex;
+    // Places / Geocoding 共用同一账号额度；地理编码请求由 BatchGeocodingEngine 统一限流
+    private final ClusterRateLimiter rateLimiter;
+    private final OutboundHttpClients httpClients;
     private final Gson gson = new Gson();
-    private OkHttpClient client;
 
     /**
-     * 初始化 HTTP 客户端
+     * 共享连接池的 geoapify 客户端（超时见 agent.http.clients.geoapify）
      */
     private OkHttpClient getClient() {
-        if (client == null) {
-            client = new OkHttpClient.Builder()
-                    .connectTimeout(geoapifyConfig.getTimeout(), TimeUnit.MILLISECONDS)
-                    .readTimeout(geoapifyConfig.getTimeout(), TimeUnit.MILLISECONDS)
-                    .build();
-        }
-        return client;
+        return httpClients.client("geoapify", Duration.ofMillis(geoapifyConfig.getTimeout()));
     }
 
     @Override
@@ -55,6 +61,9 @@ public class GeoapifyServiceImpl implements GeoapifyService {
 
     @Override
     public DestinationPlaceInfo getPlaceInfo(String destinationName, Double latitude, Double longitude) {
+        if (!rateLimiter.acquire(rateLimitKey())) {
+            return null;
+        }
         try {
             String url = String.format(
                 "%s/places?categories=tourism&filter=circle:%f,%f,5000&limit=1&apiKey=%s",
@@ -107,22 +116,44 @@ public class GeoapifyServiceImpl implements GeoapifyService {
         return null;
     }
 
+    /**
+     * 附近地点：优先在本地 POI 空间索引上做半径查询，只有未加载过的 geohash 单元才请求 Geoapify
+     */
     @Override
-    @Cacheable(cacheNames = "nearbyPlaces", key = "T(java.util.Objects).hash(#latitude,#longitude,#radiusKm,#limit,#categories)", sync = true)
     public java.util.List<GeoPlace> searchNearbyPlaces(Double latitude, Double longitude, Double radiusKm, int limit, java.util.List<String> categories) {
+        if (latitude == null || longitude == null) {
+            return new java.util.ArrayList<>();
+        }
+        String categoryParam = NearbyPlaceIndex.categoryKey(categories, DEFAULT_NEARBY_CATEGORIES);
+        double radiusMeters = (radiusKm == null || radiusKm <= 0 ? 1.0 : radiusKm) * 1000;
+        if (!nearbyPlaceIndex.isEnabled()) {
+            java.util.List<GeoPlace> places = fetchPlaces(String.format(java.util.Locale.ROOT, "circle:%f,%f,%d",
+                    longitude, latitude, Math.round(radiusMeters)), categoryParam, limit);
+            return places != null ? places : new java.util.ArrayList<>();
+        }
+        return nearbyPlaceIndex.search(latitude, longitude, radiusMeters, limit, categoryParam,
+                (minLat, minLon, maxLat, maxLon, fetchLimit) -> fetchPlaces(
+                        String.format(java.util.Locale.ROOT, "rect:%f,%f,%f,%f", minLon, minLat, maxLon, maxLat),
+                        categoryParam, fetchLimit));
+    }
+
+    /**
+     * 请求 Geoapify Places API
+     *
+     * @param filter Geoapify filter 参数（circle:... / rect:...）
+     * @return 地点列表，请求失败时返回 null
+     */
+    private java.util.List<GeoPlace> fetchPlaces(String filter, String categoryParam, int limit) {
+        if (!rateLimiter.acquire(rateLimitKey())) {
+            return null;
+        }
         java.util.List<GeoPlace> results = new java.util.ArrayList<>();
         try {
-            String categoryParam = categories == null || categories.isEmpty()
-                    ? "tourism,entertainment,catering"
-                    : String.join(",", categories);
-            long radiusMeters = Math.round(radiusKm * 1000);
             String url = String.format(
-                "%s/places?categories=%s&filter=circle:%f,%f,%d&limit=%d&apiKey=%s",
+                "%s/places?categories=%s&filter=%s&limit=%d&apiKey=%s",
                 geoapifyConfig.getBaseUrl(),
                 categoryParam,
-                longitude,
-                latitude,
-                radiusMeters,
+                filter,
                 limit,
                 geoapifyConfig.getApiKey()
             );
@@ -130,7 +161,8 @@ public class GeoapifyServiceImpl implements GeoapifyService {
             Request request = new Request.Builder().url(url).get().build();
             try (Response response = getClient().newCall(request).execute()) {
                 if (!response.isSuccessful() || response.body() == null) {
-                    return results;
+                    log.warn("Geoapify places request failed: status={}", response.code());
+                    return null;
                 }
                 String responseBody = response.body().string();
                 JsonObject jsonResponse = gson.fromJson(responseBody, JsonObject.class);
@@ -144,7 +176,7 @@ public class GeoapifyServiceImpl implements GeoapifyService {
                     if (properties == null || geometry == null) continue;
 
                     GeoPlace place = new GeoPlace();
-                    place.setId(getString(properties, "place_id", "geo_" + i));
+                    place.setId(getString(properties, "place_id", null));
                     place.setName(getString(properties, "name", getString(properties, "address_line1", "Unknown")));
 
                     java.util.List<String> tags = new java.util.ArrayList<>();
@@ -171,6 +203,11 @@ public class GeoapifyServiceImpl implements GeoapifyService {
                         }
                     }
 
+                    // 缺少 place_id 时按坐标生成（附近地点索引按 id 去重，不能用结果序号）
+                    if (place.getId() == null) {
+                        place.setId(String.format(java.util.Locale.ROOT, "geo_%.6f_%.6f", place.getLatitude(), place.getLongitude()));
+                    }
+
                     // Opening hours (best effort)
                     place.setOpeningHours(getString(properties, "opening_hours", "09:00-18:00"));
 
@@ -192,6 +229,7 @@ public class GeoapifyServiceImpl implements GeoapifyService {
             }
         } catch (Exception e) {
             log.error("Failed to search nearby places from Geoapify", e);
+            return null;
         }
         return results;
     }
@@ -211,8 +249,14 @@ public class GeoapifyServiceImpl implements GeoapifyService {
         return "attraction";
     }
 
-    @Cacheable(cacheNames = "placeImage", key = "#placeId", sync = true)
+    /**
+     * 被限流或请求失败时返回 null 且不缓存，下次调用重新请求详情，而不是把占位图缓存下来
+     */
+    @Cacheable(cacheNames = "placeImage", key = "#placeId", unless = "#result == null")
     public String getPlaceImageUrl(String placeId, String placeName, Double latitude, Double longitude) {
+        if (!rateLimiter.acquire(rateLimitKey())) {
+            return null;
+        }
         try {
             // First try to get image from Geoapify Places API details endpoint
             String url = String.format(
@@ -245,14 +289,35 @@ public class GeoapifyServiceImpl implements GeoapifyService {
             }
         } catch (Exception e) {
             log.warn("Failed to get image from Geoapify for place {}: {}", placeName, e.getMessage());
+            return null;
         }
 
         // Fallback: Generate image based on place type and location
         return generateContextualImageUrl(placeName, latitude, longitude);
     }
 
+    /**
+     * 地理编码：与 Mapbox 共用同一份缓存（本地 → Redis → geocode_cache 表），未命中时才请求 Geoapify
+     */
     @Override
     public java.util.Map<String, java.math.BigDecimal> geocodeAddress(String address) {
+        if (address == null || address.isBlank()) {
+            return null;
+        }
+        GeocodePoint point = batchGeocodingEngine.geocode(java.util.List.of(address), this).coordinates().get(address);
+        return point != null ? point.toMap() : null;
+    }
+
+    @Override
+    public String name() {
+        return "geoapify";
+    }
+
+    /**
+     * 直接请求 Geoapify Geocoding API（不经过缓存）
+     */
+    @Override
+    public java.util.Map<String, java.math.BigDecimal> fetch(String address) {
         try {
             String url = String.format(
                     "%s/geocode/search?text=%s&limit=1&apiKey=%s",
@@ -277,7 +342,8 @@ public class GeoapifyServiceImpl implements GeoapifyService {
 
                 JsonArray features = jsonResponse.getAsJsonArray("features");
                 if (features != null && features.size() > 0) {
-                    JsonObject geometry = features.get(0).getAsJsonObject().getAsJsonObject("geometry");
+                    JsonObject feature = features.get(0).getAsJsonObject();
+                    JsonObject geometry = feature.getAsJsonObject("geometry");
                     if (geometry != null && geometry.has("coordinates")) {
                         JsonArray coordinates = geometry.getAsJsonArray("coordinates");
                         java.math.BigDecimal longitude = coordinates.get(0).getAsBigDecimal();
@@ -286,6 +352,11 @@ public class GeoapifyServiceImpl implements GeoapifyService {
                         java.util.Map<String, java.math.BigDecimal> result = new java.util.HashMap<>();
                         result.put("latitude", latitude);
                         result.put("longitude", longitude);
+                        JsonObject properties = feature.getAsJsonObject("properties");
+                        if (properties != null && properties.has("rank")
+                                && properties.getAsJsonObject("rank").has("confidence")) {
+                            result.put("confidence", properties.getAsJsonObject("rank").get("confidence").getAsBigDecimal());
+                        }
                         return result;
                     }
                 }
@@ -1,6 +1,14 @@
 package com.travel.agent.service.impl;
 
+import com.travel.agent.ai.knowledge.AttractionCatalog;
+import com.travel.agent.ai.knowledge.AttractionCatalogExtractor;
+import com.travel.agent.ai.knowledge.AttractionSearchCache;
+import com.travel.agent.ai.knowledge.Bm25Index;
+import com.travel.agent.ai.knowledge.KnowledgeFileEventCoalescer;
+import com.travel.agent.ai.knowledge.ReciprocalRankFusion;
 import com.travel.agent.ai.vectorstore.ChromaService;
+import com.travel.agent.ai.vectorstore.LocalVectorIndexStore;
+import com.travel.agent.ai.vectorstore.MirroringEmbeddingStore;
 import com.travel.agent.dto.DocumentVersion;
 import com.travel.agent.dto.KnowledgeBaseStats;
 import com.travel.agent.service.KnowledgeBaseService;
@@ -12,23 +20,28 @@ import dev.langchain4j.data.embedding.Embedding;
 import dev.langchain4j.data.segment.TextSegment;
 import dev.langchain4j.model.embedding.EmbeddingModel;
 import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingStore;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.security.MessageDigest;
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
 
 /**
  * 增量知识库服务
  * 支持单文件导入、热更新、版本管理
+ * 检索时融合向量检索与 BM25 倒排索引（RRF），可通过 agent.rag.hybrid.enabled 关闭
  */
 @Slf4j
 @Service
@@ -38,9 +51,42 @@ public class IncrementalKnowledgeBaseService implements KnowledgeBaseService {
     
     private final ChromaService chromaService;
     private final EmbeddingModel embeddingModel;
+    private final EmbeddingStore<TextSegment> embeddingStore;
     private final com.travel.agent.monitoring.AgentMetricsService metricsService;
+    private final Executor knowledgeImportExecutor;
+    private final AttractionCatalog attractionCatalog;
+    private final AttractionSearchCache attractionSearchCache;
     private final DocumentSplitter splitter = DocumentSplitters.recursive(500, 50);
     
+    // 文件事件静默期：编辑器保存时的 CREATE + 多次 MODIFY 合并为一次导入
+    @Value("${agent.knowledge.watcher.quiet-period-ms:1500}")
+    private long watcherQuietPeriodMs;
+    
+    private KnowledgeFileEventCoalescer eventCoalescer;
+    private WatchService watchService;
+    
+    // 倒排索引（导入时构建，与向量库同步更新）
+    private final Bm25Index bm25Index = new Bm25Index();
+    
+    @Value("${agent.rag.hybrid.enabled:true}")
+    private boolean hybridEnabled;
+    
+    // 每路召回候选数 = maxResults * candidateMultiplier
+    @Value("${agent.rag.hybrid.candidate-multiplier:2}")
+    private int hybridCandidateMultiplier;
+    
+    // 参与融合的向量结果最低相似度，过滤明显不相关的近邻
+    @Value("${agent.rag.hybrid.vector-min-score:0.5}")
+    private double hybridVectorMinScore;
+    
+    // 融合后结果的最低分数（RRF 归一化分数）
+    @Value("${agent.rag.hybrid.min-score:0.0}")
+    private double hybridMinScore;
+    
+    // 纯向量模式下的最低相似度
+    @Value("${agent.rag.min-score:0.7}")
+    private double vectorMinScore;
+    
     // 文档版本管理
     private final Map<String, DocumentVersion> documentVersions = new ConcurrentHashMap<>();
     
@@ -87,9 +133,29 @@ public class IncrementalKnowledgeBaseService implements KnowledgeBaseService {
         // 启动文件监听器
         startFileWatcher();
         
+        // 异步从已有文件构建倒排索引和缺失的景点目录（仅分块，不调用 Embedding）
+        knowledgeImportExecutor.execute(this::warmLexicalIndex);
+        
         log.info("✅ Knowledge Base Service initialized");
     }
     
+    /**
+     * 关闭文件监听器
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (eventCoalescer != null) {
+            eventCoalescer.close();
+        }
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                log.warn("Failed to close file watcher: {}", e.getMessage());
+            }
+        }
+    }
+    
     /**
      * 增量导入单个文档
      */
@@ -132,6 +198,7 @@ public class IncrementalKnowledgeBaseService implements KnowledgeBaseService {
                 .lastUpdated(LocalDateTime.now())
                 .version(existingVersion != null ? existingVersion.getVersion() + 1 : 1)
                 .build());
+            attractionSearchCache.invalidateCity(extractCityName(documentPath));
             
             log.info("✅ Document imported: {} (v{}, {} segments)", 
                     documentId, 
@@ -155,23 +222,8 @@ public class IncrementalKnowledgeBaseService implements KnowledgeBaseService {
             // 提取城市名称
             String city = extractCityName(documentPath);
             
-            // 创建元数据
-            Metadata metadata = new Metadata();
-            metadata.put("document_id", documentId);
-            metadata.put("city", city);
-            metadata.put("type", "travel_guide");
-            metadata.put("source", documentPath.getFileName().toString());
-            metadata.put("imported_at", LocalDateTime.now().toString());
-            
-            // 创建文档
-            Document document = Document.from(content, metadata);
-            
-            // 分块
-            List<TextSegment> segments = splitter.split(document);
-            log.info("📄 Split {} into {} segments", documentPath.getFileName(), segments.size());
-            
-            // 增强元数据
-            List<TextSegment> enrichedSegments = enrichSegments(segments, city);
+            // 分块并增强元数据
+            List<TextSegment> enrichedSegments = buildSegments(documentPath, content, documentId, city);
             
             // 向量化
             List<Embedding> embeddings = embeddingModel.embedAll(enrichedSegments).content();
@@ -181,6 +233,11 @@ public class IncrementalKnowledgeBaseService implements KnowledgeBaseService {
             
             log.info("💾 Stored {} segments for {}", ids.size(), city);
             
+            // 同步构建倒排索引和景点目录
+            bm25Index.indexDocument(documentId, city, enrichedSegments);
+            attractionCatalog.replaceDocument(documentId,
+                    AttractionCatalogExtractor.extract(documentId, city, content, enrichedSegments));
+            
             return ids.size();
             
         } catch (Exception e) {
@@ -189,6 +246,79 @@ public class IncrementalKnowledgeBaseService implements KnowledgeBaseService {
         }
     }
     
+    /**
+     * 分块并增强元数据
+     */
+    private List<TextSegment> buildSegments(Path documentPath, String content, String documentId, String city) {
+        // 创建元数据
+        Metadata metadata = new Metadata();
+        metadata.put("document_id", documentId);
+        metadata.put("city", city);
+        metadata.put("type", "travel_guide");
+        metadata.put("source", documentPath.getFileName().toString());
+        metadata.put("imported_at", LocalDateTime.now().toString());
+        
+        // 创建文档
+        Document document = Document.from(content, metadata);
+        
+        // 分块
+        List<TextSegment> segments = splitter.split(document);
+        log.info("📄 Split {} into {} segments", documentPath.getFileName(), segments.size());
+        
+        // 增强元数据
+        return enrichSegments(segments, city);
+    }
+    
+    /**
+     * 从知识库目录构建倒排索引
+     * 向量库中的数据在重启后仍然存在，而倒排索引只在内存中，启动时按文件重建；
+     * 景点目录已持久化，先删除已不存在的文档，再为缺失或停机期间修改过的文档重新抽取；
+     * 本地向量索引（主存储的镜像，或降级 / 单节点时的主存储）中缺少的文档在此补写向量，保证降级时有数据可查
+     */
+    private void warmLexicalIndex() {
+        Path knowledgeDir = resolveKnowledgeDir();
+        try (java.util.stream.Stream<Path> stream = Files.list(knowledgeDir)) {
+            List<Path> files = stream.filter(p -> p.toString().endsWith(".md")).toList();
+            attractionCatalog.retainDocuments(files.stream().map(this::generateDocumentId).collect(Collectors.toSet()));
+            LocalVectorIndexStore mirror = embeddingStore instanceof MirroringEmbeddingStore mirroring
+                    ? mirroring.local()
+                    : embeddingStore instanceof LocalVectorIndexStore local ? local : null;
+            Set<String> mirrored = mirror != null ? mirror.metadataValues("document_id") : Set.of();
+            int caughtUp = 0;
+            for (Path path : files) {
+                String documentId = generateDocumentId(path);
+                boolean needsCatalog = attractionCatalog.isStale(documentId,
+                        Files.getLastModifiedTime(path).toMillis());
+                boolean needsMirror = mirror != null && !mirrored.contains(documentId);
+                if (!hybridEnabled && !needsCatalog && !needsMirror) {
+                    continue;
+                }
+                String city = extractCityName(path);
+                String content = Files.readString(path, StandardCharsets.UTF_8);
+                List<TextSegment> segments = buildSegments(path, content, documentId, city);
+                if (hybridEnabled) {
+                    bm25Index.indexDocument(documentId, city, segments);
+                }
+                if (needsCatalog) {
+                    attractionCatalog.replaceDocument(documentId,
+                            AttractionCatalogExtractor.extract(documentId, city, content, segments));
+                }
+                if (needsMirror) {
+                    List<Embedding> embeddings = embeddingModel.embedAll(segments).content();
+                    mirror.addAll(embeddings, segments);
+                    caughtUp++;
+                }
+            }
+            if (mirror != null) {
+                mirror.flush();
+            }
+            log.info("✅ Lexical index warmed: {} segments, catalog: {} entries, local vector mirror: +{} documents",
+                    bm25Index.size(), attractionCatalog.size(), caughtUp);
+        } catch (Exception e) {
+            log.warn("⚠️ Failed to warm lexical index: {}", e.getMessage());
+        }
+    }
+    
     /**
      * 删除文档
      */
@@ -199,8 +329,11 @@ public class IncrementalKnowledgeBaseService implements KnowledgeBaseService {
             // 从 Chroma 中删除（通过 metadata 过滤）
             chromaService.deleteByMetadata("document_id", documentId);
             
-            // 从版本管理中移除
+            // 从倒排索引、景点目录和版本管理中移除
+            bm25Index.removeDocument(documentId);
+            attractionCatalog.removeDocument(documentId);
             documentVersions.remove(documentId);
+            attractionSearchCache.invalidateCity(documentId.replace("_guide", ""));
             
             log.info("✅ Document deleted: {}", documentId);
             
@@ -228,57 +361,20 @@ public class IncrementalKnowledgeBaseService implements KnowledgeBaseService {
         }
         
         try {
-            WatchService watchService = FileSystems.getDefault().newWatchService();
+            watchService = FileSystems.getDefault().newWatchService();
             knowledgeDir.register(watchService, 
                 StandardWatchEventKinds.ENTRY_CREATE,
                 StandardWatchEventKinds.ENTRY_MODIFY,
                 StandardWatchEventKinds.ENTRY_DELETE
             );
             
-            // 异步监听文件变化
-            CompletableFuture.runAsync(() -> {
-                log.info("👀 File watcher started for: {}", knowledgeDir);
-                
-                while (true) {
-                    try {
-                        WatchKey key = watchService.take();
-                        
-                        for (WatchEvent<?> event : key.pollEvents()) {
-                            WatchEvent.Kind<?> kind = event.kind();
-                            
-                            if (kind == StandardWatchEventKinds.OVERFLOW) {
-                                continue;
-                            }
-                            
-                            @SuppressWarnings("unchecked")
-                            WatchEvent<Path> pathEvent = (WatchEvent<Path>) event;
-                            Path changed = pathEvent.context();
-                            Path fullPath = knowledgeDir.resolve(changed);
-                            
-                            // 只处理 .md 文件
-                            if (!changed.toString().endsWith(".md")) {
-                                continue;
-                            }
-                            
-                            // 处理文件变化
-                            handleFileChange(kind, fullPath);
-                        }
-                        
-                        boolean valid = key.reset();
-                        if (!valid) {
-                            log.warn("⚠️ Watch key no longer valid, stopping file watcher");
-                            break;
-                        }
-                        
-                    } catch (InterruptedException e) {
-                        log.error("File watcher interrupted", e);
-                        Thread.currentThread().interrupt();
-                        break;
-                    } catch (Exception e) {
-                        log.error("Error in file watcher", e);
-                    }
-                }
-            });
+            eventCoalescer = new KnowledgeFileEventCoalescer(
+                    watcherQuietPeriodMs, knowledgeImportExecutor, this::handleFileChange);
+            
+            // 独立守护线程监听文件变化，只登记事件，导入在 knowledgeImportExecutor 中执行
+            Thread watcherThread = new Thread(() -> watchLoop(knowledgeDir), "kb-file-watcher");
+            watcherThread.setDaemon(true);
+            watcherThread.start();
             
         } catch (IOException e) {
             log.error("Failed to start file watcher", e);
@@ -286,29 +382,72 @@ public class IncrementalKnowledgeBaseService implements KnowledgeBaseService {
     }
     
     /**
-     * 处理文件变化
+     * 文件监听循环
      */
-    private void handleFileChange(WatchEvent.Kind<?> kind, Path fullPath) {
-        try {
-            // 等待文件写入完成
-            Thread.sleep(1000);
-            
-            if (kind == StandardWatchEventKinds.ENTRY_CREATE) {
-                log.info("📝 File created: {}", fullPath.getFileName());
-                importDocument(fullPath);
+    private void watchLoop(Path knowledgeDir) {
+        log.info("👀 File watcher started for: {} (quiet period {}ms)", knowledgeDir, watcherQuietPeriodMs);
+        
+        while (true) {
+            try {
+                WatchKey key = watchService.take();
                 
-            } else if (kind == StandardWatchEventKinds.ENTRY_MODIFY) {
-                log.info("✏️ File modified: {}", fullPath.getFileName());
-                importDocument(fullPath);
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    WatchEvent.Kind<?> kind = event.kind();
+                    
+                    if (kind == StandardWatchEventKinds.OVERFLOW) {
+                        continue;
+                    }
+                    
+                    @SuppressWarnings("unchecked")
+                    WatchEvent<Path> pathEvent = (WatchEvent<Path>) event;
+                    Path changed = pathEvent.context();
+                    Path fullPath = knowledgeDir.resolve(changed);
+                    
+                    // 只处理 .md 文件
+                    if (!changed.toString().endsWith(".md")) {
+                        continue;
+                    }
+                    
+                    // 登记事件，静默期后合并处理
+                    eventCoalescer.submit(kind, fullPath);
+                }
                 
-            } else if (kind == StandardWatchEventKinds.ENTRY_DELETE) {
-                log.info("🗑️ File deleted: {}", fullPath.getFileName());
-                String documentId = generateDocumentId(fullPath);
+                boolean valid = key.reset();
+                if (!valid) {
+                    log.warn("⚠️ Watch key no longer valid, stopping file watcher");
+                    break;
+                }
+                
+            } catch (InterruptedException e) {
+                log.info("File watcher interrupted");
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ClosedWatchServiceException e) {
+                log.info("File watcher closed");
+                break;
+            } catch (Exception e) {
+                log.error("Error in file watcher", e);
+            }
+        }
+    }
+    
+    /**
+     * 处理合并后的文件变化（在导入线程池中执行）
+     */
+    private void handleFileChange(KnowledgeFileEventCoalescer.Action action, Path fullPath) {
+        if (action == KnowledgeFileEventCoalescer.Action.DELETE || !Files.exists(fullPath)) {
+            log.info("🗑️ File deleted: {}", fullPath.getFileName());
+            String documentId = generateDocumentId(fullPath);
+            if (documentVersions.containsKey(documentId)) {
                 deleteDocument(documentId);
+            } else {
+                // 重启后版本信息为空，但倒排索引和景点目录可能已从文件加载
+                bm25Index.removeDocument(documentId);
+                attractionCatalog.removeDocument(documentId);
             }
-            
-        } catch (Exception e) {
-            log.error("Failed to handle file change: {}", fullPath, e);
+        } else {
+            log.info("✏️ File changed: {}", fullPath.getFileName());
+            importDocument(fullPath);
         }
     }
     
@@ -459,6 +598,28 @@ public class IncrementalKnowledgeBaseService implements KnowledgeBaseService {
             .build();
     }
     
+    /**
+     * 强制重建全部知识库向量（忽略内容哈希），用于 Embedding 模型切换后的迁移
+     *
+     * @return 重新导入的文档数
+     */
+    public int reindexAll() {
+        Path knowledgeDir = resolveKnowledgeDir();
+        log.info("🔄 Re-indexing all knowledge base files from {}", knowledgeDir);
+        
+        try (java.util.stream.Stream<Path> stream = Files.list(knowledgeDir)) {
+            List<Path> files = stream.filter(path -> path.toString().endsWith(".md")).toList();
+            // 先删除旧分段再导入（importDocument 只在有版本记录时删除旧分段，直接清空版本表会追加重复向量）
+            Set<String> documentIds = new HashSet<>(documentVersions.keySet());
+            files.forEach(path -> documentIds.add(generateDocumentId(path)));
+            documentIds.forEach(this::deleteDocument);
+            files.forEach(this::importDocument);
+            return files.size();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to re-index knowledge base", e);
+        }
+    }
+    
     // 实现接口方法
     @Override
     public void importAllKnowledgeBase() {
@@ -501,14 +662,59 @@ public class IncrementalKnowledgeBaseService implements KnowledgeBaseService {
         }
     }
     
+    /**
+     * 按目的地检索景点，结果按（城市, 结果数, 指南版本）缓存
+     */
     @Override
     public List<EmbeddingMatch<TextSegment>> searchAttractions(String destination, int maxResults) {
+        DocumentVersion version = destination == null ? null
+            : documentVersions.get(destination.trim().toLowerCase(Locale.ROOT) + "_guide");
+        return attractionSearchCache.get(destination, maxResults, version != null ? version.getVersion() : 0,
+            () -> searchAttractionsUncached(destination, maxResults));
+    }
+    
+    private List<EmbeddingMatch<TextSegment>> searchAttractionsUncached(String destination, int maxResults) {
         String query = String.format("%s attractions things to do", destination);
-        return chromaService.search(query, maxResults);
+        if (!hybridEnabled) {
+            return chromaService.search(query, maxResults);
+        }
+        // 知识库为中文指南，词法查询补充中文类目词；仅在该城市的指南内做词法检索
+        String lexicalQuery = String.format("%s attractions 景点 必游", destination);
+        String city = bm25Index.hasCity(destination) ? destination : null;
+        return hybridSearch(query, lexicalQuery, city, city != null, maxResults);
     }
     
     @Override
     public List<EmbeddingMatch<TextSegment>> searchTravelInfo(String query, int maxResults) {
-        return chromaService.search(query, maxResults);
+        if (!hybridEnabled) {
+            return chromaService.search(query, maxResults);
+        }
+        return hybridSearch(query, query, null, true, maxResults);
+    }
+    
+    @Override
+    public double minRelevanceScore() {
+        return hybridEnabled ? hybridMinScore : vectorMinScore;
+    }
+    
+    /**
+     * 向量检索 + BM25 检索，RRF 融合
+     */
+    private List<EmbeddingMatch<TextSegment>> hybridSearch(String vectorQuery, String lexicalQuery,
+                                                           String city, boolean useLexical, int maxResults) {
+        int candidates = Math.max(maxResults, maxResults * hybridCandidateMultiplier);
+        
+        List<EmbeddingMatch<TextSegment>> vectorMatches = chromaService.search(vectorQuery, candidates).stream()
+            .filter(match -> match.score() >= hybridVectorMinScore)
+            .toList();
+        List<EmbeddingMatch<TextSegment>> lexicalMatches = useLexical
+            ? bm25Index.search(lexicalQuery, candidates, city)
+            : List.of();
+        
+        List<EmbeddingMatch<TextSegment>> fused = ReciprocalRankFusion.fuse(
+            ReciprocalRankFusion.DEFAULT_K, maxResults, vectorMatches, lexicalMatches);
+        log.info("🔀 Hybrid search: vector={}, lexical={}, fused={}",
+                vectorMatches.size(), lexicalMatches.size(), fused.size());
+        return fused;
     }
 }
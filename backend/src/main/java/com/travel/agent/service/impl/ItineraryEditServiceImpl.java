@@ -12,25 +12,35 @@ import com.travel.agent.dto.response.CommonResponse;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Caching;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Locale;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -46,8 +56,17 @@ public class ItineraryEditServiceImpl implements ItineraryEditService {
     private final AIService aiService;
     private final ItineraryVersionsService itineraryVersionsService;
     private final ItineraryVersionsMapper itineraryVersionsMapper;
+    private final RouteOptimizationService routeOptimizationService;
+    private final MapboxGeocodingService mapboxGeocodingService;
+    private final Executor routeOptimizationExecutor;
+    private final CacheManager cacheManager;
+    private final TransactionTemplate transactionTemplate;
     private final Gson gson = new Gson();
     
+    // 增加 / 移动 / 删除活动后重新优化当天路线（以当前顺序 warm start，事务提交后异步执行）
+    @Value("${agent.routing.edit-reoptimize.enabled:true}")
+    private boolean editReoptimizeEnabled;
+    
     @Override
     @Transactional
     public CommonResponse<String> moveActivity(Long tripId, Long itemId, Long targetDayId, String newStartTime, String newEndTime) {
@@ -59,10 +78,21 @@ public class ItineraryEditServiceImpl implements ItineraryEditService {
                 return CommonResponse.error(404, "活动不存在");
             }
             
+            Long sourceDayId = item.getDayId();
             item.setDayId(targetDayId);
-            // TODO: 更新时间
+            if (newStartTime != null) {
+                // 用户指定的开始时间在重新优化时保持不变
+                item.setStartTime(LocalTime.parse(newStartTime));
+                item.setStartTimeFixed(true);
+            }
+            item.setUpdatedAt(LocalDateTime.now());
             itineraryItemsService.updateById(item);
             
+            reoptimizeDayAfterCommit(tripId, targetDayId);
+            if (!Objects.equals(sourceDayId, targetDayId)) {
+                reoptimizeDayAfterCommit(tripId, sourceDayId);
+            }
+            
             log.info("活动已移动: itemId={}", itemId);
             return CommonResponse.success("活动已移动");
         } catch (Exception e) {
@@ -91,6 +121,7 @@ public class ItineraryEditServiceImpl implements ItineraryEditService {
             
             if (startTime != null) {
                 newItem.setStartTime(java.time.LocalTime.parse(startTime));
+                newItem.setStartTimeFixed(true);
             }
             if (durationMinutes != null) {
                 newItem.setDurationMinutes(durationMinutes);
@@ -109,6 +140,7 @@ public class ItineraryEditServiceImpl implements ItineraryEditService {
             newItem.setUpdatedAt(java.time.LocalDateTime.now());
             
             itineraryItemsService.save(newItem);
+            reoptimizeDayAfterCommit(tripId, dayId);
             
             log.info("活动已添加: itemId={}, 缓存已清除", newItem.getId());
             return CommonResponse.success(newItem);
@@ -128,9 +160,11 @@ public class ItineraryEditServiceImpl implements ItineraryEditService {
         try {
             log.info("删除活动: itemId={}", itemId);
             
+            ItineraryItems item = itineraryItemsService.getById(itemId);
             boolean removed = itineraryItemsService.removeById(itemId);
             
             if (removed) {
+                reoptimizeDayAfterCommit(tripId, item != null ? item.getDayId() : null);
                 log.info("活动已删除: itemId={}, 缓存已清除", itemId);
                 return CommonResponse.success("活动已删除");
             } else {
@@ -169,6 +203,7 @@ public class ItineraryEditServiceImpl implements ItineraryEditService {
             }
             if (startTime != null) {
                 item.setStartTime(java.time.LocalTime.parse(startTime));
+                item.setStartTimeFixed(true);
             }
             if (durationMinutes != null) {
                 item.setDurationMinutes(durationMinutes);
@@ -194,6 +229,189 @@ public class ItineraryEditServiceImpl implements ItineraryEditService {
         }
     }
     
+    /**
+     * 编辑事务提交后在路线优化线程池中重新优化当天路线：
+     * 地理编码和 Matrix 请求（含限流等待）不占用数据库事务和连接，编辑接口也不必等待
+     */
+    private void reoptimizeDayAfterCommit(Long tripId, Long dayId) {
+        if (!editReoptimizeEnabled || dayId == null) {
+            return;
+        }
+        Runnable task = () -> reoptimizeDay(tripId, dayId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    routeOptimizationExecutor.execute(task);
+                }
+            });
+        } else {
+            routeOptimizationExecutor.execute(task);
+        }
+    }
+    
+    /**
+     * 编辑后重新优化当天路线：当前顺序作为初始解，新增的活动先地理编码（走地理编码缓存）。
+     * 用户指定过开始时间的活动（start_time_fixed）固定在该时间开始。
+     * 优化期间当天活动有变化（再次编辑、移入移出、并发的另一次优化）时丢弃本次结果。
+     * 失败时只记录日志，不影响编辑本身。
+     */
+    private void reoptimizeDay(Long tripId, Long dayId) {
+        try {
+            List<ItineraryItems> items = listDayItems(dayId, false);
+            if (items.size() < 3) {
+                return;
+            }
+            List<String> snapshot = dayState(items);
+            
+            Trips trip = tripsService.getById(tripId);
+            String destinationContext = trip == null || trip.getDestinationName() == null ? ""
+                : trip.getDestinationName()
+                    + (trip.getDestinationCountry() != null ? ", " + trip.getDestinationCountry() : "");
+            
+            List<Map<String, Object>> activities = new ArrayList<>(items.size());
+            Map<String, Map<String, BigDecimal>> geoData = new HashMap<>();
+            Set<Long> geocoded = new HashSet<>();
+            for (ItineraryItems item : items) {
+                if (item.getLatitude() == null && item.getLocation() != null && !item.getLocation().isBlank()) {
+                    String query = destinationContext.isEmpty()
+                        ? item.getLocation() : item.getLocation() + ", " + destinationContext;
+                    Map<String, BigDecimal> coords = mapboxGeocodingService.geocodeAddress(query);
+                    if (coords != null) {
+                        item.setLatitude(coords.get("latitude"));
+                        item.setLongitude(coords.get("longitude"));
+                        geocoded.add(item.getId());
+                    }
+                }
+                
+                Map<String, Object> activity = new HashMap<>();
+                activity.put("itemId", item.getId());
+                activity.put("name", item.getActivityName());
+                activity.put("type", item.getActivityType());
+                activity.put("location", item.getLocation());
+                activity.put("startTime", item.getStartTime() != null ? item.getStartTime().toString() : "09:00");
+                activity.put("durationMinutes", item.getDurationMinutes() != null ? item.getDurationMinutes() : 60);
+                activity.put("openingHours", item.getOpeningHours());
+                if (Boolean.TRUE.equals(item.getStartTimeFixed()) && item.getStartTime() != null) {
+                    activity.put("fixedStartTime", true);
+                }
+                activities.add(activity);
+                
+                if (item.getLatitude() != null && item.getLongitude() != null) {
+                    Map<String, BigDecimal> coords = new HashMap<>();
+                    coords.put("latitude", item.getLatitude());
+                    coords.put("longitude", item.getLongitude());
+                    geoData.put(item.getLocation(), coords);
+                }
+            }
+            
+            long start = System.currentTimeMillis();
+            List<Map<String, Object>> optimized =
+                routeOptimizationService.reoptimizeDayRoute(activities, geoData, destinationContext);
+            
+            // 只写回顺序、时间或坐标有变化的项
+            Map<Long, ItineraryItems> itemsById = items.stream()
+                .collect(Collectors.toMap(ItineraryItems::getId, item -> item));
+            List<ItineraryItems> updates = new ArrayList<>();
+            for (int i = 0; i < optimized.size(); i++) {
+                ItineraryItems item = itemsById.get((Long) optimized.get(i).get("itemId"));
+                if (item == null) {
+                    continue;
+                }
+                LocalTime startTime = item.getStartTime();
+                Object optimizedStart = optimized.get(i).get("startTime");
+                if (optimizedStart instanceof String text && !Boolean.TRUE.equals(item.getStartTimeFixed())) {
+                    startTime = LocalTime.parse(text);
+                }
+                int orderIndex = i + 1;
+                if (!Objects.equals(item.getOrderIndex(), orderIndex)
+                        || !Objects.equals(item.getStartTime(), startTime)
+                        || geocoded.contains(item.getId())) {
+                    ItineraryItems update = new ItineraryItems();
+                    update.setId(item.getId());
+                    update.setOrderIndex(orderIndex);
+                    update.setStartTime(startTime);
+                    update.setLatitude(item.getLatitude());
+                    update.setLongitude(item.getLongitude());
+                    updates.add(update);
+                }
+            }
+            if (updates.isEmpty()) {
+                return;
+            }
+            Boolean written = transactionTemplate.execute(status -> writeIfUnchanged(dayId, snapshot, updates));
+            if (!Boolean.TRUE.equals(written)) {
+                log.info("编辑后重新优化结果已过期，丢弃: dayId={}", dayId);
+                return;
+            }
+            evictTripCaches(tripId);
+            log.info("编辑后路线已重新优化: dayId={}, {} 项变更, 耗时 {}ms",
+                dayId, updates.size(), System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.warn("编辑后重新优化路线失败: dayId={}, {}", dayId, e.getMessage());
+        }
+    }
+    
+    /**
+     * 锁住当天的活动行后比较状态，与优化前的快照一致才写回；每行更新都限定 day_id
+     */
+    private boolean writeIfUnchanged(Long dayId, List<String> snapshot, List<ItineraryItems> updates) {
+        if (!dayState(listDayItems(dayId, true)).equals(snapshot)) {
+            return false;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        for (ItineraryItems update : updates) {
+            itineraryItemsService.lambdaUpdate()
+                .eq(ItineraryItems::getId, update.getId())
+                .eq(ItineraryItems::getDayId, dayId)
+                .set(ItineraryItems::getOrderIndex, update.getOrderIndex())
+                .set(ItineraryItems::getStartTime, update.getStartTime())
+                .set(ItineraryItems::getLatitude, update.getLatitude())
+                .set(ItineraryItems::getLongitude, update.getLongitude())
+                .set(ItineraryItems::getUpdatedAt, now)
+                .update();
+        }
+        return true;
+    }
+    
+    private List<ItineraryItems> listDayItems(Long dayId, boolean forUpdate) {
+        LambdaQueryWrapper<ItineraryItems> query = new LambdaQueryWrapper<ItineraryItems>()
+            .eq(ItineraryItems::getDayId, dayId)
+            .orderByAsc(ItineraryItems::getOrderIndex)
+            .orderByAsc(ItineraryItems::getId);
+        if (forUpdate) {
+            query.last("FOR UPDATE");
+        }
+        return itineraryItemsService.list(query);
+    }
+    
+    /**
+     * 当天活动的状态指纹：活动集合及影响排程的字段（含 updated_at，编辑和写回都会更新它）
+     */
+    private static List<String> dayState(List<ItineraryItems> items) {
+        List<String> state = new ArrayList<>(items.size());
+        for (ItineraryItems item : items) {
+            state.add(item.getId() + "|" + item.getUpdatedAt() + "|" + item.getOrderIndex() + "|"
+                + item.getStartTime() + "|" + item.getStartTimeFixed() + "|" + item.getDurationMinutes() + "|"
+                + item.getLocation() + "|" + item.getOpeningHours());
+        }
+        return state;
+    }
+    
+    /**
+     * 异步写回优化结果后清除行程缓存（编辑方法上的 @CacheEvict 在优化完成前就已生效）
+     */
+    private void evictTripCaches(Long tripId) {
+        Cache trip = cacheManager.getCache("trip");
+        if (trip != null) {
+            trip.evict(tripId);
+        }
+        Cache latestTrip = cacheManager.getCache("latestTrip");
+        if (latestTrip != null) {
+            latestTrip.clear();
+        }
+    }
+    
     @Override
     public CommonResponse<OptimizeResponse> optimizeItinerary(Long tripId, String optimizationType) {
         try {
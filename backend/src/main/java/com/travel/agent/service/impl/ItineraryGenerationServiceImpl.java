@@ -8,6 +8,9 @@ import com.travel.agent.dto.response.TripStatusResponse;
 import com.travel.agent.entity.*;
 import com.travel.agent.exception.BusinessException;
 import com.travel.agent.service.*;
+import com.travel.agent.service.itinerary.ItineraryBulkWriter;
+import com.travel.agent.service.routing.TimeWindow;
+import com.travel.agent.service.routing.TripAssignment;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -23,8 +26,10 @@ import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
@@ -43,6 +48,8 @@ public class ItineraryGenerationServiceImpl implements ItineraryGenerationServic
     private final ObjectMapper objectMapper;
     private final StateMachineItineraryService stateMachineService;  // 新增：状态机服务
     private final TripProgressPushService tripProgressPushService;
+    private final ItineraryBulkWriter itineraryBulkWriter;
+    private final Executor routeOptimizationExecutor;
     
     /**
      * 异步生成行程（核心方法）
@@ -153,6 +160,7 @@ public class ItineraryGenerationServiceImpl implements ItineraryGenerationServic
               * Good: "The Ranee Boutique Suites, Jalan Tunku Abdul Rahman, Kuching, Malaysia"
               * Bad: "Kuching, Borneo, Malaysia" (too vague)
             - Start times: realistic (08:00, 12:00, 18:00, etc.)
+            - Add "openingHours" (HH:MM-HH:MM) for venues with fixed opening hours
             - Costs: reasonable for budget
             
             JSON Format:
@@ -163,7 +171,7 @@ public class ItineraryGenerationServiceImpl implements ItineraryGenerationServic
                   "theme": "Arrival Day",
                   "activities": [
                     {"name": "Hilton Hotel", "type": "accommodation", "startTime": "14:00", "durationMinutes": 60, "estimatedCost": 150, "location": "Hilton Hotel, Main Street 123, %s, %s"},
-                    {"name": "Seaside Restaurant", "type": "dining", "startTime": "19:00", "durationMinutes": 90, "estimatedCost": 50, "location": "Seaside Restaurant, Harbor Road 45, %s, %s"}
+                    {"name": "Seaside Restaurant", "type": "dining", "startTime": "19:00", "durationMinutes": 90, "estimatedCost": 50, "location": "Seaside Restaurant, Harbor Road 45, %s, %s", "openingHours": "17:00-23:00"}
                   ]
                 }
               ]
@@ -245,6 +253,9 @@ public class ItineraryGenerationServiceImpl implements ItineraryGenerationServic
                         if (activityNode.has("location")) {
                             activity.setLocation(activityNode.get("location").asText());
                         }
+                        if (activityNode.hasNonNull("openingHours")) {
+                            activity.setOpeningHours(activityNode.get("openingHours").asText());
+                        }
                         
                         activities.add(activity);
                     }
@@ -276,21 +287,20 @@ public class ItineraryGenerationServiceImpl implements ItineraryGenerationServic
         // ✅ 修复：如果没有提供 startDate，date 字段设为 null
         LocalDate currentDate = request.getStartDate();
         
+        List<ItineraryBulkWriter.DayRows> rows = new ArrayList<>(dayPlans.size());
         for (DayPlan dayPlan : dayPlans) {
             // 创建 ItineraryDay
             ItineraryDays day = new ItineraryDays();
-            day.setTripId(tripId);
             day.setDayNumber(dayPlan.getDayNumber());
             day.setDate(currentDate);  // 可能为 null，用户后续设置
             day.setTheme(dayPlan.getTheme());
-            itineraryDaysService.save(day);
+            List<ItineraryItems> items = new ArrayList<>(dayPlan.getActivities().size());
+            rows.add(new ItineraryBulkWriter.DayRows(day, items));
             
             // 创建 ItineraryItems
             int orderIndex = 0;
             for (ActivityPlan activity : dayPlan.getActivities()) {
                 ItineraryItems item = new ItineraryItems();
-                item.setTripId(tripId);
-                item.setDayId(day.getId());
                 item.setOrderIndex(orderIndex++);
                 item.setActivityName(activity.getName());
                 item.setActivityType(normalizeActivityType(activity.getType()));
@@ -312,9 +322,10 @@ public class ItineraryGenerationServiceImpl implements ItineraryGenerationServic
                 item.setLongitude(null);
                 
                 item.setCost(activity.getEstimatedCost());
+                item.setOpeningHours(TimeWindow.normalize(activity.getOpeningHours()));
                 item.setStatus("planned");
                 item.setOriginalFlag(true);
-                itineraryItemsService.save(item);
+                items.add(item);
             }
             
             // 只有当 startDate 不为 null 时才递增日期
@@ -323,6 +334,8 @@ public class ItineraryGenerationServiceImpl implements ItineraryGenerationServic
             }
         }
         
+        // 所有天和活动一次批量写入（tripId / dayId 由写入时回填）
+        itineraryBulkWriter.write(tripId, rows, "generation");
         log.info("✅ Saved {} days to database", dayPlans.size());
     }
 
@@ -367,69 +380,79 @@ public class ItineraryGenerationServiceImpl implements ItineraryGenerationServic
             String destinationContext = state.getDestination() + 
                 (state.getDestinationCountry() != null ? ", " + state.getDestinationCountry() : "");
             
-            // 对每一天执行路线优化
+            // 一次查询整个行程的活动，在内存中按天分组
+            Map<Long, List<ItineraryItems>> itemsByDay = itineraryItemsService.list(
+                new com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper<ItineraryItems>()
+                    .eq(ItineraryItems::getTripId, tripId)
+                    .orderByAsc(ItineraryItems::getOrderIndex)
+            ).stream().collect(Collectors.groupingBy(ItineraryItems::getDayId));
+            
+            // 转换为 Map 格式供 RouteOptimizationService 使用
+            Map<String, Map<String, BigDecimal>> geoData = new HashMap<>();
+            List<List<Map<String, Object>>> dayActivities = new ArrayList<>(days.size());
             for (ItineraryDays day : days) {
-                List<ItineraryItems> items = itineraryItemsService.list(
-                    new com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper<ItineraryItems>()
-                        .eq(ItineraryItems::getDayId, day.getId())
-                        .orderByAsc(ItineraryItems::getOrderIndex)
-                );
-                
-                if (items.size() >= 3) {
-                    log.info("🔄 Optimizing route for day {}: {} items", day.getDayNumber(), items.size());
-                    
-                    // 转换为 Map 格式供 RouteOptimizationService 使用
-                    List<Map<String, Object>> activities = new ArrayList<>();
-                    Map<String, Map<String, BigDecimal>> geoData = new HashMap<>();
-                    
-                    for (ItineraryItems item : items) {
-                        Map<String, Object> activity = new HashMap<>();
-                        activity.put("name", item.getActivityName());
-                        activity.put("type", item.getActivityType());
-                        activity.put("location", item.getLocation());
-                        activity.put("startTime", item.getStartTime() != null ? item.getStartTime().toString() : "09:00");
-                        activity.put("durationMinutes", item.getDurationMinutes() != null ? item.getDurationMinutes() : 60);
-                        activities.add(activity);
-                        
-                        // 如果有坐标，添加到 geoData
-                        if (item.getLatitude() != null && item.getLongitude() != null) {
-                            String fullLocation = item.getLocation() + ", " + destinationContext;
-                            Map<String, BigDecimal> coords = new HashMap<>();
-                            coords.put("latitude", item.getLatitude());
-                            coords.put("longitude", item.getLongitude());
-                            geoData.put(fullLocation, coords);
-                        }
-                    }
-                    
-                    // 调用路线优化服务
-                    List<Map<String, Object>> optimizedActivities = 
-                        routeOptimizationService.optimizeDayRoute(activities, geoData, destinationContext);
-                    
-                    // 更新数据库中的顺序和时间
-                    for (int i = 0; i < optimizedActivities.size(); i++) {
-                        Map<String, Object> optimized = optimizedActivities.get(i);
-                        ItineraryItems item = items.get(i);
-                        
-                        // 更新顺序
-                        item.setOrderIndex(i + 1);
-                        
-                        // 更新开始时间
-                        String startTimeStr = (String) optimized.get("startTime");
-                        if (startTimeStr != null) {
-                            try {
-                                item.setStartTime(LocalTime.parse(startTimeStr));
-                            } catch (Exception e) {
-                                log.warn("Failed to parse optimized start time: {}", startTimeStr);
-                            }
-                        }
-                        
-                        itineraryItemsService.updateById(item);
-                    }
-                    
-                    log.info("✅ Route optimized for day {}", day.getDayNumber());
+                dayActivities.add(toActivities(itemsByDay.getOrDefault(day.getId(), List.of()), destinationContext, geoData));
+            }
+            
+            // 多日重新分组：按地理位置把活动分到各天，避免相邻两天在城市两端来回
+            TripAssignment assignment =
+                routeOptimizationService.assignActivitiesToDays(dayActivities, geoData, destinationContext);
+            if (assignment.movedActivities() > 0) {
+                log.info("🗓️ Regrouped {} activities across days, saving {} min of driving",
+                    assignment.movedActivities(), assignment.savingsSeconds() / 60);
+                updateProgress(tripId, 75, String.format("Regrouped %d activities across days",
+                    assignment.movedActivities()));
+            }
+            
+            List<Integer> daysToOptimize = new ArrayList<>();
+            for (int d = 0; d < days.size(); d++) {
+                if (assignment.days().get(d).size() >= 3) {
+                    daysToOptimize.add(d);
                 }
             }
             
+            // 各天并行求解（CPU 线程池），每完成一天推送一次进度
+            AtomicInteger completedDays = new AtomicInteger();
+            Map<Integer, CompletableFuture<List<Map<String, Object>>>> futures = new LinkedHashMap<>();
+            for (int d : daysToOptimize) {
+                ItineraryDays day = days.get(d);
+                List<Map<String, Object>> activities = assignment.days().get(d);
+                futures.put(d, CompletableFuture
+                    .supplyAsync(() -> {
+                        log.info("🔄 Optimizing route for day {}: {} items", day.getDayNumber(), activities.size());
+                        return routeOptimizationService.optimizeDayRoute(activities, geoData, destinationContext);
+                    }, routeOptimizationExecutor)
+                    .exceptionally(ex -> {
+                        log.warn("⚠️ Route optimization failed for day {}: {}", day.getDayNumber(), ex.getMessage());
+                        return activities;
+                    })
+                    .thenApply(optimized -> {
+                        int done = completedDays.incrementAndGet();
+                        updateProgress(tripId, 75 + 24 * done / daysToOptimize.size(),
+                            String.format("Route optimized for day %d (%d/%d)",
+                                day.getDayNumber(), done, daysToOptimize.size()));
+                        return optimized;
+                    }));
+            }
+            
+            // 按 itemId 对应回原记录，只收集天、顺序或时间有变化的项
+            Map<Long, ItineraryItems> itemsById = itemsByDay.values().stream()
+                .flatMap(List::stream)
+                .collect(Collectors.toMap(ItineraryItems::getId, item -> item));
+            List<ItineraryItems> updates = new ArrayList<>();
+            for (int d = 0; d < days.size(); d++) {
+                List<Map<String, Object>> activities = futures.containsKey(d)
+                    ? futures.get(d).join()
+                    : assignment.days().get(d);
+                collectUpdates(days.get(d), activities, itemsById, updates);
+            }
+            
+            // 所有天/顺序/时间变更一次批量写回
+            if (!updates.isEmpty()) {
+                itineraryItemsService.updateBatchById(updates);
+                log.info("📦 Batch updated {} items across {} days", updates.size(), days.size());
+            }
+            
             // 清除缓存
             evictTripCache(tripId);
             
@@ -438,6 +461,71 @@ public class ItineraryGenerationServiceImpl implements ItineraryGenerationServic
         }
     }
     
+    /**
+     * 活动记录转换为路线优化使用的 Map，有坐标的同时写入 geoData
+     */
+    private List<Map<String, Object>> toActivities(List<ItineraryItems> items, String destinationContext,
+                                                   Map<String, Map<String, BigDecimal>> geoData) {
+        List<Map<String, Object>> activities = new ArrayList<>(items.size());
+        for (ItineraryItems item : items) {
+            Map<String, Object> activity = new HashMap<>();
+            activity.put("itemId", item.getId());
+            activity.put("name", item.getActivityName());
+            activity.put("type", item.getActivityType());
+            activity.put("location", item.getLocation());
+            activity.put("startTime", item.getStartTime() != null ? item.getStartTime().toString() : "09:00");
+            activity.put("durationMinutes", item.getDurationMinutes() != null ? item.getDurationMinutes() : 60);
+            activity.put("openingHours", item.getOpeningHours());
+            activities.add(activity);
+            
+            // 如果有坐标，添加到 geoData
+            if (item.getLatitude() != null && item.getLongitude() != null) {
+                String fullLocation = item.getLocation() + ", " + destinationContext;
+                Map<String, BigDecimal> coords = new HashMap<>();
+                coords.put("latitude", item.getLatitude());
+                coords.put("longitude", item.getLongitude());
+                geoData.put(fullLocation, coords);
+            }
+        }
+        return activities;
+    }
+    
+    /**
+     * 收集一天内需要写回的变更（只包含 id、dayId、orderIndex、startTime）
+     */
+    private void collectUpdates(ItineraryDays day, List<Map<String, Object>> activities,
+                                Map<Long, ItineraryItems> itemsById, List<ItineraryItems> updates) {
+        for (int i = 0; i < activities.size(); i++) {
+            Map<String, Object> optimized = activities.get(i);
+            ItineraryItems item = itemsById.get((Long) optimized.get("itemId"));
+            if (item == null) {
+                continue;
+            }
+            
+            LocalTime startTime = item.getStartTime();
+            String startTimeStr = (String) optimized.get("startTime");
+            if (startTimeStr != null) {
+                try {
+                    startTime = LocalTime.parse(startTimeStr);
+                } catch (Exception e) {
+                    log.warn("Failed to parse optimized start time: {}", startTimeStr);
+                }
+            }
+            
+            int orderIndex = i + 1;
+            if (!Objects.equals(item.getDayId(), day.getId())
+                    || !Objects.equals(item.getOrderIndex(), orderIndex)
+                    || !Objects.equals(item.getStartTime(), startTime)) {
+                ItineraryItems update = new ItineraryItems();
+                update.setId(item.getId());
+                update.setDayId(day.getId());
+                update.setOrderIndex(orderIndex);
+                update.setStartTime(startTime);
+                updates.add(update);
+            }
+        }
+    }
+    
     /**
      * 更新进度到 Redis
      */
@@ -582,11 +670,11 @@ public class ItineraryGenerationServiceImpl implements ItineraryGenerationServic
     }
     
     /**
-     * 并行地理编码所有活动（使用 Mapbox，高性能版本）
+     * 批量地理编码所有活动（使用 Mapbox，Geoapify 兜底）
      */
     private void geocodeActivitiesSync(Long tripId) {
         long startTime = System.currentTimeMillis();
-        log.info("🗺️ Starting parallel geocoding for trip: {} (using Mapbox)", tripId);
+        log.info("🗺️ Starting batch geocoding for trip: {} (using Mapbox)", tripId);
         
         // 获取所有活动
         List<ItineraryItems> items = itineraryItemsService.list(
@@ -594,51 +682,35 @@ public class ItineraryGenerationServiceImpl implements ItineraryGenerationServic
                 .eq(ItineraryItems::getTripId, tripId)
         );
         
-        // 使用并行流进行地理编码（最多10个并发）
-        AtomicInteger successCount = new AtomicInteger(0);
-        AtomicInteger failCount = new AtomicInteger(0);
+        // 批量地理编码：地址去重、批量查缓存、未命中项限速并发请求（Mapbox 失败时逐个回退 Geoapify）
+        List<String> locations = items.stream()
+            .map(ItineraryItems::getLocation)
+            .filter(location -> location != null && !location.isEmpty())
+            .distinct()
+            .toList();
+        Map<String, Map<String, BigDecimal>> coordinatesByLocation = mapboxGeocodingService.batchGeocode(locations);
         
-        // 收集需要更新的项（避免 N+1 问题）
-        List<ItineraryItems> itemsToUpdate = new java.util.concurrent.CopyOnWriteArrayList<>();
+        int successCount = 0;
+        int failCount = 0;
         
-        // 并行处理，最多10个线程
-        items.parallelStream()
-            .limit(items.size())
-            .forEach(item -> {
-                try {
-                    String location = item.getLocation();
-                    if (location != null && !location.isEmpty()) {
-                        // ✅ 使用 Mapbox 替代 Geoapify
-                        Map<String, BigDecimal> coordinates = mapboxGeocodingService.geocodeAddress(location);
-                        
-                        if (coordinates != null) {
-                            item.setLatitude(coordinates.get("latitude"));
-                            item.setLongitude(coordinates.get("longitude"));
-                            itemsToUpdate.add(item);  // 收集而不是立即更新
-                            successCount.incrementAndGet();
-                            log.debug("✅ Geocoded (Mapbox): {} -> lat={}, lon={}", 
-                                item.getActivityName(), coordinates.get("latitude"), coordinates.get("longitude"));
-                        } else {
-                            // ⚠️ Mapbox 失败，尝试 Geoapify 作为备用
-                            log.warn("⚠️ Mapbox geocoding failed for: {}, trying Geoapify fallback", location);
-                            Map<String, BigDecimal> fallbackCoords = geoapifyService.geocodeAddress(location);
-                            if (fallbackCoords != null) {
-                                item.setLatitude(fallbackCoords.get("latitude"));
-                                item.setLongitude(fallbackCoords.get("longitude"));
-                                itemsToUpdate.add(item);  // 收集而不是立即更新
-                                successCount.incrementAndGet();
-                                log.debug("✅ Geocoded (Geoapify fallback): {}", item.getActivityName());
-                            } else {
-                                failCount.incrementAndGet();
-                                log.debug("⚠️ Geocoding failed for: {}", location);
-                            }
-                        }
-                    }
-                } catch (Exception e) {
-                    failCount.incrementAndGet();
-                    log.debug("Failed to geocode activity: {}", item.getActivityName(), e);
-                }
-            });
+        // 收集需要更新的项（避免 N+1 问题）
+        List<ItineraryItems> itemsToUpdate = new ArrayList<>();
+        for (ItineraryItems item : items) {
+            String location = item.getLocation();
+            if (location == null || location.isEmpty()) {
+                continue;
+            }
+            Map<String, BigDecimal> coordinates = coordinatesByLocation.get(location);
+            if (coordinates != null) {
+                item.setLatitude(coordinates.get("latitude"));
+                item.setLongitude(coordinates.get("longitude"));
+                itemsToUpdate.add(item);
+                successCount++;
+            } else {
+                failCount++;
+                log.debug("⚠️ Geocoding failed for: {}", location);
+            }
+        }
         
         // 批量更新数据库（一次性更新所有项，避免 N+1 问题）
         if (!itemsToUpdate.isEmpty()) {
@@ -648,8 +720,8 @@ public class ItineraryGenerationServiceImpl implements ItineraryGenerationServic
         
         long endTime = System.currentTimeMillis();
         long duration = endTime - startTime;
-        log.info("✅ Parallel geocoding completed (Mapbox): {} success, {} failed, duration: {}ms", 
-            successCount.get(), failCount.get(), duration);
+        log.info("✅ Batch geocoding completed (Mapbox): {} success, {} failed, duration: {}ms", 
+            successCount, failCount, duration);
     }
     
     // 内部类：行程计划
@@ -668,5 +740,6 @@ public class ItineraryGenerationServiceImpl implements ItineraryGenerationServic
         private Integer durationMinutes;
         private BigDecimal estimatedCost;
         private String location;
+        private String openingHours;
     }
 }
@@ -5,58 +5,72 @@ import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.travel.agent.config.MapboxConfig;
 import com.travel.agent.service.MapboxGeocodingService;
+import com.travel.agent.service.geocoding.BatchGeocodingEngine;
+import com.travel.agent.service.geocoding.GeocodePoint;
+import com.travel.agent.service.geocoding.GeocodeProvider;
+import com.travel.agent.service.http.OutboundHttpClients;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
-import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
-public class MapboxGeocodingServiceImpl implements MapboxGeocodingService {
+public class MapboxGeocodingServiceImpl implements MapboxGeocodingService, GeocodeProvider {
 
     private final MapboxConfig mapboxConfig;
+    private final BatchGeocodingEngine batchGeocodingEngine;
+    private final OutboundHttpClients httpClients;
     private final Gson gson = new Gson();
-    private OkHttpClient client;
 
     /**
-     * 初始化 HTTP 客户端（懒加载）
+     * 共享连接池的 mapbox-geocoding 客户端（超时见 agent.http.clients.mapbox-geocoding）
      */
     private OkHttpClient getClient() {
-        if (client == null) {
-            client = new OkHttpClient.Builder()
-                    .connectTimeout(mapboxConfig.getTimeout(), TimeUnit.MILLISECONDS)
-                    .readTimeout(mapboxConfig.getTimeout(), TimeUnit.MILLISECONDS)
-                    .writeTimeout(mapboxConfig.getTimeout(), TimeUnit.MILLISECONDS)
-                    .build();
-        }
-        return client;
+        return httpClients.client("mapbox-geocoding", Duration.ofMillis(mapboxConfig.getTimeout()));
     }
 
     /**
      * 地理编码：将地址转换为经纬度坐标
-     * 使用 Spring Cache 缓存结果（避免重复请求）
+     * 与批量查询共用同一份缓存（见 {@link BatchGeocodingEngine}）
      */
     @Override
-    @Cacheable(value = "mapboxGeocode", key = "#address", sync = true, condition = "#address != null && !#address.trim().isEmpty()")
     public Map<String, BigDecimal> geocodeAddress(String address) {
         if (address == null || address.trim().isEmpty()) {
             log.warn("Geocoding failed: address is empty");
             return null;
         }
+        GeocodePoint point = batchGeocodingEngine.geocode(List.of(address), this).coordinates().get(address);
+        return point != null ? point.toMap() : null;
+    }
+
+    @Override
+    public String name() {
+        return "mapbox";
+    }
 
+    @Override
+    public String rateLimitKey() {
+        return "mapbox-geocoding";
+    }
+
+    /**
+     * 直接请求 Mapbox Geocoding API（不经过缓存）
+     */
+    @Override
+    public Map<String, BigDecimal> fetch(String address) {
         try {
             // URL 编码地址
             String encodedAddress = URLEncoder.encode(address.trim(), StandardCharsets.UTF_8);
@@ -121,6 +135,9 @@ public class MapboxGeocodingServiceImpl implements MapboxGeocodingService {
                 Map<String, BigDecimal> result = new HashMap<>();
                 result.put("latitude", latitude);
                 result.put("longitude", longitude);
+                if (firstFeature.has("relevance")) {
+                    result.put("confidence", firstFeature.get("relevance").getAsBigDecimal());
+                }
 
                 log.debug("✅ Mapbox Geocoding success: {} -> lat={}, lon={}", 
                     address, latitude, longitude);
@@ -138,7 +155,7 @@ public class MapboxGeocodingServiceImpl implements MapboxGeocodingService {
     }
 
     /**
-     * 批量地理编码（并行处理，带缓存）
+     * 批量地理编码：去重 + 批量查缓存 + 限速并发请求未命中项 + Geoapify 兜底
      */
     @Override
     public Map<String, Map<String, BigDecimal>> batchGeocode(List<String> addresses) {
@@ -150,22 +167,11 @@ public class MapboxGeocodingServiceImpl implements MapboxGeocodingService {
 
         log.info("🗺️ Batch geocoding {} addresses using Mapbox", addresses.size());
         
-        // 使用并行流处理（利用缓存避免重复请求）
-        addresses.parallelStream().forEach(address -> {
-            try {
-                Map<String, BigDecimal> coords = geocodeAddress(address);
-                if (coords != null) {
-                    synchronized (results) {
-                        results.put(address, coords);
-                    }
-                }
-            } catch (Exception e) {
-                log.error("Failed to geocode address: {}", address, e);
-            }
-        });
+        BatchGeocodingEngine.BatchResult batch = batchGeocodingEngine.geocode(addresses, this);
+        batch.coordinates().forEach((address, point) -> results.put(address, point.toMap()));
 
-        log.info("✅ Batch geocoding completed: {}/{} successful", 
-            results.size(), addresses.size());
+        log.info("✅ Batch geocoding completed: {}/{} successful ({} cache hits)", 
+            results.size(), addresses.size(), batch.cacheHits());
 
         return results;
     }
@@ -7,6 +7,7 @@ import com.google.ortools.Loader;
 import com.google.ortools.constraintsolver.Assignment;
 import com.google.ortools.constraintsolver.FirstSolutionStrategy;
 import com.google.ortools.constraintsolver.LocalSearchMetaheuristic;
+import com.google.ortools.constraintsolver.RoutingDimension;
 import com.google.ortools.constraintsolver.RoutingIndexManager;
 import com.google.ortools.constraintsolver.RoutingModel;
 import com.google.ortools.constraintsolver.RoutingSearchParameters;
@@ -15,6 +16,18 @@ import com.google.protobuf.Duration;
 import com.travel.agent.config.MapboxConfig;
 import com.travel.agent.monitoring.RouteOptimizationMetrics;
 import com.travel.agent.service.RouteOptimizationService;
+import com.travel.agent.service.http.OutboundHttpClients;
+import com.travel.agent.service.ratelimit.ClusterRateLimiter;
+import com.travel.agent.service.routing.Haversine;
+import com.travel.agent.service.routing.HeldKarpSolver;
+import com.travel.agent.service.routing.LocalSearchTspSolver;
+import com.travel.agent.service.routing.OrToolsTspSolver;
+import com.travel.agent.service.routing.TimeWindow;
+import com.travel.agent.service.routing.TimeWindowScheduler;
+import com.travel.agent.service.routing.TravelTimeCache;
+import com.travel.agent.service.routing.TspSolutionCache;
+import com.travel.agent.service.routing.TripAssignment;
+import com.travel.agent.service.routing.TripClusterer;
 import io.micrometer.core.instrument.Timer;
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
@@ -22,18 +35,21 @@ import lombok.extern.slf4j.Slf4j;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
 import java.time.LocalTime;
 import java.time.format.DateTimeParseException;
 import java.util.*;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
 
 /**
  * 路线优化服务实现
- * 使用 Mapbox Matrix API 获取距离矩阵 + Google OR-Tools 求解 TSP
+ * 使用 Mapbox Matrix API 获取距离矩阵 + 分层 TSP 求解（Held-Karp / 2-opt 局部搜索 / Google OR-Tools），
+ * 再按营业时间与用餐时段排定开始时间（见 {@link TimeWindowScheduler}）
  */
 @Slf4j
 @Service
@@ -42,8 +58,62 @@ public class RouteOptimizationServiceImpl implements RouteOptimizationService {
 
     private final MapboxConfig mapboxConfig;
     private final RouteOptimizationMetrics metrics;
+    private final TravelTimeCache travelTimeCache;
+    private final TspSolutionCache solutionCache;
+    private final Executor matrixExecutor;
+    private final ClusterRateLimiter rateLimiter;
+    private final OutboundHttpClients httpClients;
+
+    // Mapbox Matrix API 单次请求最多 25 个坐标
+    private static final int MATRIX_MAX_COORDINATES = 25;
+    private static final int TILE_SOURCES = 12;
+    private static final int TILE_DESTINATIONS = 13;
+
+    // Mapbox Matrix API 默认额度 60 次/分钟，所有节点共享（agent.rate-limit.apis.mapbox-matrix）
+    private static final String MATRIX_RATE_LIMIT_KEY = "mapbox-matrix";
+
+    static final String TSP_TIER_EXACT = "exact";
+    static final String TSP_TIER_HEURISTIC = "heuristic";
+    static final String TSP_TIER_ORTOOLS = "ortools";
+    static final String TSP_TIER_ORTOOLS_TIME_WINDOWS = "ortools-vrptw";
+    static final String TSP_WARM_SUFFIX = "-warm";
+
+    // 编辑后重新优化时 OR-Tools 从上一次的解开始搜索，只需很短的时限
+    @Value("${agent.routing.tsp.warm-start-time-limit-ms:200}")
+    private long warmStartTimeLimitMillis;
+
+    @Value("${agent.routing.tsp.exact-max-nodes:12}")
+    private int exactMaxNodes;
+
+    @Value("${agent.routing.tsp.heuristic-max-nodes:60}")
+    private int heuristicMaxNodes;
+
+    @Value("${agent.routing.tsp.ortools-time-limit-seconds:3}")
+    private long orToolsTimeLimitSeconds;
+
+    // 营业时间 / 用餐时段约束；关闭时退化为按时长 + 行驶时间顺排
+    @Value("${agent.routing.time-windows.enabled:true}")
+    private boolean timeWindowsEnabled;
+
+    @Value("${agent.routing.time-windows.day-end:22:00}")
+    private LocalTime dayEnd;
+
+    @Value("${agent.routing.time-windows.buffer-minutes:15}")
+    private int bufferMinutes;
+
+    // 多日活动重新分组（k-medoids），总行驶时间至少减少该比例才替换 LLM 的分天方案
+    @Value("${agent.routing.trip-clustering.enabled:true}")
+    private boolean tripClusteringEnabled;
+
+    @Value("${agent.routing.trip-clustering.min-savings:0.05}")
+    private double tripClusteringMinSavings;
+
+    @Value("${agent.routing.trip-clustering.max-activities:100}")
+    private int tripClusteringMaxActivities;
+
+    // OR-Tools 时间窗模型中每超出 1 分钟的惩罚（弧成本单位为秒）
+    private static final long TIME_WINDOW_PENALTY_PER_MINUTE = 600;
     private final Gson gson = new Gson();
-    private OkHttpClient client;
     private boolean orToolsLoaded = false;
 
     @PostConstruct
@@ -53,19 +123,15 @@ public class RouteOptimizationServiceImpl implements RouteOptimizationService {
             orToolsLoaded = true;
             log.info("Google OR-Tools native libraries loaded successfully");
         } catch (Exception e) {
-            log.error("Failed to load OR-Tools native libraries. Route optimization will be disabled.", e);
+            log.error("Failed to load OR-Tools native libraries. Large days will use the heuristic solver.", e);
         }
     }
 
+    /**
+     * 共享连接池的 mapbox-matrix 客户端（超时见 agent.http.clients.mapbox-matrix）
+     */
     private OkHttpClient getClient() {
-        if (client == null) {
-            client = new OkHttpClient.Builder()
-                    .connectTimeout(mapboxConfig.getTimeout(), TimeUnit.MILLISECONDS)
-                    .readTimeout(mapboxConfig.getTimeout(), TimeUnit.MILLISECONDS)
-                    .writeTimeout(mapboxConfig.getTimeout(), TimeUnit.MILLISECONDS)
-                    .build();
-        }
-        return client;
+        return httpClients.client("mapbox-matrix", java.time.Duration.ofMillis(mapboxConfig.getTimeout()));
     }
 
     @Override
@@ -73,40 +139,41 @@ public class RouteOptimizationServiceImpl implements RouteOptimizationService {
             List<Map<String, Object>> activities,
             Map<String, Map<String, BigDecimal>> geoCoordinates,
             String destinationContext) {
+        return optimizeDayRoute(activities, geoCoordinates, destinationContext, false);
+    }
+
+    /**
+     * 编辑后重新优化：当前顺序即上一次的解，作为局部搜索 / OR-Tools 的初始解，并使用较短的时限
+     */
+    @Override
+    public List<Map<String, Object>> reoptimizeDayRoute(
+            List<Map<String, Object>> activities,
+            Map<String, Map<String, BigDecimal>> geoCoordinates,
+            String destinationContext) {
+        return optimizeDayRoute(activities, geoCoordinates, destinationContext, true);
+    }
+
+    private List<Map<String, Object>> optimizeDayRoute(
+            List<Map<String, Object>> activities,
+            Map<String, Map<String, BigDecimal>> geoCoordinates,
+            String destinationContext,
+            boolean warmStart) {
 
         if (activities == null || activities.size() < 3) {
             log.debug("Skipping route optimization: fewer than 3 activities");
             return activities;
         }
 
-        if (!orToolsLoaded) {
-            log.warn("OR-Tools not loaded, returning original order");
-            return activities;
-        }
-
         try {
             // 1. 构建有坐标的活动索引列表
             List<Integer> geocodedIndices = new ArrayList<>();
             List<double[]> coordinates = new ArrayList<>();
 
             for (int i = 0; i < activities.size(); i++) {
-                Map<String, Object> activity = activities.get(i);
-                String location = (String) activity.get("location");
-                if (location == null) continue;
-
-                // 尝试带目的地上下文的 key
-                String fullKey = location + ", " + destinationContext;
-                Map<String, BigDecimal> coords = geoCoordinates.get(fullKey);
-                if (coords == null) {
-                    coords = geoCoordinates.get(location);
-                }
-
-                if (coords != null && coords.get("latitude") != null && coords.get("longitude") != null) {
+                double[] coords = lookupCoordinates(activities.get(i), geoCoordinates, destinationContext);
+                if (coords != null) {
                     geocodedIndices.add(i);
-                    coordinates.add(new double[]{
-                            coords.get("longitude").doubleValue(),
-                            coords.get("latitude").doubleValue()
-                    });
+                    coordinates.add(coords);
                 }
             }
 
@@ -124,16 +191,20 @@ public class RouteOptimizationServiceImpl implements RouteOptimizationService {
             int depotIndex = findDepotIndex(activities, geocodedIndices);
 
             // 4. 求解 TSP
-            int[] optimizedOrder = solveTSP(distanceMatrix, depotIndex);
+            int[] optimizedOrder = solveTSP(distanceMatrix, depotIndex,
+                    warmStart ? currentOrder(coordinates.size(), depotIndex) : null);
             if (optimizedOrder == null) {
                 log.warn("TSP solver returned no solution, keeping original order");
                 metrics.recordOptimizationFailure();
                 return activities;
             }
 
-            // 5. 重排活动
-            List<Map<String, Object>> result = reorderActivities(
-                    activities, geocodedIndices, optimizedOrder, distanceMatrix);
+            // 5. 按时间窗排程（TSP 顺序不可行时调整顺序）
+            TimeWindowScheduler.Schedule schedule = scheduleDay(
+                    buildScheduleProblem(activities, geocodedIndices, distanceMatrix, depotIndex), optimizedOrder);
+
+            // 6. 重排活动
+            List<Map<String, Object>> result = reorderActivities(activities, geocodedIndices, schedule);
 
             metrics.recordOptimizationSuccess();
             log.info("Route optimized: {} activities reordered", geocodedIndices.size());
@@ -146,40 +217,353 @@ public class RouteOptimizationServiceImpl implements RouteOptimizationService {
         }
     }
 
+    /**
+     * 多日重新分组：所有非住宿活动按行驶时间做带容量约束的 k-medoids（每天一个簇），
+     * 新方案各天最优路线的总行驶时间比原方案少 min-savings 以上才采用。
+     * 住宿、没有坐标的活动和不足 3 个活动的天保持不动。
+     */
+    @Override
+    public TripAssignment assignActivitiesToDays(
+            List<List<Map<String, Object>>> days,
+            Map<String, Map<String, BigDecimal>> geoCoordinates,
+            String destinationContext) {
+
+        TripAssignment unchanged = new TripAssignment(days, 0, 0, 0);
+        if (!tripClusteringEnabled || days == null || days.size() < 2) {
+            return unchanged;
+        }
+
+        try {
+            // 1. 收集有坐标的活动：fixedDay ≥ 0 为不参与分组的节点，-1 为可移动节点
+            List<double[]> coordinates = new ArrayList<>();
+            List<int[]> positions = new ArrayList<>();
+            List<Integer> fixedDay = new ArrayList<>();
+            List<Integer> movable = new ArrayList<>();
+            List<Integer> initialDay = new ArrayList<>();
+            // 活动类型编号：分组时每天每种类型的数量保持不变（用餐、交通不会集中到某一天）
+            List<Integer> typeOf = new ArrayList<>();
+            Map<String, Integer> typeIds = new HashMap<>();
+            for (int d = 0; d < days.size(); d++) {
+                List<Map<String, Object>> activities = days.get(d);
+                if (activities == null) {
+                    continue;
+                }
+                for (int i = 0; i < activities.size(); i++) {
+                    Map<String, Object> activity = activities.get(i);
+                    double[] coords = lookupCoordinates(activity, geoCoordinates, destinationContext);
+                    if (coords == null) {
+                        continue;
+                    }
+                    int node = coordinates.size();
+                    coordinates.add(coords);
+                    positions.add(new int[]{d, i});
+                    boolean pinned = activities.size() < 3
+                            || "accommodation".equalsIgnoreCase((String) activity.get("type"));
+                    fixedDay.add(pinned ? d : -1);
+                    if (!pinned) {
+                        movable.add(node);
+                        initialDay.add(d);
+                        String type = activity.get("type") instanceof String t ? t.toLowerCase(Locale.ROOT) : "";
+                        typeOf.add(typeIds.computeIfAbsent(type, t -> typeIds.size()));
+                    }
+                }
+            }
+            if (movable.size() < 4 || coordinates.size() > tripClusteringMaxActivities) {
+                return unchanged;
+            }
+
+            // 2. 整个行程一次取矩阵，按往返平均做对称距离
+            long[][] matrix = getDistanceMatrix(coordinates);
+            int m = movable.size();
+            long[][] distance = new long[m][m];
+            for (int a = 0; a < m; a++) {
+                for (int b = 0; b < m; b++) {
+                    distance[a][b] = (matrix[movable.get(a)][movable.get(b)] + matrix[movable.get(b)][movable.get(a)]) / 2;
+                }
+            }
+            int[] initial = initialDay.stream().mapToInt(Integer::intValue).toArray();
+            int[] types = typeOf.stream().mapToInt(Integer::intValue).toArray();
+            int[] planned = TripClusterer.cluster(distance, initial, types, days.size());
+
+            int moved = 0;
+            for (int k = 0; k < m; k++) {
+                if (planned[k] != initial[k]) {
+                    moved++;
+                }
+            }
+            if (moved == 0) {
+                return unchanged;
+            }
+
+            // 3. 用各天最优路线的总行驶时间比较新旧方案
+            long originalSeconds = tripRouteSeconds(matrix, fixedDay, movable, initial, days.size());
+            long plannedSeconds = tripRouteSeconds(matrix, fixedDay, movable, planned, days.size());
+            if (plannedSeconds > originalSeconds * (1 - tripClusteringMinSavings)) {
+                log.info("Trip clustering kept the original day split: {}s vs {}s after regrouping",
+                        originalSeconds, plannedSeconds);
+                return new TripAssignment(days, 0, originalSeconds, originalSeconds);
+            }
+
+            // 4. 按新方案重建各天活动：留下的活动保持原位，换入的活动接在后面，再按计划开始时间排序
+            Map<Map<String, Object>, Integer> target = new IdentityHashMap<>();
+            for (int k = 0; k < m; k++) {
+                int[] position = positions.get(movable.get(k));
+                target.put(days.get(position[0]).get(position[1]), planned[k]);
+            }
+            List<List<Map<String, Object>>> regrouped = new ArrayList<>(days.size());
+            for (int d = 0; d < days.size(); d++) {
+                regrouped.add(new ArrayList<>());
+            }
+            for (int d = 0; d < days.size(); d++) {
+                if (days.get(d) == null) {
+                    continue;
+                }
+                for (Map<String, Object> activity : days.get(d)) {
+                    regrouped.get(target.getOrDefault(activity, d)).add(activity);
+                }
+            }
+            for (List<Map<String, Object>> activities : regrouped) {
+                activities.sort(Comparator.comparing(this::parseStartTime,
+                        Comparator.nullsLast(Comparator.naturalOrder())));
+            }
+
+            metrics.recordTripClustering(moved, originalSeconds - plannedSeconds);
+            log.info("🗓️ Trip clustering moved {}/{} activities across {} days: {}s → {}s driving",
+                    moved, m, days.size(), originalSeconds, plannedSeconds);
+            return new TripAssignment(regrouped, moved, originalSeconds, plannedSeconds);
+
+        } catch (Exception e) {
+            log.warn("Trip clustering failed, keeping the original day split: {}", e.getMessage());
+            return unchanged;
+        }
+    }
+
+    /**
+     * 各天最优路线（住宿为起点）的行驶时间之和
+     */
+    private long tripRouteSeconds(long[][] matrix, List<Integer> fixedDay, List<Integer> movable,
+                                  int[] assignment, int days) {
+        List<List<Integer>> nodesByDay = new ArrayList<>(days);
+        for (int d = 0; d < days; d++) {
+            nodesByDay.add(new ArrayList<>());
+        }
+        for (int node = 0; node < fixedDay.size(); node++) {
+            if (fixedDay.get(node) >= 0) {
+                nodesByDay.get(fixedDay.get(node)).add(node);
+            }
+        }
+        for (int k = 0; k < movable.size(); k++) {
+            nodesByDay.get(assignment[k]).add(movable.get(k));
+        }
+
+        long total = 0;
+        for (List<Integer> nodes : nodesByDay) {
+            int n = nodes.size();
+            if (n < 2) {
+                continue;
+            }
+            long[][] sub = new long[n][n];
+            for (int a = 0; a < n; a++) {
+                for (int b = 0; b < n; b++) {
+                    sub[a][b] = matrix[nodes.get(a)][nodes.get(b)];
+                }
+            }
+            // 住宿节点先加入，存在时即为下标 0
+            int[] order = n <= Math.min(exactMaxNodes, HeldKarpSolver.MAX_NODES)
+                    ? HeldKarpSolver.solve(sub, 0)
+                    : LocalSearchTspSolver.solve(sub, 0);
+            total += computeOptimizedRouteCost(sub, order);
+        }
+        return total;
+    }
+
+    private double[] lookupCoordinates(Map<String, Object> activity,
+                                       Map<String, Map<String, BigDecimal>> geoCoordinates,
+                                       String destinationContext) {
+        String location = (String) activity.get("location");
+        if (location == null) {
+            return null;
+        }
+
+        // 尝试带目的地上下文的 key
+        Map<String, BigDecimal> coords = geoCoordinates.get(location + ", " + destinationContext);
+        if (coords == null) {
+            coords = geoCoordinates.get(location);
+        }
+        if (coords == null || coords.get("latitude") == null || coords.get("longitude") == null) {
+            return null;
+        }
+        return new double[]{coords.get("longitude").doubleValue(), coords.get("latitude").doubleValue()};
+    }
+
+    /**
+     * 先用跨行程缓存填充单元格，只为缺失的行/列请求 Matrix API
+     */
     @Override
     public long[][] getDistanceMatrix(List<double[]> coordinates) {
+        int n = coordinates.size();
+        long[][] matrix = new long[n][n];
+        boolean[][] known = new boolean[n][n];
+        for (int i = 0; i < n; i++) {
+            known[i][i] = true;
+        }
+
+        String profile = matrixProfile();
+        long[] cells = travelTimeCache.cellsOf(coordinates);
+        int hits = travelTimeCache.fill(profile, cells, matrix, known);
+        int missing = n * (n - 1) - hits;
+        metrics.recordMatrixCells(hits, missing);
+        if (missing == 0) {
+            log.debug("Duration matrix {}x{} served entirely from cache", n, n);
+            return matrix;
+        }
+
+        // 只请求包含缺失单元格的行（sources）和列（destinations）
+        List<Integer> sources = new ArrayList<>();
+        List<Integer> destinations = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            boolean rowMissing = false;
+            boolean columnMissing = false;
+            for (int j = 0; j < n; j++) {
+                rowMissing |= !known[i][j];
+                columnMissing |= !known[j][i];
+            }
+            if (rowMissing) {
+                sources.add(i);
+            }
+            if (columnMissing) {
+                destinations.add(i);
+            }
+        }
+
+        boolean[][] fresh = new boolean[n][n];
+        int tiles = fetchMatrixTiles(coordinates, sources, destinations, matrix, known, fresh);
+        travelTimeCache.putAll(profile, cells, matrix, fresh);
+        log.debug("Duration matrix {}x{}: {} cells from cache, {}x{} requested in {} tile(s)", n, n, hits,
+                sources.size(), destinations.size(), tiles);
+        return matrix;
+    }
+
+    /**
+     * 按 Mapbox 单次请求最多 25 个坐标的限制拆分 sources × destinations：
+     * sources 每块 ≤12、destinations 每块 ≤13，任意组合的坐标并集都不超过 25。
+     * 分块在 matrixExecutor 上并发请求（限速），各分块写入互不重叠的单元格；
+     * 单个分块失败时只对该分块内的单元格使用 Haversine 估算。
+     *
+     * @return 实际请求的分块数
+     */
+    private int fetchMatrixTiles(List<double[]> coordinates, List<Integer> sources, List<Integer> destinations,
+                                 long[][] matrix, boolean[][] known, boolean[][] fresh) {
+        Set<Integer> union = new TreeSet<>(sources);
+        union.addAll(destinations);
+
+        List<List<Integer>[]> tiles = new ArrayList<>();
+        if (union.size() <= MATRIX_MAX_COORDINATES) {
+            tiles.add(tile(sources, destinations));
+        } else {
+            for (int s = 0; s < sources.size(); s += TILE_SOURCES) {
+                List<Integer> tileSources = sources.subList(s, Math.min(sources.size(), s + TILE_SOURCES));
+                for (int d = 0; d < destinations.size(); d += TILE_DESTINATIONS) {
+                    List<Integer> tileDestinations =
+                            destinations.subList(d, Math.min(destinations.size(), d + TILE_DESTINATIONS));
+                    if (hasMissingCell(tileSources, tileDestinations, known)) {
+                        tiles.add(tile(tileSources, tileDestinations));
+                    }
+                }
+            }
+        }
+
+        if (tiles.size() == 1) {
+            fetchTileOrEstimate(coordinates, tiles.get(0)[0], tiles.get(0)[1], matrix, known, fresh);
+        } else {
+            CompletableFuture.allOf(tiles.stream()
+                    .map(tile -> CompletableFuture.runAsync(() ->
+                            fetchTileOrEstimate(coordinates, tile[0], tile[1], matrix, known, fresh), matrixExecutor))
+                    .toArray(CompletableFuture[]::new)).join();
+        }
+        return tiles.size();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Integer>[] tile(List<Integer> sources, List<Integer> destinations) {
+        return new List[]{sources, destinations};
+    }
+
+    private static boolean hasMissingCell(List<Integer> sources, List<Integer> destinations, boolean[][] known) {
+        for (int i : sources) {
+            for (int j : destinations) {
+                if (!known[i][j]) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void fetchTileOrEstimate(List<double[]> coordinates, List<Integer> sources, List<Integer> destinations,
+                                     long[][] matrix, boolean[][] known, boolean[][] fresh) {
         try {
-            return fetchMapboxMatrix(coordinates);
+            if (!rateLimiter.acquire(MATRIX_RATE_LIMIT_KEY)) {
+                metrics.recordHaversineFallback();
+                fillHaversine(coordinates, sources, destinations, matrix, known);
+                return;
+            }
+            fetchMapboxMatrix(coordinates, sources, destinations, matrix, fresh);
         } catch (Exception e) {
-            log.warn("Mapbox Matrix API failed, falling back to Haversine estimation", e);
+            log.warn("Mapbox Matrix API failed for {}x{} tile, falling back to Haversine estimation: {}",
+                    sources.size(), destinations.size(), e.getMessage());
             metrics.recordHaversineFallback();
-            return computeHaversineMatrix(coordinates);
+            fillHaversine(coordinates, sources, destinations, matrix, known);
         }
     }
 
     /**
-     * 调用 Mapbox Matrix API 获取驾驶时间矩阵
+     * Matrix URL 的最后一段即路线 profile（driving / driving-traffic / walking / cycling）
      */
-    private long[][] fetchMapboxMatrix(List<double[]> coordinates) throws Exception {
-        if (coordinates.size() > 25) {
-            log.warn("Too many coordinates ({}) for Mapbox Matrix API (max 25), using Haversine",
-                    coordinates.size());
-            metrics.recordHaversineFallback();
-            return computeHaversineMatrix(coordinates);
+    private String matrixProfile() {
+        String url = mapboxConfig.getMatrixUrl();
+        return url.substring(url.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * 调用 Mapbox Matrix API 获取 sources × destinations 的驾驶时间，写入 matrix，
+     * 请求到的单元格在 fresh 中标记
+     */
+    private void fetchMapboxMatrix(List<double[]> coordinates, List<Integer> sources,
+                                   List<Integer> destinations, long[][] matrix, boolean[][] fresh) throws Exception {
+        // 请求中只包含涉及到的坐标
+        Set<Integer> union = new TreeSet<>(sources);
+        union.addAll(destinations);
+        List<Integer> involved = new ArrayList<>(union);
+        if (involved.size() > MATRIX_MAX_COORDINATES) {
+            throw new IllegalStateException("Too many coordinates (" + involved.size()
+                    + ") for Mapbox Matrix API (max " + MATRIX_MAX_COORDINATES + ")");
+        }
+        Map<Integer, Integer> position = new HashMap<>();
+        for (int k = 0; k < involved.size(); k++) {
+            position.put(involved.get(k), k);
         }
 
         // 构建坐标字符串: lon1,lat1;lon2,lat2;...
-        String coordString = coordinates.stream()
-                .map(c -> String.format(Locale.US, "%.6f,%.6f", c[0], c[1]))
+        String coordString = involved.stream()
+                .map(i -> String.format(Locale.US, "%.6f,%.6f", coordinates.get(i)[0], coordinates.get(i)[1]))
                 .collect(Collectors.joining(";"));
 
-        String url = String.format("%s/%s?access_token=%s&annotations=duration",
+        StringBuilder url = new StringBuilder(String.format("%s/%s?access_token=%s&annotations=duration",
                 mapboxConfig.getMatrixUrl(),
                 coordString,
-                mapboxConfig.getAccessToken());
+                mapboxConfig.getAccessToken()));
+        if (sources.size() < involved.size()) {
+            url.append("&sources=").append(sources.stream()
+                    .map(i -> position.get(i).toString()).collect(Collectors.joining(";")));
+        }
+        if (destinations.size() < involved.size()) {
+            url.append("&destinations=").append(destinations.stream()
+                    .map(i -> position.get(i).toString()).collect(Collectors.joining(";")));
+        }
 
         Request request = new Request.Builder()
-                .url(url)
+                .url(url.toString())
                 .get()
                 .build();
 
@@ -199,23 +583,26 @@ public class RouteOptimizationServiceImpl implements RouteOptimizationService {
             }
 
             JsonArray durations = json.getAsJsonArray("durations");
-            int n = coordinates.size();
-            long[][] matrix = new long[n][n];
-
-            for (int i = 0; i < n; i++) {
-                JsonArray row = durations.get(i).getAsJsonArray();
-                for (int j = 0; j < n; j++) {
-                    if (row.get(j).isJsonNull()) {
-                        // 无法路由时用大值填充
+
+            for (int s = 0; s < sources.size(); s++) {
+                JsonArray row = durations.get(s).getAsJsonArray();
+                int i = sources.get(s);
+                for (int d = 0; d < destinations.size(); d++) {
+                    int j = destinations.get(d);
+                    if (i == j) {
+                        continue;
+                    }
+                    if (row.get(d).isJsonNull()) {
+                        // 无法路由时用大值填充；不写入缓存（可能只是坐标落在路网外，不能按正常结果长期复用）
                         matrix[i][j] = 999999;
                     } else {
-                        matrix[i][j] = (long) row.get(j).getAsDouble();
+                        matrix[i][j] = (long) row.get(d).getAsDouble();
+                        fresh[i][j] = true;
                     }
                 }
             }
 
-            log.debug("Mapbox Matrix API returned {}x{} duration matrix", n, n);
-            return matrix;
+            log.debug("Mapbox Matrix API returned {}x{} duration matrix", sources.size(), destinations.size());
         }
         finally {
             metrics.stopMatrixApi(matrixSample);
@@ -223,53 +610,38 @@ public class RouteOptimizationServiceImpl implements RouteOptimizationService {
     }
 
     /**
-     * Haversine 距离回退方案
-     * 假设平均速度 40km/h，将距离转换为预估驾驶时间（秒）
+     * 用 Haversine 估算填充 sources × destinations 中尚未填充的单元格
      */
-    long[][] computeHaversineMatrix(List<double[]> coordinates) {
-        int n = coordinates.size();
-        long[][] matrix = new long[n][n];
-
-        for (int i = 0; i < n; i++) {
-            for (int j = 0; j < n; j++) {
-                if (i == j) {
-                    matrix[i][j] = 0;
-                } else {
-                    double distKm = haversine(
-                            coordinates.get(i)[1], coordinates.get(i)[0],
-                            coordinates.get(j)[1], coordinates.get(j)[0]);
-                    // 40 km/h -> 距离(km) / 40(km/h) * 3600(秒/小时)
-                    matrix[i][j] = (long) (distKm / 40.0 * 3600.0);
+    private void fillHaversine(List<double[]> coordinates, List<Integer> sources, List<Integer> destinations,
+                               long[][] matrix, boolean[][] known) {
+        for (int i : sources) {
+            for (int j : destinations) {
+                if (!known[i][j]) {
+                    matrix[i][j] = Haversine.seconds(coordinates.get(i), coordinates.get(j));
                 }
             }
         }
-
-        log.debug("Computed Haversine-based {}x{} duration matrix", n, n);
-        return matrix;
-    }
-
-    /**
-     * Haversine 公式计算两点间大圆距离（km）
-     */
-    private double haversine(double lat1, double lon1, double lat2, double lon2) {
-        double R = 6371.0; // 地球半径 (km)
-        double dLat = Math.toRadians(lat2 - lat1);
-        double dLon = Math.toRadians(lon2 - lon1);
-        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
-                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
-                * Math.sin(dLon / 2) * Math.sin(dLon / 2);
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-        return R * c;
+        log.debug("Filled {}x{} duration cells with Haversine estimates", sources.size(), destinations.size());
     }
 
     /**
-     * 使用 Google OR-Tools 求解 TSP
+     * 分层求解 TSP
+     * - n ≤ exact-max-nodes：Held-Karp 精确解（微秒~毫秒级）
+     * - n ≤ heuristic-max-nodes：最近邻 + 2-opt + Or-opt（毫秒级）
+     * - 更大规模：Google OR-Tools 引导局部搜索（跑满时间上限）
      *
      * @param durationMatrix NxN 驾驶时间矩阵（秒）
      * @param depotIndex     起点索引（accommodation 活动）
      * @return 最优访问顺序数组，null 表示无解
      */
     int[] solveTSP(long[][] durationMatrix, int depotIndex) {
+        return solveTSP(durationMatrix, depotIndex, null);
+    }
+
+    /**
+     * @param initialOrder 可选的初始解（order[0] = depot），用于编辑后 warm start
+     */
+    int[] solveTSP(long[][] durationMatrix, int depotIndex, int[] initialOrder) {
         int n = durationMatrix.length;
         if (n <= 2) {
             // 2 个点无需优化
@@ -278,46 +650,34 @@ public class RouteOptimizationServiceImpl implements RouteOptimizationService {
             return trivial;
         }
 
-        Timer.Sample tspSample = metrics.startTspSolver();
-
-        // 创建路由索引管理器：n 个节点，1 辆车，从 depotIndex 出发
-        RoutingIndexManager manager = new RoutingIndexManager(n, 1, depotIndex);
-        RoutingModel routing = new RoutingModel(manager);
-
-        // 注册运输成本回调
-        final int transitCallbackIndex = routing.registerTransitCallback(
-                (long fromIndex, long toIndex) -> {
-                    int fromNode = manager.indexToNode(fromIndex);
-                    int toNode = manager.indexToNode(toIndex);
-                    return durationMatrix[fromNode][toNode];
-                });
-
-        routing.setArcCostEvaluatorOfAllVehicles(transitCallbackIndex);
-
-        // 配置搜索参数（Demo优化：3秒超时确保快速响应）
-        RoutingSearchParameters searchParameters = main.defaultRoutingSearchParameters()
-                .toBuilder()
-                .setFirstSolutionStrategy(FirstSolutionStrategy.Value.PATH_CHEAPEST_ARC)
-                .setLocalSearchMetaheuristic(LocalSearchMetaheuristic.Value.GUIDED_LOCAL_SEARCH)
-                .setTimeLimit(Duration.newBuilder().setSeconds(3).build())  // 降低到3秒
-                .build();
-
-        // 求解
-        Assignment solution = routing.solveWithParameters(searchParameters);
+        // 相同（量化后）矩阵 + depot 直接复用之前的解
+        String fingerprint = solutionCache.isEnabled() ? solutionCache.fingerprint(durationMatrix, depotIndex) : null;
+        if (fingerprint != null) {
+            int[] cached = solutionCache.get(fingerprint, n, depotIndex);
+            metrics.recordTspCache(cached != null);
+            if (cached != null) {
+                log.debug("TSP solution cache hit: {} nodes", n);
+                return cached;
+            }
+        }
 
-        if (solution == null) {
-            log.warn("OR-Tools TSP solver found no solution for {} nodes", n);
-            metrics.stopTspSolver(tspSample);
+        String tier = selectTspTier(n);
+        boolean warm = initialOrder != null && !TSP_TIER_EXACT.equals(tier);
+        Timer.Sample tspSample = metrics.startTspSolver();
+        int[] order = switch (tier) {
+            case TSP_TIER_EXACT -> HeldKarpSolver.solve(durationMatrix, depotIndex);
+            case TSP_TIER_HEURISTIC -> warm
+                    ? LocalSearchTspSolver.improve(durationMatrix, initialOrder)
+                    : LocalSearchTspSolver.solve(durationMatrix, depotIndex);
+            default -> solveWithOrTools(durationMatrix, depotIndex, warm ? initialOrder : null);
+        };
+        metrics.stopTspSolver(tspSample, warm ? tier + TSP_WARM_SUFFIX : tier);
+
+        if (order == null) {
             return null;
         }
-
-        // 提取路线
-        int[] order = new int[n];
-        long index = routing.start(0);
-        int step = 0;
-        while (!routing.isEnd(index)) {
-            order[step++] = manager.indexToNode(index);
-            index = solution.value(routing.nextVar(index));
+        if (fingerprint != null) {
+            solutionCache.put(fingerprint, order);
         }
 
         // 计算并记录优化效果
@@ -325,11 +685,48 @@ public class RouteOptimizationServiceImpl implements RouteOptimizationService {
         long optimizedCost = computeOptimizedRouteCost(durationMatrix, order);
         if (originalCost > 0) {
             double savings = (1.0 - (double) optimizedCost / originalCost) * 100;
-            log.info("TSP optimization: {} nodes, original={}s, optimized={}s, savings={}%",
-                    n, originalCost, optimizedCost, String.format("%.1f", savings));
+            log.info("TSP optimization ({}{}): {} nodes, original={}s, optimized={}s, savings={}%",
+                    tier, warm ? ", warm start" : "", n, originalCost, optimizedCost, String.format("%.1f", savings));
         }
+        return order;
+    }
 
-        metrics.stopTspSolver(tspSample);
+    /**
+     * 当前顺序（depot 提到最前）作为初始解
+     */
+    private static int[] currentOrder(int n, int depot) {
+        int[] order = new int[n];
+        order[0] = depot;
+        for (int i = 0, k = 1; i < n; i++) {
+            if (i != depot) {
+                order[k++] = i;
+            }
+        }
+        return order;
+    }
+
+    private String selectTspTier(int n) {
+        if (n <= Math.min(exactMaxNodes, HeldKarpSolver.MAX_NODES)) {
+            return TSP_TIER_EXACT;
+        }
+        if (n <= heuristicMaxNodes || !orToolsLoaded) {
+            return TSP_TIER_HEURISTIC;
+        }
+        return TSP_TIER_ORTOOLS;
+    }
+
+    /**
+     * 使用 Google OR-Tools 求解 TSP（大规模实例）
+     * 给出初始解时从该解开始搜索，时限缩短为 warm-start-time-limit
+     */
+    private int[] solveWithOrTools(long[][] durationMatrix, int depotIndex, int[] initialOrder) {
+        java.time.Duration timeLimit = initialOrder != null
+                ? java.time.Duration.ofMillis(warmStartTimeLimitMillis)
+                : java.time.Duration.ofSeconds(orToolsTimeLimitSeconds);
+        int[] order = OrToolsTspSolver.solve(durationMatrix, depotIndex, initialOrder, timeLimit);
+        if (order == null) {
+            log.warn("OR-Tools TSP solver found no solution for {} nodes", durationMatrix.length);
+        }
         return order;
     }
 
@@ -371,82 +768,177 @@ public class RouteOptimizationServiceImpl implements RouteOptimizationService {
     }
 
     /**
-     * 根据 TSP 求解结果重排活动并更新 startTime
+     * 构建排程问题：时间窗 = 营业时间（openingHours）∩ 用餐时段，depot 活动的原始开始时间为当天起点；
+     * 标记了 fixedStartTime 的活动（用户指定的时间）只能在原定时间开始
      */
-    private List<Map<String, Object>> reorderActivities(
-            List<Map<String, Object>> activities,
-            List<Integer> geocodedIndices,
-            int[] optimizedOrder,
-            long[][] distanceMatrix) {
+    private TimeWindowScheduler.Problem buildScheduleProblem(List<Map<String, Object>> activities,
+                                                             List<Integer> geocodedIndices,
+                                                             long[][] distanceMatrix, int depotIndex) {
+        int n = geocodedIndices.size();
+        int[] durations = new int[n];
+        TimeWindow[] windows = new TimeWindow[n];
+        for (int i = 0; i < n; i++) {
+            Map<String, Object> activity = activities.get(geocodedIndices.get(i));
+            durations[i] = parseDurationMinutes(activity);
+            if (timeWindowsEnabled) {
+                LocalTime planned = parseStartTime(activity);
+                windows[i] = TimeWindow.intersect(
+                        TimeWindow.parse((String) activity.get("openingHours")),
+                        TimeWindow.mealSlot((String) activity.get("name"), (String) activity.get("type"),
+                                planned != null ? toMinutes(planned) : -1));
+            }
+            if (Boolean.TRUE.equals(activity.get("fixedStartTime"))) {
+                LocalTime fixed = parseStartTime(activity);
+                if (fixed != null) {
+                    int minutes = toMinutes(fixed);
+                    windows[i] = new TimeWindow(minutes, Math.min(TimeWindow.END_OF_DAY, minutes + durations[i]));
+                }
+            }
+        }
 
-        // 构建优化后的活动列表
-        List<Map<String, Object>> result = new ArrayList<>();
+        LocalTime start = parseStartTime(activities.get(geocodedIndices.get(depotIndex)));
+        int dayStart = start != null ? toMinutes(start) : 9 * 60;
+        int latestEnd = timeWindowsEnabled ? toMinutes(dayEnd) : TimeWindow.END_OF_DAY;
+        return new TimeWindowScheduler.Problem(distanceMatrix, depotIndex, durations, windows,
+                dayStart, Math.max(latestEnd, dayStart), bufferMinutes);
+    }
 
-        // 先加入优化后的有坐标活动
-        Set<Integer> geocodedSet = new HashSet<>(geocodedIndices);
-        for (int orderIdx : optimizedOrder) {
-            int activityIdx = geocodedIndices.get(orderIdx);
-            result.add(new HashMap<>(activities.get(activityIdx)));
+    /**
+     * 小规模用插入启发式；超过启发式规模且 OR-Tools 可用时建 VRPTW 模型
+     */
+    private TimeWindowScheduler.Schedule scheduleDay(TimeWindowScheduler.Problem problem, int[] tspOrder) {
+        TimeWindowScheduler.Schedule schedule;
+        int n = tspOrder.length;
+        if (n > heuristicMaxNodes && orToolsLoaded
+                && !TimeWindowScheduler.evaluate(problem, tspOrder, false).feasible()) {
+            int[] order = solveTimeWindowsWithOrTools(problem);
+            schedule = order != null
+                    ? TimeWindowScheduler.evaluate(problem, order, !Arrays.equals(order, tspOrder))
+                    : TimeWindowScheduler.schedule(problem, tspOrder);
+        } else {
+            schedule = TimeWindowScheduler.schedule(problem, tspOrder);
         }
 
-        // 附加没有坐标的活动到末尾（保持原始相对顺序）
-        for (int i = 0; i < activities.size(); i++) {
-            if (!geocodedSet.contains(i)) {
-                result.add(new HashMap<>(activities.get(i)));
+        metrics.recordSchedule(schedule.feasible(), schedule.reordered());
+        if (!schedule.feasible()) {
+            log.warn("No fully feasible schedule for {} activities: {} min outside opening hours / meal slots",
+                    n, schedule.violation());
+        } else if (schedule.reordered()) {
+            log.info("TSP order adjusted to respect time windows: finish at {}", formatMinutes(schedule.finish()));
+        }
+        return schedule;
+    }
+
+    /**
+     * OR-Tools VRPTW：时间维度 = 活动时长 + 行驶时间 + 缓冲，允许等待开门；
+     * 超出营业时间 / 当天结束时间用软上界惩罚，保证总能得到解
+     */
+    private int[] solveTimeWindowsWithOrTools(TimeWindowScheduler.Problem problem) {
+        long[][] matrix = problem.matrix();
+        int n = matrix.length;
+        int depot = problem.depot();
+
+        RoutingIndexManager manager = new RoutingIndexManager(n, 1, depot);
+        RoutingModel routing = new RoutingModel(manager);
+
+        final int costCallbackIndex = routing.registerTransitCallback(
+                (long fromIndex, long toIndex) -> matrix[manager.indexToNode(fromIndex)][manager.indexToNode(toIndex)]);
+        routing.setArcCostEvaluatorOfAllVehicles(costCallbackIndex);
+
+        final int timeCallbackIndex = routing.registerTransitCallback((long fromIndex, long toIndex) -> {
+            int from = manager.indexToNode(fromIndex);
+            int to = manager.indexToNode(toIndex);
+            long minutes = problem.durations()[from];
+            if (to != depot) {
+                minutes += (long) Math.ceil(matrix[from][to] / 60.0) + problem.bufferMinutes();
+            }
+            return minutes;
+        });
+        routing.addDimension(timeCallbackIndex, TimeWindow.END_OF_DAY, 2L * TimeWindow.END_OF_DAY, false, "Time");
+        RoutingDimension time = routing.getMutableDimension("Time");
+        time.cumulVar(routing.start(0)).setRange(problem.dayStart(), problem.dayStart());
+
+        for (int node = 0; node < n; node++) {
+            if (node == depot) {
+                continue;
             }
+            long index = manager.nodeToIndex(node);
+            TimeWindow window = problem.windows()[node];
+            int latestEnd = problem.dayEnd();
+            if (window != null) {
+                time.cumulVar(index).setMin(window.earliestStart());
+                latestEnd = Math.min(latestEnd, window.latestEnd());
+            }
+            time.setCumulVarSoftUpperBound(index, Math.max(0, latestEnd - problem.durations()[node]),
+                    TIME_WINDOW_PENALTY_PER_MINUTE);
         }
 
-        // 更新 startTime
-        updateStartTimes(result, distanceMatrix, optimizedOrder, geocodedIndices.size());
+        RoutingSearchParameters searchParameters = main.defaultRoutingSearchParameters()
+                .toBuilder()
+                .setFirstSolutionStrategy(FirstSolutionStrategy.Value.PATH_CHEAPEST_ARC)
+                .setLocalSearchMetaheuristic(LocalSearchMetaheuristic.Value.GUIDED_LOCAL_SEARCH)
+                .setTimeLimit(Duration.newBuilder().setSeconds(orToolsTimeLimitSeconds).build())
+                .build();
 
-        return result;
+        Timer.Sample sample = metrics.startTspSolver();
+        Assignment solution = routing.solveWithParameters(searchParameters);
+        metrics.stopTspSolver(sample, TSP_TIER_ORTOOLS_TIME_WINDOWS);
+        if (solution == null) {
+            log.warn("OR-Tools VRPTW solver found no solution for {} nodes", n);
+            return null;
+        }
+
+        int[] order = new int[n];
+        long index = routing.start(0);
+        int step = 0;
+        while (!routing.isEnd(index)) {
+            order[step++] = manager.indexToNode(index);
+            index = solution.value(routing.nextVar(index));
+        }
+        return order;
     }
 
     /**
-     * 更新活动的 startTime
-     * 规则：第一个活动保持原始时间，后续活动 = 前一活动结束时间 + 旅行时间 + 15分钟缓冲
+     * 按排程结果重排活动并写入 startTime；没有坐标的活动接在最后，按时长 + 缓冲顺排
      */
-    private void updateStartTimes(
+    private List<Map<String, Object>> reorderActivities(
             List<Map<String, Object>> activities,
-            long[][] distanceMatrix,
-            int[] optimizedOrder,
-            int geocodedCount) {
+            List<Integer> geocodedIndices,
+            TimeWindowScheduler.Schedule schedule) {
 
-        LocalTime currentTime = null;
+        List<Map<String, Object>> result = new ArrayList<>();
+
+        // 先加入排程后的有坐标活动
+        Set<Integer> geocodedSet = new HashSet<>(geocodedIndices);
+        int[] order = schedule.order();
+        for (int k = 0; k < order.length; k++) {
+            Map<String, Object> activity = new HashMap<>(activities.get(geocodedIndices.get(order[k])));
+            activity.put("startTime", formatMinutes(schedule.starts()[k]));
+            result.add(activity);
+        }
 
+        // 附加没有坐标的活动到末尾（保持原始相对顺序）
+        int end = schedule.finish();
         for (int i = 0; i < activities.size(); i++) {
-            Map<String, Object> activity = activities.get(i);
-
-            if (i == 0) {
-                // 第一个活动保持原始 startTime
-                currentTime = parseStartTime(activity);
-                if (currentTime == null) {
-                    currentTime = LocalTime.of(9, 0); // 默认 9:00
-                    activity.put("startTime", "09:00");
-                }
-            } else {
-                if (currentTime != null) {
-                    // 获取旅行时间
-                    long travelSeconds = 0;
-                    if (i < geocodedCount && i - 1 >= 0 && i - 1 < geocodedCount) {
-                        travelSeconds = distanceMatrix[optimizedOrder[i - 1]][optimizedOrder[i]];
-                    }
+            if (!geocodedSet.contains(i)) {
+                Map<String, Object> activity = new HashMap<>(activities.get(i));
+                int start = end + bufferMinutes;
+                activity.put("startTime", formatMinutes(start));
+                end = start + parseDurationMinutes(activity);
+                result.add(activity);
+            }
+        }
 
-                    // 前一活动的持续时间
-                    int prevDuration = parseDurationMinutes(activities.get(i - 1));
+        return result;
+    }
 
-                    // 新 startTime = 前一活动结束 + 旅行时间 + 15分钟缓冲
-                    int travelMinutes = (int) Math.ceil(travelSeconds / 60.0);
-                    int bufferMinutes = 15;
-                    currentTime = currentTime
-                            .plusMinutes(prevDuration)
-                            .plusMinutes(travelMinutes)
-                            .plusMinutes(bufferMinutes);
+    private static int toMinutes(LocalTime time) {
+        return time.getHour() * 60 + time.getMinute();
+    }
 
-                    activity.put("startTime", currentTime.toString().substring(0, 5));
-                }
-            }
-        }
+    private static String formatMinutes(int minutes) {
+        int clamped = Math.min(Math.max(minutes, 0), TimeWindow.END_OF_DAY - 1);
+        return String.format("%02d:%02d", clamped / 60, clamped % 60);
     }
 
     private LocalTime parseStartTime(Map<String, Object> activity) {
@@ -0,0 +1,99 @@
+package com.travel.agent.service.itinerary;
+
+import com.baomidou.mybatisplus.core.batch.MybatisBatch;
+import com.travel.agent.entity.ItineraryDays;
+import com.travel.agent.entity.ItineraryItems;
+import com.travel.agent.mapper.ItineraryDaysMapper;
+import com.travel.agent.mapper.ItineraryItemsMapper;
+import com.travel.agent.monitoring.AgentMetricsService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 行程批量写入
+ *
+ * 生成的行程一次性落库：所有天用一条多行 INSERT ... RETURNING 写入并取回 id，
+ * 所有活动回填 dayId 后作为一个 JDBC 批执行（驱动开启 reWriteBatchedInserts 时改写为多行 INSERT），
+ * 全部在同一个事务内。往返次数与天数 / 活动数无关。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ItineraryBulkWriter {
+
+    private final ItineraryDaysMapper itineraryDaysMapper;
+    private final SqlSessionFactory sqlSessionFactory;
+    private final AgentMetricsService metricsService;
+
+    /**
+     * 一天及其活动（活动的 dayId 由写入时回填）
+     */
+    public record DayRows(ItineraryDays day, List<ItineraryItems> items) {
+    }
+
+    /**
+     * 写入一个行程的所有天和活动，写入后 day.id / item.dayId 已回填
+     *
+     * @param source 调用来源，作为耗时指标的标签
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public void write(Long tripId, List<DayRows> rows, String source) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+
+        List<ItineraryDays> days = new ArrayList<>(rows.size());
+        for (DayRows row : rows) {
+            row.day().setTripId(tripId);
+            days.add(row.day());
+        }
+        // 返回行的顺序不保证与 VALUES 一致，按 (trip_id, day_number) 唯一键对应
+        Map<Integer, ItineraryDays> inserted = new HashMap<>();
+        for (ItineraryDays saved : itineraryDaysMapper.insertBatchReturning(days)) {
+            inserted.put(saved.getDayNumber(), saved);
+        }
+
+        List<ItineraryItems> items = new ArrayList<>();
+        for (DayRows row : rows) {
+            ItineraryDays saved = inserted.get(row.day().getDayNumber());
+            if (saved == null) {
+                throw new IllegalStateException("No id returned for day " + row.day().getDayNumber());
+            }
+            row.day().setId(saved.getId());
+            row.day().setCreatedAt(saved.getCreatedAt());
+            for (ItineraryItems item : row.items()) {
+                item.setTripId(tripId);
+                item.setDayId(saved.getId());
+                // 批量语句列固定，显式写入原先由列默认值提供的字段
+                if (item.getStatus() == null) {
+                    item.setStatus("planned");
+                }
+                if (item.getOriginalFlag() == null) {
+                    item.setOriginalFlag(true);
+                }
+                if (item.getStartTimeFixed() == null) {
+                    item.setStartTimeFixed(false);
+                }
+                items.add(item);
+            }
+        }
+        if (!items.isEmpty()) {
+            MybatisBatch.Method<ItineraryItems> method = new MybatisBatch.Method<>(ItineraryItemsMapper.class);
+            new MybatisBatch<>(sqlSessionFactory, items).execute(method.get("insertForBatch"));
+        }
+
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+        metricsService.recordItinerarySave(source, days.size(), items.size(), elapsed);
+        log.info("💾 Saved trip {}: {} days, {} items in {}ms", tripId, days.size(), items.size(), elapsed.toMillis());
+    }
+}
@@ -0,0 +1,438 @@
+package com.travel.agent.service.places;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.travel.agent.dto.response.GeoPlace;
+import com.travel.agent.monitoring.RouteOptimizationMetrics;
+import com.travel.agent.service.routing.Geohash;
+import com.travel.agent.service.routing.Haversine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Type;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 附近地点的本地空间索引 + geohash 单元缓存
+ *
+ * 按城市（geohash 精度 4，约 39km × 20km 的区域）各维护一棵 STR R-tree，所有从 Geoapify 拿到的 POI 都写入索引。
+ * 查询时把搜索圆的外接矩形拆成 geohash 单元（默认精度 6，约 1.2km × 0.6km），“单元 + 类别”为缓存粒度：
+ * 1. 本地已加载的单元直接在 R-tree 上做半径查询
+ * 2. 本地未加载的单元从 Redis 取回该单元的 POI 快照（多节点共享）
+ * 3. 仍缺失的单元合并成一个矩形请求 Geoapify，结果按单元写回 Redis 并标记为已加载
+ * 相距几米的两次查询落在相同单元上，共享同一份数据；单元键是 geohash 字符串，不存在哈希碰撞。
+ */
+@Slf4j
+@Component
+public class NearbyPlaceIndex {
+
+    private static final String KEY_PREFIX = "nearby:";
+    private static final int REGION_PRECISION = 4;
+    private static final double METERS_PER_DEGREE = 111_320.0;
+    private static final Type SNAPSHOT_TYPE = new TypeToken<CellSnapshot>() { }.getType();
+
+    private final StringRedisTemplate redisTemplate;
+    private final RouteOptimizationMetrics metrics;
+    private final Gson gson = new Gson();
+
+    @Value("${agent.places.nearby.enabled:true}")
+    private boolean enabled;
+
+    @Value("${agent.places.nearby.cell-precision:6}")
+    private int cellPrecision;
+
+    @Value("${agent.places.nearby.max-cells:24}")
+    private int maxCells;
+
+    @Value("${agent.places.nearby.fetch-limit:200}")
+    private int fetchLimit;
+
+    @Value("${agent.places.nearby.ttl:7d}")
+    private Duration ttl;
+
+    @Value("${agent.places.nearby.max-regions:64}")
+    private int maxRegions;
+
+    @Value("${agent.places.nearby.rebuild-threshold:256}")
+    private int rebuildThreshold;
+
+    private final Map<Long, Region> regions = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Region> eldest) {
+            return size() > maxRegions;
+        }
+    };
+
+    /**
+     * 按矩形范围请求外部 POI 服务，失败时返回 null
+     */
+    @FunctionalInterface
+    public interface PlaceFetcher {
+        List<GeoPlace> fetch(double minLat, double minLon, double maxLat, double maxLon, int limit);
+    }
+
+    private record CellSnapshot(long fetchedAt, List<GeoPlace> places) {
+    }
+
+    private record Entry(GeoPlace place, double latitude, double longitude, Set<String> categoryKeys) {
+    }
+
+    public NearbyPlaceIndex(StringRedisTemplate redisTemplate, RouteOptimizationMetrics metrics) {
+        this.redisTemplate = redisTemplate;
+        this.metrics = metrics;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 半径查询，按距离从近到远返回
+     *
+     * @param categories 规范化后的类别参数（见 {@link #categoryKey}）
+     */
+    public List<GeoPlace> search(double latitude, double longitude, double radiusMeters, int limit,
+                                 String categories, PlaceFetcher fetcher) {
+        double dLat = radiusMeters / METERS_PER_DEGREE;
+        double dLon = radiusMeters / (METERS_PER_DEGREE * Math.max(0.01, Math.cos(Math.toRadians(latitude))));
+        double minLat = latitude - dLat, maxLat = latitude + dLat;
+        double minLon = longitude - dLon, maxLon = longitude + dLon;
+
+        // 单元数过多时降低精度；低于城市粒度（半径数十公里）不走索引
+        int precision = cellPrecision;
+        while (precision > REGION_PRECISION && Geohash.coveringSize(minLat, minLon, maxLat, maxLon, precision) > maxCells) {
+            precision--;
+        }
+        if (Geohash.coveringSize(minLat, minLon, maxLat, maxLon, precision) > maxCells) {
+            List<GeoPlace> fetched = fetcher.fetch(minLat, minLon, maxLat, maxLon, fetchLimit);
+            return fetched == null ? new ArrayList<>() : nearest(
+                    fetched.stream().filter(p -> p.getLatitude() != null && p.getLongitude() != null)
+                            .map(p -> new Entry(p, p.getLatitude(), p.getLongitude(), Set.of(categories))).toList(),
+                    latitude, longitude, radiusMeters, limit);
+        }
+
+        long[] cells = Geohash.covering(minLat, minLon, maxLat, maxLon, precision);
+        ensureLoaded(cells, precision, categories, fetcher);
+
+        List<Entry> candidates = new ArrayList<>();
+        Set<Long> touched = new LinkedHashSet<>();
+        for (long cell : cells) {
+            touched.add(regionOf(cell, precision));
+        }
+        for (long regionHash : touched) {
+            region(regionHash).query(minLat, minLon, maxLat, maxLon, categories, candidates);
+        }
+        return nearest(candidates, latitude, longitude, radiusMeters, limit);
+    }
+
+    /**
+     * 类别参数规范化：去空格、小写、去重排序，用作缓存键和请求参数
+     */
+    public static String categoryKey(List<String> categories, String defaultCategories) {
+        List<String> source = categories == null || categories.isEmpty()
+                ? List.of(defaultCategories.split(",")) : categories;
+        TreeSet<String> normalized = new TreeSet<>();
+        for (String category : source) {
+            if (category != null && !category.isBlank()) {
+                normalized.add(category.trim().toLowerCase(Locale.ROOT));
+            }
+        }
+        return normalized.isEmpty() ? defaultCategories : String.join(",", normalized);
+    }
+
+    private void ensureLoaded(long[] cells, int precision, String categories, PlaceFetcher fetcher) {
+        Map<Long, List<Long>> coldByRegion = new TreeMap<>();
+        int localHits = 0;
+        for (long cell : cells) {
+            long regionHash = regionOf(cell, precision);
+            if (region(regionHash).isWarm(cellKey(cell, precision, categories))) {
+                localHits++;
+            } else {
+                coldByRegion.computeIfAbsent(regionHash, key -> new ArrayList<>()).add(cell);
+            }
+        }
+        if (coldByRegion.isEmpty()) {
+            metrics.recordNearbyCells(localHits, 0, 0);
+            return;
+        }
+
+        // 同一区域的冷单元只由一个线程加载（按区域编号顺序加锁）
+        List<ReentrantLock> locks = coldByRegion.keySet().stream().map(hash -> region(hash).fillLock).toList();
+        locks.forEach(ReentrantLock::lock);
+        try {
+            List<Long> cold = new ArrayList<>();
+            coldByRegion.forEach((regionHash, regionCells) -> {
+                Region region = region(regionHash);
+                for (long cell : regionCells) {
+                    if (!region.isWarm(cellKey(cell, precision, categories))) {
+                        cold.add(cell);
+                    }
+                }
+            });
+            int coalesced = cells.length - localHits - cold.size();
+
+            int redisHits = loadFromRedis(cold, precision, categories);
+            int fetchedCells = cold.size();
+            if (!cold.isEmpty()) {
+                fetchCells(cold, precision, categories, fetcher);
+            }
+            metrics.recordNearbyCells(localHits + coalesced, redisHits, fetchedCells);
+        } finally {
+            locks.forEach(ReentrantLock::unlock);
+        }
+    }
+
+    /**
+     * 从 Redis 加载单元快照，命中的单元从 cold 中移除
+     */
+    private int loadFromRedis(List<Long> cold, int precision, String categories) {
+        if (cold.isEmpty()) {
+            return 0;
+        }
+        List<String> keys = cold.stream().map(cell -> KEY_PREFIX + cellKey(cell, precision, categories)).toList();
+        List<String> values;
+        try {
+            values = redisTemplate.opsForValue().multiGet(keys);
+        } catch (Exception e) {
+            log.debug("Failed to read nearby cells from Redis: {}", e.getMessage());
+            return 0;
+        }
+        if (values == null) {
+            return 0;
+        }
+
+        int hits = 0;
+        long now = System.currentTimeMillis();
+        Iterator<Long> iterator = cold.iterator();
+        for (String value : values) {
+            long cell = iterator.next();
+            CellSnapshot snapshot = decode(value);
+            if (snapshot == null || now - snapshot.fetchedAt() >= ttl.toMillis()) {
+                continue;
+            }
+            Region region = region(regionOf(cell, precision));
+            region.addAll(snapshot.places(), categories);
+            region.markWarm(cellKey(cell, precision, categories), snapshot.fetchedAt() + ttl.toMillis());
+            iterator.remove();
+            hits++;
+        }
+        return hits;
+    }
+
+    /**
+     * 冷单元合并成一个矩形请求；结果达到上限（可能被截断）且不止一个单元时改为逐个单元请求
+     */
+    private void fetchCells(List<Long> cold, int precision, String categories, PlaceFetcher fetcher) {
+        double[] bounds = null;
+        for (long cell : cold) {
+            double[] cellBounds = Geohash.bounds(cell, precision);
+            bounds = bounds == null ? cellBounds : new double[]{
+                    Math.min(bounds[0], cellBounds[0]), Math.min(bounds[1], cellBounds[1]),
+                    Math.max(bounds[2], cellBounds[2]), Math.max(bounds[3], cellBounds[3])};
+        }
+        List<GeoPlace> places = fetcher.fetch(bounds[0], bounds[1], bounds[2], bounds[3], fetchLimit);
+        if (places == null) {
+            return;
+        }
+        if (places.size() >= fetchLimit && cold.size() > 1) {
+            log.debug("🗺️ Nearby fetch truncated at {} places, fetching {} cells individually", fetchLimit, cold.size());
+            for (long cell : cold) {
+                double[] cellBounds = Geohash.bounds(cell, precision);
+                List<GeoPlace> cellPlaces = fetcher.fetch(cellBounds[0], cellBounds[1], cellBounds[2], cellBounds[3], fetchLimit);
+                if (cellPlaces != null) {
+                    store(List.of(cell), precision, categories, cellPlaces);
+                }
+            }
+            return;
+        }
+        store(cold, precision, categories, places);
+    }
+
+    private void store(List<Long> cells, int precision, String categories, List<GeoPlace> places) {
+        Map<Long, List<GeoPlace>> byCell = new HashMap<>();
+        for (long cell : cells) {
+            byCell.put(cell, new ArrayList<>());
+        }
+        Map<Long, List<GeoPlace>> byRegion = new HashMap<>();
+        for (GeoPlace place : places) {
+            if (place.getLatitude() == null || place.getLongitude() == null) {
+                continue;
+            }
+            long cell = Geohash.encode(place.getLatitude(), place.getLongitude(), precision);
+            List<GeoPlace> cellPlaces = byCell.get(cell);
+            if (cellPlaces != null) {
+                cellPlaces.add(place);
+            }
+            // 合并矩形中顺带返回的其他单元的 POI 也写入索引（但不标记这些单元为已加载）
+            byRegion.computeIfAbsent(regionOf(cell, precision), key -> new ArrayList<>()).add(place);
+        }
+        byRegion.forEach((regionHash, regionPlaces) -> region(regionHash).addAll(regionPlaces, categories));
+
+        long now = System.currentTimeMillis();
+        Map<String, String> snapshots = new HashMap<>();
+        byCell.forEach((cell, cellPlaces) -> {
+            String key = cellKey(cell, precision, categories);
+            region(regionOf(cell, precision)).markWarm(key, now + ttl.toMillis());
+            snapshots.put(KEY_PREFIX + key, gson.toJson(new CellSnapshot(now, cellPlaces)));
+        });
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection stringConnection = (StringRedisConnection) connection;
+                for (Map.Entry<String, String> entry : snapshots.entrySet()) {
+                    stringConnection.setEx(entry.getKey(), ttl.toSeconds(), entry.getValue());
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            log.warn("⚠️ Nearby cell cache write failed for {} cells: {}", snapshots.size(), e.getMessage());
+        }
+    }
+
+    private CellSnapshot decode(String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        try {
+            CellSnapshot snapshot = gson.fromJson(value, SNAPSHOT_TYPE);
+            return snapshot != null && snapshot.places() != null ? snapshot : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static List<GeoPlace> nearest(Collection<Entry> candidates, double latitude, double longitude,
+                                          double radiusMeters, int limit) {
+        Set<String> seen = new HashSet<>();
+        List<Map.Entry<GeoPlace, Double>> inRange = new ArrayList<>();
+        for (Entry entry : candidates) {
+            double meters = Haversine.distanceKm(latitude, longitude, entry.latitude(), entry.longitude()) * 1000;
+            if (meters > radiusMeters || !seen.add(idOf(entry.place()))) {
+                continue;
+            }
+            inRange.add(Map.entry(entry.place(), meters));
+        }
+        inRange.sort(Map.Entry.comparingByValue());
+        List<GeoPlace> result = new ArrayList<>(Math.min(limit, inRange.size()));
+        for (int i = 0; i < inRange.size() && i < limit; i++) {
+            result.add(inRange.get(i).getKey());
+        }
+        return result;
+    }
+
+    /**
+     * 以该类别参数拿到的 POI，或 Geoapify 类别标签属于请求的类别（如 catering.restaurant 属于 catering）
+     */
+    private static boolean matches(Entry entry, String categories, String[] requested) {
+        if (entry.categoryKeys().contains(categories)) {
+            return true;
+        }
+        List<String> tags = entry.place().getTags();
+        if (tags == null) {
+            return false;
+        }
+        for (String tag : tags) {
+            for (String category : requested) {
+                if (tag.equals(category) || tag.startsWith(category + ".")) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static String idOf(GeoPlace place) {
+        return place.getId() != null ? place.getId()
+                : place.getName() + "@" + place.getLatitude() + "," + place.getLongitude();
+    }
+
+    private static String cellKey(long cell, int precision, String categories) {
+        return Geohash.toBase32(cell, precision) + ":" + categories;
+    }
+
+    private static long regionOf(long cell, int precision) {
+        return cell >>> (5 * (precision - REGION_PRECISION));
+    }
+
+    private Region region(long regionHash) {
+        synchronized (regions) {
+            return regions.computeIfAbsent(regionHash, key -> new Region());
+        }
+    }
+
+    /**
+     * 一个城市区域：R-tree + 待合并的新增 POI + 已加载的“单元:类别”
+     */
+    private final class Region {
+
+        private final ReentrantLock fillLock = new ReentrantLock();
+        private final Map<String, Entry> byId = new HashMap<>();
+        private final List<Entry> pending = new ArrayList<>();
+        private final Map<String, Long> warmUntil = new HashMap<>();
+        private StrTree<Entry> tree = new StrTree<>(List.of(), Entry::latitude, Entry::longitude);
+
+        synchronized boolean isWarm(String cellKey) {
+            Long until = warmUntil.get(cellKey);
+            if (until == null) {
+                return false;
+            }
+            if (until <= System.currentTimeMillis()) {
+                warmUntil.remove(cellKey);
+                return false;
+            }
+            return true;
+        }
+
+        synchronized void markWarm(String cellKey, long until) {
+            warmUntil.put(cellKey, until);
+        }
+
+        synchronized void addAll(List<GeoPlace> places, String categories) {
+            for (GeoPlace place : places) {
+                if (place.getLatitude() == null || place.getLongitude() == null) {
+                    continue;
+                }
+                String id = idOf(place);
+                Entry previous = byId.get(id);
+                Set<String> keys = new HashSet<>(previous != null ? previous.categoryKeys() : Set.of());
+                keys.add(categories);
+                Entry entry = new Entry(place, place.getLatitude(), place.getLongitude(), keys);
+                byId.put(id, entry);
+                pending.add(entry);
+            }
+            if (pending.size() >= rebuildThreshold) {
+                tree = new StrTree<>(new ArrayList<>(byId.values()), Entry::latitude, Entry::longitude);
+                pending.clear();
+            }
+        }
+
+        /**
+         * 矩形查询；被更新替换掉的旧条目（不再是 byId 中的当前值）跳过
+         */
+        synchronized void query(double minLat, double minLon, double maxLat, double maxLon,
+                                String categories, List<Entry> out) {
+            String[] requested = categories.split(",");
+            tree.search(minLat, minLon, maxLat, maxLon, entry -> {
+                if (isCurrent(entry) && matches(entry, categories, requested)) {
+                    out.add(entry);
+                }
+            });
+            for (Entry entry : pending) {
+                if (entry.latitude() >= minLat && entry.latitude() <= maxLat
+                        && entry.longitude() >= minLon && entry.longitude() <= maxLon
+                        && isCurrent(entry) && matches(entry, categories, requested)) {
+                    out.add(entry);
+                }
+            }
+        }
+
+        private boolean isCurrent(Entry entry) {
+            return byId.get(idOf(entry.place())) == entry;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.travel.agent.service.places;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * 点数据的静态 R-tree（Sort-Tile-Recursive 批量构建）
+ *
+ * 构建：按经度切成 √(n/M) 个竖条，条内按纬度排序，每 M 个点打包成叶子；
+ * 对上一层节点的中心点重复同样的切分，直到只剩根节点。构建后不可修改，新增数据由调用方缓冲后重建。
+ */
+final class StrTree<T> {
+
+    private static final int NODE_CAPACITY = 16;
+
+    private final List<T> items;
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final Node root;
+
+    /**
+     * @param children 内部节点的子节点；叶子为 null，覆盖 items[from, to)
+     */
+    private record Node(double minLat, double minLon, double maxLat, double maxLon,
+                        Node[] children, int from, int to) {
+
+        boolean intersects(double qMinLat, double qMinLon, double qMaxLat, double qMaxLon) {
+            return minLat <= qMaxLat && maxLat >= qMinLat && minLon <= qMaxLon && maxLon >= qMinLon;
+        }
+    }
+
+    StrTree(List<T> source, ToDoubleFunction<T> latitude, ToDoubleFunction<T> longitude) {
+        int n = source.size();
+        Integer[] order = new Integer[n];
+        double[] lats = new double[n];
+        double[] lons = new double[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+            lats[i] = latitude.applyAsDouble(source.get(i));
+            lons[i] = longitude.applyAsDouble(source.get(i));
+        }
+        tile(order, i -> lons[i], i -> lats[i]);
+
+        this.items = new ArrayList<>(n);
+        this.latitudes = new double[n];
+        this.longitudes = new double[n];
+        for (int k = 0; k < n; k++) {
+            items.add(source.get(order[k]));
+            latitudes[k] = lats[order[k]];
+            longitudes[k] = lons[order[k]];
+        }
+
+        List<Node> level = new ArrayList<>();
+        for (int from = 0; from < n; from += NODE_CAPACITY) {
+            int to = Math.min(n, from + NODE_CAPACITY);
+            double minLat = Double.MAX_VALUE, minLon = Double.MAX_VALUE;
+            double maxLat = -Double.MAX_VALUE, maxLon = -Double.MAX_VALUE;
+            for (int k = from; k < to; k++) {
+                minLat = Math.min(minLat, latitudes[k]);
+                maxLat = Math.max(maxLat, latitudes[k]);
+                minLon = Math.min(minLon, longitudes[k]);
+                maxLon = Math.max(maxLon, longitudes[k]);
+            }
+            level.add(new Node(minLat, minLon, maxLat, maxLon, null, from, to));
+        }
+        while (level.size() > 1) {
+            level = pack(level);
+        }
+        this.root = level.isEmpty() ? null : level.get(0);
+    }
+
+    int size() {
+        return items.size();
+    }
+
+    /**
+     * 遍历落在矩形范围内的点
+     */
+    void search(double minLat, double minLon, double maxLat, double maxLon, Consumer<T> consumer) {
+        if (root == null || !root.intersects(minLat, minLon, maxLat, maxLon)) {
+            return;
+        }
+        List<Node> stack = new ArrayList<>();
+        stack.add(root);
+        while (!stack.isEmpty()) {
+            Node node = stack.remove(stack.size() - 1);
+            if (node.children() == null) {
+                for (int k = node.from(); k < node.to(); k++) {
+                    if (latitudes[k] >= minLat && latitudes[k] <= maxLat
+                            && longitudes[k] >= minLon && longitudes[k] <= maxLon) {
+                        consumer.accept(items.get(k));
+                    }
+                }
+                continue;
+            }
+            for (Node child : node.children()) {
+                if (child.intersects(minLat, minLon, maxLat, maxLon)) {
+                    stack.add(child);
+                }
+            }
+        }
+    }
+
+    private static List<Node> pack(List<Node> nodes) {
+        Node[] sorted = nodes.toArray(new Node[0]);
+        tile(sorted, node -> (node.minLon() + node.maxLon()) / 2, node -> (node.minLat() + node.maxLat()) / 2);
+
+        List<Node> parents = new ArrayList<>();
+        for (int from = 0; from < sorted.length; from += NODE_CAPACITY) {
+            Node[] children = Arrays.copyOfRange(sorted, from, Math.min(sorted.length, from + NODE_CAPACITY));
+            double minLat = Double.MAX_VALUE, minLon = Double.MAX_VALUE;
+            double maxLat = -Double.MAX_VALUE, maxLon = -Double.MAX_VALUE;
+            for (Node child : children) {
+                minLat = Math.min(minLat, child.minLat());
+                maxLat = Math.max(maxLat, child.maxLat());
+                minLon = Math.min(minLon, child.minLon());
+                maxLon = Math.max(maxLon, child.maxLon());
+            }
+            parents.add(new Node(minLat, minLon, maxLat, maxLon, children, 0, 0));
+        }
+        return parents;
+    }
+
+    /**
+     * STR 排序：先按 x 全排序切成竖条，每个竖条内再按 y 排序
+     */
+    private static <E> void tile(E[] elements, ToDoubleFunction<E> x, ToDoubleFunction<E> y) {
+        int n = elements.length;
+        if (n <= NODE_CAPACITY) {
+            Arrays.sort(elements, Comparator.comparingDouble(y));
+            return;
+        }
+        int leaves = (n + NODE_CAPACITY - 1) / NODE_CAPACITY;
+        int slices = (int) Math.ceil(Math.sqrt(leaves));
+        int sliceSize = slices * NODE_CAPACITY;
+        Arrays.sort(elements, Comparator.comparingDouble(x));
+        for (int from = 0; from < n; from += sliceSize) {
+            Arrays.sort(elements, from, Math.min(n, from + sliceSize), Comparator.comparingDouble(y));
+        }
+    }
+}
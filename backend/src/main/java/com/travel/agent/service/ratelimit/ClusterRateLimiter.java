@@ -0,0 +1,190 @@
+package com.travel.agent.service.ratelimit;
+
+import com.travel.agent.config.RateLimitConfig;
+import com.travel.agent.monitoring.AgentMetricsService;
+import com.travel.agent.service.geocoding.GeocodeRateLimiter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 外部 API 集群级限流（Redis 令牌桶）
+ *
+ * 每个 API 一个令牌桶（Lua 脚本原子地补充 + 扣减，时间取 Redis 服务器时钟），所有节点共享账号额度。
+ * 为减少往返，每次从 Redis 预取若干许可放在本地，预取数不超过有效期内能补充的数量，过期未用的作废，
+ * 保证各节点合计不会超过额度。
+ * 调用方在本地按 FIFO 排队（公平锁），桶空时按脚本返回的等待时间休眠后重试，超过截止时间返回 false，
+ * 由调用方走各自的降级路径。Redis 不可用时退化为进程内限流，速率按配置的节点数均分。
+ */
+@Slf4j
+@Component
+public class ClusterRateLimiter {
+
+    private static final String KEY_PREFIX = "ratelimit:";
+    // Redis 不可用后，间隔一段时间再重试（期间直接走进程内限流，不必每次等连接超时）
+    private static final long REDIS_RETRY_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    // KEYS[1] 桶；ARGV: 每秒补充数、容量、请求数；返回 {获得的许可数, 无许可时需等待的毫秒数}
+    private static final String TOKEN_BUCKET_SCRIPT = """
+            local rate = tonumber(ARGV[1])
+            local capacity = tonumber(ARGV[2])
+            local requested = tonumber(ARGV[3])
+            local time = redis.call('TIME')
+            local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+            local state = redis.call('HMGET', KEYS[1], 'tokens', 'ts')
+            local tokens = tonumber(state[1])
+            local ts = tonumber(state[2])
+            if tokens == nil or ts == nil then
+              tokens = capacity
+              ts = now
+            end
+            tokens = math.min(capacity, tokens + math.max(0, now - ts) * rate / 1000)
+            local granted = math.min(requested, math.floor(tokens))
+            tokens = tokens - granted
+            local wait = 0
+            if granted == 0 then
+              wait = math.ceil((1 - tokens) * 1000 / rate)
+            end
+            redis.call('HSET', KEYS[1], 'tokens', tostring(tokens), 'ts', tostring(now))
+            redis.call('PEXPIRE', KEYS[1], math.ceil(capacity * 1000 / rate) + 1000)
+            return {granted, wait}
+            """;
+
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> SCRIPT = new DefaultRedisScript<>(TOKEN_BUCKET_SCRIPT, List.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final RateLimitConfig config;
+    private final AgentMetricsService metrics;
+
+    private final Map<String, ApiState> states = new ConcurrentHashMap<>();
+    private volatile boolean redisAvailable = true;
+    private volatile long redisRetryAt;
+
+    public ClusterRateLimiter(StringRedisTemplate redisTemplate, RateLimitConfig config, AgentMetricsService metrics) {
+        this.redisTemplate = redisTemplate;
+        this.config = config;
+        this.metrics = metrics;
+    }
+
+    /**
+     * 在该 API 配置的最长等待时间内获取一个许可
+     *
+     * @return 超时或被中断时返回 false
+     */
+    public boolean acquire(String api) {
+        return acquire(api, config.limitFor(api).getMaxWait());
+    }
+
+    public boolean acquire(String api, Duration maxWait) {
+        RateLimitConfig.Limit limit = config.limitFor(api);
+        ApiState state = states.computeIfAbsent(api,
+                key -> new ApiState(limit.getPermitsPerSecond() / Math.max(1, config.getNodes())));
+        long start = System.nanoTime();
+        long deadline = start + maxWait.toNanos();
+        boolean acquired = false;
+        try {
+            if (state.lock.tryLock(maxWait.toNanos(), TimeUnit.NANOSECONDS)) {
+                try {
+                    acquired = acquireLocked(api, limit, state, deadline);
+                } finally {
+                    state.lock.unlock();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        metrics.recordRateLimitWait(api, Duration.ofNanos(System.nanoTime() - start), acquired);
+        if (!acquired) {
+            log.warn("⏳ No {} permit within {}ms, caller falls back", api, maxWait.toMillis());
+        }
+        return acquired;
+    }
+
+    private boolean acquireLocked(String api, RateLimitConfig.Limit limit, ApiState state, long deadline)
+            throws InterruptedException {
+        while (true) {
+            long now = System.nanoTime();
+            if (state.prefetched > 0 && now < state.prefetchExpiresAt) {
+                state.prefetched--;
+                return true;
+            }
+            state.prefetched = 0;
+
+            long[] grant = config.isEnabled() ? takeFromRedis(api, limit) : null;
+            if (grant == null) {
+                return state.local.tryAcquire(Math.max(0, deadline - now));
+            }
+            if (grant[0] > 0) {
+                state.prefetched = (int) grant[0] - 1;
+                state.prefetchExpiresAt = now + config.getPrefetchTtl().toNanos();
+                return true;
+            }
+            long sleep = Math.min(TimeUnit.MILLISECONDS.toNanos(Math.max(1, grant[1])), deadline - now);
+            if (sleep <= 0) {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.sleep(sleep);
+        }
+    }
+
+    /**
+     * @return {获得的许可数, 需等待的毫秒数}；Redis 不可用时返回 null
+     */
+    private long[] takeFromRedis(String api, RateLimitConfig.Limit limit) {
+        if (!redisAvailable && System.nanoTime() < redisRetryAt) {
+            return null;
+        }
+        try {
+            List<?> result = redisTemplate.execute(SCRIPT, List.of(KEY_PREFIX + api),
+                    Double.toString(limit.getPermitsPerSecond()),
+                    Integer.toString(Math.max(1, limit.getBurst())),
+                    Integer.toString(prefetchSize(limit)));
+            if (result == null || result.size() < 2) {
+                return null;
+            }
+            if (!redisAvailable) {
+                redisAvailable = true;
+                log.info("✅ Redis rate limiter available again");
+            }
+            return new long[]{((Number) result.get(0)).longValue(), ((Number) result.get(1)).longValue()};
+        } catch (Exception e) {
+            redisRetryAt = System.nanoTime() + REDIS_RETRY_NANOS;
+            if (redisAvailable) {
+                redisAvailable = false;
+                log.warn("⚠️ Redis rate limiter unavailable, using per-node limits (1/{} of quota): {}",
+                        Math.max(1, config.getNodes()), e.getMessage());
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 预取数：不超过配置上限、桶容量，以及预取有效期内能补充的许可数（至少 1 个）
+     */
+    private int prefetchSize(RateLimitConfig.Limit limit) {
+        double refill = limit.getPermitsPerSecond() * config.getPrefetchTtl().toMillis() / 1000.0;
+        return (int) Math.max(1, Math.min(Math.min(config.getPrefetch(), limit.getBurst()), Math.floor(refill)));
+    }
+
+    private static final class ApiState {
+
+        private final ReentrantLock lock = new ReentrantLock(true);
+        // Redis 不可用时的进程内限流（本节点分得的额度）
+        private final GeocodeRateLimiter local;
+        private int prefetched;
+        private long prefetchExpiresAt;
+
+        ApiState(double permitsPerSecond) {
+            this.local = new GeocodeRateLimiter(permitsPerSecond);
+        }
+    }
+}
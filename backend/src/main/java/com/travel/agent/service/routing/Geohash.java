@@ -0,0 +1,130 @@
+package com.travel.agent.service.routing;
+
+/**
+ * Geohash 编码（坐标 → 网格单元）
+ *
+ * 以 long 的低 5·precision 位存储，精度 8 时为 40 位、单元约 38m × 19m，
+ * 同一酒店/景点的不同坐标写法（小数位不同、入口位置略有差异）落在同一单元。
+ */
+public final class Geohash {
+
+    private static final char[] BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
+
+    public static final int MAX_PRECISION = 12;
+
+    private Geohash() {
+    }
+
+    /**
+     * @return 交错后的经纬度二进制位（经度在前，与标准 geohash 一致）
+     */
+    public static long encode(double latitude, double longitude, int precision) {
+        int bits = 5 * Math.min(Math.max(precision, 1), MAX_PRECISION);
+        double minLat = -90, maxLat = 90;
+        double minLon = -180, maxLon = 180;
+        long hash = 0;
+        for (int i = 0; i < bits; i++) {
+            hash <<= 1;
+            if (i % 2 == 0) {
+                double mid = (minLon + maxLon) / 2;
+                if (longitude >= mid) {
+                    hash |= 1;
+                    minLon = mid;
+                } else {
+                    maxLon = mid;
+                }
+            } else {
+                double mid = (minLat + maxLat) / 2;
+                if (latitude >= mid) {
+                    hash |= 1;
+                    minLat = mid;
+                } else {
+                    maxLat = mid;
+                }
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * @return 单元的范围 {minLat, minLon, maxLat, maxLon}
+     */
+    public static double[] bounds(long hash, int precision) {
+        int bits = 5 * precision;
+        double minLat = -90, maxLat = 90;
+        double minLon = -180, maxLon = 180;
+        for (int i = 0; i < bits; i++) {
+            boolean set = ((hash >>> (bits - 1 - i)) & 1) == 1;
+            if (i % 2 == 0) {
+                double mid = (minLon + maxLon) / 2;
+                if (set) {
+                    minLon = mid;
+                } else {
+                    maxLon = mid;
+                }
+            } else {
+                double mid = (minLat + maxLat) / 2;
+                if (set) {
+                    minLat = mid;
+                } else {
+                    maxLat = mid;
+                }
+            }
+        }
+        return new double[]{minLat, minLon, maxLat, maxLon};
+    }
+
+    /**
+     * 覆盖矩形范围的所有单元（不处理跨越 180° 经线的矩形）
+     */
+    public static long[] covering(double minLat, double minLon, double maxLat, double maxLon, int precision) {
+        int bits = 5 * precision;
+        double cellLat = 180.0 / (1L << (bits / 2));
+        double cellLon = 360.0 / (1L << (bits - bits / 2));
+        minLat = Math.max(-90, minLat);
+        maxLat = Math.min(90 - cellLat / 2, maxLat);
+        minLon = Math.max(-180, minLon);
+        maxLon = Math.min(180 - cellLon / 2, maxLon);
+
+        long rowFrom = (long) Math.floor((minLat + 90) / cellLat);
+        long rowTo = (long) Math.floor((maxLat + 90) / cellLat);
+        long colFrom = (long) Math.floor((minLon + 180) / cellLon);
+        long colTo = (long) Math.floor((maxLon + 180) / cellLon);
+        long count = (rowTo - rowFrom + 1) * (colTo - colFrom + 1);
+        if (count <= 0 || count > Integer.MAX_VALUE) {
+            return new long[0];
+        }
+
+        long[] cells = new long[(int) count];
+        int k = 0;
+        for (long row = rowFrom; row <= rowTo; row++) {
+            for (long col = colFrom; col <= colTo; col++) {
+                cells[k++] = encode(-90 + (row + 0.5) * cellLat, -180 + (col + 0.5) * cellLon, precision);
+            }
+        }
+        return cells;
+    }
+
+    /**
+     * 覆盖矩形范围所需的单元数（不实际生成）
+     */
+    public static long coveringSize(double minLat, double minLon, double maxLat, double maxLon, int precision) {
+        int bits = 5 * precision;
+        double cellLat = 180.0 / (1L << (bits / 2));
+        double cellLon = 360.0 / (1L << (bits - bits / 2));
+        long rows = (long) Math.floor((Math.min(90, maxLat) + 90) / cellLat)
+                - (long) Math.floor((Math.max(-90, minLat) + 90) / cellLat) + 1;
+        long cols = (long) Math.floor((Math.min(180, maxLon) + 180) / cellLon)
+                - (long) Math.floor((Math.max(-180, minLon) + 180) / cellLon) + 1;
+        return rows * cols;
+    }
+
+    public static String toBase32(long hash, int precision) {
+        char[] chars = new char[precision];
+        for (int i = precision - 1; i >= 0; i--) {
+            chars[i] = BASE32[(int) (hash & 31)];
+            hash >>>= 5;
+        }
+        return new String(chars);
+    }
+}
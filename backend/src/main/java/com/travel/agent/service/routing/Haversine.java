@@ -0,0 +1,56 @@
+package com.travel.agent.service.routing;
+
+import java.util.List;
+
+/**
+ * Haversine 距离估算（Matrix API 不可用时的回退方案）
+ * 假设平均速度 40km/h，将大圆距离转换为预估驾驶时间（秒）
+ */
+public final class Haversine {
+
+    private static final double EARTH_RADIUS_KM = 6371.0;
+    private static final double AVERAGE_SPEED_KMH = 40.0;
+
+    private Haversine() {
+    }
+
+    /**
+     * @param coordinates [经度, 纬度] 列表
+     * @return NxN 预估驾驶时间矩阵（秒）
+     */
+    public static long[][] computeHaversineMatrix(List<double[]> coordinates) {
+        int n = coordinates.size();
+        long[][] matrix = new long[n][n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                if (i != j) {
+                    matrix[i][j] = seconds(coordinates.get(i), coordinates.get(j));
+                }
+            }
+        }
+        return matrix;
+    }
+
+    /**
+     * @param from [经度, 纬度]
+     * @param to   [经度, 纬度]
+     */
+    public static long seconds(double[] from, double[] to) {
+        double distKm = distanceKm(from[1], from[0], to[1], to[0]);
+        // 40 km/h -> 距离(km) / 40(km/h) * 3600(秒/小时)
+        return (long) (distKm / AVERAGE_SPEED_KMH * 3600.0);
+    }
+
+    /**
+     * Haversine 公式计算两点间大圆距离（km）
+     */
+    public static double distanceKm(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+        return EARTH_RADIUS_KM * c;
+    }
+}
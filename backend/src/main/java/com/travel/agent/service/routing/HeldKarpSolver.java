@@ -0,0 +1,110 @@
+package com.travel.agent.service.routing;
+
+import java.util.Arrays;
+
+/**
+ * 精确 TSP 求解（Held-Karp 状态压缩动态规划）
+ *
+ * 从 depot 出发、访问全部节点后回到 depot 的最短回路，支持非对称矩阵（驾驶时间往返不同）。
+ * 状态数 2^(n-1)·(n-1)，n = 12 时约 2.2 万个状态，耗时在微秒到毫秒级。
+ */
+public final class HeldKarpSolver {
+
+    /** 超过该规模时状态数增长过快，应改用启发式 */
+    public static final int MAX_NODES = 16;
+
+    private static final long INF = Long.MAX_VALUE / 4;
+
+    private HeldKarpSolver() {
+    }
+
+    /**
+     * @return 访问顺序，order[0] = depot
+     */
+    public static int[] solve(long[][] matrix, int depot) {
+        int n = matrix.length;
+        if (n > MAX_NODES) {
+            throw new IllegalArgumentException("Held-Karp supports at most " + MAX_NODES + " nodes, got " + n);
+        }
+        if (n <= 2) {
+            return trivialOrder(n, depot);
+        }
+
+        // 非 depot 节点重新编号为 0..m-1
+        int m = n - 1;
+        int[] nodes = new int[m];
+        for (int i = 0, k = 0; i < n; i++) {
+            if (i != depot) {
+                nodes[k++] = i;
+            }
+        }
+
+        int states = 1 << m;
+        long[] cost = new long[states * m];
+        int[] parent = new int[states * m];
+        Arrays.fill(cost, INF);
+        for (int j = 0; j < m; j++) {
+            cost[(1 << j) * m + j] = matrix[depot][nodes[j]];
+            parent[(1 << j) * m + j] = -1;
+        }
+
+        for (int mask = 1; mask < states; mask++) {
+            for (int last = 0; last < m; last++) {
+                if ((mask & (1 << last)) == 0) {
+                    continue;
+                }
+                long base = cost[mask * m + last];
+                if (base >= INF) {
+                    continue;
+                }
+                int remaining = (states - 1) & ~mask;
+                while (remaining != 0) {
+                    int next = Integer.numberOfTrailingZeros(remaining);
+                    remaining &= remaining - 1;
+                    int nextMask = mask | (1 << next);
+                    long candidate = base + matrix[nodes[last]][nodes[next]];
+                    if (candidate < cost[nextMask * m + next]) {
+                        cost[nextMask * m + next] = candidate;
+                        parent[nextMask * m + next] = last;
+                    }
+                }
+            }
+        }
+
+        int full = states - 1;
+        int last = 0;
+        long best = INF;
+        for (int j = 0; j < m; j++) {
+            long total = cost[full * m + j] + matrix[nodes[j]][depot];
+            if (total < best) {
+                best = total;
+                last = j;
+            }
+        }
+
+        int[] order = new int[n];
+        order[0] = depot;
+        int mask = full;
+        for (int position = n - 1; position >= 1; position--) {
+            order[position] = nodes[last];
+            int previous = parent[mask * m + last];
+            mask &= ~(1 << last);
+            last = previous;
+        }
+        return order;
+    }
+
+    static int[] trivialOrder(int n, int depot) {
+        int[] order = new int[n];
+        if (n == 0) {
+            return order;
+        }
+        order[0] = depot;
+        for (int i = 0, k = 1; i < n; i++) {
+            if (i != depot) {
+                order[k++] = i;
+            }
+        }
+        return order;
+    }
+}
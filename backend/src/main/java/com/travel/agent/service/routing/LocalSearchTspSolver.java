@@ -0,0 +1,178 @@
+package com.travel.agent.service.routing;
+
+/**
+ * 启发式 TSP 求解：最近邻构造 + 2-opt + Or-opt 局部搜索
+ *
+ * 回路固定从 depot 出发并回到 depot，支持非对称矩阵：
+ * 2-opt 反转区间时区间内部边的方向也会改变，用正向/反向前缀和在 O(1) 内算出增量；
+ * Or-opt 把长度 1~3 的片段（保持方向）移动到其他位置。
+ * 所有工作数组在求解开始时一次分配，搜索循环内不分配对象。
+ * 在几十个节点以内通常与最优解相差不到几个百分点，耗时在毫秒级。
+ */
+public final class LocalSearchTspSolver {
+
+    private static final int MAX_SEGMENT = 3;
+    private static final int MAX_ROUNDS = 1000;
+
+    private LocalSearchTspSolver() {
+    }
+
+    /**
+     * @return 访问顺序，order[0] = depot
+     */
+    public static int[] solve(long[][] matrix, int depot) {
+        int n = matrix.length;
+        if (n <= 3) {
+            return n <= 2 ? HeldKarpSolver.trivialOrder(n, depot) : HeldKarpSolver.solve(matrix, depot);
+        }
+        return improve(matrix, nearestNeighbour(matrix, depot));
+    }
+
+    /**
+     * 从给定回路（如上一次的解，warm start）开始局部搜索，tour[0] 保持不变
+     */
+    public static int[] improve(long[][] matrix, int[] initialTour) {
+        int n = matrix.length;
+        int[] tour = initialTour.clone();
+        if (n <= 3) {
+            return tour;
+        }
+        long[] forward = new long[n];
+        long[] backward = new long[n];
+        int[] scratch = new int[MAX_SEGMENT];
+
+        for (int round = 0; round < MAX_ROUNDS; round++) {
+            boolean improved = twoOpt(matrix, tour, forward, backward);
+            improved |= orOpt(matrix, tour, scratch);
+            if (!improved) {
+                break;
+            }
+        }
+        return tour;
+    }
+
+    public static long tourCost(long[][] matrix, int[] tour) {
+        long cost = 0;
+        for (int i = 0; i < tour.length; i++) {
+            cost += matrix[tour[i]][tour[(i + 1) % tour.length]];
+        }
+        return cost;
+    }
+
+    static int[] nearestNeighbour(long[][] matrix, int depot) {
+        int n = matrix.length;
+        int[] tour = new int[n];
+        boolean[] visited = new boolean[n];
+        tour[0] = depot;
+        visited[depot] = true;
+        for (int position = 1; position < n; position++) {
+            int current = tour[position - 1];
+            int best = -1;
+            for (int candidate = 0; candidate < n; candidate++) {
+                if (!visited[candidate] && (best < 0 || matrix[current][candidate] < matrix[current][best])) {
+                    best = candidate;
+                }
+            }
+            tour[position] = best;
+            visited[best] = true;
+        }
+        return tour;
+    }
+
+    /**
+     * 一轮 2-opt（首次改进即应用），位置 0 的 depot 不参与反转
+     */
+    private static boolean twoOpt(long[][] matrix, int[] tour, long[] forward, long[] backward) {
+        int n = tour.length;
+        boolean improved = false;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            // forward[k] = Σ c(t[m], t[m+1])，backward[k] = Σ c(t[m+1], t[m])，m < k
+            forward[0] = 0;
+            backward[0] = 0;
+            for (int k = 1; k < n; k++) {
+                forward[k] = forward[k - 1] + matrix[tour[k - 1]][tour[k]];
+                backward[k] = backward[k - 1] + matrix[tour[k]][tour[k - 1]];
+            }
+            search:
+            for (int i = 1; i < n - 1; i++) {
+                int before = tour[i - 1];
+                for (int j = i + 1; j < n; j++) {
+                    int after = tour[(j + 1) % n];
+                    long delta = matrix[before][tour[j]] + matrix[tour[i]][after]
+                            + (backward[j] - backward[i])
+                            - matrix[before][tour[i]] - matrix[tour[j]][after]
+                            - (forward[j] - forward[i]);
+                    if (delta < 0) {
+                        reverse(tour, i, j);
+                        changed = true;
+                        improved = true;
+                        break search;
+                    }
+                }
+            }
+        }
+        return improved;
+    }
+
+    /**
+     * 一轮 Or-opt：把 tour[i..i+len-1] 移到 tour[k] 与 tour[k+1] 之间
+     */
+    private static boolean orOpt(long[][] matrix, int[] tour, int[] scratch) {
+        int n = tour.length;
+        boolean improved = false;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            search:
+            for (int len = 1; len <= MAX_SEGMENT; len++) {
+                for (int i = 1; i + len - 1 < n; i++) {
+                    int end = i + len - 1;
+                    int prev = tour[i - 1];
+                    int next = tour[(end + 1) % n];
+                    long removeGain = matrix[prev][tour[i]] + matrix[tour[end]][next] - matrix[prev][next];
+                    for (int k = 0; k < n; k++) {
+                        if (k >= i - 1 && k <= end) {
+                            continue;
+                        }
+                        int a = tour[k];
+                        int b = tour[(k + 1) % n];
+                        long delta = matrix[a][tour[i]] + matrix[tour[end]][b] - matrix[a][b] - removeGain;
+                        if (delta < 0) {
+                            moveSegment(tour, i, len, k, scratch);
+                            changed = true;
+                            improved = true;
+                            break search;
+                        }
+                    }
+                }
+            }
+        }
+        return improved;
+    }
+
+    private static void reverse(int[] tour, int from, int to) {
+        while (from < to) {
+            int tmp = tour[from];
+            tour[from++] = tour[to];
+            tour[to--] = tmp;
+        }
+    }
+
+    /**
+     * 片段移到位置 k 之后（k 不在片段内，也不是片段前一个位置）
+     */
+    private static void moveSegment(int[] tour, int start, int len, int k, int[] scratch) {
+        System.arraycopy(tour, start, scratch, 0, len);
+        if (k > start) {
+            // 片段后移：[start+len..k] 前移 len 位
+            System.arraycopy(tour, start + len, tour, start, k - start - len + 1);
+            System.arraycopy(scratch, 0, tour, k - len + 1, len);
+        } else {
+            // 片段前移：[k+1..start-1] 后移 len 位
+            System.arraycopy(tour, k + 1, tour, k + 1 + len, start - k - 1);
+            System.arraycopy(scratch, 0, tour, k + 1, len);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.travel.agent.service.routing;
+
+import java.util.Arrays;
+
+/**
+ * 原始类型开放寻址哈希表：(long, long) → int，每个条目带过期时间
+ *
+ * 行程矩阵的单元格数量大（每天 n² 个）且值很小，用装箱 Map 存储时对象开销远大于数据本身。
+ * 每个条目占 28 字节（两个 long 键 + int 值 + long 过期时间），线性探测，容量为 2 的幂。
+ * 非线程安全，由调用方同步。
+ */
+final class LongPairIntMap {
+
+    private static final long EMPTY = Long.MIN_VALUE;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private long[] keysA;
+    private long[] keysB;
+    private int[] values;
+    private long[] expiresAt;
+    private int size;
+    private final int maxEntries;
+
+    LongPairIntMap(int initialCapacity, int maxEntries) {
+        this.maxEntries = maxEntries;
+        allocate(tableSizeFor(initialCapacity));
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return 值；不存在或已过期时返回 -1
+     */
+    int get(long a, long b, long now) {
+        int mask = keysA.length - 1;
+        for (int slot = hash(a, b) & mask; keysA[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (keysA[slot] == a && keysB[slot] == b) {
+                return expiresAt[slot] > now ? values[slot] : -1;
+            }
+        }
+        return -1;
+    }
+
+    void put(long a, long b, int value, long expiry, long now) {
+        if (size + 1 > keysA.length * LOAD_FACTOR) {
+            if (size + 1 > maxEntries) {
+                // 达到上限：先清理过期条目，仍然太满则整表清空（可从 Redis 重新回填）
+                rebuild(keysA.length, now);
+                if (size + 1 > maxEntries) {
+                    allocate(keysA.length);
+                }
+            }
+            if (size + 1 > keysA.length * LOAD_FACTOR) {
+                rebuild(keysA.length * 2, now);
+            }
+        }
+        insert(a, b, value, expiry);
+    }
+
+    private void insert(long a, long b, int value, long expiry) {
+        int mask = keysA.length - 1;
+        int slot = hash(a, b) & mask;
+        while (keysA[slot] != EMPTY) {
+            if (keysA[slot] == a && keysB[slot] == b) {
+                values[slot] = value;
+                expiresAt[slot] = expiry;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keysA[slot] = a;
+        keysB[slot] = b;
+        values[slot] = value;
+        expiresAt[slot] = expiry;
+        size++;
+    }
+
+    private void rebuild(int capacity, long now) {
+        long[] oldA = keysA;
+        long[] oldB = keysB;
+        int[] oldValues = values;
+        long[] oldExpiry = expiresAt;
+        allocate(capacity);
+        for (int i = 0; i < oldA.length; i++) {
+            if (oldA[i] != EMPTY && oldExpiry[i] > now) {
+                insert(oldA[i], oldB[i], oldValues[i], oldExpiry[i]);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keysA = new long[capacity];
+        keysB = new long[capacity];
+        values = new int[capacity];
+        expiresAt = new long[capacity];
+        Arrays.fill(keysA, EMPTY);
+        size = 0;
+    }
+
+    private static int hash(long a, long b) {
+        long h = a * 0x9E3779B97F4A7C15L + b;
+        h ^= h >>> 32;
+        h *= 0xC2B2AE3D27D4EB4FL;
+        return (int) (h ^ (h >>> 29));
+    }
+
+    private static int tableSizeFor(int capacity) {
+        int n = 16;
+        while (n < capacity / LOAD_FACTOR) {
+            n <<= 1;
+        }
+        return n;
+    }
+}
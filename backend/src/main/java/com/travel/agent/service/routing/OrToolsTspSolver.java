@@ -0,0 +1,79 @@
+package com.travel.agent.service.routing;
+
+import com.google.ortools.constraintsolver.Assignment;
+import com.google.ortools.constraintsolver.FirstSolutionStrategy;
+import com.google.ortools.constraintsolver.LocalSearchMetaheuristic;
+import com.google.ortools.constraintsolver.RoutingIndexManager;
+import com.google.ortools.constraintsolver.RoutingModel;
+import com.google.ortools.constraintsolver.RoutingSearchParameters;
+import com.google.ortools.constraintsolver.main;
+import com.google.protobuf.Duration;
+
+/**
+ * Google OR-Tools TSP 求解（大规模实例）
+ *
+ * 最便宜弧构造 + 引导局部搜索，会一直跑到时间上限。
+ * 给出初始解时通过 ReadAssignmentFromRoutes 从该解开始搜索（编辑后 warm start）。
+ * 调用前需已加载原生库（Loader.loadNativeLibraries）。
+ */
+public final class OrToolsTspSolver {
+
+    private OrToolsTspSolver() {
+    }
+
+    /**
+     * @param initialOrder 可选的初始解（order[0] = depot）
+     * @return 访问顺序，order[0] = depot；无解时返回 null
+     */
+    public static int[] solve(long[][] matrix, int depot, int[] initialOrder, java.time.Duration timeLimit) {
+        int n = matrix.length;
+
+        // 创建路由索引管理器：n 个节点，1 辆车，从 depot 出发
+        RoutingIndexManager manager = new RoutingIndexManager(n, 1, depot);
+        RoutingModel routing = new RoutingModel(manager);
+
+        // 注册运输成本回调
+        final int transitCallbackIndex = routing.registerTransitCallback(
+                (long fromIndex, long toIndex) -> matrix[manager.indexToNode(fromIndex)][manager.indexToNode(toIndex)]);
+        routing.setArcCostEvaluatorOfAllVehicles(transitCallbackIndex);
+
+        RoutingSearchParameters searchParameters = main.defaultRoutingSearchParameters()
+                .toBuilder()
+                .setFirstSolutionStrategy(FirstSolutionStrategy.Value.PATH_CHEAPEST_ARC)
+                .setLocalSearchMetaheuristic(LocalSearchMetaheuristic.Value.GUIDED_LOCAL_SEARCH)
+                .setTimeLimit(Duration.newBuilder()
+                        .setSeconds(timeLimit.getSeconds())
+                        .setNanos(timeLimit.getNano())
+                        .build())
+                .build();
+
+        // 求解
+        Assignment solution;
+        if (initialOrder != null) {
+            routing.closeModelWithParameters(searchParameters);
+            long[][] routes = new long[1][n - 1];
+            for (int k = 1; k < n; k++) {
+                routes[0][k - 1] = manager.nodeToIndex(initialOrder[k]);
+            }
+            Assignment initial = routing.readAssignmentFromRoutes(routes, true);
+            solution = initial != null
+                    ? routing.solveFromAssignmentWithParameters(initial, searchParameters)
+                    : routing.solveWithParameters(searchParameters);
+        } else {
+            solution = routing.solveWithParameters(searchParameters);
+        }
+        if (solution == null) {
+            return null;
+        }
+
+        // 提取路线
+        int[] order = new int[n];
+        long index = routing.start(0);
+        int step = 0;
+        while (!routing.isEnd(index)) {
+            order[step++] = manager.indexToNode(index);
+            index = solution.value(routing.nextVar(index));
+        }
+        return order;
+    }
+}
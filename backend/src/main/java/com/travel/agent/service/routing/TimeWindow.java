@@ -0,0 +1,126 @@
+package com.travel.agent.service.routing;
+
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 活动时间窗（当天 0 点起的分钟数）：活动需在 [earliestStart, latestEnd] 内开始并结束
+ *
+ * 来源：场所营业时间（GeoPlace.openingHours / 知识库 hours / LLM 给出的 openingHours）、用餐时段。
+ */
+public record TimeWindow(int earliestStart, int latestEnd) {
+
+    public static final int END_OF_DAY = 24 * 60;
+
+    public static final TimeWindow BREAKFAST = new TimeWindow(7 * 60, 10 * 60 + 30);
+    public static final TimeWindow LUNCH = new TimeWindow(11 * 60 + 30, 14 * 60 + 30);
+    public static final TimeWindow DINNER = new TimeWindow(17 * 60 + 30, 22 * 60);
+
+    // 09:00-18:00 / 9:00 – 17:30 / 10:00~22:00
+    private static final Pattern RANGE = Pattern.compile("(\\d{1,2}):(\\d{2})\\s*[-–~至到]\\s*(\\d{1,2}):(\\d{2})");
+
+    /**
+     * 解析营业时间；多个时段（含 OSM 格式的分日规则）取最早开门到最晚关门，
+     * 跨午夜关门按当天结束处理。无法解析时返回 null（视为不限时）
+     */
+    public static TimeWindow parse(String hours) {
+        if (hours == null || hours.isBlank()) {
+            return null;
+        }
+        String text = hours.trim().toLowerCase(Locale.ROOT);
+        if (text.contains("24/7") || text.contains("24 hours") || text.contains("全天")) {
+            return new TimeWindow(0, END_OF_DAY);
+        }
+
+        Matcher matcher = RANGE.matcher(text);
+        int open = Integer.MAX_VALUE;
+        int close = -1;
+        while (matcher.find()) {
+            int start = toMinutes(matcher.group(1), matcher.group(2));
+            int end = toMinutes(matcher.group(3), matcher.group(4));
+            if (start < 0 || end < 0) {
+                continue;
+            }
+            if (end <= start) {
+                end = END_OF_DAY;
+            }
+            open = Math.min(open, start);
+            close = Math.max(close, end);
+        }
+        return close < 0 ? null : new TimeWindow(open, close);
+    }
+
+    /**
+     * 把营业时间规范为 "HH:MM-HH:MM"（解析规则同 {@link #parse}），无法解析时返回 null；
+     * LLM 给出的自由文本（分日规则、备注）不直接落库
+     */
+    public static String normalize(String hours) {
+        TimeWindow window = parse(hours);
+        return window == null ? null : window.format();
+    }
+
+    public String format() {
+        return String.format(Locale.ROOT, "%02d:%02d-%02d:%02d",
+                earliestStart / 60, earliestStart % 60, latestEnd / 60, latestEnd % 60);
+    }
+
+    /**
+     * 用餐活动的时段：优先按名称/类型中的 breakfast / lunch / dinner 判断，
+     * 否则按原计划开始时间归入最近的餐段；非用餐活动返回 null
+     */
+    public static TimeWindow mealSlot(String name, String type, int plannedStart) {
+        String text = ((name == null ? "" : name) + " " + (type == null ? "" : type)).toLowerCase(Locale.ROOT);
+        if (text.contains("breakfast") || text.contains("brunch") || text.contains("早餐")) {
+            return BREAKFAST;
+        }
+        if (text.contains("lunch") || text.contains("午餐")) {
+            return LUNCH;
+        }
+        if (text.contains("dinner") || text.contains("supper") || text.contains("晚餐")) {
+            return DINNER;
+        }
+        String kind = type == null ? "" : type.toLowerCase(Locale.ROOT);
+        if (!kind.equals("dining") && !kind.equals("restaurant") && !kind.equals("food")) {
+            return null;
+        }
+        if (plannedStart < 0) {
+            return null;
+        }
+        if (plannedStart < LUNCH.earliestStart) {
+            return BREAKFAST;
+        }
+        return plannedStart < (LUNCH.latestEnd + DINNER.earliestStart) / 2 ? LUNCH : DINNER;
+    }
+
+    /**
+     * 两个时间窗的交集（任一为 null 时返回另一个；无交集时保留 primary）
+     */
+    public static TimeWindow intersect(TimeWindow primary, TimeWindow other) {
+        if (primary == null) {
+            return other;
+        }
+        if (other == null) {
+            return primary;
+        }
+        int start = Math.max(primary.earliestStart, other.earliestStart);
+        int end = Math.min(primary.latestEnd, other.latestEnd);
+        return start < end ? new TimeWindow(start, end) : primary;
+    }
+
+    /**
+     * 在 start 开始、持续 duration 分钟的活动超出时间窗的分钟数（0 表示可行）
+     */
+    public int violation(int start, int duration) {
+        return Math.max(0, earliestStart - start) + Math.max(0, start + duration - latestEnd);
+    }
+
+    private static int toMinutes(String hour, String minute) {
+        int h = Integer.parseInt(hour);
+        int m = Integer.parseInt(minute);
+        if (h > 24 || m > 59) {
+            return -1;
+        }
+        return Math.min(END_OF_DAY, h * 60 + m);
+    }
+}
@@ -0,0 +1,190 @@
+package com.travel.agent.service.routing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 带时间窗的单日排程（小规模 VRPTW 插入启发式）
+ *
+ * 从 depot 出发按顺序访问：开始时间 = max(到达时间, 最早开始)，到达时间 = 上一活动结束 + 行驶时间 + 缓冲。
+ * 目标按字典序比较：超出时间窗的总分钟数 → 当天结束时间 → 总行驶时间。
+ * 1. TSP 顺序本身可行时直接采用（行驶时间最优）
+ * 2. 否则按时间窗从紧到松逐个插入到目标最优的位置，再对两个方案做单点迁移（relocate）改进
+ * 无法全部满足时返回超出最少的方案，由调用方记录。
+ */
+public final class TimeWindowScheduler {
+
+    private static final int MAX_ROUNDS = 200;
+
+    private TimeWindowScheduler() {
+    }
+
+    /**
+     * @param matrix          节点间行驶时间（秒）
+     * @param durations       各节点活动时长（分钟）
+     * @param windows         各节点时间窗，null 表示不限时
+     * @param dayStart        depot 活动的开始时间（分钟）
+     * @param dayEnd          当天最晚结束时间（分钟）
+     * @param bufferMinutes   相邻活动之间的缓冲
+     */
+    public record Problem(long[][] matrix, int depot, int[] durations, TimeWindow[] windows,
+                          int dayStart, int dayEnd, int bufferMinutes) {
+    }
+
+    /**
+     * @param order      访问顺序，order[0] = depot
+     * @param starts     按 order 排列的开始时间（分钟）
+     * @param violation  超出时间窗 / 当天结束时间的总分钟数
+     * @param finish     最后一个活动的结束时间
+     * @param reordered  是否改动了传入的 TSP 顺序
+     */
+    public record Schedule(int[] order, int[] starts, int violation, int finish, long travelSeconds,
+                           boolean reordered) {
+
+        public boolean feasible() {
+            return violation == 0;
+        }
+    }
+
+    public static Schedule schedule(Problem problem, int[] tspOrder) {
+        Schedule seed = evaluate(problem, tspOrder, false);
+        if (seed.feasible()) {
+            return seed;
+        }
+
+        Schedule best = improve(problem, seed);
+        Schedule inserted = improve(problem, evaluate(problem, insertion(problem), true));
+        if (compare(inserted, best) < 0) {
+            best = inserted;
+        }
+        return Arrays.equals(best.order(), tspOrder) ? seed : best;
+    }
+
+    /**
+     * 按给定顺序推算开始时间
+     */
+    public static Schedule evaluate(Problem problem, int[] order, boolean reordered) {
+        int[] starts = new int[order.length];
+        int violation = 0;
+        long travel = 0;
+        int end = problem.dayStart();
+        for (int k = 0; k < order.length; k++) {
+            int node = order[k];
+            int start;
+            if (k == 0) {
+                start = problem.dayStart();
+            } else {
+                long seconds = problem.matrix()[order[k - 1]][node];
+                travel += seconds;
+                start = end + (int) Math.ceil(seconds / 60.0) + problem.bufferMinutes();
+                TimeWindow window = problem.windows()[node];
+                if (window != null) {
+                    start = Math.max(start, window.earliestStart());
+                    violation += window.violation(start, problem.durations()[node]);
+                }
+            }
+            starts[k] = start;
+            end = start + problem.durations()[node];
+            if (k > 0) {
+                violation += Math.max(0, end - problem.dayEnd());
+            }
+        }
+        return new Schedule(order, starts, violation, end, travel, reordered);
+    }
+
+    /**
+     * 按时间窗从紧到松依次插入到当前路线中目标最优的位置
+     */
+    static int[] insertion(Problem problem) {
+        int n = problem.matrix().length;
+        List<Integer> pending = new ArrayList<>(n - 1);
+        for (int i = 0; i < n; i++) {
+            if (i != problem.depot()) {
+                pending.add(i);
+            }
+        }
+        pending.sort(Comparator.comparingInt((Integer node) -> width(problem.windows()[node]))
+                .thenComparingInt(node -> latestEnd(problem.windows()[node])));
+
+        int[] route = {problem.depot()};
+        for (int node : pending) {
+            Schedule best = null;
+            for (int position = 1; position <= route.length; position++) {
+                Schedule candidate = evaluate(problem, insertAt(route, position, node), true);
+                if (best == null || compare(candidate, best) < 0) {
+                    best = candidate;
+                }
+            }
+            route = best.order();
+        }
+        return route;
+    }
+
+    /**
+     * 单点迁移：把某个活动移到其他位置，目标变好即接受，直到没有改进
+     */
+    private static Schedule improve(Problem problem, Schedule schedule) {
+        Schedule best = schedule;
+        int n = best.order().length;
+        for (int round = 0; round < MAX_ROUNDS; round++) {
+            boolean improved = false;
+            for (int from = 1; from < n && !improved; from++) {
+                for (int to = 1; to < n; to++) {
+                    if (to == from) {
+                        continue;
+                    }
+                    Schedule candidate = evaluate(problem, move(best.order(), from, to), true);
+                    if (compare(candidate, best) < 0) {
+                        best = candidate;
+                        improved = true;
+                        break;
+                    }
+                }
+            }
+            if (!improved) {
+                break;
+            }
+        }
+        return best;
+    }
+
+    private static int compare(Schedule a, Schedule b) {
+        if (a.violation() != b.violation()) {
+            return Integer.compare(a.violation(), b.violation());
+        }
+        if (a.finish() != b.finish()) {
+            return Integer.compare(a.finish(), b.finish());
+        }
+        return Long.compare(a.travelSeconds(), b.travelSeconds());
+    }
+
+    private static int[] insertAt(int[] route, int position, int node) {
+        int[] result = new int[route.length + 1];
+        System.arraycopy(route, 0, result, 0, position);
+        result[position] = node;
+        System.arraycopy(route, position, result, position + 1, route.length - position);
+        return result;
+    }
+
+    private static int[] move(int[] order, int from, int to) {
+        int[] result = order.clone();
+        int node = result[from];
+        if (from < to) {
+            System.arraycopy(result, from + 1, result, from, to - from);
+        } else {
+            System.arraycopy(result, to, result, to + 1, from - to);
+        }
+        result[to] = node;
+        return result;
+    }
+
+    private static int width(TimeWindow window) {
+        return window == null ? TimeWindow.END_OF_DAY : window.latestEnd() - window.earliestStart();
+    }
+
+    private static int latestEnd(TimeWindow window) {
+        return window == null ? TimeWindow.END_OF_DAY : window.latestEnd();
+    }
+}
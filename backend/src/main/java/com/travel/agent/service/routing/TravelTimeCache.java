@@ -0,0 +1,190 @@
+package com.travel.agent.service.routing;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * 跨行程的两点行驶时间缓存
+ *
+ * 键为起终点坐标的 geohash 单元（默认精度 8）+ 路线 profile，值为秒数。
+ * L1 为进程内原始类型哈希表（{@link LongPairIntMap}），L2 为 Redis（MGET 批量读、pipeline 批量写）。
+ * 有效期按 profile 区分：driving-traffic 的结果随路况变化，只缓存较短时间；
+ * driving / walking / cycling 返回的是典型耗时，可以长期复用。
+ */
+@Slf4j
+@Component
+public class TravelTimeCache {
+
+    private static final String KEY_PREFIX = "traveltime:";
+
+    private final StringRedisTemplate redisTemplate;
+
+    @Value("${agent.routing.travel-time.enabled:true}")
+    private boolean enabled;
+
+    @Value("${agent.routing.travel-time.precision:8}")
+    private int precision;
+
+    @Value("${agent.routing.travel-time.ttl:7d}")
+    private Duration ttl;
+
+    @Value("${agent.routing.travel-time.traffic-ttl:15m}")
+    private Duration trafficTtl;
+
+    @Value("${agent.routing.travel-time.local.max-entries:200000}")
+    private int localMaxEntries;
+
+    private final Map<String, LongPairIntMap> local = new HashMap<>();
+
+    public TravelTimeCache(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param coordinates [经度, 纬度] 列表
+     */
+    public long[] cellsOf(List<double[]> coordinates) {
+        long[] cells = new long[coordinates.size()];
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = Geohash.encode(coordinates.get(i)[1], coordinates.get(i)[0], precision);
+        }
+        return cells;
+    }
+
+    /**
+     * 用缓存填充矩阵中尚未填充的单元格（对角线除外）
+     *
+     * @return 命中的单元格数
+     */
+    public int fill(String profile, long[] cells, long[][] matrix, boolean[][] known) {
+        if (!enabled) {
+            return 0;
+        }
+        int n = cells.length;
+        int hits = 0;
+        long now = System.currentTimeMillis();
+        List<int[]> missing = new ArrayList<>();
+
+        synchronized (local) {
+            LongPairIntMap map = local.get(profile);
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < n; j++) {
+                    if (i == j || known[i][j]) {
+                        continue;
+                    }
+                    int seconds = map != null ? map.get(cells[i], cells[j], now) : -1;
+                    if (seconds >= 0) {
+                        matrix[i][j] = seconds;
+                        known[i][j] = true;
+                        hits++;
+                    } else {
+                        missing.add(new int[]{i, j});
+                    }
+                }
+            }
+        }
+        if (missing.isEmpty()) {
+            return hits;
+        }
+
+        try {
+            List<String> keys = new ArrayList<>(missing.size());
+            for (int[] cell : missing) {
+                keys.add(redisKey(profile, cells[cell[0]], cells[cell[1]]));
+            }
+            // 一次 pipeline 同时读取值和剩余有效期，提升到 L1 的条目只保留 Redis 中剩余的时间
+            List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection stringConnection = (StringRedisConnection) connection;
+                for (String key : keys) {
+                    stringConnection.get(key);
+                    stringConnection.pTtl(key);
+                }
+                return null;
+            });
+            synchronized (local) {
+                LongPairIntMap map = localMap(profile);
+                for (int k = 0; k < missing.size(); k++) {
+                    Object value = results.get(2 * k);
+                    Object remaining = results.get(2 * k + 1);
+                    if (value == null || !(remaining instanceof Long millis) || millis <= 0) {
+                        continue;
+                    }
+                    int[] cell = missing.get(k);
+                    int seconds = Integer.parseInt(value.toString());
+                    matrix[cell[0]][cell[1]] = seconds;
+                    known[cell[0]][cell[1]] = true;
+                    map.put(cells[cell[0]], cells[cell[1]], seconds, now + millis, now);
+                    hits++;
+                }
+            }
+        } catch (Exception e) {
+            log.warn("⚠️ Travel-time cache read failed, treating {} cells as misses: {}", missing.size(), e.getMessage());
+        }
+        return hits;
+    }
+
+    /**
+     * 写入新请求到的单元格
+     *
+     * @param fresh 为 true 的单元格才写入（Haversine 估算值不缓存）
+     */
+    public void putAll(String profile, long[] cells, long[][] matrix, boolean[][] fresh) {
+        if (!enabled) {
+            return;
+        }
+        int n = cells.length;
+        long now = System.currentTimeMillis();
+        Duration entryTtl = ttlFor(profile);
+        Map<String, String> entries = new HashMap<>();
+        synchronized (local) {
+            LongPairIntMap map = localMap(profile);
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < n; j++) {
+                    if (i == j || !fresh[i][j]) {
+                        continue;
+                    }
+                    int seconds = (int) Math.min(Integer.MAX_VALUE, matrix[i][j]);
+                    map.put(cells[i], cells[j], seconds, now + entryTtl.toMillis(), now);
+                    entries.put(redisKey(profile, cells[i], cells[j]), Integer.toString(seconds));
+                }
+            }
+        }
+        if (entries.isEmpty()) {
+            return;
+        }
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection stringConnection = (StringRedisConnection) connection;
+                for (Map.Entry<String, String> entry : entries.entrySet()) {
+                    stringConnection.setEx(entry.getKey(), entryTtl.toSeconds(), entry.getValue());
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            log.warn("⚠️ Travel-time cache write failed for {} cells: {}", entries.size(), e.getMessage());
+        }
+    }
+
+    private Duration ttlFor(String profile) {
+        return profile.contains("traffic") ? trafficTtl : ttl;
+    }
+
+    private LongPairIntMap localMap(String profile) {
+        return local.computeIfAbsent(profile, p -> new LongPairIntMap(1024, localMaxEntries));
+    }
+
+    private String redisKey(String profile, long from, long to) {
+        return KEY_PREFIX + profile + ":" + Geohash.toBase32(from, precision) + ":" + Geohash.toBase32(to, precision);
+    }
+}
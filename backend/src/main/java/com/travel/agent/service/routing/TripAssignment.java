@@ -0,0 +1,20 @@
+package com.travel.agent.service.routing;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 多日活动重新分组的结果
+ *
+ * @param days            每天的活动（与输入的天顺序一致，天内保持原相对顺序，尚未做单日路线优化）
+ * @param movedActivities 换到其他天的活动数（0 表示沿用原方案）
+ * @param originalSeconds 原方案各天最优路线的行驶时间之和
+ * @param plannedSeconds  新方案各天最优路线的行驶时间之和
+ */
+public record TripAssignment(List<List<Map<String, Object>>> days, int movedActivities,
+                             long originalSeconds, long plannedSeconds) {
+
+    public long savingsSeconds() {
+        return originalSeconds - plannedSeconds;
+    }
+}
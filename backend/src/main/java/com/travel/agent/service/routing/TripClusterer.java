@@ -0,0 +1,154 @@
+package com.travel.agent.service.routing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 多日行程的活动分组（带容量约束的 k-medoids，每天一个簇）
+ *
+ * 以 LLM 给出的分天方案初始化各天的中心点，容量按活动类型分别计算 = 原方案每天该类型的活动数
+ * （每天的活动量和类型构成都不变，例如不会出现一天两顿晚餐、另一天没有）：
+ * 1. 分配：按“次优与最优中心点的距离差”（regret）从大到小，把活动分到该类型仍有容量的最近中心点
+ * 2. 更新：每个簇取簇内距离和最小的成员作为新中心点
+ * 3. 收敛后做跨簇两两交换（只交换同类型活动），交换后两边到中心点的距离和下降即接受
+ * 簇编号沿用初始方案的天序号，中心点由原方案初始化，因此多数活动会留在原来那天。
+ */
+public final class TripClusterer {
+
+    private static final int MAX_ITERATIONS = 20;
+
+    private TripClusterer() {
+    }
+
+    /**
+     * @param distance 活动之间的对称距离（行驶时间往返平均）
+     * @param initial  初始方案：每个活动所在的天（0..days-1）
+     * @param types    每个活动的类型编号（0..k-1），每天每种类型的数量保持不变
+     * @param days     天数
+     * @return 每个活动分到的天
+     */
+    public static int[] cluster(long[][] distance, int[] initial, int[] types, int days) {
+        int n = initial.length;
+        int typeCount = Arrays.stream(types).max().orElse(-1) + 1;
+        int[][] capacity = new int[typeCount][days];
+        for (int i = 0; i < n; i++) {
+            capacity[types[i]][initial[i]]++;
+        }
+
+        int[] assignment = initial.clone();
+        int[] medoids = new int[days];
+        updateMedoids(distance, assignment, medoids, days);
+
+        for (int iteration = 0; iteration < MAX_ITERATIONS; iteration++) {
+            int[] next = assign(distance, medoids, capacity, types, n);
+            boolean changed = !Arrays.equals(next, assignment);
+            assignment = next;
+            int[] previousMedoids = medoids.clone();
+            updateMedoids(distance, assignment, medoids, days);
+            if (!changed && Arrays.equals(previousMedoids, medoids)) {
+                break;
+            }
+        }
+
+        swapImprove(distance, assignment, types, medoids, days);
+        return assignment;
+    }
+
+    private static int[] assign(long[][] distance, int[] medoids, int[][] capacity, int[] types, int n) {
+        int days = medoids.length;
+        List<Integer> order = new ArrayList<>(n);
+        long[] regret = new long[n];
+        for (int i = 0; i < n; i++) {
+            long best = Long.MAX_VALUE;
+            long second = Long.MAX_VALUE;
+            for (int day = 0; day < days; day++) {
+                if (medoids[day] < 0 || capacity[types[i]][day] == 0) {
+                    continue;
+                }
+                long d = distance[i][medoids[day]];
+                if (d < best) {
+                    second = best;
+                    best = d;
+                } else if (d < second) {
+                    second = d;
+                }
+            }
+            regret[i] = second == Long.MAX_VALUE ? 0 : second - best;
+            order.add(i);
+        }
+        order.sort(Comparator.comparingLong((Integer i) -> regret[i]).reversed());
+
+        int[][] remaining = new int[capacity.length][];
+        for (int type = 0; type < capacity.length; type++) {
+            remaining[type] = capacity[type].clone();
+        }
+        int[] assignment = new int[n];
+        for (int i : order) {
+            int[] left = remaining[types[i]];
+            int bestDay = -1;
+            for (int day = 0; day < days; day++) {
+                if (left[day] == 0) {
+                    continue;
+                }
+                if (bestDay < 0 || medoidDistance(distance, i, medoids[day]) < medoidDistance(distance, i, medoids[bestDay])) {
+                    bestDay = day;
+                }
+            }
+            assignment[i] = bestDay;
+            left[bestDay]--;
+        }
+        return assignment;
+    }
+
+    private static long medoidDistance(long[][] distance, int i, int medoid) {
+        return medoid < 0 ? Long.MAX_VALUE : distance[i][medoid];
+    }
+
+    private static void updateMedoids(long[][] distance, int[] assignment, int[] medoids, int days) {
+        Arrays.fill(medoids, -1);
+        long[] bestCost = new long[days];
+        Arrays.fill(bestCost, Long.MAX_VALUE);
+        for (int candidate = 0; candidate < assignment.length; candidate++) {
+            int day = assignment[candidate];
+            long total = 0;
+            for (int member = 0; member < assignment.length; member++) {
+                if (assignment[member] == day) {
+                    total += distance[candidate][member];
+                }
+            }
+            if (total < bestCost[day]) {
+                bestCost[day] = total;
+                medoids[day] = candidate;
+            }
+        }
+    }
+
+    private static void swapImprove(long[][] distance, int[] assignment, int[] types, int[] medoids, int days) {
+        int n = assignment.length;
+        boolean improved = true;
+        for (int round = 0; round < MAX_ITERATIONS && improved; round++) {
+            improved = false;
+            for (int a = 0; a < n; a++) {
+                for (int b = a + 1; b < n; b++) {
+                    int dayA = assignment[a];
+                    int dayB = assignment[b];
+                    if (dayA == dayB || types[a] != types[b]) {
+                        continue;
+                    }
+                    long before = distance[a][medoids[dayA]] + distance[b][medoids[dayB]];
+                    long after = distance[a][medoids[dayB]] + distance[b][medoids[dayA]];
+                    if (after < before) {
+                        assignment[a] = dayB;
+                        assignment[b] = dayA;
+                        improved = true;
+                    }
+                }
+            }
+            if (improved) {
+                updateMedoids(distance, assignment, medoids, days);
+            }
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.travel.agent.service.routing;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * TSP 解缓存
+ *
+ * 键为量化后的行驶时间矩阵（默认 30 秒一档）+ depot 的 SHA-256 指纹，值为访问顺序。
+ * 用户编辑后重新优化、重新生成、不同行程中相同的一天都会命中同一个实例。
+ * L1 为进程内 LRU，L2 为 Redis（多节点共享）；读取时校验是否为以 depot 开头的合法排列。
+ */
+@Slf4j
+@Component
+public class TspSolutionCache {
+
+    private static final String KEY_PREFIX = "tsp:";
+
+    private final StringRedisTemplate redisTemplate;
+
+    @Value("${agent.routing.tsp.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${agent.routing.tsp.cache.quantum-seconds:30}")
+    private long quantumSeconds;
+
+    @Value("${agent.routing.tsp.cache.ttl:1d}")
+    private Duration ttl;
+
+    @Value("${agent.routing.tsp.cache.local.max-entries:2000}")
+    private int localMaxEntries;
+
+    private final Map<String, int[]> local = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, int[]> eldest) {
+            return size() > localMaxEntries;
+        }
+    };
+
+    public TspSolutionCache(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 量化矩阵 + depot 的指纹
+     */
+    public String fingerprint(long[][] matrix, int depot) {
+        int n = matrix.length;
+        ByteBuffer buffer = ByteBuffer.allocate(8 + n * n * 8);
+        buffer.putInt(n).putInt(depot);
+        long quantum = Math.max(1, quantumSeconds);
+        for (long[] row : matrix) {
+            for (long value : row) {
+                buffer.putLong((value + quantum / 2) / quantum);
+            }
+        }
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(buffer.array()));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return 缓存的访问顺序，未命中或不合法时返回 null
+     */
+    public int[] get(String fingerprint, int n, int depot) {
+        if (!enabled) {
+            return null;
+        }
+        int[] order;
+        synchronized (local) {
+            order = local.get(fingerprint);
+        }
+        if (order == null) {
+            order = getFromRedis(fingerprint);
+            if (order != null && isValid(order, n, depot)) {
+                synchronized (local) {
+                    local.put(fingerprint, order);
+                }
+            }
+        }
+        return order != null && isValid(order, n, depot) ? order.clone() : null;
+    }
+
+    public void put(String fingerprint, int[] order) {
+        if (!enabled || order == null) {
+            return;
+        }
+        synchronized (local) {
+            local.put(fingerprint, order.clone());
+        }
+        try {
+            StringBuilder value = new StringBuilder();
+            for (int i = 0; i < order.length; i++) {
+                if (i > 0) {
+                    value.append(',');
+                }
+                value.append(order[i]);
+            }
+            redisTemplate.opsForValue().set(KEY_PREFIX + fingerprint, value.toString(), ttl);
+        } catch (Exception e) {
+            log.debug("Failed to write TSP solution to Redis: {}", e.getMessage());
+        }
+    }
+
+    private int[] getFromRedis(String fingerprint) {
+        try {
+            String value = redisTemplate.opsForValue().get(KEY_PREFIX + fingerprint);
+            if (value == null || value.isEmpty()) {
+                return null;
+            }
+            return Arrays.stream(value.split(",")).mapToInt(Integer::parseInt).toArray();
+        } catch (Exception e) {
+            log.debug("Failed to read TSP solution from Redis: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private static boolean isValid(int[] order, int n, int depot) {
+        if (order.length != n || order[0] != depot) {
+            return false;
+        }
+        boolean[] seen = new boolean[n];
+        for (int node : order) {
+            if (node < 0 || node >= n || seen[node]) {
+                return false;
+            }
+            seen[node] = true;
+        }
+        return true;
+    }
+}
@@ -4,6 +4,7 @@ CREATE EXTENSION IF NOT EXISTS vector;
 -- 创建 embeddings 表
 CREATE TABLE IF NOT EXISTS embeddings (
     id SERIAL PRIMARY KEY,
+    embedding_id VARCHAR(64),  -- LangChain4j EmbeddingStore ID（upsert 键）
     content TEXT NOT NULL,
     embedding vector(1536),  -- text-embedding-3-small 维度
     metadata JSONB,
@@ -14,6 +15,10 @@ CREATE TABLE IF NOT EXISTS embeddings (
 CREATE INDEX IF NOT EXISTS embeddings_embedding_idx 
 ON embeddings USING hnsw (embedding vector_cosine_ops);
 
+-- 创建 EmbeddingStore ID 唯一索引（批量 upsert 使用）
+CREATE UNIQUE INDEX IF NOT EXISTS embeddings_embedding_id_uidx
+ON embeddings (embedding_id);
+
 -- 创建元数据索引
 CREATE INDEX IF NOT EXISTS embeddings_metadata_idx 
 ON embeddings USING gin (metadata);
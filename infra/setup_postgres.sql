@@ -62,9 +62,12 @@ CREATE TABLE IF NOT EXISTS destinations (
     budget_level SMALLINT DEFAULT 2 CHECK (budget_level BETWEEN 1 AND 3),
     best_season VARCHAR(50),
     timezone VARCHAR(50),
-    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    embedding_hash VARCHAR(32)
 );
 COMMENT ON TABLE destinations IS 'Travel destinations';
+-- 向量回填记录的文本哈希（已有库补列）
+ALTER TABLE destinations ADD COLUMN IF NOT EXISTS embedding_hash VARCHAR(32);
 CREATE INDEX IF NOT EXISTS idx_destinations_country ON destinations(country);
 CREATE INDEX IF NOT EXISTS idx_destinations_state ON destinations(state);
 CREATE INDEX IF NOT EXISTS idx_destinations_name ON destinations(name);
@@ -146,12 +149,18 @@ CREATE TABLE IF NOT EXISTS itinerary_items (
     longitude DECIMAL(11, 8),
     place_id VARCHAR(100),
     original_flag BOOLEAN DEFAULT TRUE,
+    opening_hours VARCHAR(64),
+    start_time_fixed BOOLEAN DEFAULT FALSE,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     FOREIGN KEY (day_id) REFERENCES itinerary_days(id) ON DELETE CASCADE,
     FOREIGN KEY (trip_id) REFERENCES trips(id) ON DELETE CASCADE
 );
 COMMENT ON TABLE itinerary_items IS 'Itinerary activities';
+-- 营业时间（路线排程的时间窗，已有库补列）
+ALTER TABLE itinerary_items ADD COLUMN IF NOT EXISTS opening_hours VARCHAR(64);
+-- 用户指定的开始时间（重新优化路线时保持不变，已有库补列）
+ALTER TABLE itinerary_items ADD COLUMN IF NOT EXISTS start_time_fixed BOOLEAN DEFAULT FALSE;
 CREATE INDEX IF NOT EXISTS idx_itinerary_items_day ON itinerary_items(day_id);
 CREATE INDEX IF NOT EXISTS idx_itinerary_items_trip ON itinerary_items(trip_id);
 CREATE INDEX IF NOT EXISTS idx_itinerary_items_day_order ON itinerary_items(day_id, order_index);
@@ -289,6 +298,20 @@ CREATE TABLE IF NOT EXISTS trip_photos (
 COMMENT ON TABLE trip_photos IS 'Trip photos stored in S3';
 CREATE INDEX IF NOT EXISTS idx_trip_photos_trip ON trip_photos(trip_id);
 
+-- Geocode cache table (durable tier behind Redis)
+CREATE TABLE IF NOT EXISTS geocode_cache (
+    id BIGSERIAL PRIMARY KEY,
+    address_key VARCHAR(512) NOT NULL,
+    provider VARCHAR(32) NOT NULL,
+    latitude DECIMAL(10, 8) NOT NULL,
+    longitude DECIMAL(11, 8) NOT NULL,
+    confidence DECIMAL(5, 4),
+    fetched_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    UNIQUE(address_key, provider)
+);
+COMMENT ON TABLE geocode_cache IS 'Geocoding results keyed by canonical address and provider';
+CREATE INDEX IF NOT EXISTS idx_geocode_cache_fetched ON geocode_cache(fetched_at);
+
 -- ============================================================
 -- Vector Embeddings for RAG (LangChain4j + Chroma)
 -- ============================================================
@@ -352,5 +375,6 @@ BEGIN
     RAISE NOTICE '  - chat_sessions, chat_session_messages';
     RAISE NOTICE '  - checklists, checklist_items';
     RAISE NOTICE '  - trip_photos';
+    RAISE NOTICE '  - geocode_cache';
     RAISE NOTICE '============================================================';
 END $$;